@@ -0,0 +1,296 @@
+/*******************************************************************************
+ * SDR Trunk
+ * Copyright (C) 2014-2016 Dennis Sheirer
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>
+ ******************************************************************************/
+package alias;
+
+import alias.id.WildcardAutomaton;
+import alias.id.WildcardID;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Compiled alias lookup index for a single type of string identifier (e.g. talkgroup or ESN) that may include
+ * single-character (*) wildcard identifiers.
+ *
+ * Updates are applied to the index source maps and discard the compiled index.  The compiled index is rebuilt on
+ * the next lookup and contains:
+ *
+ * - a primitive long-keyed map of exact identifiers, where each identifier of up to 9 ASCII characters is packed
+ * into a long value, with a string map fallback for any longer identifiers
+ * - a wildcard automaton that matches all wildcards for the identifier type in a single pass
+ * - a bounded, direct-mapped negative cache of identifiers that didn't match any alias
+ *
+ * Lookups don't lock and the compiled index is immutable apart from the negative cache, so decoders on several
+ * channels can look up aliases concurrently.  Any alias change discards the compiled index, which also invalidates
+ * the negative cache.
+ */
+public class AliasIDIndex
+{
+    private final static Logger mLog = LoggerFactory.getLogger(AliasIDIndex.class);
+
+    public static final int NEGATIVE_CACHE_SIZE = 1024;
+
+    /* 9 characters of 7-bit ASCII fit into 63 bits */
+    private static final int MAX_PACKED_LENGTH = 9;
+
+    private String mName;
+    private Map<String,Alias> mAliases = new HashMap<>();
+    private List<WildcardID> mWildcards = new ArrayList<>();
+    private volatile CompiledIndex mCompiledIndex;
+
+    /**
+     * @param name of the identifier type for logging
+     */
+    public AliasIDIndex(String name)
+    {
+        mName = name;
+    }
+
+    /**
+     * Adds the identifier and alias to the index.  Identifiers containing an asterisk are added as wildcards.
+     */
+    public synchronized void add(String id, Alias alias)
+    {
+        if(id != null)
+        {
+            if(id.contains(WildcardID.WILDCARD))
+            {
+                mWildcards.add(new WildcardID(id));
+                Collections.sort(mWildcards);
+            }
+
+            mAliases.put(id, alias);
+
+            invalidate();
+        }
+    }
+
+    /**
+     * Removes the identifier from the index
+     */
+    public synchronized void remove(String id)
+    {
+        if(id != null)
+        {
+            if(id.contains(WildcardID.WILDCARD))
+            {
+                Iterator<WildcardID> it = mWildcards.iterator();
+
+                while(it.hasNext())
+                {
+                    if(it.next().value().equals(id))
+                    {
+                        it.remove();
+                    }
+                }
+            }
+
+            mAliases.remove(id);
+
+            invalidate();
+        }
+    }
+
+    /**
+     * Discards the compiled index and negative cache.  The index is recompiled on the next lookup.
+     */
+    public void invalidate()
+    {
+        mCompiledIndex = null;
+    }
+
+    /**
+     * Returns the alias that matches the identifier exactly, or the alias for the most specific wildcard that matches
+     * the identifier, or null.
+     */
+    public Alias get(String id)
+    {
+        if(id == null)
+        {
+            return null;
+        }
+
+        CompiledIndex index = mCompiledIndex;
+
+        if(index == null)
+        {
+            index = compile();
+        }
+
+        return index.get(id);
+    }
+
+    /**
+     * Compiles the index, unless another thread has already done so
+     */
+    private synchronized CompiledIndex compile()
+    {
+        if(mCompiledIndex == null)
+        {
+            mCompiledIndex = new CompiledIndex();
+        }
+
+        return mCompiledIndex;
+    }
+
+    /**
+     * Packs an identifier of up to 9 ASCII characters into a unique non-zero long value.
+     *
+     * @return packed value or 0 if the identifier can't be packed
+     */
+    public static long pack(String id)
+    {
+        int length = id.length();
+
+        if(length == 0 || length > MAX_PACKED_LENGTH)
+        {
+            return 0;
+        }
+
+        long packed = 0;
+
+        for(int x = 0; x < length; x++)
+        {
+            char c = id.charAt(x);
+
+            if(c == 0 || c > 127)
+            {
+                return 0;
+            }
+
+            packed = (packed << 7) | c;
+        }
+
+        return packed;
+    }
+
+    /**
+     * Immutable snapshot of the index source maps, compiled for fast lookup
+     */
+    private class CompiledIndex
+    {
+        private LongAliasMap mPacked;
+        private Map<String,Alias> mUnpacked = new HashMap<>();
+        private Map<String,Alias> mWildcardAliases = new HashMap<>();
+        private WildcardAutomaton mAutomaton;
+        private List<WildcardID> mLinearWildcards;
+
+        /* Racy but benign - a lost update only costs a cache miss */
+        private String[] mMisses = new String[NEGATIVE_CACHE_SIZE];
+
+        private CompiledIndex()
+        {
+            mPacked = new LongAliasMap(mAliases.size());
+
+            for(Map.Entry<String,Alias> entry : mAliases.entrySet())
+            {
+                String id = entry.getKey();
+
+                if(id.contains(WildcardID.WILDCARD))
+                {
+                    mWildcardAliases.put(id, entry.getValue());
+                }
+                else
+                {
+                    long packed = pack(id);
+
+                    if(packed != 0)
+                    {
+                        mPacked.put(packed, entry.getValue());
+                    }
+                    else
+                    {
+                        mUnpacked.put(id, entry.getValue());
+                    }
+                }
+            }
+
+            if(!mWildcards.isEmpty())
+            {
+                try
+                {
+                    mAutomaton = new WildcardAutomaton(mWildcards);
+                }
+                catch(IllegalStateException ise)
+                {
+                    mLog.warn("Couldn't compile " + mName + " wildcard automaton for [" + mWildcards.size() +
+                        "] wildcards - using linear wildcard matching");
+
+                    mLinearWildcards = new ArrayList<>(mWildcards);
+                }
+            }
+        }
+
+        private Alias get(String id)
+        {
+            long packed = pack(id);
+
+            Alias alias = packed != 0 ? mPacked.get(packed) : mUnpacked.get(id);
+
+            if(alias != null || mWildcardAliases.isEmpty())
+            {
+                return alias;
+            }
+
+            int slot = id.hashCode() & (NEGATIVE_CACHE_SIZE - 1);
+
+            if(id.equals(mMisses[slot]))
+            {
+                return null;
+            }
+
+            WildcardID wildcard = match(id);
+
+            if(wildcard != null)
+            {
+                return mWildcardAliases.get(wildcard.value());
+            }
+
+            mMisses[slot] = id;
+
+            return null;
+        }
+
+        private WildcardID match(String id)
+        {
+            if(mAutomaton != null)
+            {
+                return mAutomaton.match(id);
+            }
+
+            if(mLinearWildcards != null)
+            {
+                for(WildcardID wildcard : mLinearWildcards)
+                {
+                    if(wildcard.matches(id))
+                    {
+                        return wildcard;
+                    }
+                }
+            }
+
+            return null;
+        }
+    }
+}
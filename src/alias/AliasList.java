@@ -18,7 +18,6 @@
 package alias;
 
 import alias.id.AliasID;
-import alias.id.WildcardID;
 import alias.id.esn.Esn;
 import alias.id.fleetsync.FleetsyncID;
 import alias.id.lojack.LoJackFunctionAndID;
@@ -36,12 +35,8 @@ import org.slf4j.LoggerFactory;
 import sample.Listener;
 
 import javax.xml.bind.annotation.XmlAttribute;
-import java.util.ArrayList;
-import java.util.Collections;
 import java.util.HashMap;
-import java.util.List;
 import java.util.Map;
-import java.util.regex.Pattern;
 
 public class AliasList implements Listener<AliasEvent>
 {
@@ -49,24 +44,16 @@ public class AliasList implements Listener<AliasEvent>
     public static final String WILDCARD = "*";
     public static final String REGEX_WILDCARD = ".";
 
-    private Map<String, Alias> mESN = new HashMap<>();
-    private Map<String, Alias> mFleetsync = new HashMap<>();
+    private AliasIDIndex mESN = new AliasIDIndex("ESN");
+    private AliasIDIndex mFleetsync = new AliasIDIndex("Fleetsync");
     private Map<LoJackFunctionAndID, Alias> mLoJack = new HashMap<>();
-    private Map<String, Alias> mMDC1200 = new HashMap<>();
-    private Map<String, Alias> mMobileID = new HashMap<>();
-    private Map<String, Alias> mMPT1327 = new HashMap<>();
-    private Map<String, Alias> mSiteID = new HashMap<>();
-    private Map<Integer, Alias> mStatus = new HashMap<>();
-    private Map<String, Alias> mTalkgroup = new HashMap<>();
-    private Map<Integer, Alias> mUniqueID = new HashMap<>();
-
-    private List<WildcardID> mESNWildcards = new ArrayList<>();
-    private List<WildcardID> mMobileIDWildcards = new ArrayList<>();
-    private List<WildcardID> mFleetsyncWildcards = new ArrayList<>();
-    private List<WildcardID> mMDC1200Wildcards = new ArrayList<>();
-    private List<WildcardID> mMPT1327Wildcards = new ArrayList<>();
-    private List<WildcardID> mSiteWildcards = new ArrayList<>();
-    private List<WildcardID> mTalkgroupWildcards = new ArrayList<>();
+    private AliasIDIndex mMDC1200 = new AliasIDIndex("MDC1200");
+    private AliasIDIndex mMobileID = new AliasIDIndex("Mobile ID");
+    private AliasIDIndex mMPT1327 = new AliasIDIndex("MPT1327");
+    private AliasIDIndex mSiteID = new AliasIDIndex("Site ID");
+    private NumericAliasIndex mStatus = new NumericAliasIndex();
+    private AliasIDIndex mTalkgroup = new AliasIDIndex("Talkgroup");
+    private NumericAliasIndex mUniqueID = new NumericAliasIndex();
 
     private String mName;
 
@@ -107,111 +94,34 @@ public class AliasList implements Listener<AliasEvent>
                 switch (id.getType())
                 {
                     case ESN:
-                        String esn = ((Esn)id).getEsn();
-
-                        if(esn != null)
-                        {
-                            if (esn.contains(WILDCARD))
-                            {
-                                mESNWildcards.add(new WildcardID(esn));
-                                Collections.sort(mESNWildcards);
-                            }
-
-                            mESN.put(esn, alias);
-                        }
+                        mESN.add(((Esn)id).getEsn(), alias);
                         break;
                     case Fleetsync:
-                        String fleetsync = ((FleetsyncID)id).getIdent();
-
-                        if(fleetsync != null)
-                        {
-                            if (fleetsync.contains(WILDCARD))
-                            {
-                                mFleetsyncWildcards.add(new WildcardID(fleetsync));
-                                Collections.sort(mFleetsyncWildcards);
-                            }
-
-                            mFleetsync.put(fleetsync, alias);
-                        }
+                        mFleetsync.add(((FleetsyncID)id).getIdent(), alias);
                         break;
                     case LoJack:
                         mLoJack.put((LoJackFunctionAndID) id, alias);
                         break;
                     case MDC1200:
-                        String mdc = ((MDC1200ID)id).getIdent();
-
-                        if(mdc != null)
-                        {
-                            if (mdc.contains(WILDCARD))
-                            {
-                                mMDC1200Wildcards.add(new WildcardID(mdc));
-                                Collections.sort(mMDC1200Wildcards);
-                            }
-
-                            mMDC1200.put(mdc, alias);
-                        }
+                        mMDC1200.add(((MDC1200ID)id).getIdent(), alias);
                         break;
                     case MPT1327:
-                        String mpt = ((MPT1327ID)id).getIdent();
-
-                        if(mpt != null)
-                        {
-                            if (mpt.contains(WILDCARD))
-                            {
-                                mMPT1327Wildcards.add(new WildcardID(mpt));
-                                Collections.sort(mMPT1327Wildcards);
-                            }
-
-                            mMPT1327.put(mpt, alias);
-                        }
+                        mMPT1327.add(((MPT1327ID)id).getIdent(), alias);
                         break;
                     case MIN:
-                        String min = ((Min)id).getMin();
-
-                        if(min != null)
-                        {
-                            if (min.contains(WILDCARD))
-                            {
-                                mMobileIDWildcards.add(new WildcardID(min));
-                                Collections.sort(mMobileIDWildcards);
-                            }
-
-                            mMobileID.put(min, alias);
-                        }
+                        mMobileID.add(((Min)id).getMin(), alias);
                         break;
                     case LTRNetUID:
-                        mUniqueID.put(((UniqueID)id).getUid(), alias);
+                        mUniqueID.add(((UniqueID)id).getUid(), alias);
                         break;
                     case Site:
-                        String siteID = ((SiteID)id).getSite();
-
-                        if(siteID != null)
-                        {
-                            if (siteID.contains(WILDCARD))
-                            {
-                                mSiteWildcards.add(new WildcardID(siteID));
-                                Collections.sort(mSiteWildcards);
-                            }
-
-                            mSiteID.put(siteID, alias);
-                        }
+                        mSiteID.add(((SiteID)id).getSite(), alias);
                         break;
                     case Status:
-                        mStatus.put(((StatusID) id).getStatus(), alias);
+                        mStatus.add(((StatusID) id).getStatus(), alias);
                         break;
                     case Talkgroup:
-                        String tgid = ((TalkgroupID)id).getTalkgroup();
-
-                        if(tgid != null)
-                        {
-                            if (tgid.contains(WILDCARD))
-                            {
-                                mTalkgroupWildcards.add(new WildcardID(tgid));
-                                Collections.sort(mTalkgroupWildcards);
-                            }
-
-                            mTalkgroup.put(tgid, alias);
-                        }
+                        mTalkgroup.add(((TalkgroupID)id).getTalkgroup(), alias);
                         break;
                     case NonRecordable:
                     case Priority:
@@ -243,20 +153,6 @@ public class AliasList implements Listener<AliasEvent>
         }
     }
 
-    private void removeWildcard(String value, List<WildcardID> wildcards)
-    {
-        if(value != null)
-        {
-            for(WildcardID wildcardID: wildcards)
-            {
-                if(wildcardID.value().equals(value))
-                {
-                    wildcards.remove(wildcardID);
-                }
-            }
-        }
-    }
-
     /**
      * Removes the alias and alias identifier from internal mappings.
      */
@@ -267,72 +163,22 @@ public class AliasList implements Listener<AliasEvent>
             switch (id.getType())
             {
                 case ESN:
-                    String esn = ((Esn)id).getEsn();
-
-                    if(esn != null)
-                    {
-                        if(esn.contains(WILDCARD))
-                        {
-                            removeWildcard(esn, mESNWildcards);
-                        }
-                    }
-
-                    mESN.remove(esn);
+                    mESN.remove(((Esn)id).getEsn());
                     break;
                 case Fleetsync:
-                    String fleetsync = ((FleetsyncID)id).getIdent();
-
-                    if(fleetsync != null)
-                    {
-                        if(fleetsync.contains(WILDCARD))
-                        {
-                            removeWildcard(fleetsync,mFleetsyncWildcards);
-                        }
-
-                        mFleetsync.remove(fleetsync);
-                    }
+                    mFleetsync.remove(((FleetsyncID)id).getIdent());
                     break;
                 case LoJack:
                     mLoJack.remove((LoJackFunctionAndID) id);
                     break;
                 case MDC1200:
-                    String mdc = ((MDC1200ID)id).getIdent();
-
-                    if(mdc != null)
-                    {
-                        if(mdc.contains(WILDCARD))
-                        {
-                            removeWildcard(mdc, mMDC1200Wildcards);
-                        }
-
-                        mMDC1200.remove(mdc);
-                    }
+                    mMDC1200.remove(((MDC1200ID)id).getIdent());
                     break;
                 case MPT1327:
-                    String mpt = ((MPT1327ID)id).getIdent();
-
-                    if(mpt != null)
-                    {
-                        if(mpt.contains(WILDCARD))
-                        {
-                            removeWildcard(mpt, mMPT1327Wildcards);
-                        }
-
-                        mMPT1327.remove(mpt);
-                    }
+                    mMPT1327.remove(((MPT1327ID)id).getIdent());
                     break;
                 case MIN:
-                    String min = ((Min)id).getMin();
-
-                    if(min != null)
-                    {
-                        if(min.contains(WILDCARD))
-                        {
-                            removeWildcard(min, mMobileIDWildcards);
-                        }
-
-                        mMobileID.remove(min);
-                    }
+                    mMobileID.remove(((Min)id).getMin());
                     break;
                 case LTRNetUID:
                     mUniqueID.remove(((UniqueID) id).getUid());
@@ -344,17 +190,7 @@ public class AliasList implements Listener<AliasEvent>
                     mStatus.remove(((StatusID) id).getStatus());
                     break;
                 case Talkgroup:
-                    String tgid = ((TalkgroupID)id).getTalkgroup();
-
-                    if(tgid != null)
-                    {
-                        if(tgid.contains(WILDCARD))
-                        {
-                            removeWildcard(tgid, mTalkgroupWildcards);
-                        }
-
-                        mTalkgroup.remove(tgid);
-                    }
+                    mTalkgroup.remove(((TalkgroupID)id).getTalkgroup());
                     break;
                 case NonRecordable:
                 case Priority:
@@ -367,53 +203,12 @@ public class AliasList implements Listener<AliasEvent>
         }
     }
 
-    /**
-     * Returns the first matching regex wildcard from the list of wildcards that matches the
-     * identifier.
-     *
-     * @param id to match
-     * @param wildcards to match against
-     * @return matching wildcard ID or null
-     */
-    private String getWildcardMatch(String id, List<WildcardID> wildcards)
-    {
-        if (id != null)
-        {
-            for (WildcardID wildcard : wildcards)
-            {
-                if (wildcard.matches(id))
-                {
-                    return wildcard.value();
-                }
-            }
-        }
-
-        return null;
-    }
-
     /**
      * Lookup alias by site ID
      */
     public Alias getSiteID(String siteID)
     {
-        Alias alias = null;
-
-        if (siteID != null)
-        {
-            alias = mSiteID.get(siteID);
-
-            if (alias == null)
-            {
-                String wildcard = getWildcardMatch(siteID, mSiteWildcards);
-
-                if (wildcard != null)
-                {
-                    alias = mSiteID.get(wildcard);
-                }
-            }
-        }
-
-        return alias;
+        return mSiteID.get(siteID);
     }
 
     /**
@@ -437,24 +232,7 @@ public class AliasList implements Listener<AliasEvent>
      */
     public Alias getESNAlias(String esn)
     {
-        Alias alias = null;
-
-        if (esn != null)
-        {
-            alias = mESN.get(esn);
-
-            if (alias == null)
-            {
-                String wildcard = getWildcardMatch(esn, mESNWildcards);
-
-                if (wildcard != null)
-                {
-                    alias = mESN.get(wildcard);
-                }
-            }
-        }
-
-        return alias;
+        return mESN.get(esn);
     }
 
     /**
@@ -462,24 +240,7 @@ public class AliasList implements Listener<AliasEvent>
      */
     public Alias getFleetsyncAlias(String ident)
     {
-        Alias alias = null;
-
-        if (ident != null)
-        {
-            alias = mFleetsync.get(ident);
-
-            if (alias == null)
-            {
-                String wildcard = getWildcardMatch(ident, mFleetsyncWildcards);
-
-                if (wildcard != null)
-                {
-                    alias = mFleetsync.get(wildcard);
-                }
-            }
-        }
-
-        return alias;
+        return mFleetsync.get(ident);
     }
 
     /**
@@ -506,24 +267,7 @@ public class AliasList implements Listener<AliasEvent>
      */
     public Alias getMDC1200Alias(String ident)
     {
-        Alias alias = null;
-
-        if (ident != null)
-        {
-            alias = mMDC1200.get(ident);
-
-            if (alias == null)
-            {
-                String wildcard = getWildcardMatch(ident, mMDC1200Wildcards);
-
-                if (wildcard != null)
-                {
-                    alias = mMDC1200.get(wildcard);
-                }
-            }
-        }
-
-        return alias;
+        return mMDC1200.get(ident);
     }
 
     /**
@@ -531,24 +275,7 @@ public class AliasList implements Listener<AliasEvent>
      */
     public Alias getMPT1327Alias(String ident)
     {
-        Alias alias = null;
-
-        if (ident != null)
-        {
-            alias = mMPT1327.get(ident);
-
-            if (alias == null)
-            {
-                String wildcard = getWildcardMatch(ident, mMPT1327Wildcards);
-
-                if (wildcard != null)
-                {
-                    alias = mMPT1327.get(wildcard);
-                }
-            }
-        }
-
-        return alias;
+        return mMPT1327.get(ident);
     }
 
     /**
@@ -556,24 +283,7 @@ public class AliasList implements Listener<AliasEvent>
      */
     public Alias getMobileIDNumberAlias(String ident)
     {
-        Alias alias = null;
-
-        if (ident != null)
-        {
-            alias = mMobileID.get(ident);
-
-            if (alias == null)
-            {
-                String wildcard = getWildcardMatch(ident, mMobileIDWildcards);
-
-                if (wildcard != null)
-                {
-                    alias = mMobileID.get(wildcard);
-                }
-            }
-        }
-
-        return alias;
+        return mMobileID.get(ident);
     }
 
     /**
@@ -581,24 +291,7 @@ public class AliasList implements Listener<AliasEvent>
      */
     public Alias getTalkgroupAlias(String tgid)
     {
-        Alias alias = null;
-
-        if (tgid != null)
-        {
-            alias = mTalkgroup.get(tgid);
-
-            if (alias == null)
-            {
-                String wildcard = getWildcardMatch(tgid, mTalkgroupWildcards);
-
-                if (wildcard != null)
-                {
-                    alias = mTalkgroup.get(wildcard);
-                }
-            }
-        }
-
-        return alias;
+        return mTalkgroup.get(tgid);
     }
 
     /**
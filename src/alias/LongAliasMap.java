@@ -0,0 +1,147 @@
+/*******************************************************************************
+ * SDR Trunk
+ * Copyright (C) 2014-2016 Dennis Sheirer
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>
+ ******************************************************************************/
+package alias;
+
+/**
+ * Open addressing (linear probe) hash map from primitive long keys to aliases.
+ *
+ * Used by the alias identifier indexes for numeric and packed string identifiers so that lookups don't require
+ * boxing, string hashing or equals() comparisons.  The map is populated once when an index is compiled and is
+ * read-only afterwards, so it can be safely shared by concurrent readers.
+ */
+public class LongAliasMap
+{
+    private long[] mKeys;
+    private Alias[] mValues;
+    private int mMask;
+    private int mSize;
+
+    /* Zero is the empty slot marker, so the alias for key zero is stored separately */
+    private Alias mZeroKeyAlias;
+
+    /**
+     * Constructs a map sized to hold the expected number of entries at a load factor of 50% or less
+     */
+    public LongAliasMap(int expectedSize)
+    {
+        int capacity = Integer.highestOneBit(Math.max(expectedSize * 2, 4) - 1) << 1;
+
+        mKeys = new long[capacity];
+        mValues = new Alias[capacity];
+        mMask = capacity - 1;
+    }
+
+    /**
+     * Adds or replaces the alias for the key
+     */
+    public void put(long key, Alias alias)
+    {
+        if(key == 0)
+        {
+            mZeroKeyAlias = alias;
+            return;
+        }
+
+        if((mSize + 1) * 2 > mKeys.length)
+        {
+            resize();
+        }
+
+        int index = hash(key) & mMask;
+
+        while(mKeys[index] != 0)
+        {
+            if(mKeys[index] == key)
+            {
+                mValues[index] = alias;
+                return;
+            }
+
+            index = (index + 1) & mMask;
+        }
+
+        mKeys[index] = key;
+        mValues[index] = alias;
+        mSize++;
+    }
+
+    /**
+     * Returns the alias for the key or null
+     */
+    public Alias get(long key)
+    {
+        if(key == 0)
+        {
+            return mZeroKeyAlias;
+        }
+
+        int index = hash(key) & mMask;
+
+        long current = mKeys[index];
+
+        while(current != 0)
+        {
+            if(current == key)
+            {
+                return mValues[index];
+            }
+
+            index = (index + 1) & mMask;
+            current = mKeys[index];
+        }
+
+        return null;
+    }
+
+    /**
+     * Number of entries in the map
+     */
+    public int size()
+    {
+        return mSize + (mZeroKeyAlias != null ? 1 : 0);
+    }
+
+    private void resize()
+    {
+        long[] keys = mKeys;
+        Alias[] values = mValues;
+
+        mKeys = new long[keys.length * 2];
+        mValues = new Alias[keys.length * 2];
+        mMask = mKeys.length - 1;
+        mSize = 0;
+
+        for(int x = 0; x < keys.length; x++)
+        {
+            if(keys[x] != 0)
+            {
+                put(keys[x], values[x]);
+            }
+        }
+    }
+
+    /**
+     * Spreads the key bits (fibonacci hashing) so that sequential identifiers don't cluster
+     */
+    private static int hash(long key)
+    {
+        long hash = key * 0x9E3779B97F4A7C15L;
+
+        return (int)(hash ^ (hash >>> 32));
+    }
+}
@@ -0,0 +1,77 @@
+/*******************************************************************************
+ * SDR Trunk
+ * Copyright (C) 2014-2016 Dennis Sheirer
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>
+ ******************************************************************************/
+package alias;
+
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Compiled alias lookup index for integer identifiers (e.g. status or LTR-Net unique ID).
+ *
+ * Updates are applied to the index source map and discard the compiled primitive map, which is rebuilt on the next
+ * lookup.  Lookups don't lock or box the identifier.
+ */
+public class NumericAliasIndex
+{
+    private Map<Integer,Alias> mAliases = new HashMap<>();
+    private volatile LongAliasMap mCompiledIndex;
+
+    public synchronized void add(int id, Alias alias)
+    {
+        mAliases.put(id, alias);
+        mCompiledIndex = null;
+    }
+
+    public synchronized void remove(int id)
+    {
+        mAliases.remove(id);
+        mCompiledIndex = null;
+    }
+
+    /**
+     * Returns the alias for the identifier or null
+     */
+    public Alias get(int id)
+    {
+        LongAliasMap index = mCompiledIndex;
+
+        if(index == null)
+        {
+            index = compile();
+        }
+
+        return index.get(id);
+    }
+
+    private synchronized LongAliasMap compile()
+    {
+        if(mCompiledIndex == null)
+        {
+            LongAliasMap index = new LongAliasMap(mAliases.size());
+
+            for(Map.Entry<Integer,Alias> entry : mAliases.entrySet())
+            {
+                index.put(entry.getKey(), entry.getValue());
+            }
+
+            mCompiledIndex = index;
+        }
+
+        return mCompiledIndex;
+    }
+}
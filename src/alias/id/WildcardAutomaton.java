@@ -0,0 +1,274 @@
+/*******************************************************************************
+ * SDR Trunk
+ * Copyright (C) 2014-2016 Dennis Sheirer
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>
+ ******************************************************************************/
+package alias.id;
+
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeSet;
+
+/**
+ * Deterministic finite automaton that matches an identifier against a set of wildcard identifiers in a single pass
+ * over the identifier characters, instead of running each wildcard's regular expression in turn.
+ *
+ * The wildcards are first combined into a trie where each wildcard (*) character is a branch that matches any single
+ * character.  The trie is then converted to a DFA with the subset construction, using character classes for the
+ * literal characters that appear in the wildcards plus one class for every other character.
+ *
+ * When more than one wildcard matches an identifier, the most specific (lowest weight) wildcard is returned, which
+ * is the same wildcard that a linear search over the weight-sorted wildcard list would return.
+ *
+ * Instances are immutable once constructed and can be shared by concurrent readers.
+ */
+public class WildcardAutomaton
+{
+    /* Limits the automaton size for pathological wildcard sets */
+    public static final int MAX_STATES = 65536;
+
+    private static final int DEAD = -1;
+    private static final int ASCII = 128;
+
+    /* Character class for each ASCII character - class 0 is any other character */
+    private int[] mCharacterClass = new int[ASCII];
+    private Map<Character,Integer> mExtendedCharacterClass = new HashMap<>();
+    private int mClassCount;
+
+    private int[][] mTransitions;
+    private WildcardID[] mAccept;
+
+    /**
+     * Compiles the wildcards into an automaton.
+     *
+     * @param wildcards sorted from most specific to least specific
+     * @throws IllegalStateException if the automaton would exceed the maximum number of states
+     */
+    public WildcardAutomaton(List<WildcardID> wildcards)
+    {
+        /* Build the trie */
+        List<TrieNode> nodes = new ArrayList<>();
+        nodes.add(new TrieNode());
+
+        TreeSet<Character> alphabet = new TreeSet<>();
+
+        for(int order = 0; order < wildcards.size(); order++)
+        {
+            WildcardID wildcard = wildcards.get(order);
+            String value = wildcard.value();
+
+            int node = 0;
+
+            for(int x = 0; x < value.length(); x++)
+            {
+                char c = value.charAt(x);
+
+                TrieNode current = nodes.get(node);
+
+                if(c == WildcardID.WILDCARD.charAt(0))
+                {
+                    if(current.mWildcardChild == DEAD)
+                    {
+                        current.mWildcardChild = nodes.size();
+                        nodes.add(new TrieNode());
+                    }
+
+                    node = current.mWildcardChild;
+                }
+                else
+                {
+                    alphabet.add(c);
+
+                    Integer child = current.mChildren.get(c);
+
+                    if(child == null)
+                    {
+                        child = nodes.size();
+                        current.mChildren.put(c, child);
+                        nodes.add(new TrieNode());
+                    }
+
+                    node = child;
+                }
+            }
+
+            /* Wildcards are sorted, so the first wildcard to terminate at a node is the most specific */
+            if(nodes.get(node).mTerminal == null)
+            {
+                nodes.get(node).mTerminal = wildcard;
+                nodes.get(node).mTerminalOrder = order;
+            }
+        }
+
+        /* Assign character classes */
+        char[] classCharacters = new char[alphabet.size() + 1];
+        mClassCount = 1;
+
+        for(Character c : alphabet)
+        {
+            if(c < ASCII)
+            {
+                mCharacterClass[c] = mClassCount;
+            }
+            else
+            {
+                mExtendedCharacterClass.put(c, mClassCount);
+            }
+
+            classCharacters[mClassCount++] = c;
+        }
+
+        /* Subset construction */
+        List<BitSet> states = new ArrayList<>();
+        Map<BitSet,Integer> stateIndex = new HashMap<>();
+        List<int[]> transitions = new ArrayList<>();
+
+        BitSet start = new BitSet();
+        start.set(0);
+        states.add(start);
+        stateIndex.put(start, 0);
+
+        for(int state = 0; state < states.size(); state++)
+        {
+            BitSet current = states.get(state);
+            int[] next = new int[mClassCount];
+
+            for(int characterClass = 0; characterClass < mClassCount; characterClass++)
+            {
+                BitSet target = new BitSet();
+
+                for(int node = current.nextSetBit(0); node >= 0; node = current.nextSetBit(node + 1))
+                {
+                    TrieNode trieNode = nodes.get(node);
+
+                    if(characterClass != 0)
+                    {
+                        Integer child = trieNode.mChildren.get(classCharacters[characterClass]);
+
+                        if(child != null)
+                        {
+                            target.set(child);
+                        }
+                    }
+
+                    if(trieNode.mWildcardChild != DEAD)
+                    {
+                        target.set(trieNode.mWildcardChild);
+                    }
+                }
+
+                if(target.isEmpty())
+                {
+                    next[characterClass] = DEAD;
+                }
+                else
+                {
+                    Integer index = stateIndex.get(target);
+
+                    if(index == null)
+                    {
+                        if(states.size() >= MAX_STATES)
+                        {
+                            throw new IllegalStateException("Wildcard automaton exceeds the maximum state count");
+                        }
+
+                        index = states.size();
+                        states.add(target);
+                        stateIndex.put(target, index);
+                    }
+
+                    next[characterClass] = index;
+                }
+            }
+
+            transitions.add(next);
+        }
+
+        mTransitions = transitions.toArray(new int[transitions.size()][]);
+
+        /* Accepting wildcard for each state */
+        mAccept = new WildcardID[states.size()];
+
+        for(int state = 0; state < states.size(); state++)
+        {
+            BitSet current = states.get(state);
+            int bestOrder = Integer.MAX_VALUE;
+
+            for(int node = current.nextSetBit(0); node >= 0; node = current.nextSetBit(node + 1))
+            {
+                TrieNode trieNode = nodes.get(node);
+
+                if(trieNode.mTerminal != null && trieNode.mTerminalOrder < bestOrder)
+                {
+                    mAccept[state] = trieNode.mTerminal;
+                    bestOrder = trieNode.mTerminalOrder;
+                }
+            }
+        }
+    }
+
+    /**
+     * Returns the most specific wildcard that matches the identifier, or null if no wildcard matches
+     */
+    public WildcardID match(String id)
+    {
+        if(id == null)
+        {
+            return null;
+        }
+
+        int state = 0;
+
+        for(int x = 0; x < id.length(); x++)
+        {
+            char c = id.charAt(x);
+
+            state = mTransitions[state][c < ASCII ? mCharacterClass[c] : getExtendedCharacterClass(c)];
+
+            if(state == DEAD)
+            {
+                return null;
+            }
+        }
+
+        return mAccept[state];
+    }
+
+    private int getExtendedCharacterClass(char c)
+    {
+        Integer characterClass = mExtendedCharacterClass.get(c);
+
+        return characterClass != null ? characterClass : 0;
+    }
+
+    /**
+     * Number of automaton states
+     */
+    public int getStateCount()
+    {
+        return mTransitions.length;
+    }
+
+    private static class TrieNode
+    {
+        private Map<Character,Integer> mChildren = new HashMap<>();
+        private int mWildcardChild = DEAD;
+        private WildcardID mTerminal;
+        private int mTerminalOrder;
+    }
+}
@@ -44,6 +44,9 @@ public class AudioChannelPanel extends JPanel
 	
 	private boolean mConfigured = false;
 	
+	/* Audio metadata snapshots are shared until the metadata changes */
+	private AudioMetadata mCurrentMetadata;
+	
 	public AudioChannelPanel( SettingsManager settingsManager, AudioOutput audioOutput )
 	{
 		mSettingsManager = settingsManager;
@@ -204,8 +207,10 @@ public class AudioChannelPanel extends JPanel
 		@Override
 		public void receive( AudioMetadata audioMetadata )
 		{
-			if( !mConfigured || audioMetadata.isUpdated() )
+			if( !mConfigured || audioMetadata != mCurrentMetadata )
 			{
+				mCurrentMetadata = audioMetadata;
+				
 				final Metadata from = audioMetadata.getMetadata( MetadataType.FROM );
 
 				final Metadata to = audioMetadata.getMetadata( MetadataType.TO );
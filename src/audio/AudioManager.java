@@ -23,7 +23,8 @@ import java.util.Comparator;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
-import java.util.concurrent.LinkedTransferQueue;
+import java.util.Map.Entry;
+import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.ScheduledFuture;
 import java.util.concurrent.TimeUnit;
 
@@ -42,6 +43,7 @@ import source.mixer.MixerManager;
 import audio.AudioEvent.Type;
 import audio.output.AudioOutput;
 import audio.output.MonoAudioOutput;
+import audio.output.NullAudioOutput;
 import audio.output.StereoAudioOutput;
 import controller.ThreadPoolManager;
 import controller.ThreadPoolManager.ThreadType;
@@ -52,6 +54,12 @@ public class AudioManager implements Listener<AudioPacket>, IAudioController
 
 	public static final int AUDIO_TIMEOUT = 1000; //1 second
 	
+	/* Per-source queue capacity - 64 packets is about 1.3 seconds of audio */
+	public static final int SOURCE_QUEUE_CAPACITY = 64;
+	
+	/* Idle period before a source's packet queue is retired */
+	public static final int SOURCE_QUEUE_TIMEOUT = 30000; //30 seconds
+	
 	public static final String AUDIO_CHANNELS_PROPERTY = "audio.manager.channels";
 	public static final String AUDIO_MIXER_PROPERTY = "audio.manager.mixer";
 	
@@ -61,7 +69,7 @@ public class AudioManager implements Listener<AudioPacket>, IAudioController
 	public static final AudioEvent CONFIGURATION_CHANGE_COMPLETE = 
 			new AudioEvent( Type.AUDIO_CONFIGURATION_CHANGE_COMPLETE, null );
 
-	private LinkedTransferQueue<AudioPacket> mAudioPacketQueue = new LinkedTransferQueue<>();
+	private Map<Integer,AudioPacketQueue> mSourceQueues = new ConcurrentHashMap<>();
 	private Map<Integer,AudioOutputConnection> mChannelConnectionMap = new HashMap<>();
 	private List<AudioOutputConnection> mAudioOutputConnections = new ArrayList<>();
 	private AudioOutputConnection mLowestPriorityConnection;
@@ -90,13 +98,37 @@ public class AudioManager implements Listener<AudioPacket>, IAudioController
 		loadSettings();
 	}
 	
+	/**
+	 * Constructs an audio manager that routes audio to the specified outputs,
+	 * for example a null or wave file audio output on a headless system.
+	 */
+	public AudioManager( ThreadPoolManager manager, List<AudioOutput> outputs )
+	{
+		mThreadPoolManager = manager;
+
+		configure( outputs );
+	}
+	
 	private void loadSettings()
 	{
 		MixerChannelConfiguration configuration = null;
 		
 		SystemProperties properties = SystemProperties.getInstance();
 		
-		Mixer defaultMixer = AudioSystem.getMixer( null );
+		Mixer defaultMixer = null;
+		
+		try
+		{
+			defaultMixer = AudioSystem.getMixer( null );
+		}
+		catch( IllegalArgumentException | SecurityException e )
+		{
+			mLog.error( "No audio mixer available - using a null audio output" );
+			
+			useNullAudioOutput();
+			
+			return;
+		}
 
 		String mixer = properties.get( AUDIO_MIXER_PROPERTY, defaultMixer.getMixerInfo().getName() );
 		
@@ -133,11 +165,24 @@ public class AudioManager implements Listener<AudioPacket>, IAudioController
 			catch( Exception e2 )
 			{
 				mLog.error( "Couldn't set default audio mixer/channel "
-						+ "configuration - no audio will be available", e2 );
+						+ "configuration - using a null audio output", e2 );
+				
+				useNullAudioOutput();
 			}
 		}
 	}
 	
+	/**
+	 * Routes audio to a null audio output when there is no usable sound card
+	 */
+	private void useNullAudioOutput()
+	{
+		List<AudioOutput> outputs = new ArrayList<>();
+		outputs.add( new NullAudioOutput() );
+		
+		configure( outputs );
+	}
+	
 	private MixerChannelConfiguration getDefaultConfiguration()
 	{
 		/* Use the system default mixer and mono channel as default startup */
@@ -153,7 +198,7 @@ public class AudioManager implements Listener<AudioPacket>, IAudioController
 			mThreadPoolManager.cancel( mProcessingTask );
 		}
 		
-		mAudioPacketQueue.clear();
+		mSourceQueues.clear();
 		
 		mThreadPoolManager = null;
 		mProcessingTask = null;
@@ -168,10 +213,44 @@ public class AudioManager implements Listener<AudioPacket>, IAudioController
 		mAudioOutputConnections.clear();
 	}
 
+	/**
+	 * Queues the audio packet for routing to an audio output.  Each audio 
+	 * source has a dedicated single-producer/single-consumer queue, so that
+	 * audio packets from many channels don't contend with each other and the
+	 * producing channel thread never blocks.
+	 */
 	@Override
-	public synchronized void receive( AudioPacket packet )
+	public void receive( AudioPacket packet )
 	{
-		mAudioPacketQueue.add( packet );
+		/* Only audio packets that can be monitored are routed to an output */
+		if( packet.getType() != AudioPacket.Type.AUDIO ||
+			!packet.hasAudioMetadata() || 
+			packet.getAudioMetadata().isDoNotMonitor() )
+		{
+			return;
+		}
+		
+		int source = packet.getAudioMetadata().getSource();
+		
+		AudioPacketQueue queue = mSourceQueues.get( source );
+		
+		while( queue == null || !queue.offer( packet ) )
+		{
+			/* Queue is missing or has been retired by the packet processor */
+			if( queue != null )
+			{
+				mSourceQueues.remove( source, queue );
+			}
+			
+			queue = new AudioPacketQueue( SOURCE_QUEUE_CAPACITY );
+			
+			AudioPacketQueue existing = mSourceQueues.putIfAbsent( source, queue );
+			
+			if( existing != null )
+			{
+				queue = existing;
+			}
+		}
 	}
 	
 	/**
@@ -225,43 +304,30 @@ public class AudioManager implements Listener<AudioPacket>, IAudioController
 		{
 			mControllerBroadcaster.broadcast( CONFIGURATION_CHANGE_STARTED );
 			
-			if( mThreadPoolManager != null && mProcessingTask != null )
-			{
-				mThreadPoolManager.cancel( mProcessingTask );
-			}
-			
+			/* Release the current source data lines before opening new ones */
 			disposeCurrentConfiguration();
 			
+			List<AudioOutput> outputs = new ArrayList<>();
+			
 			switch( entry.getMixerChannel() )
 			{
 				case MONO:
-					AudioOutput mono = new MonoAudioOutput( mThreadPoolManager,
-							entry.getMixer() );
-					mAudioOutputConnections.add( new AudioOutputConnection( mono ) );
-					mAvailableConnectionCount++;
-					mAudioOutputMap.put( mono.getChannelName(), mono );
+					outputs.add( new MonoAudioOutput( entry.getMixer() ) );
 					break;
 				case STEREO:
-					AudioOutput left = new StereoAudioOutput( mThreadPoolManager,
-							entry.getMixer(), MixerChannel.LEFT );
-					mAudioOutputConnections.add( new AudioOutputConnection( left ) );
-					mAvailableConnectionCount++;
-					mAudioOutputMap.put( left.getChannelName(), left );
-					
-					AudioOutput right = new StereoAudioOutput( mThreadPoolManager,
-							entry.getMixer(), MixerChannel.RIGHT );
-					mAudioOutputConnections.add( new AudioOutputConnection( right ) );
-					mAvailableConnectionCount++;
-					mAudioOutputMap.put( right.getChannelName(), right );
+					outputs.add( new StereoAudioOutput( entry.getMixer(), 
+							MixerChannel.LEFT ) );
+					outputs.add( new StereoAudioOutput( entry.getMixer(), 
+							MixerChannel.RIGHT ) );
 					break;
 				default:
 					throw new AudioException( "Unsupported mixer channel "
 							+ "configuration: " + entry.getMixerChannel() );
 			}
 
-			mProcessingTask = mThreadPoolManager.scheduleFixedRate( 
-					ThreadType.AUDIO_PROCESSING, new AudioPacketProcessor(), 15, 
-						TimeUnit.MILLISECONDS );
+			configure( outputs );
+			
+			mMixerChannelConfiguration = entry;
 
 			mControllerBroadcaster.broadcast( CONFIGURATION_CHANGE_COMPLETE );
 			
@@ -273,6 +339,28 @@ public class AudioManager implements Listener<AudioPacket>, IAudioController
 		}
 	}
 
+	/**
+	 * Replaces the current audio outputs with the outputs, starts each output
+	 * and starts the audio packet routing task
+	 */
+	private void configure( List<AudioOutput> outputs )
+	{
+		disposeCurrentConfiguration();
+		
+		for( AudioOutput output: outputs )
+		{
+			output.start();
+			
+			mAudioOutputConnections.add( new AudioOutputConnection( output ) );
+			mAvailableConnectionCount++;
+			mAudioOutputMap.put( output.getChannelName(), output );
+		}
+
+		mProcessingTask = mThreadPoolManager.scheduleFixedRate( 
+				ThreadType.AUDIO_PROCESSING, new AudioPacketProcessor(), 15, 
+					TimeUnit.MILLISECONDS );
+	}
+
 	/**
 	 * Clears all channel assignments and terminates all audio outputs in 
 	 * preparation for complete shutdown or change to another mixer/channel
@@ -280,6 +368,12 @@ public class AudioManager implements Listener<AudioPacket>, IAudioController
 	 */
 	private void disposeCurrentConfiguration()
 	{
+		if( mThreadPoolManager != null && mProcessingTask != null )
+		{
+			mThreadPoolManager.cancel( mProcessingTask );
+			mProcessingTask = null;
+		}
+		
 		mChannelConnectionMap.clear();
 
 		for( AudioOutputConnection connection : mAudioOutputConnections )
@@ -387,6 +481,20 @@ public class AudioManager implements Listener<AudioPacket>, IAudioController
 		return null;
 	}
 	
+	/**
+	 * Routes the audio packet to the source's audio output connection, if one
+	 * is available
+	 */
+	private void route( AudioPacket packet )
+	{
+		AudioOutputConnection connection = getConnection( packet );
+
+		if( connection != null )
+		{
+			connection.receive( packet );
+		}
+	}
+	
 	public class AudioPacketProcessor implements Runnable
 	{
 		@Override
@@ -396,25 +504,26 @@ public class AudioManager implements Listener<AudioPacket>, IAudioController
 			{
 				disconnectInactiveChannelAssignments();
 				
-				if( mAudioPacketQueue != null )
+				for( Entry<Integer,AudioPacketQueue> entry: mSourceQueues.entrySet() )
 				{
-					List<AudioPacket> packets = new ArrayList<AudioPacket>();
-
-					mAudioPacketQueue.drainTo( packets );
+					AudioPacketQueue queue = entry.getValue();
+					
+					if( queue.isIdle( SOURCE_QUEUE_TIMEOUT ) )
+					{
+						/* Retire the idle queue and route any packets that 
+						 * were added while it was being retired */
+						queue.retire();
+						
+						mSourceQueues.remove( entry.getKey(), queue );
+					}
+					
+					AudioPacket packet = queue.poll();
 					
-					for( AudioPacket packet: packets )
+					while( packet != null )
 					{
-						/* Don't process any packet's marked as do not monitor */
-						if( !packet.getAudioMetadata().isDoNotMonitor() &&
-							packet.getType() == AudioPacket.Type.AUDIO )
-						{
-							AudioOutputConnection connection = getConnection( packet );
-
-							if( connection != null )
-							{
-								connection.receive( packet );
-							}
-						}
+						route( packet );
+						
+						packet = queue.poll();
 					}
 				}
 			}
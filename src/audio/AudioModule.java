@@ -85,7 +85,7 @@ public class AudioModule extends Module implements IAudioPacketProvider,
 		if( mAudioPacketListener != null )
 		{
 			mAudioPacketListener.receive( new AudioPacket( AudioPacket.Type.END, 
-					mAudioMetadata.copyOf() ) );
+					mAudioMetadata.getSnapshot() ) );
 		}
 	}
 
@@ -104,7 +104,7 @@ public class AudioModule extends Module implements IAudioPacketProvider,
 			
 			mAudioFilter.filter( audio );
 			
-			AudioPacket packet = new AudioPacket( audio, mAudioMetadata.copyOf() );
+			AudioPacket packet = new AudioPacket( audio, mAudioMetadata.getSnapshot() );
 
 			if( mAudioPacketListener != null )
 			{
@@ -183,7 +183,7 @@ public class AudioModule extends Module implements IAudioPacketProvider,
 			if( state == SquelchState.SQUELCH && mAudioPacketListener != null )
 			{
 				mAudioPacketListener.receive( new AudioPacket( AudioPacket.Type.END, 
-						mAudioMetadata.copyOf() ) );
+						mAudioMetadata.getSnapshot() ) );
 			}
 			
 			mSquelchState = state;
@@ -0,0 +1,138 @@
+/*******************************************************************************
+ *     SDR Trunk 
+ *     Copyright (C) 2014-2016 Dennis Sheirer
+ * 
+ *     This program is free software: you can redistribute it and/or modify
+ *     it under the terms of the GNU General Public License as published by
+ *     the Free Software Foundation, either version 3 of the License, or
+ *     (at your option) any later version.
+ * 
+ *     This program is distributed in the hope that it will be useful,
+ *     but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *     MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *     GNU General Public License for more details.
+ * 
+ *     You should have received a copy of the GNU General Public License
+ *     along with this program.  If not, see <http://www.gnu.org/licenses/>
+ ******************************************************************************/
+package audio;
+
+import buffer.SPSCRingBuffer;
+import buffer.SPSCRingBuffer.OverflowPolicy;
+
+/**
+ * Bounded, lock-free, single-producer/single-consumer audio packet queue used
+ * by the audio manager to hold the audio packets from a single audio source.
+ * 
+ * The producer is the processing chain thread of the audio source and the
+ * consumer is the audio manager's packet routing thread.  Neither side ever
+ * blocks.  When the queue is full, the newest packet is dropped and counted.
+ * 
+ * The consumer can retire an idle queue.  A retired queue refuses any further
+ * packets, so that the producer can detect the retirement and obtain a new
+ * queue without losing packets.
+ */
+public class AudioPacketQueue
+{
+	private final SPSCRingBuffer<AudioPacket> mPackets;
+
+	private volatile boolean mOffering = false;
+	private volatile boolean mRetired = false;
+	private volatile long mLastOfferTimestamp = System.currentTimeMillis();
+
+	/**
+	 * Constructs a queue
+	 * 
+	 * @param capacity - minimum queue capacity.  Actual capacity is rounded up
+	 * to the next power of 2.
+	 */
+	public AudioPacketQueue( int capacity )
+	{
+		mPackets = new SPSCRingBuffer<>( capacity, OverflowPolicy.DROP_NEWEST );
+	}
+
+	/**
+	 * Adds the packet to the queue.  Producer thread only.
+	 * 
+	 * @return true if the packet was accepted or dropped because the queue is
+	 * full, or false if this queue is retired and the packet should be offered
+	 * to a replacement queue.
+	 */
+	public boolean offer( AudioPacket packet )
+	{
+		/* Announce the offer before checking the retired flag.  The consumer
+		 * sets the retired flag before checking this flag, so either we see
+		 * the retirement, or the consumer waits for this offer to complete */
+		mOffering = true;
+
+		try
+		{
+			if( mRetired )
+			{
+				return false;
+			}
+
+			mLastOfferTimestamp = System.currentTimeMillis();
+
+			mPackets.offer( packet );
+
+			return true;
+		}
+		finally
+		{
+			mOffering = false;
+		}
+	}
+
+	/**
+	 * Removes and returns the next packet, or null if the queue is empty.
+	 * Consumer thread only.
+	 */
+	public AudioPacket poll()
+	{
+		return mPackets.poll();
+	}
+
+	public boolean isEmpty()
+	{
+		return mPackets.isEmpty();
+	}
+
+	/**
+	 * Indicates if this queue is empty and hasn't been offered a packet within
+	 * the timeout period
+	 */
+	public boolean isIdle( long timeout )
+	{
+		return isEmpty() && 
+			( mLastOfferTimestamp + timeout ) < System.currentTimeMillis();
+	}
+
+	/**
+	 * Retires this queue so that it refuses any further packets.  Consumer
+	 * thread only.  Waits for any in-progress offer to complete, so that once
+	 * this method returns, the queue contents are final and can be drained.
+	 */
+	public void retire()
+	{
+		mRetired = true;
+
+		while( mOffering )
+		{
+			Thread.yield();
+		}
+	}
+
+	public boolean isRetired()
+	{
+		return mRetired;
+	}
+
+	/**
+	 * Number of packets dropped because the queue was full
+	 */
+	public long getDroppedPacketCount()
+	{
+		return mPackets.getDroppedCount();
+	}
+}
@@ -18,6 +18,7 @@
 package audio.metadata;
 
 import java.util.ArrayList;
+import java.util.Collections;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
@@ -36,7 +37,11 @@ public class AudioMetadata implements Listener<Metadata>
 
 	private int mSource;
 	private Map<MetadataType,Metadata> mMetadata = new HashMap<>();
-	private boolean mUpdated = false;
+	private volatile boolean mUpdated = false;
+	
+	/* Immutable snapshots are shared by audio packets until the metadata changes */
+	private boolean mImmutable = false;
+	private AudioMetadata mSnapshot;
 
 	/* Channel Selected == highest priority */
 	private boolean mSelected = false;
@@ -80,28 +85,64 @@ public class AudioMetadata implements Listener<Metadata>
 	
 	public void setIdentifier( int source, String id )
 	{
+		checkMutable();
+
 		mIdentifier = "SRC:" + source + " ID:" + ( id == null ? "UNKNOWN" : id );
 		mUpdated = true;
 	}
 	
 	/**
-	 * Returns a copy of the current audio metadata.
+	 * Returns an immutable snapshot of the current audio metadata.  The same
+	 * snapshot instance is returned until this metadata is updated, so that 
+	 * each audio packet doesn't require a new copy of the metadata map.
+	 * 
+	 * Consumers can detect changed metadata by comparing snapshot instances.
 	 */
-	public AudioMetadata copyOf()
+	public AudioMetadata getSnapshot()
 	{
-		AudioMetadata copy = new AudioMetadata( mSource, mSourceRecordable );
+		if( mImmutable )
+		{
+			return this;
+		}
 		
-		copy.mPriority = mPriority;
-		copy.mSelected = mSelected;
-		copy.mRecordable = mRecordable;
+		if( mSnapshot == null || mUpdated )
+		{
+			/* Clear the flag first so that a concurrent update, for example a 
+			 * channel selection change, is captured by the next snapshot */
+			mUpdated = false;
 
-		copy.mMetadata.putAll( mMetadata );
-		copy.mUpdated = mUpdated;
-		copy.mIdentifier = new String( mIdentifier );
-		
-		mUpdated = false;
+			AudioMetadata snapshot = new AudioMetadata( mSource, mSourceRecordable );
+
+			snapshot.mPriority = mPriority;
+			snapshot.mSelected = mSelected;
+			snapshot.mRecordable = mRecordable;
+			snapshot.mMetadata = Collections.unmodifiableMap( 
+					new HashMap<MetadataType,Metadata>( mMetadata ) );
+			snapshot.mUpdated = true;
+			snapshot.mIdentifier = mIdentifier;
+			snapshot.mImmutable = true;
+			
+			mSnapshot = snapshot;
+		}
 		
-		return copy;
+		return mSnapshot;
+	}
+	
+	/**
+	 * Indicates if this is an immutable snapshot of audio metadata
+	 */
+	public boolean isSnapshot()
+	{
+		return mImmutable;
+	}
+	
+	private void checkMutable()
+	{
+		if( mImmutable )
+		{
+			throw new UnsupportedOperationException( "Audio metadata snapshot "
+					+ "is immutable" );
+		}
 	}
 
 	/**
@@ -109,6 +150,8 @@ public class AudioMetadata implements Listener<Metadata>
 	 */
 	public void reset()
 	{
+		checkMutable();
+
 		/* Reset recordable state, identifier and audio call priority levels
 		 * and reprocess the metadata */
 		mRecordable = mSourceRecordable;
@@ -171,8 +214,8 @@ public class AudioMetadata implements Listener<Metadata>
 	
 	/**
 	 * Indicates if this audio metadata contains updated information.  The flag
-	 * will only be set when new data is added and will be reset by a copyOf()
-	 * method invocation.
+	 * will only be set when new data is added and will be reset by a 
+	 * getSnapshot() method invocation.  Snapshots are always flagged as updated.
 	 */
 	public boolean isUpdated()
 	{
@@ -181,6 +224,8 @@ public class AudioMetadata implements Listener<Metadata>
 	
 	public void setUpdated( boolean updated )
 	{
+		checkMutable();
+
 		mUpdated = updated;
 	}
 
@@ -191,6 +236,8 @@ public class AudioMetadata implements Listener<Metadata>
 	@Override
 	public void receive( Metadata metadata )
 	{
+		checkMutable();
+
 		if( metadata.isReset() )
 		{
 			reset();
@@ -231,6 +278,8 @@ public class AudioMetadata implements Listener<Metadata>
 	 */
 	public void setSource( int source )
 	{
+		checkMutable();
+
 		mSource = source;
 		
 		mUpdated = true;
@@ -245,6 +294,8 @@ public class AudioMetadata implements Listener<Metadata>
 	 * Sets the priority of this audio packet within the defined min/max priority range */
 	public void setPriority( int priority )
 	{
+		checkMutable();
+
 		mPriority = priority;
 		
 		mUpdated = true;
@@ -271,6 +322,8 @@ public class AudioMetadata implements Listener<Metadata>
 	 */
 	public void setSelected( boolean selected )
 	{
+		checkMutable();
+
 		mSelected = selected;
 		
 		mUpdated = true;
@@ -291,6 +344,8 @@ public class AudioMetadata implements Listener<Metadata>
 	
 	public void setRecordable( boolean recordable )
 	{
+		checkMutable();
+
 		mRecordable = recordable;
 		mUpdated = true;
 	}
@@ -17,148 +17,109 @@
  ******************************************************************************/
 package audio.output;
 
-import java.nio.ByteBuffer;
-import java.util.ArrayList;
-import java.util.List;
-import java.util.concurrent.LinkedTransferQueue;
-import java.util.concurrent.ScheduledFuture;
 import java.util.concurrent.TimeUnit;
 import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.locks.LockSupport;
 
-import javax.sound.sampled.AudioFormat;
-import javax.sound.sampled.BooleanControl;
-import javax.sound.sampled.Control;
 import javax.sound.sampled.FloatControl;
-import javax.sound.sampled.Line;
-import javax.sound.sampled.LineEvent;
-import javax.sound.sampled.LineListener;
-import javax.sound.sampled.LineUnavailableException;
-import javax.sound.sampled.Mixer;
-import javax.sound.sampled.SourceDataLine;
 
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import properties.SystemProperties;
 import sample.Broadcaster;
 import sample.Listener;
 import source.mixer.MixerChannel;
 import audio.AudioEvent;
+import audio.AudioFormats;
 import audio.AudioPacket;
-import audio.AudioPacket.Type;
+import audio.AudioPacketQueue;
 import audio.metadata.AudioMetadata;
-import controller.ThreadPoolManager;
-import controller.ThreadPoolManager.ThreadType;
 
-public abstract class AudioOutput implements Listener<AudioPacket>, LineListener
+/**
+ * Single audio channel playback engine.  Audio packets are queued without 
+ * blocking and are played by a dedicated output thread, so that a slow or
+ * blocking audio device never stalls the decoders or the shared thread pool.
+ * 
+ * The output thread moves audio packets into an adaptive jitter buffer and 
+ * plays the buffered audio in fixed 10 ms frames.  Playback starts when the
+ * jitter buffer reaches its target depth and stops when the audio stream
+ * has been idle for a short period.  Writing each frame to the output device
+ * blocks at the device playback rate, which paces the output thread.
+ * 
+ * Subclasses provide the output device: a source data line, or a null or 
+ * wave file sink for headless operation.
+ */
+public abstract class AudioOutput implements Listener<AudioPacket>
 {
 	private final static Logger mLog = LoggerFactory.getLogger( AudioOutput.class );
 	
-	private LinkedTransferQueue<AudioPacket> mBuffer = new LinkedTransferQueue<>();
-	private int mBufferStartThreshold;
-	private int mBufferStopThreshold;
+	public static final String TARGET_LATENCY_PROPERTY = "audio.output.latency";
+
+	public static final int SAMPLE_RATE = (int)AudioFormats.PCM_48KHZ_RATE;
+	
+	/* 10 milliseconds of audio */
+	public static final int FRAME_SIZE = SAMPLE_RATE / 100;
+	
+	/* Playback stops once the audio stream has been idle for this period */
+	private static final long IDLE_TIMEOUT = 250; //milliseconds
+	
+	/* Packet queue capacity - 64 packets is about 1.3 seconds of audio */
+	private static final int PACKET_QUEUE_CAPACITY = 64;
+	
+	private AudioPacketQueue mPacketQueue = 
+			new AudioPacketQueue( PACKET_QUEUE_CAPACITY );
+	private JitterBuffer mJitterBuffer;
 
 	private Listener<AudioMetadata> mAudioMetadataListener;
 	private Broadcaster<AudioEvent> mAudioEventBroadcaster = new Broadcaster<>();
 
-	private ThreadPoolManager mThreadPoolManager;
-	private ScheduledFuture<?> mProcessorTask;
-
-	private SourceDataLine mOutput;
-	private Mixer mMixer;
 	private MixerChannel mMixerChannel;
-	private FloatControl mGainControl;
-	private BooleanControl mMuteControl;
 
 	private AudioEvent mAudioStartEvent;
 	private AudioEvent mAudioStopEvent;
 
-	private boolean mCanProcessAudio = false;
-	private long mLastActivity = System.currentTimeMillis();
+	private Thread mOutputThread;
+	private AtomicBoolean mRunning = new AtomicBoolean();
+	private volatile boolean mWaiting = false;
+	private boolean mPlaying = false;
+	private boolean mMuted = false;
+	private volatile long mLastActivity = System.currentTimeMillis();
+	private volatile long mLastPacketReceived;
 
 	/**
-	 * Single audio channel playback with automatic starting and stopping of the
-	 * underlying sourcedataline specified by the mixer and mixer channel
-	 * arguments.
-	 * 
-	 * Maintains an internal non-blocking audio packet queue and processes this
-	 * queue 25 times a second (every 40 ms).
+	 * Constructs an audio output.  Invoke start() once the output device is
+	 * ready to start the output thread.
 	 * 
-	 * @param threadPoolManager for assigning buffer processing schedule task
-	 * @param mixer to obtain source data line
 	 * @param mixerChannel either mono or left/right stereo
-	 * @param audioFormat to use during playback
-	 * @param lineInfo to use when obtaining the source data line
-	 * @param requestedBufferSize of approximately 1 second of audio
 	 */
-	public AudioOutput( ThreadPoolManager threadPoolManager,
-						Mixer mixer,
-						MixerChannel mixerChannel,
-						AudioFormat audioFormat,
-						Line.Info lineInfo,
-						int requestedBufferSize )
+	public AudioOutput( MixerChannel mixerChannel )
 	{
-		mThreadPoolManager = threadPoolManager;
-		mMixer = mixer;
 		mMixerChannel = mixerChannel;
 		
-		try
-		{
-			mOutput = (SourceDataLine)mMixer.getLine( lineInfo ); 
-			
-			if( mOutput != null )
-			{
-				mOutput.open( audioFormat, requestedBufferSize );
-				
-				//Start threshold: buffer is full with 10% or less of capacity remaining
-				mBufferStartThreshold = (int)( mOutput.getBufferSize() * 0.10 );
-
-				//Stop threshold: buffer is empty with 90% or more capacity available
-				mBufferStopThreshold = (int)( mOutput.getBufferSize() * 0.90 );
-
-				mOutput.addLineListener( this );
-				
-				if( mOutput != null )
-				{
-					try
-					{
-						Control gain = mOutput.getControl( FloatControl.Type.MASTER_GAIN );
-						mGainControl = (FloatControl)gain;
-					}
-					catch( IllegalArgumentException iae )
-					{
-						mLog.warn( "Couldn't obtain MASTER GAIN control for stereo line [" + 
-							mixer.getMixerInfo().getName() + " | " + getChannelName() + "]" );
-					}
-					
-					try
-					{
-						Control mute = mOutput.getControl( BooleanControl.Type.MUTE );
-						mMuteControl = (BooleanControl)mute;
-					}
-					catch( IllegalArgumentException iae )
-					{
-						mLog.warn( "Couldn't obtain MUTE control for stereo line [" + 
-							mixer.getMixerInfo().getName() + " | " + getChannelName() + "]" );
-					}
-					
-					/* Run the queue processor task every 40 milliseconds or 25 times a second */
-					mProcessorTask = mThreadPoolManager.scheduleFixedRate( 
-						ThreadType.AUDIO_PROCESSING, new BufferProcessor(), 
-						40, TimeUnit.MILLISECONDS );
-				}
-				
-				mAudioStartEvent = new AudioEvent( AudioEvent.Type.AUDIO_STARTED, 
-						getChannelName() );
-				mAudioStopEvent = new AudioEvent( AudioEvent.Type.AUDIO_STOPPED, 
-						getChannelName() );
-
-				mCanProcessAudio = true;
-			}
-		} 
-        catch ( LineUnavailableException e )
+		int targetLatency = SystemProperties.getInstance().get( 
+				TARGET_LATENCY_PROPERTY, JitterBuffer.DEFAULT_TARGET_LATENCY );
+		
+		mJitterBuffer = new JitterBuffer( SAMPLE_RATE, targetLatency );
+		
+		mAudioStartEvent = new AudioEvent( AudioEvent.Type.AUDIO_STARTED, 
+				getChannelName() );
+		mAudioStopEvent = new AudioEvent( AudioEvent.Type.AUDIO_STOPPED, 
+				getChannelName() );
+	}
+	
+	/**
+	 * Starts the output thread
+	 */
+	public void start()
+	{
+		if( canProcessAudio() && mRunning.compareAndSet( false, true ) )
 		{
-        	mLog.error( "Couldn't obtain audio source data line for "
-    			+ "audio output - mixer [" + mMixer.getMixerInfo().getName() + "]" );
+			mOutputThread = new Thread( new OutputProcessor(), 
+					"sdrtrunk audio output " + getChannelName() );
+			mOutputThread.setDaemon( true );
+			mOutputThread.setPriority( Thread.MAX_PRIORITY );
+			mOutputThread.start();
 		}
 	}
 	
@@ -169,38 +130,62 @@ public abstract class AudioOutput implements Listener<AudioPacket>, LineListener
 	
 	public void dispose()
 	{
-		mCanProcessAudio = false;
-
-		if( mProcessorTask != null && mThreadPoolManager != null )
+		if( mRunning.compareAndSet( true, false ) && mOutputThread != null )
 		{
-			mThreadPoolManager.cancel( mProcessorTask );
+			LockSupport.unpark( mOutputThread );
+			
+			try
+			{
+				mOutputThread.join( 1000 );
+			}
+			catch( InterruptedException e )
+			{
+				Thread.currentThread().interrupt();
+			}
+			
+			mOutputThread = null;
 		}
 		
-		mThreadPoolManager = null;
-		mProcessorTask = null;
+		mLog.info( "Audio output [" + getChannelName() + "] " + 
+				mJitterBuffer.toString() );
 
-		mBuffer.clear();
+		closeOutput();
 
 		mAudioEventBroadcaster.dispose();
 		mAudioEventBroadcaster = null;
 		mAudioMetadataListener = null;
-		
-		if( mOutput != null )
-		{
-			mOutput.close();
-		}
-		
-		mOutput = null;
-		mGainControl = null;
-		mMuteControl = null;
 	}
 
 	/**
-	 * Converts the audio packet data into a byte buffer format appropriate for
-	 * the underlying source data line.
+	 * Indicates if the output device is available for playback
+	 */
+	protected abstract boolean canProcessAudio();
+	
+	/**
+	 * Starts playback on the output device
 	 */
-	protected abstract ByteBuffer convert( AudioPacket packet );
+	protected abstract void startOutput();
 
+	/**
+	 * Plays any audio remaining in the output device and stops playback
+	 */
+	protected abstract void stopOutput();
+	
+	/**
+	 * Writes the audio samples to the output device.  This method should block
+	 * until the output device has capacity for the samples, so that the output
+	 * thread is paced at the playback rate.
+	 * 
+	 * @param samples to write
+	 * @param length number of samples to write
+	 */
+	protected abstract void write( float[] samples, int length );
+
+	/**
+	 * Releases the output device
+	 */
+	protected abstract void closeOutput();
+	
 	/**
 	 * Audio output channel name 
 	 */
@@ -217,6 +202,23 @@ public abstract class AudioOutput implements Listener<AudioPacket>, LineListener
 		return mMixerChannel;
 	}
 
+	/**
+	 * Jitter buffer with current latency and underrun/overrun statistics
+	 */
+	public JitterBuffer getJitterBuffer()
+	{
+		return mJitterBuffer;
+	}
+	
+	/**
+	 * Number of audio packets dropped because the output thread couldn't keep
+	 * up with the incoming audio
+	 */
+	public long getDroppedPacketCount()
+	{
+		return mPacketQueue.getDroppedPacketCount();
+	}
+
 	/**
 	 * Registers a single listener to receive audio start and audio stop events
 	 */
@@ -233,9 +235,14 @@ public abstract class AudioOutput implements Listener<AudioPacket>, LineListener
 	/**
 	 * Broadcasts an audio event to the registered listener
 	 */
-	private void broadcast( AudioEvent audioEvent )
+	protected void broadcast( AudioEvent audioEvent )
 	{
-		mAudioEventBroadcaster.broadcast( audioEvent );
+		Broadcaster<AudioEvent> broadcaster = mAudioEventBroadcaster;
+		
+		if( broadcaster != null )
+		{
+			broadcaster.broadcast( audioEvent );
+		}
 	}
 	
 	/**
@@ -257,9 +264,11 @@ public abstract class AudioOutput implements Listener<AudioPacket>, LineListener
 	 */
 	private void broadcast( AudioMetadata metadata )
 	{
-		if( mAudioMetadataListener != null )
+		Listener<AudioMetadata> listener = mAudioMetadataListener;
+		
+		if( listener != null )
 		{
-			mAudioMetadataListener.receive( metadata );
+			listener.receive( metadata );
 		}
 	}
 
@@ -279,114 +288,24 @@ public abstract class AudioOutput implements Listener<AudioPacket>, LineListener
 		mLastActivity = System.currentTimeMillis();
 	}
 	
+	/**
+	 * Queues the audio packet for playback.  This method doesn't block and is
+	 * intended to be invoked by a single audio packet routing thread.
+	 */
 	@Override
 	public void receive( AudioPacket packet )
 	{
-		if( mCanProcessAudio )
+		if( mRunning.get() && packet.getType() == AudioPacket.Type.AUDIO )
 		{
 			//Update the activity timestamp so that this audio output doesn't
 			//get disconnected before it starts processing the audio stream
 			updateTimestamp();
 			
-			mBuffer.add( packet );
-		}
-	}
-	
-	public class BufferProcessor implements Runnable
-	{
-		private AtomicBoolean mProcessing = new AtomicBoolean();
-		
-		public BufferProcessor()
-		{
-		}
-
-		@Override
-		public void run()
-		{
-			try
-			{
-				/* The processing flag ensures that only one instance of the
-				 * processor can run at any given time */
-				if( mProcessing.compareAndSet( false, true ) )
-				{
-					List<AudioPacket> packets = new ArrayList<AudioPacket>();
-					
-					mBuffer.drainTo( packets );
-					
-					for( AudioPacket packet: packets )
-					{
-						if( packet.getType() == Type.AUDIO )
-						{
-							broadcast( packet.getAudioMetadata() );
-
-							ByteBuffer buffer = convert( packet );
-							
-							int wrote = 0;
-							
-							if( !mOutput.isRunning() )
-							{
-								int toWrite = mOutput.available();
-								
-								if( toWrite > buffer.array().length )
-								{
-									toWrite = buffer.array().length;
-								}
-								
-								//Top off the buffer and check if we can start it
-								wrote += mOutput.write( buffer.array(), 0, toWrite );
-								
-								checkStart();
-							}
-
-							if( mOutput.isRunning() && wrote < buffer.array().length )
-							{
-								//Blocking write 
-								wrote += mOutput.write( buffer.array(), wrote, 
-									buffer.array().length - wrote );
-							}
-							
-							updateTimestamp();
-						}
-					}
-
-					checkStop();
-					
-					mProcessing.set( false );
-				}
-			}
-			catch( Exception e )
-			{
-				mLog.error( "Error while processing audio buffers", e );
-			}
-		}
-		
-		/**
-		 * Starts audio playback once audio buffer is almost full and remaining 
-		 * capacity falls below the start threshold.
-		 */
-		private void checkStart()
-		{
-			if( mCanProcessAudio && 
-				!mOutput.isRunning() && 
-				mOutput.available() <= mBufferStartThreshold )
-			{
-				mOutput.start();
-			}
-		}
-
-		/**
-		 * Stops audio playback and drains the audio buffer to empty when the
-		 * audio buffer is mostly empty and the available buffer capacity 
-		 * exceeds the stop threshold
-		 */
-		private void checkStop()
-		{
-			if( mCanProcessAudio && 
-				mOutput.isRunning() &&
-				mOutput.available() >= mBufferStopThreshold )
+			mPacketQueue.offer( packet );
+			
+			if( mWaiting )
 			{
-				mOutput.drain();
-				mOutput.stop();
+				LockSupport.unpark( mOutputThread );
 			}
 		}
 	}
@@ -396,13 +315,10 @@ public abstract class AudioOutput implements Listener<AudioPacket>, LineListener
 	 */
 	public void setMuted( boolean muted )
 	{
-		if( mMuteControl != null )
-		{
-			mMuteControl.setValue( muted );
-			
-			broadcast( new AudioEvent( muted ? AudioEvent.Type.AUDIO_MUTED : 
-				AudioEvent.Type.AUDIO_UNMUTED, getChannelName() ) );
-		}
+		mMuted = muted;
+		
+		broadcast( new AudioEvent( muted ? AudioEvent.Type.AUDIO_MUTED : 
+			AudioEvent.Type.AUDIO_UNMUTED, getChannelName() ) );
 	}
 
 	/**
@@ -410,12 +326,7 @@ public abstract class AudioOutput implements Listener<AudioPacket>, LineListener
 	 */
 	public boolean isMuted()
 	{
-		if( mMuteControl != null )
-		{
-			return mMuteControl.getValue();
-		}
-		
-		return false;
+		return mMuted;
 	}
 
 	/**
@@ -423,30 +334,131 @@ public abstract class AudioOutput implements Listener<AudioPacket>, LineListener
 	 */
 	public FloatControl getGainControl()
 	{
-		return mGainControl;
+		return null;
 	}
 
 	public boolean hasGainControl()
 	{
-		return mGainControl != null;
+		return getGainControl() != null;
 	}
-	
+
 	/**
-	 * Monitors the source data line playback state and broadcasts audio events
-	 * to the registered listener as the state changes
+	 * Output thread.  Moves queued audio packets into the jitter buffer and 
+	 * plays the buffered audio, starting and stopping playback as the audio
+	 * stream starts and stops.
 	 */
-	@Override
-	public void update( LineEvent event )
+	public class OutputProcessor implements Runnable
 	{
-		LineEvent.Type type = event.getType();
+		private float[] mFrame = new float[ FRAME_SIZE ];
+		
+		@Override
+		public void run()
+		{
+			while( mRunning.get() )
+			{
+				try
+				{
+					process();
+				}
+				catch( Exception e )
+				{
+					mLog.error( "Error while processing audio for audio output [" + 
+							getChannelName() + "]", e );
+				}
+			}
+			
+			if( mPlaying )
+			{
+				stop();
+			}
+		}
+
+		private void process()
+		{
+			transferPackets();
+			
+			if( mPlaying )
+			{
+				/* Play out the remaining audio when a transmission ends while 
+				 * the buffer is refilling after an underrun */
+				if( mJitterBuffer.isRefilling() && !mJitterBuffer.isEmpty() &&
+					System.currentTimeMillis() - mLastPacketReceived > 
+						mJitterBuffer.getTargetLatency() )
+				{
+					mJitterBuffer.resume();
+				}
+
+				int samples = mJitterBuffer.read( mFrame );
+				
+				if( samples == 0 && System.currentTimeMillis() - 
+						mLastPacketReceived > IDLE_TIMEOUT )
+				{
+					stop();
+				}
+				else
+				{
+					write( mFrame, mFrame.length );
+					
+					if( samples > 0 )
+					{
+						updateTimestamp();
+					}
+				}
+			}
+			else if( mJitterBuffer.isReady() || 
+					 ( !mJitterBuffer.isEmpty() && System.currentTimeMillis() - 
+							 mLastPacketReceived > mJitterBuffer.getTargetLatency() ) )
+			{
+				/* Start when the buffer reaches the target depth, or when a 
+				 * short transmission ends before reaching the target depth */
+				mPlaying = true;
+				startOutput();
+				broadcast( mAudioStartEvent );
+			}
+			else
+			{
+				mWaiting = true;
 
-		if( type == LineEvent.Type.START )
+				/* Recheck the queue after announcing that we're waiting */
+				if( mPacketQueue.isEmpty() )
+				{
+					LockSupport.parkNanos( TimeUnit.MILLISECONDS.toNanos( 5 ) );
+				}
+				
+				mWaiting = false;
+			}
+		}
+		
+		/**
+		 * Moves queued audio packets into the jitter buffer
+		 */
+		private void transferPackets()
 		{
-			mAudioEventBroadcaster.broadcast( mAudioStartEvent );
+			AudioPacket packet = mPacketQueue.poll();
+			
+			while( packet != null )
+			{
+				if( packet.hasAudioBuffer() )
+				{
+					if( packet.hasAudioMetadata() )
+					{
+						broadcast( packet.getAudioMetadata() );
+					}
+
+					mJitterBuffer.write( packet.getAudioBuffer().getSamples() );
+					mLastPacketReceived = System.currentTimeMillis();
+				}
+				
+				packet = mPacketQueue.poll();
+			}
 		}
-		else if( type == LineEvent.Type.STOP )
+		
+		private void stop()
 		{
-			mAudioEventBroadcaster.broadcast( mAudioStopEvent );
+			mPlaying = false;
+			stopOutput();
+			mJitterBuffer.reset();
+			broadcast( mAudioStopEvent );
 		}
 	}
 }
@@ -0,0 +1,111 @@
+/*******************************************************************************
+ *     SDR Trunk 
+ *     Copyright (C) 2014-2016 Dennis Sheirer
+ * 
+ *     This program is free software: you can redistribute it and/or modify
+ *     it under the terms of the GNU General Public License as published by
+ *     the Free Software Foundation, either version 3 of the License, or
+ *     (at your option) any later version.
+ * 
+ *     This program is distributed in the hope that it will be useful,
+ *     but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *     MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *     GNU General Public License for more details.
+ * 
+ *     You should have received a copy of the GNU General Public License
+ *     along with this program.  If not, see <http://www.gnu.org/licenses/>
+ ******************************************************************************/
+package audio.output;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.file.Path;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import record.wave.WaveWriter;
+import source.mixer.MixerChannel;
+import audio.AudioFormats;
+
+/**
+ * Headless audio output that writes the monitored audio to a 16-bit mono wave
+ * file at real-time playback rate.  The file contains exactly what would have
+ * been played on a sound card, including any silence inserted by the jitter 
+ * buffer, which makes it useful for checking monitoring audio quality on 
+ * servers without sound hardware.
+ */
+public class FileAudioOutput extends NullAudioOutput
+{
+	private final static Logger mLog = LoggerFactory.getLogger( FileAudioOutput.class );
+
+	private WaveWriter mWriter;
+	private ByteBuffer mBuffer;
+	
+	/**
+	 * @param file - wave file to create
+	 * @throws IOException if the file can't be created
+	 */
+	public FileAudioOutput( Path file ) throws IOException
+	{
+		super( MixerChannel.MONO );
+
+		mWriter = new WaveWriter( AudioFormats.PCM_SIGNED_48KHZ_16BITS_MONO, file );
+
+		mBuffer = ByteBuffer.allocate( FRAME_SIZE * 
+				AudioFormats.PCM_FRAME_SIZE_BYTES_MONO )
+				.order( ByteOrder.LITTLE_ENDIAN );
+	}
+
+	@Override
+	protected boolean canProcessAudio()
+	{
+		return mWriter != null;
+	}
+
+	@Override
+	protected void write( float[] samples, int length )
+	{
+		if( mWriter != null && length == FRAME_SIZE )
+		{
+			mBuffer.clear();
+
+			for( int x = 0; x < length; x++ )
+			{
+				mBuffer.putShort( LineAudioOutput.toShort( samples[ x ] ) );
+			}
+			
+			try
+			{
+				mWriter.write( mBuffer );
+			}
+			catch( IOException ioe )
+			{
+				mLog.error( "Error writing audio output file - closing file", ioe );
+				
+				closeOutput();
+			}
+		}
+
+		super.write( samples, length );
+	}
+
+	@Override
+	protected void closeOutput()
+	{
+		if( mWriter != null )
+		{
+			try
+			{
+				mWriter.close();
+			}
+			catch( IOException ioe )
+			{
+				mLog.error( "Error closing audio output file", ioe );
+			}
+			
+			mWriter = null;
+		}
+	}
+}
@@ -0,0 +1,429 @@
+/*******************************************************************************
+ *     SDR Trunk 
+ *     Copyright (C) 2014-2016 Dennis Sheirer
+ * 
+ *     This program is free software: you can redistribute it and/or modify
+ *     it under the terms of the GNU General Public License as published by
+ *     the Free Software Foundation, either version 3 of the License, or
+ *     (at your option) any later version.
+ * 
+ *     This program is distributed in the hope that it will be useful,
+ *     but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *     MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *     GNU General Public License for more details.
+ * 
+ *     You should have received a copy of the GNU General Public License
+ *     along with this program.  If not, see <http://www.gnu.org/licenses/>
+ ******************************************************************************/
+package audio.output;
+
+import java.util.Arrays;
+
+/**
+ * Adaptive audio jitter buffer.  Absorbs the irregular arrival of audio 
+ * packets from the decoders and provides fixed-size audio frames to an audio
+ * output at the output's playback rate.
+ * 
+ * The buffer maintains a target depth (latency) that adapts to the observed
+ * packet arrival jitter:
+ * 
+ * - Underrun: when the buffer runs dry during playback, silence is inserted 
+ *   and, if audio resumes, the target depth is increased by one step.  
+ *   Playback resumes once the buffer refills to the new target depth.
+ * - Low jitter: after a period without underruns, the target depth is reduced
+ *   by one step, down to the minimum target depth.
+ * - Excess latency: when the minimum buffer depth observed over the previous
+ *   measurement window exceeds the target, playback is time-compressed by 
+ *   about 2% (linear interpolation) until the excess latency is removed.  Using
+ *   the window minimum avoids compressing bursty sources like P25 that deliver
+ *   9 audio frames at a time.
+ * - Overrun: when the buffer depth exceeds the maximum latency, the oldest 
+ *   samples are discarded to return the buffer to the target depth.
+ * 
+ * Not thread safe.  Both write and read methods are intended to be invoked
+ * by the audio output thread.  Statistics can be read from any thread.
+ */
+public class JitterBuffer
+{
+	public static final int DEFAULT_TARGET_LATENCY = 40; //milliseconds
+	public static final int MINIMUM_TARGET_LATENCY = 20;
+	public static final int MAXIMUM_TARGET_LATENCY = 200;
+	public static final int MAXIMUM_LATENCY = 1000;
+	
+	private static final int TARGET_LATENCY_STEP = 10;
+	private static final int STRETCH_THRESHOLD = 20;
+	private static final int MEASUREMENT_WINDOW = 1000;
+	private static final int TARGET_DECREASE_INTERVAL = 30000;
+	
+	/* Time compression ratio - one extra sample is consumed for every 50 */
+	private static final int STRETCH_RATIO = 50;
+
+	private float[] mBuffer;
+	private int mMask;
+	private int mReadIndex;
+	private int mCount;
+	private int mSampleRate;
+	
+	private int mTargetSamples;
+	private int mMinimumTargetSamples;
+	private int mMaximumTargetSamples;
+	private int mMaximumSamples;
+	private int mStepSamples;
+	private int mStretchThresholdSamples;
+	
+	private int mWindowSamples;
+	private int mWindowElapsed;
+	private int mWindowMinimum = Integer.MAX_VALUE;
+	private int mPreviousWindowMinimum = 0;
+	private int mDecreaseSamples;
+	private int mSamplesSinceUnderrun;
+	
+	private boolean mStarved = false;
+	private boolean mRefilling = false;
+	private int mPendingSilence;
+	
+	private volatile long mUnderrunCount;
+	private volatile long mOverrunCount;
+	private volatile long mInsertedSilence;
+	private volatile long mDiscardedSamples;
+	private volatile long mStretchedSamples;
+
+	/**
+	 * Constructs a jitter buffer
+	 * 
+	 * @param sampleRate of the audio
+	 * @param targetLatency initial target buffer depth in milliseconds.  This
+	 * is also the minimum target depth.
+	 */
+	public JitterBuffer( int sampleRate, int targetLatency )
+	{
+		mSampleRate = sampleRate;
+		
+		int target = Math.min( Math.max( targetLatency, MINIMUM_TARGET_LATENCY ),
+				MAXIMUM_TARGET_LATENCY );
+
+		mTargetSamples = toSamples( target );
+		mMinimumTargetSamples = mTargetSamples;
+		mMaximumTargetSamples = toSamples( MAXIMUM_TARGET_LATENCY );
+		mMaximumSamples = toSamples( MAXIMUM_LATENCY );
+		mStepSamples = toSamples( TARGET_LATENCY_STEP );
+		mStretchThresholdSamples = toSamples( STRETCH_THRESHOLD );
+		mWindowSamples = toSamples( MEASUREMENT_WINDOW );
+		mDecreaseSamples = toSamples( TARGET_DECREASE_INTERVAL );
+		
+		int size = Integer.highestOneBit( mMaximumSamples - 1 ) << 1;
+		
+		mBuffer = new float[ size ];
+		mMask = size - 1;
+	}
+	
+	private int toSamples( int milliseconds )
+	{
+		return (int)( (long)mSampleRate * milliseconds / 1000 );
+	}
+	
+	private long toMilliseconds( long samples )
+	{
+		return samples * 1000 / mSampleRate;
+	}
+
+	/**
+	 * Adds the audio samples to the buffer
+	 */
+	public void write( float[] samples )
+	{
+		if( samples.length == 0 )
+		{
+			return;
+		}
+		
+		/* Audio resumed after the buffer ran dry during playback */
+		if( mStarved )
+		{
+			mStarved = false;
+			mUnderrunCount++;
+			mInsertedSilence += mPendingSilence;
+			mPendingSilence = 0;
+			mSamplesSinceUnderrun = 0;
+			
+			mTargetSamples = Math.min( mTargetSamples + mStepSamples, 
+					mMaximumTargetSamples );
+		}
+
+		int offset = 0;
+		int length = samples.length;
+		
+		if( mCount + length > mMaximumSamples )
+		{
+			mOverrunCount++;
+			
+			/* Discard the oldest samples to return to the target depth */
+			int discard = Math.min( mCount + length - mTargetSamples, mCount );
+			
+			mReadIndex = ( mReadIndex + discard ) & mMask;
+			mCount -= discard;
+			mDiscardedSamples += discard;
+
+			/* Samples that still don't fit are discarded from the packet */
+			if( length > mMaximumSamples )
+			{
+				offset = length - mMaximumSamples;
+				length = mMaximumSamples;
+				mDiscardedSamples += offset;
+			}
+		}
+		
+		int writeIndex = ( mReadIndex + mCount ) & mMask;
+		
+		for( int x = 0; x < length; x++ )
+		{
+			mBuffer[ ( writeIndex + x ) & mMask ] = samples[ offset + x ];
+		}
+		
+		mCount += length;
+	}
+
+	/**
+	 * Fills the frame with buffered audio samples.  Inserts silence when the
+	 * buffer doesn't hold enough samples and time-compresses the audio when 
+	 * the buffer holds excess samples.
+	 * 
+	 * @return number of buffered audio samples contained in the frame.  Zero 
+	 * indicates that the frame contains only silence.
+	 */
+	public int read( float[] frame )
+	{
+		int length = frame.length;
+		int stretch = length / STRETCH_RATIO;
+		int filled;
+
+		if( mRefilling && mCount >= mTargetSamples )
+		{
+			mRefilling = false;
+		}
+		
+		if( mRefilling )
+		{
+			/* Wait for the buffer to refill to the target depth after an 
+			 * underrun, rather than playing each packet as it arrives */
+			Arrays.fill( frame, 0.0f );
+
+			if( mStarved )
+			{
+				mPendingSilence += length;
+			}
+			else
+			{
+				mInsertedSilence += length;
+			}
+
+			filled = 0;
+		}
+		else if( mPreviousWindowMinimum > mTargetSamples + mStretchThresholdSamples && 
+			mCount >= length + stretch + 1 )
+		{
+			/* Compress length + stretch samples into the frame */
+			double step = (double)( length + stretch ) / (double)length;
+			
+			for( int x = 0; x < length; x++ )
+			{
+				double position = x * step;
+				int index = (int)position;
+				float fraction = (float)( position - index );
+				
+				float first = mBuffer[ ( mReadIndex + index ) & mMask ];
+				float second = mBuffer[ ( mReadIndex + index + 1 ) & mMask ];
+				
+				frame[ x ] = first + ( ( second - first ) * fraction );
+			}
+			
+			mReadIndex = ( mReadIndex + length + stretch ) & mMask;
+			mCount -= length + stretch;
+			mStretchedSamples += stretch;
+			
+			filled = length;
+		}
+		else
+		{
+			filled = Math.min( length, mCount );
+			
+			for( int x = 0; x < filled; x++ )
+			{
+				frame[ x ] = mBuffer[ ( mReadIndex + x ) & mMask ];
+			}
+			
+			mReadIndex = ( mReadIndex + filled ) & mMask;
+			mCount -= filled;
+			
+			if( filled < length )
+			{
+				Arrays.fill( frame, filled, length, 0.0f );
+				
+				mStarved = true;
+				mRefilling = true;
+				mPendingSilence += length - filled;
+			}
+		}
+		
+		updateWindow( length );
+		
+		return filled;
+	}
+
+	/**
+	 * Tracks the minimum buffer depth for each measurement window and reduces
+	 * the target depth after an extended period without an underrun
+	 */
+	private void updateWindow( int length )
+	{
+		if( mCount < mWindowMinimum )
+		{
+			mWindowMinimum = mCount;
+		}
+		
+		mWindowElapsed += length;
+		
+		if( mWindowElapsed >= mWindowSamples )
+		{
+			mPreviousWindowMinimum = mWindowMinimum;
+			mWindowMinimum = Integer.MAX_VALUE;
+			mWindowElapsed = 0;
+		}
+		
+		mSamplesSinceUnderrun += length;
+		
+		if( mSamplesSinceUnderrun >= mDecreaseSamples )
+		{
+			mSamplesSinceUnderrun = 0;
+			
+			mTargetSamples = Math.max( mTargetSamples - mStepSamples, 
+					mMinimumTargetSamples );
+		}
+	}
+
+	/**
+	 * Indicates if the buffer depth has reached the target depth and playback 
+	 * can start
+	 */
+	public boolean isReady()
+	{
+		return mCount >= mTargetSamples;
+	}
+
+	/**
+	 * Indicates if playback is paused after an underrun until the buffer 
+	 * refills to the target depth
+	 */
+	public boolean isRefilling()
+	{
+		return mRefilling;
+	}
+
+	/**
+	 * Resumes playback of the buffered samples before the buffer refills to 
+	 * the target depth.  Used when a transmission ends while refilling, so 
+	 * that the remaining audio is played.
+	 */
+	public void resume()
+	{
+		mRefilling = false;
+	}
+	
+	/**
+	 * Indicates if the buffer contains any samples
+	 */
+	public boolean isEmpty()
+	{
+		return mCount == 0;
+	}
+
+	/**
+	 * Clears the buffer at the end of an audio stream.  A buffer that ran dry
+	 * at the end of the stream is not counted as an underrun.  The adapted
+	 * target depth is retained for the next audio stream.
+	 */
+	public void reset()
+	{
+		mReadIndex = 0;
+		mCount = 0;
+		mStarved = false;
+		mRefilling = false;
+		mPendingSilence = 0;
+		mWindowMinimum = Integer.MAX_VALUE;
+		mPreviousWindowMinimum = 0;
+		mWindowElapsed = 0;
+	}
+
+	/**
+	 * Current buffer depth in milliseconds
+	 */
+	public int getLatency()
+	{
+		return (int)toMilliseconds( mCount );
+	}
+	
+	/**
+	 * Current target buffer depth in milliseconds
+	 */
+	public int getTargetLatency()
+	{
+		return (int)toMilliseconds( mTargetSamples );
+	}
+	
+	/**
+	 * Number of times that the buffer ran dry during playback
+	 */
+	public long getUnderrunCount()
+	{
+		return mUnderrunCount;
+	}
+
+	/**
+	 * Number of times that the buffer depth exceeded the maximum latency
+	 */
+	public long getOverrunCount()
+	{
+		return mOverrunCount;
+	}
+	
+	/**
+	 * Number of silence samples inserted due to underruns
+	 */
+	public long getInsertedSilence()
+	{
+		return mInsertedSilence;
+	}
+	
+	/**
+	 * Number of samples discarded due to overruns
+	 */
+	public long getDiscardedSamples()
+	{
+		return mDiscardedSamples;
+	}
+	
+	/**
+	 * Number of samples removed by time compression
+	 */
+	public long getStretchedSamples()
+	{
+		return mStretchedSamples;
+	}
+	
+	@Override
+	public String toString()
+	{
+		StringBuilder sb = new StringBuilder();
+		
+		sb.append( "latency:" ).append( getLatency() );
+		sb.append( "ms target:" ).append( getTargetLatency() );
+		sb.append( "ms underruns:" ).append( mUnderrunCount );
+		sb.append( " overruns:" ).append( mOverrunCount );
+		sb.append( " inserted silence:" ).append( toMilliseconds( mInsertedSilence ) );
+		sb.append( "ms discarded:" ).append( toMilliseconds( mDiscardedSamples ) );
+		sb.append( "ms compressed:" ).append( toMilliseconds( mStretchedSamples ) );
+		sb.append( "ms" );
+		
+		return sb.toString();
+	}
+}
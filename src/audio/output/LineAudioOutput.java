@@ -0,0 +1,211 @@
+/*******************************************************************************
+ *     SDR Trunk 
+ *     Copyright (C) 2014-2016 Dennis Sheirer
+ * 
+ *     This program is free software: you can redistribute it and/or modify
+ *     it under the terms of the GNU General Public License as published by
+ *     the Free Software Foundation, either version 3 of the License, or
+ *     (at your option) any later version.
+ * 
+ *     This program is distributed in the hope that it will be useful,
+ *     but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *     MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *     GNU General Public License for more details.
+ * 
+ *     You should have received a copy of the GNU General Public License
+ *     along with this program.  If not, see <http://www.gnu.org/licenses/>
+ ******************************************************************************/
+package audio.output;
+
+import javax.sound.sampled.AudioFormat;
+import javax.sound.sampled.BooleanControl;
+import javax.sound.sampled.Control;
+import javax.sound.sampled.FloatControl;
+import javax.sound.sampled.Line;
+import javax.sound.sampled.LineUnavailableException;
+import javax.sound.sampled.Mixer;
+import javax.sound.sampled.SourceDataLine;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import source.mixer.MixerChannel;
+
+/**
+ * Audio output that plays audio on a source data line obtained from a mixer.
+ * 
+ * The source data line is opened with a small buffer so that the line adds
+ * little latency beyond the jitter buffer.  Blocking writes to the line pace
+ * the audio output thread at the sound card playback rate.
+ */
+public abstract class LineAudioOutput extends AudioOutput
+{
+	private final static Logger mLog = LoggerFactory.getLogger( LineAudioOutput.class );
+
+	private SourceDataLine mOutput;
+	private Mixer mMixer;
+	private FloatControl mGainControl;
+	private BooleanControl mMuteControl;
+	private byte[] mBytes;
+
+	/**
+	 * @param mixer to obtain source data line
+	 * @param mixerChannel either mono or left/right stereo
+	 * @param audioFormat to use during playback
+	 * @param lineInfo to use when obtaining the source data line
+	 * @param requestedBufferSize in bytes for the source data line
+	 */
+	public LineAudioOutput( Mixer mixer,
+							MixerChannel mixerChannel,
+							AudioFormat audioFormat,
+							Line.Info lineInfo,
+							int requestedBufferSize )
+	{
+		super( mixerChannel );
+		
+		mMixer = mixer;
+		
+		mBytes = new byte[ FRAME_SIZE * audioFormat.getFrameSize() ];
+		
+		try
+		{
+			mOutput = (SourceDataLine)mMixer.getLine( lineInfo ); 
+			
+			if( mOutput != null )
+			{
+				mOutput.open( audioFormat, requestedBufferSize );
+				
+				try
+				{
+					Control gain = mOutput.getControl( FloatControl.Type.MASTER_GAIN );
+					mGainControl = (FloatControl)gain;
+				}
+				catch( IllegalArgumentException iae )
+				{
+					mLog.warn( "Couldn't obtain MASTER GAIN control for stereo line [" + 
+						mixer.getMixerInfo().getName() + " | " + getChannelName() + "]" );
+				}
+				
+				try
+				{
+					Control mute = mOutput.getControl( BooleanControl.Type.MUTE );
+					mMuteControl = (BooleanControl)mute;
+				}
+				catch( IllegalArgumentException iae )
+				{
+					mLog.warn( "Couldn't obtain MUTE control for stereo line [" + 
+						mixer.getMixerInfo().getName() + " | " + getChannelName() + "]" );
+				}
+			}
+		} 
+        catch ( LineUnavailableException e )
+		{
+        	mLog.error( "Couldn't obtain audio source data line for "
+    			+ "audio output - mixer [" + mMixer.getMixerInfo().getName() + "]" );
+        	
+        	mOutput = null;
+		}
+	}
+
+	/**
+	 * Converts the audio samples into the byte format appropriate for the 
+	 * underlying source data line.
+	 * 
+	 * @param samples to convert
+	 * @param length number of samples to convert
+	 * @param bytes to receive the converted little-endian audio frames
+	 * @return number of bytes converted
+	 */
+	protected abstract int convert( float[] samples, int length, byte[] bytes );
+
+	/**
+	 * Converts the sample to a 16-bit signed value
+	 */
+	protected static short toShort( float sample )
+	{
+		if( sample > 1.0f )
+		{
+			return Short.MAX_VALUE;
+		}
+		else if( sample < -1.0f )
+		{
+			return -Short.MAX_VALUE;
+		}
+		
+		return (short)( sample * Short.MAX_VALUE );
+	}
+
+	@Override
+	protected boolean canProcessAudio()
+	{
+		return mOutput != null && mOutput.isOpen();
+	}
+
+	@Override
+	protected void startOutput()
+	{
+		mOutput.start();
+	}
+
+	@Override
+	protected void stopOutput()
+	{
+		mOutput.drain();
+		mOutput.stop();
+	}
+
+	@Override
+	protected void write( float[] samples, int length )
+	{
+		int count = convert( samples, length, mBytes );
+		
+		/* Blocking write */
+		int wrote = 0;
+		
+		while( wrote < count && mOutput.isOpen() )
+		{
+			wrote += mOutput.write( mBytes, wrote, count - wrote );
+		}
+	}
+
+	@Override
+	protected void closeOutput()
+	{
+		if( mOutput != null )
+		{
+			mOutput.close();
+		}
+		
+		mOutput = null;
+		mGainControl = null;
+		mMuteControl = null;
+	}
+	
+	@Override
+	public void setMuted( boolean muted )
+	{
+		if( mMuteControl != null )
+		{
+			mMuteControl.setValue( muted );
+			
+			super.setMuted( muted );
+		}
+	}
+
+	@Override
+	public boolean isMuted()
+	{
+		if( mMuteControl != null )
+		{
+			return mMuteControl.getValue();
+		}
+		
+		return false;
+	}
+
+	@Override
+	public FloatControl getGainControl()
+	{
+		return mGainControl;
+	}
+}
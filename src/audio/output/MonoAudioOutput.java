@@ -17,28 +17,22 @@
  ******************************************************************************/
 package audio.output;
 
-import java.nio.ByteBuffer;
-import java.nio.ByteOrder;
-import java.nio.ShortBuffer;
-
 import javax.sound.sampled.Mixer;
 
 import source.mixer.MixerChannel;
 import audio.AudioFormats;
-import audio.AudioPacket;
-import controller.ThreadPoolManager;
 
 /**
  * Mono Audio output implementation
  */
-public class MonoAudioOutput extends AudioOutput
+public class MonoAudioOutput extends LineAudioOutput
 {
-	private final static int BUFFER_SIZE = 48000;
+	/* 50 milliseconds of 16-bit mono audio */
+	private final static int BUFFER_SIZE = 4800;
 	
-	public MonoAudioOutput( ThreadPoolManager threadPoolManager, Mixer mixer )
+	public MonoAudioOutput( Mixer mixer )
 	{
-		super( threadPoolManager, 
-			   mixer, 
+		super( mixer, 
 			   MixerChannel.MONO, 
 			   AudioFormats.PCM_SIGNED_48KHZ_16BITS_MONO, 
 			   AudioFormats.MONO_SOURCE_DATALINE_INFO, 
@@ -46,29 +40,21 @@ public class MonoAudioOutput extends AudioOutput
 	}
 
 	/**
-	 * Converts the audio packet data into mono audio frames.
+	 * Converts the audio samples into little-endian mono audio frames.
 	 */
-	protected ByteBuffer convert( AudioPacket packet )
+	@Override
+	protected int convert( float[] samples, int length, byte[] bytes )
 	{
-		if( packet.hasAudioBuffer() )
+		int index = 0;
+		
+		for( int x = 0; x < length; x++ )
 		{
-			float[] samples = packet.getAudioBuffer().getSamples();
-			
-			/* Little-endian byte buffer */
-			ByteBuffer buffer = 
-				ByteBuffer.allocate( samples.length * 2 )
-						.order( ByteOrder.LITTLE_ENDIAN );
-
-			ShortBuffer shortBuffer = buffer.asShortBuffer();
-
-			for( float sample: samples )
-			{
-				shortBuffer.put( (short)( sample * Short.MAX_VALUE ) );
-			}
+			short sample = toShort( samples[ x ] );
 			
-			return buffer;
+			bytes[ index++ ] = (byte)( sample & 0xFF );
+			bytes[ index++ ] = (byte)( ( sample >> 8 ) & 0xFF );
 		}
 		
-		return null;
+		return index;
 	}
 }
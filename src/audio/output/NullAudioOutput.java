@@ -0,0 +1,94 @@
+/*******************************************************************************
+ *     SDR Trunk 
+ *     Copyright (C) 2014-2016 Dennis Sheirer
+ * 
+ *     This program is free software: you can redistribute it and/or modify
+ *     it under the terms of the GNU General Public License as published by
+ *     the Free Software Foundation, either version 3 of the License, or
+ *     (at your option) any later version.
+ * 
+ *     This program is distributed in the hope that it will be useful,
+ *     but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *     MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *     GNU General Public License for more details.
+ * 
+ *     You should have received a copy of the GNU General Public License
+ *     along with this program.  If not, see <http://www.gnu.org/licenses/>
+ ******************************************************************************/
+package audio.output;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.LockSupport;
+
+import source.mixer.MixerChannel;
+
+/**
+ * Headless audio output for systems without sound hardware.  Audio is 
+ * discarded at real-time playback rate, so that audio routing, jitter buffer
+ * statistics and audio events behave the same as with a sound card.
+ */
+public class NullAudioOutput extends AudioOutput
+{
+	private static final long FRAME_DURATION = 
+			TimeUnit.SECONDS.toNanos( 1 ) * FRAME_SIZE / SAMPLE_RATE;
+
+	/* Emulates a small device buffer so that playback can run slightly ahead */
+	private static final long DEVICE_BUFFER = FRAME_DURATION * 2;
+
+	private long mPlaybackTime;
+	
+	public NullAudioOutput( MixerChannel mixerChannel )
+	{
+		super( mixerChannel );
+	}
+	
+	public NullAudioOutput()
+	{
+		this( MixerChannel.MONO );
+	}
+
+	@Override
+	protected boolean canProcessAudio()
+	{
+		return true;
+	}
+
+	@Override
+	protected void startOutput()
+	{
+		mPlaybackTime = System.nanoTime();
+	}
+
+	@Override
+	protected void stopOutput()
+	{
+		/* No audio to drain */
+	}
+
+	/**
+	 * Discards the samples and blocks until the samples would have been played
+	 */
+	@Override
+	protected void write( float[] samples, int length )
+	{
+		mPlaybackTime += FRAME_DURATION * length / FRAME_SIZE;
+		
+		long wait = mPlaybackTime - System.nanoTime() - DEVICE_BUFFER;
+		
+		if( wait > 0 )
+		{
+			LockSupport.parkNanos( wait );
+		}
+		else if( wait < -TimeUnit.SECONDS.toNanos( 1 ) )
+		{
+			/* Resynchronize after a stall rather than playing catch-up */
+			mPlaybackTime = System.nanoTime();
+		}
+	}
+
+	@Override
+	protected void closeOutput()
+	{
+		/* No device to release */
+	}
+}
@@ -17,29 +17,22 @@
  ******************************************************************************/
 package audio.output;
 
-import java.nio.ByteBuffer;
-import java.nio.ByteOrder;
-import java.nio.ShortBuffer;
-
 import javax.sound.sampled.Mixer;
 
 import source.mixer.MixerChannel;
 import audio.AudioFormats;
-import audio.AudioPacket;
-import controller.ThreadPoolManager;
 
 /**
  * Stereo audio output implementation.  
  */
-public class StereoAudioOutput extends AudioOutput
+public class StereoAudioOutput extends LineAudioOutput
 {
-	private final static int BUFFER_SIZE = 96000;
+	/* 50 milliseconds of 16-bit stereo audio */
+	private final static int BUFFER_SIZE = 9600;
 	
-	public StereoAudioOutput( ThreadPoolManager threadPoolManager, 
-			Mixer mixer, MixerChannel channel )
+	public StereoAudioOutput( Mixer mixer, MixerChannel channel )
 	{
-		super( threadPoolManager, 
-			   mixer, 
+		super( mixer, 
 			   channel, 
 			   AudioFormats.PCM_SIGNED_48KHZ_16BITS_STEREO, 
 			   AudioFormats.STEREO_SOURCE_DATALINE_INFO, 
@@ -47,42 +40,37 @@ public class StereoAudioOutput extends AudioOutput
 	}
 
 	/**
-	 * Converts the audio packet data into stereo audio frames with the mixer
-	 * channel containing the audio and the other channel containing zero 
-	 * valued (silent) samples.
+	 * Converts the audio samples into little-endian stereo audio frames with 
+	 * the mixer channel containing the audio and the other channel containing
+	 * zero valued (silent) samples.
 	 */
-	protected ByteBuffer convert( AudioPacket packet )
+	@Override
+	protected int convert( float[] samples, int length, byte[] bytes )
 	{
-		if( packet.hasAudioBuffer() )
+		int index = 0;
+		
+		boolean left = getMixerChannel() == MixerChannel.LEFT;
+		
+		for( int x = 0; x < length; x++ )
 		{
-			float[] samples = packet.getAudioBuffer().getSamples();
+			short sample = toShort( samples[ x ] );
 			
-			/* Little-endian byte buffer */
-			ByteBuffer buffer = ByteBuffer.allocate( samples.length * 4 )
-					.order( ByteOrder.LITTLE_ENDIAN );
-			
-			ShortBuffer shortBuffer = buffer.asShortBuffer();
-
-			if( getMixerChannel() == MixerChannel.LEFT )
+			if( left )
 			{
-				for( float sample: samples )
-				{
-					shortBuffer.put( (short)( sample * Short.MAX_VALUE ) );
-					shortBuffer.put( (short)0 );
-				}
+				bytes[ index++ ] = (byte)( sample & 0xFF );
+				bytes[ index++ ] = (byte)( ( sample >> 8 ) & 0xFF );
+				bytes[ index++ ] = 0;
+				bytes[ index++ ] = 0;
 			}
 			else
 			{
-				for( float sample: samples )
-				{
-					shortBuffer.put( (short)0 );
-					shortBuffer.put( (short)( sample * Short.MAX_VALUE ) );
-				}
+				bytes[ index++ ] = 0;
+				bytes[ index++ ] = 0;
+				bytes[ index++ ] = (byte)( sample & 0xFF );
+				bytes[ index++ ] = (byte)( ( sample >> 8 ) & 0xFF );
 			}
-			
-			return buffer;
 		}
 		
-		return null;
+		return index;
 	}
 }
@@ -0,0 +1,34 @@
+/*******************************************************************************
+ *     SDR Trunk 
+ *     Copyright (C) 2014-2016 Dennis Sheirer
+ * 
+ *     This program is free software: you can redistribute it and/or modify
+ *     it under the terms of the GNU General Public License as published by
+ *     the Free Software Foundation, either version 3 of the License, or
+ *     (at your option) any later version.
+ * 
+ *     This program is distributed in the hope that it will be useful,
+ *     but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *     MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *     GNU General Public License for more details.
+ * 
+ *     You should have received a copy of the GNU General Public License
+ *     along with this program.  If not, see <http://www.gnu.org/licenses/>
+ ******************************************************************************/
+package bits;
+
+/**
+ * Receives demodulated bits packed into a long word
+ */
+public interface PackedBitListener
+{
+	/**
+	 * Receives the (count) least significant bits of the word, oldest bit
+	 * first, ie the oldest bit is at position (count - 1) and the newest bit
+	 * is at position 0.
+	 * 
+	 * @param bits - packed bits
+	 * @param count - number of bits, 1 to 64
+	 */
+	public void receive( long bits, int count );
+}
@@ -0,0 +1,308 @@
+/*******************************************************************************
+ *     SDR Trunk 
+ *     Copyright (C) 2014-2016 Dennis Sheirer
+ * 
+ *     This program is free software: you can redistribute it and/or modify
+ *     it under the terms of the GNU General Public License as published by
+ *     the Free Software Foundation, either version 3 of the License, or
+ *     (at your option) any later version.
+ * 
+ *     This program is distributed in the hope that it will be useful,
+ *     but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *     MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *     GNU General Public License for more details.
+ * 
+ *     You should have received a copy of the GNU General Public License
+ *     along with this program.  If not, see <http://www.gnu.org/licenses/>
+ ******************************************************************************/
+package bits;
+
+import sample.Broadcaster;
+import sample.Listener;
+import dsp.symbol.SyncDetectListener;
+import dsp.symbol.SyncDetectProvider;
+
+/**
+ * Bit-packed message framer.  Detects one or more sync patterns in the bit
+ * stream and extracts each message, including the sync pattern, for a total
+ * bit length of messageLength.
+ * 
+ * Replaces MessageFramer's per-bit message assemblers.  Received bits are
+ * shifted into a 64-bit register that is compared against every sync pattern
+ * with XOR and Long.bitCount, and are stored in a ring of long words that 
+ * holds one message plus one word of history.  A sync match only records the
+ * message start position and the complete message is sliced out of the ring
+ * a word at a time once all of its bits have been received, so the per-bit
+ * cost doesn't grow with the number of sync patterns or messages in flight.
+ * 
+ * Overlapping messages are extracted, for each sync pattern that is
+ * encountered within the bit stream, as with MessageFramer.
+ * 
+ * Bits can be received packed into long words from a PackedBitListener 
+ * provider, or one at a time as a Listener<Boolean>.
+ * 
+ * Note: sync patterns are limited to 64 bits.
+ */
+public class PackedMessageFramer implements Listener<Boolean>, PackedBitListener,
+											SyncDetectProvider
+{
+	private int mMessageLength;
+	private SyncDetectListener mSyncDetectListener;
+	private Broadcaster<BinaryMessage> mBroadcaster = 
+								new Broadcaster<BinaryMessage>();
+
+	/* Sync patterns */
+	private long[] mSyncPatterns;
+	private long[] mSyncMasks;
+	private int[] mSyncLengths;
+	private int mSyncBitErrors = 0;
+
+	/* Shift register holding the most recent 64 bits */
+	private long mShiftRegister;
+	
+	/* Total number of bits received */
+	private long mBitCount;
+	
+	/* Ring of bit words with the oldest bit of each word in the MSB */
+	private long[] mRing;
+	private int mRingMask;
+
+	/* Queue of bit positions of messages under assembly */
+	private long[] mMessageStarts = new long[ 4 ];
+	private int mMessageHead;
+	private int mMessageCount;
+
+	/**
+	 * Constructs a framer for messages of the specified length.
+	 * 
+	 * @param messageLength - message length in bits, including the sync
+	 * @param syncPatterns - one or more sync patterns, each up to 64 bits long
+	 */
+	public PackedMessageFramer( int messageLength, boolean[] ... syncPatterns )
+	{
+		if( syncPatterns.length == 0 )
+		{
+			throw new IllegalArgumentException( "At least one sync pattern is "
+					+ "required" );
+		}
+		
+		mMessageLength = messageLength;
+		
+		mSyncPatterns = new long[ syncPatterns.length ];
+		mSyncMasks = new long[ syncPatterns.length ];
+		mSyncLengths = new int[ syncPatterns.length ];
+		
+		for( int x = 0; x < syncPatterns.length; x++ )
+		{
+			boolean[] pattern = syncPatterns[ x ];
+			
+			if( pattern.length == 0 || pattern.length > 64 || 
+				pattern.length > messageLength )
+			{
+				throw new IllegalArgumentException( "Sync pattern length [" + 
+					pattern.length + "] must be 1 - 64 bits and no longer than "
+					+ "the message" );
+			}
+
+			long sync = 0;
+			
+			for( boolean bit: pattern )
+			{
+				sync = ( sync << 1 ) | ( bit ? 1 : 0 );
+			}
+			
+			mSyncPatterns[ x ] = sync;
+			mSyncMasks[ x ] = pattern.length == 64 ? -1l : ( 1l << pattern.length ) - 1;
+			mSyncLengths[ x ] = pattern.length;
+		}
+		
+		/* Ring holds a full message plus the partially filled current word */
+		int words = Integer.highestOneBit( ( messageLength / 64 ) + 2 ) * 2;
+		
+		mRing = new long[ words ];
+		mRingMask = words - 1;
+	}
+	
+	/**
+	 * Sets the maximum number of bit errors allowed when matching a sync 
+	 * pattern.  Default is 0, exact match only.
+	 */
+	public void setSyncBitErrors( int errors )
+	{
+		mSyncBitErrors = errors;
+	}
+
+	/**
+	 * Discards any messages that are under assembly
+	 */
+	public void reset()
+	{
+		mMessageCount = 0;
+		mMessageHead = 0;
+	}
+
+	public void dispose()
+	{
+		mBroadcaster.dispose();
+		mSyncDetectListener = null;
+		
+		reset();
+	}
+
+	@Override
+	public void receive( Boolean bit )
+	{
+		receive( bit ? 1l : 0l );
+	}
+
+	@Override
+	public void receive( long bits, int count )
+	{
+		for( int x = count - 1; x >= 0; x-- )
+		{
+			receive( ( bits >>> x ) & 1l );
+		}
+	}
+
+	/**
+	 * Processes a single bit with value 0 or 1
+	 */
+	private void receive( long bit )
+	{
+		mShiftRegister = ( mShiftRegister << 1 ) | bit;
+		
+		mBitCount++;
+		
+		/* Store each completed word */
+		if( ( mBitCount & 0x3F ) == 0 )
+		{
+			mRing[ (int)( ( mBitCount - 1 ) >>> 6 ) & mRingMask ] = mShiftRegister;
+		}
+
+		for( int x = 0; x < mSyncPatterns.length; x++ )
+		{
+			if( Long.bitCount( ( mShiftRegister ^ mSyncPatterns[ x ] ) & 
+					mSyncMasks[ x ] ) <= mSyncBitErrors && 
+				mBitCount >= mSyncLengths[ x ] )
+			{
+				addMessage( mBitCount - mSyncLengths[ x ] );
+
+				if( mSyncDetectListener != null )
+				{
+					mSyncDetectListener.syncDetected();
+				}
+				
+				/* Only one message per bit position */
+				break;
+			}
+		}
+		
+		while( mMessageCount > 0 && 
+			   mBitCount - mMessageStarts[ mMessageHead ] >= mMessageLength )
+		{
+			long start = mMessageStarts[ mMessageHead ];
+			
+			mMessageHead = ( mMessageHead + 1 ) % mMessageStarts.length;
+			mMessageCount--;
+
+			mBroadcaster.receive( getMessage( start ) );
+		}
+	}
+	
+	/**
+	 * Queues a message that starts at the bit position for assembly
+	 */
+	private void addMessage( long start )
+	{
+		if( mMessageCount == mMessageStarts.length )
+		{
+			long[] starts = new long[ mMessageStarts.length * 2 ];
+			
+			for( int x = 0; x < mMessageCount; x++ )
+			{
+				starts[ x ] = mMessageStarts[ ( mMessageHead + x ) % 
+				                              mMessageStarts.length ];
+			}
+			
+			mMessageStarts = starts;
+			mMessageHead = 0;
+		}
+		
+		mMessageStarts[ ( mMessageHead + mMessageCount ) % 
+		                mMessageStarts.length ] = start;
+		mMessageCount++;
+	}
+	
+	/**
+	 * Slices the message that starts at the bit position out of the ring
+	 */
+	private BinaryMessage getMessage( long start )
+	{
+		/* Store the partially filled current word */
+		int partial = (int)( mBitCount & 0x3F );
+		
+		if( partial != 0 )
+		{
+			mRing[ (int)( mBitCount >>> 6 ) & mRingMask ] = 
+					mShiftRegister << ( 64 - partial );
+		}
+		
+		BinaryMessage message = new BinaryMessage( mMessageLength );
+		
+		for( int offset = 0; offset < mMessageLength; offset += 64 )
+		{
+			long position = start + offset;
+			
+			int shift = (int)( position & 0x3F );
+			
+			long word = mRing[ (int)( position >>> 6 ) & mRingMask ] << shift;
+			
+			if( shift != 0 )
+			{
+				word |= mRing[ (int)( ( position >>> 6 ) + 1 ) & mRingMask ] >>> 
+						( 64 - shift );
+			}
+			
+			int width = Math.min( 64, mMessageLength - offset );
+			
+			if( width < 64 )
+			{
+				word &= -1l << ( 64 - width );
+			}
+			
+			/* Set each one bit, MSB first */
+			while( word != 0 )
+			{
+				int index = Long.numberOfLeadingZeros( word );
+				
+				message.set( offset + index );
+				
+				word &= ~( Long.MIN_VALUE >>> index );
+			}
+		}
+		
+		message.setPointer( mMessageLength );
+		
+		return message;
+	}
+
+	@Override
+	public void setSyncDetectListener( SyncDetectListener listener )
+	{
+		mSyncDetectListener = listener;
+	}
+
+	/**
+	 * Allow a message listener to register with this framer to receive
+	 * all framed messages
+	 */
+	public void addMessageListener( Listener<BinaryMessage> listener )
+	{
+		mBroadcaster.addListener( listener );
+	}
+
+	public void removeMessageListener( Listener<BinaryMessage> listener )
+	{
+		mBroadcaster.removeListener( listener );
+	}
+}
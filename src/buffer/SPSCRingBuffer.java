@@ -0,0 +1,325 @@
+/*******************************************************************************
+ *     SDR Trunk 
+ *     Copyright (C) 2014-2016 Dennis Sheirer
+ * 
+ *     This program is free software: you can redistribute it and/or modify
+ *     it under the terms of the GNU General Public License as published by
+ *     the Free Software Foundation, either version 3 of the License, or
+ *     (at your option) any later version.
+ * 
+ *     This program is distributed in the hope that it will be useful,
+ *     but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *     MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *     GNU General Public License for more details.
+ * 
+ *     You should have received a copy of the GNU General Public License
+ *     along with this program.  If not, see <http://www.gnu.org/licenses/>
+ ******************************************************************************/
+package buffer;
+
+import java.util.Collection;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongFieldUpdater;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Bounded, lock-free, single-producer/single-consumer ring buffer for handing
+ * off sample buffers between two threads.
+ * 
+ * Only one thread may offer elements at a time.  The head index is advanced
+ * with compare-and-set, so the consumer, a thread that clears the buffer and
+ * (for the DROP_OLDEST policy) the producer can all safely discard elements.
+ * The head and tail indexes are each padded onto their own cache line, so 
+ * that the producer and consumer don't contend over a shared line.
+ * 
+ * When the buffer is full, the overflow policy determines whether the oldest
+ * queued element or the newly offered element is dropped, or whether the 
+ * producer waits for space.  Dropped elements are counted.
+ * 
+ * Elements must not be null, and the same element must not be queued twice
+ * at the same time.
+ */
+public class SPSCRingBuffer<T> extends SPSCRingBufferTail
+{
+	/* Producer wait between checks for space with the BLOCK policy */
+	private static final long BLOCK_PARK_NANOS = 100000; //100 us
+
+	public enum OverflowPolicy
+	{
+		/* Discard the oldest queued element to make room */
+		DROP_OLDEST,
+		/* Discard the element being offered */
+		DROP_NEWEST,
+		/* Producer waits until the consumer makes room */
+		BLOCK;
+
+		/**
+		 * Returns the policy that matches the enum entry name, or the default
+		 * policy if the value can't be matched.
+		 */
+		public static OverflowPolicy fromName( String name, OverflowPolicy defaultPolicy )
+		{
+			if( name != null )
+			{
+				for( OverflowPolicy policy: values() )
+				{
+					if( policy.name().equalsIgnoreCase( name.trim() ) )
+					{
+						return policy;
+					}
+				}
+			}
+
+			return defaultPolicy;
+		}
+	}
+
+	private final AtomicReferenceArray<T> mElements;
+	private final int mMask;
+	private final OverflowPolicy mOverflowPolicy;
+
+	private final AtomicLong mOffered = new AtomicLong();
+	private final AtomicLong mDropped = new AtomicLong();
+
+	/**
+	 * Constructs a ring buffer
+	 * 
+	 * @param capacity - minimum capacity.  Actual capacity is rounded up to 
+	 * the next power of 2.
+	 * @param overflowPolicy - action to take when an element is offered to a 
+	 * full buffer
+	 */
+	public SPSCRingBuffer( int capacity, OverflowPolicy overflowPolicy )
+	{
+		int size = Integer.highestOneBit( Math.max( capacity, 2 ) - 1 ) << 1;
+
+		mElements = new AtomicReferenceArray<>( size );
+		mMask = size - 1;
+		mOverflowPolicy = overflowPolicy;
+	}
+
+	/**
+	 * Adds the element to the buffer, applying the overflow policy when the
+	 * buffer is full.  Producer thread only.
+	 * 
+	 * @return true if the element was queued without dropping any element, or
+	 * false if the new element or the oldest element was dropped
+	 */
+	public boolean offer( T element )
+	{
+		mOffered.incrementAndGet();
+
+		long tail = mTail;
+
+		boolean dropped = false;
+
+		while( tail - getCachedHead() >= mElements.length() )
+		{
+			switch( mOverflowPolicy )
+			{
+				case DROP_NEWEST:
+					mDropped.incrementAndGet();
+					return false;
+				case DROP_OLDEST:
+					long head = mHead;
+
+					if( tail - head >= mElements.length() && 
+						HEAD.compareAndSet( this, head, head + 1 ) )
+					{
+						mDropped.incrementAndGet();
+						dropped = true;
+					}
+					break;
+				case BLOCK:
+					LockSupport.parkNanos( BLOCK_PARK_NANOS );
+					break;
+				default:
+					throw new IllegalStateException( "Unrecognized overflow "
+							+ "policy [" + mOverflowPolicy + "]" );
+			}
+		}
+
+		mElements.set( (int)( tail & mMask ), element );
+
+		TAIL.lazySet( this, tail + 1 );
+
+		return !dropped;
+	}
+
+	/**
+	 * Refreshes the producer's cached copy of the head index only when the 
+	 * cached copy indicates that the buffer is full, so that the producer 
+	 * normally doesn't touch the consumer's cache line.
+	 */
+	private long getCachedHead()
+	{
+		long tail = mTail;
+
+		if( tail - mHeadCache >= mElements.length() )
+		{
+			mHeadCache = mHead;
+		}
+
+		return mHeadCache;
+	}
+
+	/**
+	 * Removes and returns the oldest element, or null if the buffer is empty.
+	 */
+	public T poll()
+	{
+		while( true )
+		{
+			long head = mHead;
+
+			if( head >= mTail )
+			{
+				return null;
+			}
+
+			int index = (int)( head & mMask );
+
+			T element = mElements.get( index );
+
+			if( HEAD.compareAndSet( this, head, head + 1 ) )
+			{
+				/* Release the slot unless the producer has already reused it */
+				mElements.compareAndSet( index, element, null );
+
+				if( element != null )
+				{
+					return element;
+				}
+			}
+		}
+	}
+
+	/**
+	 * Removes up to maximum elements and adds them to the collection
+	 * 
+	 * @return number of elements transferred
+	 */
+	public int drainTo( Collection<? super T> collection, int maximum )
+	{
+		int count = 0;
+
+		while( count < maximum )
+		{
+			T element = poll();
+
+			if( element == null )
+			{
+				break;
+			}
+
+			collection.add( element );
+			count++;
+		}
+
+		return count;
+	}
+
+	/**
+	 * Removes all available elements and adds them to the collection
+	 * 
+	 * @return number of elements transferred
+	 */
+	public int drainTo( Collection<? super T> collection )
+	{
+		return drainTo( collection, Integer.MAX_VALUE );
+	}
+
+	/**
+	 * Discards all queued elements.  Waiting producers are released.
+	 */
+	public void clear()
+	{
+		while( poll() != null )
+		{
+		}
+	}
+
+	public boolean isEmpty()
+	{
+		return mHead >= mTail;
+	}
+
+	/**
+	 * Current number of queued elements
+	 */
+	public int size()
+	{
+		long size = mTail - mHead;
+
+		return size < 0 ? 0 : (int)Math.min( size, mElements.length() );
+	}
+
+	public int getCapacity()
+	{
+		return mElements.length();
+	}
+
+	public OverflowPolicy getOverflowPolicy()
+	{
+		return mOverflowPolicy;
+	}
+
+	/**
+	 * Number of elements offered to this buffer
+	 */
+	public long getOfferedCount()
+	{
+		return mOffered.get();
+	}
+
+	/**
+	 * Number of elements dropped due to overflow
+	 */
+	public long getDroppedCount()
+	{
+		return mDropped.get();
+	}
+
+	private static final AtomicLongFieldUpdater<SPSCRingBufferHead> HEAD =
+		AtomicLongFieldUpdater.newUpdater( SPSCRingBufferHead.class, "mHead" );
+
+	private static final AtomicLongFieldUpdater<SPSCRingBufferTail> TAIL =
+		AtomicLongFieldUpdater.newUpdater( SPSCRingBufferTail.class, "mTail" );
+}
+
+/**
+ * Cache line padding ahead of the head index.  The JVM lays out superclass
+ * fields ahead of subclass fields, so a class hierarchy keeps the padding in 
+ * place.
+ */
+abstract class SPSCRingBufferPad0
+{
+	long mPad00, mPad01, mPad02, mPad03, mPad04, mPad05, mPad06, mPad07;
+}
+
+/**
+ * Consumer index: next element to read
+ */
+abstract class SPSCRingBufferHead extends SPSCRingBufferPad0
+{
+	protected volatile long mHead;
+}
+
+abstract class SPSCRingBufferPad1 extends SPSCRingBufferHead
+{
+	long mPad10, mPad11, mPad12, mPad13, mPad14, mPad15, mPad16, mPad17;
+}
+
+/**
+ * Producer index: next slot to write, and the producer's cached copy of the
+ * head index.  Followed by padding so that the tail doesn't share a cache 
+ * line with the ring buffer's other fields.
+ */
+abstract class SPSCRingBufferTail extends SPSCRingBufferPad1
+{
+	protected volatile long mTail;
+	protected long mHeadCache;
+
+	long mPad20, mPad21, mPad22, mPad23, mPad24, mPad25, mPad26, mPad27;
+}
@@ -0,0 +1,624 @@
+/*******************************************************************************
+ *     SDR Trunk 
+ *     Copyright (C) 2014-2016 Dennis Sheirer
+ * 
+ *     This program is free software: you can redistribute it and/or modify
+ *     it under the terms of the GNU General Public License as published by
+ *     the Free Software Foundation, either version 3 of the License, or
+ *     (at your option) any later version.
+ * 
+ *     This program is distributed in the hope that it will be useful,
+ *     but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *     MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *     GNU General Public License for more details.
+ * 
+ *     You should have received a copy of the GNU General Public License
+ *     along with this program.  If not, see <http://www.gnu.org/licenses/>
+ ******************************************************************************/
+package controller.channel;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+import module.decode.DecoderType;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import properties.SystemProperties;
+import sample.SampleType;
+import source.config.SourceConfigTuner;
+import source.tuner.Tuner;
+import source.tuner.TunerChannel;
+import source.tuner.TunerController;
+import source.tuner.TunerModel;
+import source.tuner.frequency.FrequencyChangeEvent;
+import source.tuner.frequency.IFrequencyChangeProcessor;
+import spectrum.DFTProcessor;
+import spectrum.converter.DFTResultsConverter;
+import util.FastLog;
+import controller.channel.Channel.ChannelType;
+
+/**
+ * Energy detection activity scanner for conventional (NBFM and AM) channels.
+ * 
+ * Instead of running a full processing chain (tuner channel source, mixer, 
+ * decimation, demodulator, squelch) for each enabled conventional channel, 
+ * the channel processing manager hands enabled conventional channels to this 
+ * scanner.  The scanner runs one low frame rate DFT per tuner and measures the
+ * power in each channel's bandwidth from the DFT bins.  When the channel power 
+ * exceeds the channel's tracked noise floor by the threshold, the channel's 
+ * processing chain is started.  The processing chain is stopped and disposed
+ * once the channel power stays below the threshold for the hang time.  
+ * 
+ * Each scanned channel reserves its bandwidth on the scanned tuner, so that 
+ * the tuner's LO frequency is only moved in ways that keep the channel within
+ * the tuner bandwidth, although no samples are sourced for the channel.  
+ * Channels that can't be reserved on a tuner when they are enabled are not
+ * scanned and are processed continuously, as before.  A scanned channel that
+ * still ends up outside of the tuner bandwidth (eg after a sample rate 
+ * change) is handed back for continuous processing.
+ * 
+ * Settings (application properties):
+ * 
+ * activity.scanner.enabled - enables the scanner (default false)
+ * activity.scanner.frame.rate - DFT frames per second (default 20)
+ * activity.scanner.threshold - dB above the noise floor to activate (10)
+ * activity.scanner.hang.time - milliseconds to keep processing after the 
+ *   channel power drops below the threshold (3000)
+ */
+public class ActivityScanner
+{
+	private final static Logger mLog = LoggerFactory.getLogger( ActivityScanner.class );
+
+	public static final String ENABLED_PROPERTY = "activity.scanner.enabled";
+	public static final String FRAME_RATE_PROPERTY = "activity.scanner.frame.rate";
+	public static final String THRESHOLD_PROPERTY = "activity.scanner.threshold";
+	public static final String HANG_TIME_PROPERTY = "activity.scanner.hang.time";
+
+	/* Channel power must drop this far below the activation threshold before
+	 * the hang timer runs */
+	private static final float HYSTERESIS_DB = 3.0f;
+
+	/* Noise floor tracker gains for decreasing and increasing channel power */
+	private static final float NOISE_FLOOR_FALL = 0.2f;
+	private static final float NOISE_FLOOR_RISE = 0.005f;
+
+	private TunerModel mTunerModel;
+	private ChannelProcessingManager mChannelProcessingManager;
+
+	private Map<Tuner,TunerActivityDetector> mDetectors = new HashMap<>();
+	private Map<Integer,ScannedChannel> mChannels = new HashMap<>();
+
+	private int mFrameRate;
+	private float mThreshold;
+	private long mHangTime;
+
+	/**
+	 * Constructs the scanner and registers it with the channel processing 
+	 * manager.
+	 */
+	public ActivityScanner( TunerModel tunerModel, 
+							ChannelProcessingManager channelProcessingManager )
+	{
+		mTunerModel = tunerModel;
+		mChannelProcessingManager = channelProcessingManager;
+
+		SystemProperties properties = SystemProperties.getInstance();
+
+		mFrameRate = properties.get( FRAME_RATE_PROPERTY, 20 );
+		mThreshold = properties.get( THRESHOLD_PROPERTY, 10 );
+		mHangTime = properties.get( HANG_TIME_PROPERTY, 3000 );
+
+		mChannelProcessingManager.setActivityScanner( this );
+	}
+
+	/**
+	 * Indicates if the activity scanner is enabled in the application 
+	 * properties
+	 */
+	public static boolean isEnabled()
+	{
+		return SystemProperties.getInstance().get( ENABLED_PROPERTY, false );
+	}
+
+	/**
+	 * Indicates if the channel is a standard conventional NBFM or AM channel
+	 * with a tuner source, that can be scanned for activity
+	 */
+	public static boolean isScannable( Channel channel )
+	{
+		if( channel.getChannelType() != ChannelType.STANDARD ||
+			!( channel.getSourceConfiguration() instanceof SourceConfigTuner ) )
+		{
+			return false;
+		}
+
+		DecoderType decoder = channel.getDecodeConfiguration().getDecoderType();
+
+		return decoder == DecoderType.NBFM || decoder == DecoderType.AM;
+	}
+
+	/**
+	 * Starts scanning the channel for activity.
+	 * 
+	 * @return true if the channel is scanned, or false if the channel isn't 
+	 * scannable or isn't within the usable bandwidth of any tuner
+	 */
+	public synchronized boolean add( Channel channel )
+	{
+		if( !isScannable( channel ) )
+		{
+			return false;
+		}
+
+		remove( channel );
+
+		ScannedChannel scannedChannel = new ScannedChannel( channel );
+
+		TunerActivityDetector detector = getDetector( scannedChannel );
+
+		if( detector == null )
+		{
+			mLog.info( "Channel [" + channel.getName() + "] can't be reserved "
+					+ "on a tuner - it will be processed continuously" );
+
+			return false;
+		}
+
+		mChannels.put( channel.getChannelID(), scannedChannel );
+
+		detector.add( scannedChannel );
+
+		return true;
+	}
+
+	/**
+	 * Stops scanning the channel.
+	 * 
+	 * @return true if the channel was being scanned
+	 */
+	public synchronized boolean remove( Channel channel )
+	{
+		ScannedChannel scannedChannel = mChannels.remove( channel.getChannelID() );
+
+		if( scannedChannel != null )
+		{
+			for( TunerActivityDetector detector: mDetectors.values() )
+			{
+				detector.remove( scannedChannel );
+			}
+
+			scannedChannel.release();
+
+			return true;
+		}
+
+		return false;
+	}
+
+	/**
+	 * Indicates if the channel is being scanned for activity
+	 */
+	public synchronized boolean isScanning( Channel channel )
+	{
+		return mChannels.containsKey( channel.getChannelID() );
+	}
+
+	/**
+	 * Currently scanned channels that are being processed
+	 */
+	public synchronized List<Channel> getActiveChannels()
+	{
+		List<Channel> channels = new ArrayList<>();
+
+		for( ScannedChannel channel: mChannels.values() )
+		{
+			if( channel.mProcessing )
+			{
+				channels.add( channel.mChannel );
+			}
+		}
+
+		return channels;
+	}
+
+	/**
+	 * Stops all tuner detectors and removes all scanned channels
+	 */
+	public synchronized void dispose()
+	{
+		for( TunerActivityDetector detector: mDetectors.values() )
+		{
+			detector.dispose();
+		}
+
+		mDetectors.clear();
+
+		for( ScannedChannel channel: mChannels.values() )
+		{
+			channel.release();
+		}
+
+		mChannels.clear();
+	}
+
+	/**
+	 * Reserves the channel on a tuner and finds the detector for that tuner,
+	 * creating and starting the detector as needed.
+	 * 
+	 * @return detector or null if the channel couldn't be reserved on a tuner
+	 */
+	private TunerActivityDetector getDetector( ScannedChannel channel )
+	{
+		Tuner tuner = reserve( channel );
+
+		if( tuner == null )
+		{
+			return null;
+		}
+
+		TunerActivityDetector detector = mDetectors.get( tuner );
+
+		if( detector == null )
+		{
+			detector = new TunerActivityDetector( tuner );
+			detector.start();
+
+			mDetectors.put( tuner, detector );
+		}
+
+		return detector;
+	}
+
+	/**
+	 * Reserves the channel's bandwidth on a tuner, preferring a tuner whose
+	 * current LO frequency already covers the channel over retuning a tuner.
+	 * 
+	 * @return tuner holding the reservation or null
+	 */
+	private Tuner reserve( ScannedChannel channel )
+	{
+		List<Tuner> tuners = mTunerModel.getTuners();
+
+		for( Tuner tuner: tuners )
+		{
+			if( covers( tuner.getTunerController(), channel ) && 
+				channel.reserve( tuner.getTunerController() ) )
+			{
+				return tuner;
+			}
+		}
+
+		for( Tuner tuner: tuners )
+		{
+			if( channel.reserve( tuner.getTunerController() ) )
+			{
+				return tuner;
+			}
+		}
+
+		return null;
+	}
+
+	/**
+	 * Indicates if the channel is within the tuner's usable bandwidth and 
+	 * outside of the central DC spike region
+	 */
+	private static boolean covers( TunerController controller, ScannedChannel channel )
+	{
+		long center = controller.getFrequency();
+		long halfUsable = controller.getUsableBandwidth() / 2;
+		long halfChannel = channel.mBandwidth / 2;
+
+		long minimum = channel.mFrequency - halfChannel;
+		long maximum = channel.mFrequency + halfChannel;
+
+		if( minimum < center - halfUsable || maximum > center + halfUsable )
+		{
+			return false;
+		}
+
+		int middle = controller.getMiddleUnusable();
+
+		return middle == 0 || maximum < center - middle || minimum > center + middle;
+	}
+
+	/**
+	 * Per-channel energy detection state.  After construction, the detection
+	 * state is only accessed by the tuner detector's DFT thread.  The tuner
+	 * reservation is managed under the scanner lock.
+	 */
+	private class ScannedChannel
+	{
+		private Channel mChannel;
+		private long mFrequency;
+		private int mBandwidth;
+		private TunerChannel mTunerChannel;
+		private TunerController mReservedController;
+
+		private int mFirstBin = -1;
+		private int mLastBin = -1;
+
+		private boolean mNoiseFloorValid;
+		private float mNoiseFloor;
+		private boolean mActive;
+		private volatile boolean mProcessing;
+		private long mLastActivity;
+
+		public ScannedChannel( Channel channel )
+		{
+			mChannel = channel;
+			mFrequency = ( (SourceConfigTuner)channel.getSourceConfiguration() )
+					.getFrequency();
+			mBandwidth = channel.getDecodeConfiguration().getDecoderType()
+					.getChannelBandwidth();
+			mTunerChannel = new TunerChannel( TunerChannel.Type.LOCKED, 
+					mFrequency, mBandwidth );
+		}
+
+		/**
+		 * Reserves the channel bandwidth on the tuner
+		 */
+		public boolean reserve( TunerController controller )
+		{
+			if( controller.reserveChannel( mTunerChannel ) )
+			{
+				mReservedController = controller;
+
+				return true;
+			}
+
+			return false;
+		}
+
+		/**
+		 * Releases the tuner bandwidth reservation
+		 */
+		public void release()
+		{
+			if( mReservedController != null )
+			{
+				mReservedController.releaseReservation( mTunerChannel );
+				mReservedController = null;
+			}
+		}
+
+		/**
+		 * Updates the energy detection state with the channel power in dB and
+		 * starts or stops the channel's processing chain on state transitions.
+		 */
+		public void update( float power, long timestamp )
+		{
+			if( !mNoiseFloorValid )
+			{
+				mNoiseFloor = power;
+				mNoiseFloorValid = true;
+			}
+
+			if( power > mNoiseFloor + mThreshold )
+			{
+				mActive = true;
+				mLastActivity = timestamp;
+			}
+			else if( mActive && power > mNoiseFloor + mThreshold - HYSTERESIS_DB )
+			{
+				mLastActivity = timestamp;
+			}
+			else if( mActive && timestamp - mLastActivity > mHangTime )
+			{
+				mActive = false;
+			}
+
+			/* Only track the noise floor between transmissions */
+			if( !mActive )
+			{
+				if( power < mNoiseFloor )
+				{
+					mNoiseFloor += ( power - mNoiseFloor ) * NOISE_FLOOR_FALL;
+				}
+				else
+				{
+					mNoiseFloor += ( power - mNoiseFloor ) * NOISE_FLOOR_RISE;
+				}
+			}
+
+			if( mActive && !mProcessing )
+			{
+				mProcessing = mChannelProcessingManager
+						.startScannedProcessing( mChannel );
+			}
+			else if( !mActive && mProcessing )
+			{
+				mChannelProcessingManager.stopScannedProcessing( mChannel );
+				mProcessing = false;
+			}
+		}
+	}
+
+	/**
+	 * Runs a DFT over a tuner's samples and updates the energy detection 
+	 * state of each scanned channel within the tuner's bandwidth from the DFT
+	 * bin power values.
+	 */
+	private class TunerActivityDetector extends DFTResultsConverter
+								implements IFrequencyChangeProcessor
+	{
+		private Tuner mTuner;
+		private DFTProcessor mDFTProcessor;
+		private List<ScannedChannel> mScannedChannels = new CopyOnWriteArrayList<>();
+
+		private volatile long mFrequency;
+		private volatile int mSampleRate;
+		private volatile int mBinCount;
+
+		public TunerActivityDetector( Tuner tuner )
+		{
+			mTuner = tuner;
+
+			mDFTProcessor = new DFTProcessor( SampleType.COMPLEX, mFrameRate, 2 );
+			mDFTProcessor.stop();
+			mDFTProcessor.addConverter( this );
+		}
+
+		public void start()
+		{
+			TunerController controller = mTuner.getTunerController();
+
+			mFrequency = controller.getFrequency();
+			mSampleRate = controller.getSampleRate();
+
+			controller.addListener( this );
+
+			mDFTProcessor.frequencyChanged( new FrequencyChangeEvent( 
+				FrequencyChangeEvent.Event.NOTIFICATION_SAMPLE_RATE_CHANGE, 
+				mSampleRate ) );
+
+			mDFTProcessor.start();
+
+			mTuner.addListener( mDFTProcessor );
+
+			mLog.info( "Started activity detection on tuner [" + 
+					mTuner.getName() + "]" );
+		}
+
+		@Override
+		public void dispose()
+		{
+			mTuner.removeListener( mDFTProcessor );
+			mTuner.getTunerController().removeListener( this );
+
+			mDFTProcessor.dispose();
+
+			super.dispose();
+		}
+
+		public void add( ScannedChannel channel )
+		{
+			updateBins( channel );
+
+			mScannedChannels.add( channel );
+		}
+
+		public void remove( ScannedChannel channel )
+		{
+			mScannedChannels.remove( channel );
+		}
+
+		/**
+		 * Calculates the range of DFT bins covered by the channel bandwidth.
+		 * The channel is skipped (first bin -1) when the channel is outside of
+		 * the tuner bandwidth.
+		 * 
+		 * @return false if the channel is outside of the tuner bandwidth
+		 */
+		private boolean updateBins( ScannedChannel channel )
+		{
+			int bins = mBinCount;
+			int sampleRate = mSampleRate;
+
+			if( bins == 0 || sampleRate == 0 )
+			{
+				channel.mFirstBin = -1;
+				return true;
+			}
+
+			double binSize = (double)sampleRate / (double)bins;
+			double offset = (double)( channel.mFrequency - mFrequency );
+			double half = (double)channel.mBandwidth / 2.0;
+
+			int first = (int)Math.ceil( ( offset - half ) / binSize ) + ( bins / 2 );
+			int last = (int)Math.floor( ( offset + half ) / binSize ) + ( bins / 2 );
+
+			channel.mNoiseFloorValid = false;
+
+			if( first < 0 || last >= bins || last < first )
+			{
+				channel.mFirstBin = -1;
+
+				return false;
+			}
+
+			channel.mFirstBin = first;
+			channel.mLastBin = last;
+
+			return true;
+		}
+
+		@Override
+		public void frequencyChanged( FrequencyChangeEvent event )
+		{
+			switch( event.getEvent() )
+			{
+				case NOTIFICATION_FREQUENCY_CHANGE:
+					mFrequency = event.getValue().longValue();
+					mBinCount = 0;
+					break;
+				case NOTIFICATION_SAMPLE_RATE_CHANGE:
+					mSampleRate = event.getValue().intValue();
+					mBinCount = 0;
+					mDFTProcessor.frequencyChanged( event );
+					break;
+				default:
+					break;
+			}
+		}
+
+		/**
+		 * Receives the DFT bin power values (lower half of the spectrum in the
+		 * upper half of the array, per JTransforms output ordering), sums the
+		 * power across each channel's bins and updates each channel.
+		 */
+		@Override
+		public void receive( float[] power )
+		{
+			/* Recalculate channel bins after a frequency, sample rate or DFT 
+			 * size change */
+			if( mBinCount != power.length )
+			{
+				mBinCount = power.length;
+
+				for( ScannedChannel channel: mScannedChannels )
+				{
+					if( !updateBins( channel ) )
+					{
+						mLog.info( "Channel [" + channel.mChannel.getName() + 
+							"] is outside of the bandwidth of tuner [" + 
+							mTuner.getName() + "] - it will be processed "
+							+ "continuously" );
+
+						/* Removes the channel from this detector */
+						mChannelProcessingManager.scannedChannelLost( 
+								channel.mChannel );
+					}
+				}
+			}
+
+			int middle = power.length / 2;
+			long timestamp = System.currentTimeMillis();
+
+			for( ScannedChannel channel: mScannedChannels )
+			{
+				if( channel.mFirstBin >= 0 )
+				{
+					float sum = 0.0f;
+
+					for( int bin = channel.mFirstBin; bin <= channel.mLastBin; bin++ )
+					{
+						sum += power[ bin >= middle ? bin - middle : bin + middle ];
+					}
+
+					/* Skip empty (startup) frames */
+					if( sum > 0.0f )
+					{
+						channel.update( 10.0f * FastLog.log10( sum ), timestamp );
+					}
+				}
+			}
+		}
+	}
+
+}
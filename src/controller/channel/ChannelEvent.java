@@ -60,6 +60,11 @@ public class ChannelEvent
 		NOTIFICATION_PROCESSING_START,
 		//Channel has stopped processing/decoding
 		NOTIFICATION_PROCESSING_STOP,
+		//Channel is enabled and monitored by the activity scanner, which starts
+		//and stops processing as the channel becomes active and idle
+		NOTIFICATION_SCANNING_START,
+		//Channel is no longer monitored by the activity scanner
+		NOTIFICATION_SCANNING_STOP,
 		//Channel's selection state has changed
 		NOTIFICATION_SELECTION_CHANGE,
 		//Channel's channel-state has been reset
@@ -126,6 +126,8 @@ public class ChannelModel extends AbstractTableModel implements IChannelEventBro
 				case NOTIFICATION_CONFIGURATION_CHANGE:
 				case NOTIFICATION_PROCESSING_START:
 				case NOTIFICATION_PROCESSING_STOP:
+				case NOTIFICATION_SCANNING_START:
+				case NOTIFICATION_SCANNING_STOP:
 				case NOTIFICATION_SELECTION_CHANGE:
 					int index = mChannels.indexOf( event.getChannel() );
 					fireTableRowsUpdated( index, index );
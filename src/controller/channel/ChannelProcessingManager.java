@@ -42,6 +42,7 @@ import alias.AliasModel;
 import audio.AudioPacket;
 import audio.metadata.Metadata;
 import audio.metadata.MetadataType;
+import controller.ThreadPoolManager;
 import controller.channel.Channel.ChannelType;
 import controller.channel.ChannelEvent.Event;
 import controller.channel.map.ChannelMapModel;
@@ -62,6 +63,10 @@ public class ChannelProcessingManager implements ChannelEventListener
     private EventLogManager mEventLogManager;
     private RecorderManager mRecorderManager;
     private SourceManager mSourceManager;
+    private boolean mMessageActivityModelEnabled = true;
+    private boolean mPrewarmEnabled = true;
+    private ActivityScanner mActivityScanner;
+    private ThreadPoolManager mThreadPoolManager;
 
     public ChannelProcessingManager(ChannelModel channelModel,
                                     ChannelMapModel channelMapModel,
@@ -78,6 +83,92 @@ public class ChannelProcessingManager implements ChannelEventListener
         mSourceManager = sourceManager;
     }
 
+    /**
+     * Enables or disables the message activity (table) model on each new
+     * processing chain.  The model hands every decoded message to the Swing
+     * event dispatch thread, so it should be disabled when there is no user
+     * interface to display it.  Default is enabled.
+     */
+    public void setMessageActivityModelEnabled(boolean enabled)
+    {
+        mMessageActivityModelEnabled = enabled;
+    }
+
+    /**
+     * Enables or disables building traffic channel processing chains ahead of
+     * the first traffic channel allocation.  Should be disabled when traffic
+     * channels are never allocated, like when viewing a single decoder.
+     * Default is enabled.
+     */
+    public void setPrewarmEnabled(boolean enabled)
+    {
+        mPrewarmEnabled = enabled;
+    }
+
+    public boolean isPrewarmEnabled()
+    {
+        return mPrewarmEnabled;
+    }
+
+    /**
+     * Sets the activity scanner that enabled conventional channels are handed
+     * to, so that their processing chains only run while the channel is
+     * active.  Set to null (default) to process all enabled channels
+     * continuously.
+     */
+    public void setActivityScanner(ActivityScanner scanner)
+    {
+        mActivityScanner = scanner;
+    }
+
+    /**
+     * Sets the thread pool manager used by processing modules for background
+     * work, like building traffic channel processing chains ahead of time.
+     */
+    public void setThreadPoolManager(ThreadPoolManager threadPoolManager)
+    {
+        mThreadPoolManager = threadPoolManager;
+    }
+
+    /**
+     * Thread pool manager for background work, or null if none was set
+     */
+    public ThreadPoolManager getThreadPoolManager()
+    {
+        return mThreadPoolManager;
+    }
+
+    /**
+     * Indicates if the channel is enabled and monitored by the activity scanner
+     */
+    private boolean isScanning(Channel channel)
+    {
+        return mActivityScanner != null && mActivityScanner.isScanning(channel);
+    }
+
+    /**
+     * Hands the channel to the activity scanner, if there is one and it can
+     * scan the channel.
+     *
+     * @return true if the channel is now scanned
+     */
+    private boolean startScanning(ChannelEvent event)
+    {
+        Channel channel = event.getChannel();
+
+        if (mActivityScanner != null && !(event instanceof TrafficChannelEvent) &&
+                mActivityScanner.add(channel))
+        {
+            channel.setEnabled(true);
+
+            mChannelModel.broadcast(new ChannelEvent(channel, Event.NOTIFICATION_SCANNING_START));
+
+            return true;
+        }
+
+        return false;
+    }
+
     /**
      * Indicates if a processing chain is constructed for the channel and that
      * the processing chain is currently processing.
@@ -105,10 +196,10 @@ public class ChannelProcessingManager implements ChannelEventListener
         switch (event.getEvent())
         {
             case REQUEST_ENABLE:
-                if (!mProcessingChains.containsKey(channel.getChannelID()) ||
-                        !mProcessingChains.get(channel.getChannelID()).isProcessing())
+                if (!isProcessing(channel) && !isScanning(channel) &&
+                        !startScanning(event) && !startProcessing(event))
                 {
-                    startProcessing(event);
+                    rejectEnable(channel);
                 }
                 break;
             case REQUEST_DISABLE:
@@ -117,7 +208,17 @@ public class ChannelProcessingManager implements ChannelEventListener
                     switch (channel.getChannelType())
                     {
                         case STANDARD:
-                            stopProcessing(channel, true);
+                            if (mActivityScanner != null && mActivityScanner.remove(channel))
+                            {
+                                stopProcessing(channel, true);
+
+                                mChannelModel.broadcast(new ChannelEvent(channel,
+                                        Event.NOTIFICATION_SCANNING_STOP));
+                            }
+                            else
+                            {
+                                stopProcessing(channel, true);
+                            }
                             break;
                         case TRAFFIC:
                             //Don't remove traffic channel processing chains
@@ -128,17 +229,37 @@ public class ChannelProcessingManager implements ChannelEventListener
                             break;
                     }
                 }
+                break;
             case NOTIFICATION_DELETE:
-                if (channel.getEnabled())
+                //Always release the processing chain, since pre-built traffic
+                //channel chains exist for channels that are not enabled
+                if (mActivityScanner != null)
                 {
-                    stopProcessing(channel, true);
+                    mActivityScanner.remove(channel);
                 }
+
+                stopProcessing(channel, true);
                 break;
             case NOTIFICATION_CONFIGURATION_CHANGE:
-                if (isProcessing(channel))
+                if (isScanning(channel))
+                {
+                    //Rescan with the new frequency and decoder configuration
+                    mActivityScanner.remove(channel);
+                    stopScannedProcessing(channel);
+
+                    if (!mActivityScanner.add(channel) && !startProcessing(event))
+                    {
+                        rejectEnable(channel);
+                    }
+                }
+                else if (isProcessing(channel))
                 {
                     stopProcessing(channel, false);
-                    startProcessing(event);
+
+                    if (!startProcessing(event))
+                    {
+                        rejectEnable(channel);
+                    }
                 }
                 break;
             default:
@@ -146,7 +267,26 @@ public class ChannelProcessingManager implements ChannelEventListener
         }
     }
 
-    private void startProcessing(ChannelEvent event)
+    /**
+     * Disables the channel and notifies listeners that the enable request was
+     * rejected
+     */
+    private void rejectEnable(Channel channel)
+    {
+        channel.setEnabled(false);
+
+        mChannelModel.broadcast(
+                new ChannelEvent(channel, Event.NOTIFICATION_ENABLE_REJECTED));
+    }
+
+    /**
+     * Starts the processing chain for the channel, creating the chain if
+     * needed.
+     *
+     * @return true if the channel is processing, or false if a source couldn't
+     * be obtained for the channel
+     */
+    private boolean startProcessing(ChannelEvent event)
     {
         Channel channel = event.getChannel();
 
@@ -155,7 +295,7 @@ public class ChannelProcessingManager implements ChannelEventListener
         //If we're already processing, ignore the request
         if (processingChain != null && processingChain.isProcessing())
         {
-            return;
+            return true;
         }
 
         //Ensure that we can get a source before we construct a new processing chain
@@ -173,100 +313,205 @@ public class ChannelProcessingManager implements ChannelEventListener
 
         if (source == null)
         {
-            channel.setEnabled(false);
+            return false;
+        }
+
+        if (processingChain == null)
+        {
+            processingChain = createProcessingChain(channel);
+        }
+
+        /* Inject channel metadata that will be inserted into audio packets
+         * for the recorder manager and streaming.  Pooled traffic channel
+         * chains are retargeted to a new channel number on each call, so the
+         * metadata is refreshed each time that the chain is started. */
+        processingChain.broadcast(
+                new Metadata(MetadataType.SYSTEM, channel.getSystem()));
+        processingChain.broadcast(
+                new Metadata(MetadataType.SITE_ID, channel.getSite()));
+        processingChain.broadcast(
+                new Metadata(MetadataType.CHANNEL_NAME, channel.getName()));
+
+        processingChain.setSource(source);
 
-            mChannelModel.broadcast(
-                    new ChannelEvent(channel, Event.NOTIFICATION_ENABLE_REJECTED));
+        if (event instanceof TrafficChannelEvent)
+        {
+            TrafficChannelEvent trafficChannelEvent = (TrafficChannelEvent) event;
 
-            return;
+            processingChain.getChannelState().configureAsTrafficChannel(
+                    trafficChannelEvent.getTrafficChannelManager(),
+                    trafficChannelEvent.getCallEvent());
         }
 
-        if (processingChain == null)
+        processingChain.start();
+
+        channel.setEnabled(true);
+
+        mProcessingChains.put(channel.getChannelID(), processingChain);
+
+        mChannelModel.broadcast(
+                new ChannelEvent(channel, Event.NOTIFICATION_PROCESSING_START));
+
+        return true;
+    }
+
+    /**
+     * Starts the processing chain for a scanned channel when the activity
+     * scanner detects activity on the channel.  The channel remains enabled if
+     * a source can't be obtained, so that the scanner can try again.
+     *
+     * @return true if the channel is processing
+     */
+    public synchronized boolean startScannedProcessing(Channel channel)
+    {
+        if (isProcessing(channel))
+        {
+            return true;
+        }
+
+        if (channel.getEnabled() && isScanning(channel))
+        {
+            return startProcessing(new ChannelEvent(channel, Event.REQUEST_ENABLE));
+        }
+
+        return false;
+    }
+
+    /**
+     * Hands a scanned channel that the activity scanner can no longer monitor
+     * (ie the channel is no longer within the bandwidth of the scanned tuner)
+     * back for continuous processing.  A running processing chain simply 
+     * keeps running.
+     */
+    public synchronized void scannedChannelLost(Channel channel)
+    {
+        if (mActivityScanner != null && mActivityScanner.remove(channel))
         {
-            processingChain = new ProcessingChain(channel.getName(),
-                    channel.getChannelType());
+            mChannelModel.broadcast(new ChannelEvent(channel, Event.NOTIFICATION_SCANNING_STOP));
 
-			/* Register global listeners */
-            for (Listener<AudioPacket> listener : mAudioPacketListeners)
+            if (channel.getEnabled() && !isProcessing(channel) &&
+                    !startProcessing(new ChannelEvent(channel, Event.REQUEST_ENABLE)))
             {
-                processingChain.addAudioPacketListener(listener);
+                rejectEnable(channel);
             }
+        }
+    }
 
-            for (Listener<Message> listener : mMessageListeners)
+    /**
+     * Stops and disposes the processing chain for a scanned channel after the
+     * activity scanner hang time expires.  The channel remains enabled.
+     */
+    public synchronized void stopScannedProcessing(Channel channel)
+    {
+        ProcessingChain chain = mProcessingChains.remove(channel.getChannelID());
+
+        if (chain != null)
+        {
+            if (chain.isProcessing())
             {
-                processingChain.addMessageListener(listener);
+                chain.stop();
+
+                mChannelModel.broadcast(new ChannelEvent(channel, Event.NOTIFICATION_PROCESSING_STOP));
             }
 
-			/* Processing Modules */
-            List<Module> modules = DecoderFactory.getModules(mChannelModel,
-                    mChannelMapModel, this, mAliasModel, channel);
-            processingChain.addModules(modules);
+            chain.dispose();
+        }
+    }
+
+    /**
+     * Constructs a processing chain for the channel containing the decoder,
+     * event logger and recorder modules specified by the channel configuration
+     * and registers the global audio packet and message listeners.  The chain
+     * is returned without a source and is not started.
+     */
+    private ProcessingChain createProcessingChain(Channel channel)
+    {
+        ProcessingChain processingChain = new ProcessingChain(channel.getName(),
+                channel.getChannelType());
 
-			/* Setup message activity model with filtering */
+        /* Register global listeners */
+        for (Listener<AudioPacket> listener : mAudioPacketListeners)
+        {
+            processingChain.addAudioPacketListener(listener);
+        }
+
+        for (Listener<Message> listener : mMessageListeners)
+        {
+            processingChain.addMessageListener(listener);
+        }
+
+        /* Processing Modules */
+        List<Module> modules = DecoderFactory.getModules(mChannelModel,
+                mChannelMapModel, this, mAliasModel, channel);
+        processingChain.addModules(modules);
+
+        /* Setup message activity model with filtering */
+        if (mMessageActivityModelEnabled)
+        {
             FilterSet<Message> messageFilter = DecoderFactory.getMessageFilters(modules);
             MessageActivityModel messageModel = new MessageActivityModel(messageFilter);
             processingChain.setMessageActivityModel(messageModel);
-			
-			/* Setup event logging */
-            List<Module> loggers = mEventLogManager.getLoggers(
-                    channel.getEventLogConfiguration(), channel.getName());
-
-            if (!loggers.isEmpty())
-            {
-                processingChain.addModules(loggers);
-            }
+        }
 
-			/* Setup recorders */
-            List<RecorderType> recorders = channel.getRecordConfiguration().getRecorders();
+        /* Setup event logging */
+        List<Module> loggers = mEventLogManager.getLoggers(
+                channel.getEventLogConfiguration(), channel.getName());
 
-            if (!recorders.isEmpty())
-            {
-				/* Add baseband recorder */
-                if ((recorders.contains(RecorderType.BASEBAND) &&
-                        channel.getChannelType() == ChannelType.STANDARD))
-                {
-                    processingChain.addModule(mRecorderManager.getBasebandRecorder(
-                            channel.toString()));
-                }
-				
-				/* Add traffic channel baseband recorder */
-                if (recorders.contains(RecorderType.TRAFFIC_BASEBAND) &&
-                        channel.getChannelType() == ChannelType.TRAFFIC)
-                {
-                    processingChain.addModule(mRecorderManager
-                            .getBasebandRecorder(channel.toString()));
-                }
-            }
-			
-			/* Inject channel metadata that will be inserted into audio packets
-			 * for the recorder manager and streaming */
-            processingChain.broadcast(
-                    new Metadata(MetadataType.SYSTEM, channel.getSystem()));
-            processingChain.broadcast(
-                    new Metadata(MetadataType.SITE_ID, channel.getSite()));
-            processingChain.broadcast(
-                    new Metadata(MetadataType.CHANNEL_NAME, channel.getName()));
+        if (!loggers.isEmpty())
+        {
+            processingChain.addModules(loggers);
         }
 
-        processingChain.setSource(source);
+        /* Setup recorders */
+        List<RecorderType> recorders = channel.getRecordConfiguration().getRecorders();
 
-        if (event instanceof TrafficChannelEvent)
+        if (!recorders.isEmpty())
         {
-            TrafficChannelEvent trafficChannelEvent = (TrafficChannelEvent) event;
+            /* Add baseband recorder */
+            if ((recorders.contains(RecorderType.BASEBAND) &&
+                    channel.getChannelType() == ChannelType.STANDARD))
+            {
+                processingChain.addModule(mRecorderManager.getBasebandRecorder(
+                        channel.toString()));
+            }
 
-            processingChain.getChannelState().configureAsTrafficChannel(
-                    trafficChannelEvent.getTrafficChannelManager(),
-                    trafficChannelEvent.getCallEvent());
+            /* Add traffic channel baseband recorder */
+            if (recorders.contains(RecorderType.TRAFFIC_BASEBAND) &&
+                    channel.getChannelType() == ChannelType.TRAFFIC)
+            {
+                processingChain.addModule(mRecorderManager
+                        .getBasebandRecorder(channel.toString()));
+            }
         }
 
-        processingChain.start();
+        return processingChain;
+    }
 
-        channel.setEnabled(true);
+    /**
+     * Pre-builds the processing chain for a (disabled) traffic channel so that
+     * a later enable request only has to obtain a source and start the chain.
+     * The chain remains with the channel, and is stopped and reset between
+     * calls, until the channel is deleted.  Has no effect if the channel
+     * already has a processing chain.
+     */
+    public synchronized void prepareProcessing(Channel channel)
+    {
+        if (!mProcessingChains.containsKey(channel.getChannelID()))
+        {
+            try
+            {
+                ProcessingChain processingChain = createProcessingChain(channel);
 
-        mProcessingChains.put(channel.getChannelID(), processingChain);
+                processingChain.prepare();
 
-        mChannelModel.broadcast(
-                new ChannelEvent(channel, Event.NOTIFICATION_PROCESSING_START));
+                mProcessingChains.put(channel.getChannelID(), processingChain);
+            }
+            catch (Exception e)
+            {
+                mLog.error("Error pre-building processing chain for channel [" +
+                        channel.getName() + "]", e);
+            }
+        }
     }
 
     private void stopProcessing(Channel channel, boolean remove)
@@ -277,9 +522,12 @@ public class ChannelProcessingManager implements ChannelEventListener
         {
             ProcessingChain chain = mProcessingChains.get(channel.getChannelID());
 
-            chain.stop();
+            if (chain.isProcessing())
+            {
+                chain.stop();
 
-            mChannelModel.broadcast(new ChannelEvent(channel, Event.NOTIFICATION_PROCESSING_STOP));
+                mChannelModel.broadcast(new ChannelEvent(channel, Event.NOTIFICATION_PROCESSING_STOP));
+            }
 
             if (remove)
             {
@@ -0,0 +1,317 @@
+/*******************************************************************************
+ *     SDR Trunk 
+ *     Copyright (C) 2014-2016 Dennis Sheirer
+ * 
+ *     This program is free software: you can redistribute it and/or modify
+ *     it under the terms of the GNU General Public License as published by
+ *     the Free Software Foundation, either version 3 of the License, or
+ *     (at your option) any later version.
+ * 
+ *     This program is distributed in the hope that it will be useful,
+ *     but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *     MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *     GNU General Public License for more details.
+ * 
+ *     You should have received a copy of the GNU General Public License
+ *     along with this program.  If not, see <http://www.gnu.org/licenses/>
+ ******************************************************************************/
+package controller.overload;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+
+import module.ProcessingChain;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import properties.SystemProperties;
+import sample.Listener;
+import controller.ThreadPoolManager;
+import controller.ThreadPoolManager.ThreadType;
+
+/**
+ * Adaptive overload control.  Monitors the lag (sample buffer queue depth and
+ * dropped buffers) of every running processing chain once a second and, when
+ * any chain falls behind, sheds work one level at a time in priority order so
+ * that the control channels keep decoding:
+ * 
+ * DISPLAY - pause the spectral display (waterfall) calculations
+ * AUXILIARY_DECODERS - stop feeding the auxiliary decoders
+ * TRAFFIC_CHANNELS - refuse new traffic channels for low priority calls
+ * RECORDING - stop recording do not monitor talkgroups
+ * 
+ * A lagging control channel sheds every level at once.  Each level is restored,
+ * again one at a time, once all chains have stayed caught up for the recovery
+ * interval.
+ * 
+ * Settings (application properties):
+ * 
+ * overload.control.enabled - enables overload control (default false)
+ * overload.queue.high - chain queue depth in buffers that indicates overload (16)
+ * overload.queue.low - chain queue depth in buffers that counts toward 
+ *   recovery (4)
+ * overload.recovery.interval - seconds at or below the low queue depth before
+ *   a shed level is restored (10)
+ * overload.traffic.priority - while shedding traffic channels, calls with a
+ *   priority value above this (lower priority) are refused a traffic 
+ *   channel (50)
+ */
+public class OverloadController
+{
+	private final static Logger mLog = 
+			LoggerFactory.getLogger( OverloadController.class );
+
+	public static final String ENABLED_PROPERTY = "overload.control.enabled";
+	public static final String QUEUE_HIGH_PROPERTY = "overload.queue.high";
+	public static final String QUEUE_LOW_PROPERTY = "overload.queue.low";
+	public static final String RECOVERY_INTERVAL_PROPERTY = "overload.recovery.interval";
+	public static final String TRAFFIC_PRIORITY_PROPERTY = "overload.traffic.priority";
+
+	/**
+	 * Shed levels, in the order that they are applied.  Each level includes
+	 * all of the preceding levels.
+	 */
+	public enum ShedLevel
+	{
+		NONE,
+		DISPLAY,
+		AUXILIARY_DECODERS,
+		TRAFFIC_CHANNELS,
+		RECORDING;
+	}
+
+	private static OverloadController sInstance;
+
+	private boolean mEnabled;
+	private int mQueueHigh;
+	private int mQueueLow;
+	private int mRecoveryInterval;
+	private int mTrafficPriority;
+
+	private volatile ShedLevel mShedLevel = ShedLevel.NONE;
+	private Map<ProcessingChain,Long> mChains = new ConcurrentHashMap<>();
+	private int mRecoveryCount;
+
+	private ThreadPoolManager mThreadPoolManager;
+	private ScheduledFuture<?> mMonitorTask;
+
+	/**
+	 * Constructs a controller.
+	 * 
+	 * @param enabled - enables overload control
+	 * @param queueHigh - chain queue depth that indicates overload
+	 * @param queueLow - chain queue depth that counts toward recovery
+	 * @param recoveryInterval - seconds of recovery before restoring a level
+	 * @param trafficPriority - lowest call priority (highest value) that is
+	 * given a traffic channel while shedding traffic channels
+	 */
+	public OverloadController( boolean enabled, int queueHigh, int queueLow,
+			int recoveryInterval, int trafficPriority )
+	{
+		mEnabled = enabled;
+		mQueueHigh = Math.max( 1, queueHigh );
+		mQueueLow = Math.min( Math.max( 0, queueLow ), mQueueHigh - 1 );
+		mRecoveryInterval = Math.max( 1, recoveryInterval );
+		mTrafficPriority = trafficPriority;
+	}
+
+	public static synchronized OverloadController getInstance()
+	{
+		if( sInstance == null )
+		{
+			SystemProperties properties = SystemProperties.getInstance();
+
+			sInstance = new OverloadController( 
+					properties.get( ENABLED_PROPERTY, false ),
+					properties.get( QUEUE_HIGH_PROPERTY, 16 ),
+					properties.get( QUEUE_LOW_PROPERTY, 4 ),
+					properties.get( RECOVERY_INTERVAL_PROPERTY, 10 ),
+					properties.get( TRAFFIC_PRIORITY_PROPERTY, 50 ) );
+		}
+
+		return sInstance;
+	}
+
+	public boolean isEnabled()
+	{
+		return mEnabled;
+	}
+
+	/**
+	 * Current shed level
+	 */
+	public ShedLevel getShedLevel()
+	{
+		return mShedLevel;
+	}
+
+	/**
+	 * Indicates if work at the shed level is currently being shed
+	 */
+	public boolean isShedding( ShedLevel level )
+	{
+		return mShedLevel.ordinal() >= level.ordinal();
+	}
+
+	/**
+	 * Indicates if a traffic channel should be refused for a call with the
+	 * priority value.  Lower values are higher priority.
+	 */
+	public boolean isRefused( int callPriority )
+	{
+		return isShedding( ShedLevel.TRAFFIC_CHANNELS ) && 
+			   callPriority > mTrafficPriority;
+	}
+
+	/**
+	 * Wraps the listener so that elements are discarded while work at the shed
+	 * level is being shed
+	 */
+	public <T> Listener<T> gate( final ShedLevel level, final Listener<T> listener )
+	{
+		return new Listener<T>()
+		{
+			@Override
+			public void receive( T t )
+			{
+				if( !isShedding( level ) )
+				{
+					listener.receive( t );
+				}
+			}
+		};
+	}
+
+	/**
+	 * Adds a running processing chain to the set of monitored chains
+	 */
+	public void register( ProcessingChain chain )
+	{
+		if( mEnabled )
+		{
+			mChains.put( chain, chain.getDroppedBufferCount() );
+		}
+	}
+
+	public void unregister( ProcessingChain chain )
+	{
+		mChains.remove( chain );
+	}
+
+	/**
+	 * Starts the once a second monitor task, when enabled
+	 */
+	public synchronized void start( ThreadPoolManager threadPoolManager )
+	{
+		if( mEnabled && mMonitorTask == null )
+		{
+			mThreadPoolManager = threadPoolManager;
+
+			mMonitorTask = mThreadPoolManager.scheduleFixedRate( ThreadType.DECODER,
+					new Runnable()
+			{
+				@Override
+				public void run()
+				{
+					try
+					{
+						evaluate();
+					}
+					catch( Exception e )
+					{
+						mLog.error( "Error during overload evaluation", e );
+					}
+				}
+			}, 1, TimeUnit.SECONDS );
+
+			mLog.info( "Overload control started - queue high [" + mQueueHigh + 
+				"] low [" + mQueueLow + "] recovery [" + mRecoveryInterval + 
+				"s] traffic priority [" + mTrafficPriority + "]" );
+		}
+	}
+
+	public synchronized void stop()
+	{
+		if( mMonitorTask != null )
+		{
+			mThreadPoolManager.cancel( mMonitorTask );
+			mMonitorTask = null;
+		}
+
+		setShedLevel( ShedLevel.NONE );
+	}
+
+	/**
+	 * Checks the lag of each chain and adjusts the shed level
+	 */
+	protected void evaluate()
+	{
+		boolean overloaded = false;
+		boolean controlChannelLagging = false;
+		int worstDepth = 0;
+
+		for( Map.Entry<ProcessingChain,Long> entry: mChains.entrySet() )
+		{
+			ProcessingChain chain = entry.getKey();
+
+			int depth = chain.getMaximumQueueDepth();
+			long dropped = chain.getDroppedBufferCount();
+			long previous = entry.setValue( dropped );
+
+			if( depth >= mQueueHigh || dropped > previous )
+			{
+				overloaded = true;
+
+				if( chain.isControlChannel() )
+				{
+					controlChannelLagging = true;
+				}
+			}
+
+			worstDepth = Math.max( worstDepth, depth );
+		}
+
+		ShedLevel[] levels = ShedLevel.values();
+
+		if( overloaded )
+		{
+			mRecoveryCount = 0;
+
+			if( controlChannelLagging )
+			{
+				setShedLevel( levels[ levels.length - 1 ] );
+			}
+			else if( mShedLevel.ordinal() < levels.length - 1 )
+			{
+				setShedLevel( levels[ mShedLevel.ordinal() + 1 ] );
+			}
+		}
+		else if( worstDepth <= mQueueLow && mShedLevel != ShedLevel.NONE )
+		{
+			if( ++mRecoveryCount >= mRecoveryInterval )
+			{
+				mRecoveryCount = 0;
+
+				setShedLevel( levels[ mShedLevel.ordinal() - 1 ] );
+			}
+		}
+		else
+		{
+			mRecoveryCount = 0;
+		}
+	}
+
+	private void setShedLevel( ShedLevel level )
+	{
+		if( mShedLevel != level )
+		{
+			mLog.info( "Overload shed level changed from [" + mShedLevel + 
+				"] to [" + level + "]" );
+
+			mShedLevel = level;
+		}
+	}
+}
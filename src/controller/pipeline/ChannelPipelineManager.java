@@ -0,0 +1,186 @@
+/*******************************************************************************
+ *     SDR Trunk 
+ *     Copyright (C) 2014-2016 Dennis Sheirer
+ * 
+ *     This program is free software: you can redistribute it and/or modify
+ *     it under the terms of the GNU General Public License as published by
+ *     the Free Software Foundation, either version 3 of the License, or
+ *     (at your option) any later version.
+ * 
+ *     This program is distributed in the hope that it will be useful,
+ *     but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *     MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *     GNU General Public License for more details.
+ * 
+ *     You should have received a copy of the GNU General Public License
+ *     along with this program.  If not, see <http://www.gnu.org/licenses/>
+ ******************************************************************************/
+package controller.pipeline;
+
+import java.util.concurrent.Executor;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import properties.SystemProperties;
+import sample.Listener;
+import source.tuner.TunerController;
+import buffer.SPSCRingBuffer.OverflowPolicy;
+import controller.NamingThreadFactory;
+
+/**
+ * Pipelined channel execution.  When enabled, processing chains don't create
+ * a thread per channel.  Instead, every channel runs on a single, bounded 
+ * pool of carrier threads and the stages of a channel (tuner channel source,
+ * demodulator and decoders) are linked with bounded hand-off queues.  Each 
+ * hand-off queue is drained by one carrier at a time, and only while it has
+ * buffers queued, so idle channels don't occupy (or poll on) a thread.
+ * 
+ * Settings (application properties):
+ * 
+ * channel.pipeline.enabled - enables pipelined channel execution (default false)
+ * channel.pipeline.threads - carrier threads shared by all channels (default
+ *   the number of available processors)
+ * channel.pipeline.queue.size - buffers held by each hand-off queue, rounded
+ *   up to a power of 2 (default sample.buffer.capacity, or 64)
+ * sample.buffer.overflow.policy - buffer dropped when a hand-off queue is 
+ *   full, DROP_OLDEST (default) or DROP_NEWEST.  BLOCK is treated as 
+ *   DROP_OLDEST, since a carrier thread must never wait on another stage.
+ */
+public class ChannelPipelineManager
+{
+	private final static Logger mLog = 
+			LoggerFactory.getLogger( ChannelPipelineManager.class );
+
+	public static final String ENABLED_PROPERTY = "channel.pipeline.enabled";
+	public static final String THREADS_PROPERTY = "channel.pipeline.threads";
+	public static final String QUEUE_SIZE_PROPERTY = "channel.pipeline.queue.size";
+
+	private static ChannelPipelineManager sInstance;
+
+	private boolean mEnabled;
+	private int mThreads;
+	private int mQueueSize;
+	private OverflowPolicy mOverflowPolicy;
+	private ScheduledThreadPoolExecutor mExecutor;
+
+	/**
+	 * Constructs a manager.
+	 * 
+	 * @param enabled - enables pipelined channel execution
+	 * @param threads - number of carrier threads
+	 * @param queueSize - capacity of each hand-off queue
+	 * @param overflowPolicy - hand-off queue overflow policy
+	 */
+	public ChannelPipelineManager( boolean enabled, int threads, int queueSize,
+			OverflowPolicy overflowPolicy )
+	{
+		mEnabled = enabled;
+		mThreads = Math.max( 1, threads );
+		mQueueSize = Math.max( 1, queueSize );
+
+		if( overflowPolicy == OverflowPolicy.BLOCK )
+		{
+			mLog.warn( "Sample buffer overflow policy BLOCK isn't supported by "
+					+ "the channel pipeline hand-off queues - using DROP_OLDEST" );
+
+			overflowPolicy = OverflowPolicy.DROP_OLDEST;
+		}
+
+		mOverflowPolicy = overflowPolicy;
+	}
+
+	public static synchronized ChannelPipelineManager getInstance()
+	{
+		if( sInstance == null )
+		{
+			SystemProperties properties = SystemProperties.getInstance();
+
+			sInstance = new ChannelPipelineManager( 
+					properties.get( ENABLED_PROPERTY, false ),
+					properties.get( THREADS_PROPERTY, 
+							Runtime.getRuntime().availableProcessors() ),
+					properties.get( QUEUE_SIZE_PROPERTY, properties.get( 
+						TunerController.SAMPLE_BUFFER_CAPACITY_PROPERTY, 
+						TunerController.DEFAULT_SAMPLE_BUFFER_CAPACITY ) ),
+					TunerController.getSampleBufferOverflowPolicy() );
+		}
+
+		return sInstance;
+	}
+
+	/**
+	 * Indicates if pipelined channel execution is enabled
+	 */
+	public boolean isEnabled()
+	{
+		return mEnabled;
+	}
+
+	/**
+	 * Capacity of each hand-off queue
+	 */
+	public int getQueueSize()
+	{
+		return mQueueSize;
+	}
+
+	/**
+	 * Carrier thread pool shared by all channels, created on first use.
+	 * Modules that schedule periodic tasks on this executor must cancel the
+	 * tasks when they are stopped.
+	 */
+	public synchronized ScheduledExecutorService getExecutor()
+	{
+		if( mExecutor == null )
+		{
+			mExecutor = new ScheduledThreadPoolExecutor( mThreads, 
+					new NamingThreadFactory( "channel pipeline" ) );
+			mExecutor.setRemoveOnCancelPolicy( true );
+			mExecutor.prestartAllCoreThreads();
+
+			mLog.info( "Started channel pipeline carrier threads [" + mThreads + 
+					"] hand-off queue size [" + mQueueSize + "] overflow policy [" + 
+					mOverflowPolicy + "]" );
+		}
+
+		return mExecutor;
+	}
+
+	/**
+	 * Creates a hand-off queue that delivers to the listener on the executor,
+	 * either a channel's serial executor, the carrier threads or a tuner 
+	 * worker.  The queue must be started before
+	 * it accepts buffers.
+	 */
+	public <T> HandOffQueue<T> createHandOffQueue( Executor executor, 
+			Listener<T> listener )
+	{
+		return new HandOffQueue<T>( executor, mQueueSize, mOverflowPolicy, listener );
+	}
+
+	/**
+	 * Creates an executor that runs its tasks one at a time on the carrier 
+	 * threads, or on a tuner worker with tuner affinity scheduling.  Each channel uses one for its hand-off drains and module 
+	 * timers so that the channel's modules never run concurrently, while 
+	 * separate channels still run in parallel.
+	 */
+	public SerialExecutor createSerialExecutor()
+	{
+		return new SerialExecutor( getExecutor(), mQueueSize );
+	}
+
+	/**
+	 * Stops the carrier threads
+	 */
+	public synchronized void shutdown()
+	{
+		if( mExecutor != null )
+		{
+			mExecutor.shutdownNow();
+			mExecutor = null;
+		}
+	}
+}
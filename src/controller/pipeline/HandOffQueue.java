@@ -0,0 +1,227 @@
+/*******************************************************************************
+ *     SDR Trunk 
+ *     Copyright (C) 2014-2016 Dennis Sheirer
+ * 
+ *     This program is free software: you can redistribute it and/or modify
+ *     it under the terms of the GNU General Public License as published by
+ *     the Free Software Foundation, either version 3 of the License, or
+ *     (at your option) any later version.
+ * 
+ *     This program is distributed in the hope that it will be useful,
+ *     but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *     MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *     GNU General Public License for more details.
+ * 
+ *     You should have received a copy of the GNU General Public License
+ *     along with this program.  If not, see <http://www.gnu.org/licenses/>
+ ******************************************************************************/
+package controller.pipeline;
+
+import java.util.concurrent.Executor;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import sample.Listener;
+import buffer.SPSCRingBuffer;
+import buffer.SPSCRingBuffer.OverflowPolicy;
+import instrument.metrics.StageMetrics;
+
+/**
+ * Bounded hand-off between two stages of a channel.  The producing stage
+ * queues elements via receive() and never blocks.  A drain task is submitted
+ * to the executor only when the queue goes from idle to non-empty, so the
+ * consuming stage runs on a carrier thread one element at a time, in order,
+ * and never on more than one carrier at once.  The drain task yields its 
+ * carrier after a full queue's worth of elements so that a busy channel 
+ * can't starve the other channels sharing the carriers.
+ * 
+ * Elements are queued in a single-producer ring buffer, so only one thread 
+ * may deliver elements to the queue at a time.  When the queue is full, the 
+ * oldest or the newly arriving element is dropped, per the overflow policy,
+ * and counted.  The BLOCK policy isn't supported, since the producing stage
+ * can run on the same serial executor as the consuming stage and would wait
+ * forever.
+ */
+public class HandOffQueue<T> implements Listener<T>
+{
+	private final static Logger mLog = LoggerFactory.getLogger( HandOffQueue.class );
+
+	private SPSCRingBuffer<T> mQueue;
+	private Executor mExecutor;
+	private Listener<T> mListener;
+	private StageMetrics mMetrics;
+	private int mCapacity;
+
+	private AtomicBoolean mRunning = new AtomicBoolean();
+	private AtomicBoolean mScheduled = new AtomicBoolean();
+
+	private Runnable mDrainTask = new Runnable()
+	{
+		@Override
+		public void run()
+		{
+			drain();
+		}
+	};
+
+	/**
+	 * Constructs a hand-off queue
+	 * 
+	 * @param executor - carrier threads for the consuming stage
+	 * @param capacity - maximum number of queued elements, rounded up to the
+	 * next power of 2
+	 * @param overflowPolicy - DROP_OLDEST or DROP_NEWEST
+	 * @param listener - consuming stage
+	 * 
+	 * @throws IllegalArgumentException for the BLOCK overflow policy
+	 */
+	public HandOffQueue( Executor executor, int capacity, 
+			OverflowPolicy overflowPolicy, Listener<T> listener )
+	{
+		if( overflowPolicy == OverflowPolicy.BLOCK )
+		{
+			throw new IllegalArgumentException( "Hand-off queues can't block "
+					+ "the producing stage" );
+		}
+
+		mExecutor = executor;
+		mQueue = new SPSCRingBuffer<>( capacity, overflowPolicy );
+		mCapacity = mQueue.getCapacity();
+		mListener = listener;
+	}
+
+	/**
+	 * Sets the metrics that track the queue depth and dropped elements
+	 */
+	public void setMetrics( StageMetrics metrics )
+	{
+		mMetrics = metrics;
+	}
+
+	public void start()
+	{
+		mRunning.set( true );
+	}
+
+	/**
+	 * Stops delivery and discards any queued elements.  A drain task that is
+	 * currently delivering an element finishes that element.
+	 */
+	public void stop()
+	{
+		mRunning.set( false );
+		mQueue.clear();
+	}
+
+	public boolean isRunning()
+	{
+		return mRunning.get();
+	}
+
+	/**
+	 * Number of elements waiting to be delivered
+	 */
+	public int size()
+	{
+		return mQueue.size();
+	}
+
+	/**
+	 * Number of elements dropped because the queue was full
+	 */
+	public long getDroppedCount()
+	{
+		return mQueue.getDroppedCount();
+	}
+
+	public OverflowPolicy getOverflowPolicy()
+	{
+		return mQueue.getOverflowPolicy();
+	}
+
+	@Override
+	public void receive( T element )
+	{
+		if( mRunning.get() )
+		{
+			StageMetrics metrics = mMetrics;
+
+			/* An element is dropped when the offer fails, either the new 
+			 * element (drop newest) or the oldest queued element (drop 
+			 * oldest), in which case the new element is still queued */
+			if( !mQueue.offer( element ) && metrics != null )
+			{
+				metrics.dropped( 1 );
+			}
+
+			if( metrics != null )
+			{
+				metrics.setQueueDepth( mQueue.size() );
+			}
+
+			schedule();
+		}
+	}
+
+	/**
+	 * Submits the drain task unless it is already submitted or running
+	 */
+	private void schedule()
+	{
+		if( mScheduled.compareAndSet( false, true ) )
+		{
+			try
+			{
+				mExecutor.execute( mDrainTask );
+			}
+			catch( RejectedExecutionException ree )
+			{
+				mScheduled.set( false );
+				mQueue.clear();
+			}
+		}
+	}
+
+	/**
+	 * Delivers up to one queue's worth of elements and then releases the
+	 * carrier, resubmitting itself if more elements arrived meanwhile
+	 */
+	private void drain()
+	{
+		int count = 0;
+
+		T element;
+
+		while( count++ < mCapacity && mRunning.get() && 
+			   ( element = mQueue.poll() ) != null )
+		{
+			try
+			{
+				mListener.receive( element );
+			}
+			catch( Exception e )
+			{
+				mLog.error( "Error while processing hand-off queue element", e );
+			}
+		}
+
+		StageMetrics metrics = mMetrics;
+
+		if( metrics != null )
+		{
+			metrics.setQueueDepth( mQueue.size() );
+		}
+
+		mScheduled.set( false );
+
+		/* Elements that arrived after the last poll and before the flag was
+		 * cleared would otherwise be stranded */
+		if( mRunning.get() && !mQueue.isEmpty() )
+		{
+			schedule();
+		}
+	}
+}
@@ -0,0 +1,436 @@
+/*******************************************************************************
+ *     SDR Trunk 
+ *     Copyright (C) 2014-2016 Dennis Sheirer
+ * 
+ *     This program is free software: you can redistribute it and/or modify
+ *     it under the terms of the GNU General Public License as published by
+ *     the Free Software Foundation, either version 3 of the License, or
+ *     (at your option) any later version.
+ * 
+ *     This program is distributed in the hope that it will be useful,
+ *     but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *     MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *     GNU General Public License for more details.
+ * 
+ *     You should have received a copy of the GNU General Public License
+ *     along with this program.  If not, see <http://www.gnu.org/licenses/>
+ ******************************************************************************/
+package controller.pipeline;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.AbstractExecutorService;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.Delayed;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Serial executor on the shared carrier threads.  Tasks submitted to this 
+ * executor, including scheduled and periodic tasks, run one at a time and in
+ * submission order, on whichever carrier thread is available, so that the 
+ * tasks of a single channel never run concurrently and don't need to be 
+ * thread safe with respect to each other.
+ * 
+ * Like the hand-off queue, a drain task is submitted to the carriers only
+ * when the executor goes from idle to busy, and the drain task yields its 
+ * carrier after a batch of tasks.
+ * 
+ * Scheduled tasks are timed by the carrier executor and queued on this 
+ * executor when they are due.  A periodic task that is still queued when it
+ * is due again is not queued a second time.
+ */
+public class SerialExecutor extends AbstractExecutorService 
+							implements ScheduledExecutorService
+{
+	private final static Logger mLog = LoggerFactory.getLogger( SerialExecutor.class );
+
+	private volatile ScheduledExecutorService mCarrier;
+	private int mBatchSize;
+
+	private ConcurrentLinkedQueue<Runnable> mTasks = new ConcurrentLinkedQueue<>();
+	private AtomicBoolean mScheduled = new AtomicBoolean();
+	private volatile boolean mShutdown;
+
+	/* Scheduled task timers, cancelled on shutdown */
+	private Set<Future<?>> mTimers = 
+			Collections.newSetFromMap( new ConcurrentHashMap<Future<?>,Boolean>() );
+
+	private Runnable mDrainTask = new Runnable()
+	{
+		@Override
+		public void run()
+		{
+			drain();
+		}
+	};
+
+	/**
+	 * Constructs a serial executor
+	 * 
+	 * @param carrier - carrier threads that run the tasks
+	 * @param batchSize - tasks to run before yielding the carrier thread
+	 */
+	public SerialExecutor( ScheduledExecutorService carrier, int batchSize )
+	{
+		mCarrier = carrier;
+		mBatchSize = Math.max( 1, batchSize );
+	}
+
+	/**
+	 * Changes the carrier threads used for subsequent drains and scheduled
+	 * tasks.  Tasks still run one at a time.  Scheduled tasks keep their 
+	 * timers on the previous carrier, so change the carrier while there are
+	 * no scheduled tasks, e.g. before the owner is started.
+	 */
+	public void setCarrier( ScheduledExecutorService carrier )
+	{
+		mCarrier = carrier;
+	}
+
+	@Override
+	public void execute( Runnable command )
+	{
+		if( mShutdown )
+		{
+			throw new RejectedExecutionException( "Serial executor is shut down" );
+		}
+
+		mTasks.offer( command );
+
+		schedule();
+	}
+
+	/**
+	 * Submits the drain task unless it is already submitted or running
+	 */
+	private void schedule()
+	{
+		if( mScheduled.compareAndSet( false, true ) )
+		{
+			try
+			{
+				mCarrier.execute( mDrainTask );
+			}
+			catch( RejectedExecutionException ree )
+			{
+				mScheduled.set( false );
+				mTasks.clear();
+			}
+		}
+	}
+
+	/**
+	 * Runs up to a batch of tasks and then releases the carrier, resubmitting
+	 * itself if more tasks are queued
+	 */
+	private void drain()
+	{
+		int count = 0;
+
+		Runnable task;
+
+		while( count++ < mBatchSize && ( task = mTasks.poll() ) != null )
+		{
+			try
+			{
+				task.run();
+			}
+			catch( Exception e )
+			{
+				mLog.error( "Error while running serial executor task", e );
+			}
+		}
+
+		mScheduled.set( false );
+
+		/* Tasks that arrived after the last poll and before the flag was
+		 * cleared would otherwise be stranded */
+		if( !mTasks.isEmpty() )
+		{
+			schedule();
+		}
+	}
+
+	/**
+	 * Tracks the timer so that it is cancelled on shutdown, and forgets 
+	 * timers that have completed or were cancelled
+	 */
+	private <F extends Future<?>> F track( F timer )
+	{
+		Iterator<Future<?>> it = mTimers.iterator();
+
+		while( it.hasNext() )
+		{
+			if( it.next().isDone() )
+			{
+				it.remove();
+			}
+		}
+
+		mTimers.add( timer );
+
+		return timer;
+	}
+
+	@Override
+	public ScheduledFuture<?> schedule( Runnable command, long delay, TimeUnit unit )
+	{
+		return schedule( new FutureTask<Void>( command, null ), delay, unit );
+	}
+
+	@Override
+	public <V> ScheduledFuture<V> schedule( Callable<V> callable, long delay, 
+			TimeUnit unit )
+	{
+		return schedule( new FutureTask<V>( callable ), delay, unit );
+	}
+
+	private <V> ScheduledFuture<V> schedule( FutureTask<V> task, long delay, 
+			TimeUnit unit )
+	{
+		checkShutdown();
+
+		Trigger trigger = new Trigger( task );
+
+		ScheduledFuture<?> timer = track( mCarrier.schedule( trigger, delay, unit ) );
+
+		return new SerialFuture<V>( timer, task );
+	}
+
+	@Override
+	public ScheduledFuture<?> scheduleAtFixedRate( Runnable command, 
+			long initialDelay, long period, TimeUnit unit )
+	{
+		checkShutdown();
+
+		Trigger trigger = new Trigger( command );
+
+		ScheduledFuture<?> timer = track( mCarrier.scheduleAtFixedRate( trigger, 
+				initialDelay, period, unit ) );
+
+		trigger.setTimer( timer );
+
+		return timer;
+	}
+
+	@Override
+	public ScheduledFuture<?> scheduleWithFixedDelay( Runnable command, 
+			long initialDelay, long delay, TimeUnit unit )
+	{
+		checkShutdown();
+
+		Trigger trigger = new Trigger( command );
+
+		ScheduledFuture<?> timer = track( mCarrier.scheduleWithFixedDelay( trigger, 
+				initialDelay, delay, unit ) );
+
+		trigger.setTimer( timer );
+
+		return timer;
+	}
+
+	private void checkShutdown()
+	{
+		if( mShutdown )
+		{
+			throw new RejectedExecutionException( "Serial executor is shut down" );
+		}
+	}
+
+	/**
+	 * Cancels the scheduled tasks and rejects new tasks.  Queued tasks still
+	 * run.
+	 */
+	@Override
+	public void shutdown()
+	{
+		mShutdown = true;
+
+		for( Future<?> timer: mTimers )
+		{
+			timer.cancel( false );
+		}
+
+		mTimers.clear();
+	}
+
+	@Override
+	public List<Runnable> shutdownNow()
+	{
+		shutdown();
+
+		List<Runnable> tasks = new ArrayList<>();
+
+		Runnable task;
+
+		while( ( task = mTasks.poll() ) != null )
+		{
+			tasks.add( task );
+		}
+
+		return tasks;
+	}
+
+	@Override
+	public boolean isShutdown()
+	{
+		return mShutdown;
+	}
+
+	@Override
+	public boolean isTerminated()
+	{
+		return mShutdown && mTasks.isEmpty() && !mScheduled.get();
+	}
+
+	@Override
+	public boolean awaitTermination( long timeout, TimeUnit unit )
+			throws InterruptedException
+	{
+		long deadline = System.nanoTime() + unit.toNanos( timeout );
+
+		while( !isTerminated() )
+		{
+			if( System.nanoTime() >= deadline )
+			{
+				return false;
+			}
+
+			Thread.sleep( 1 );
+		}
+
+		return true;
+	}
+
+	/**
+	 * Runs on the carrier's timer when a scheduled task is due and queues the
+	 * task on this executor, unless the previous run is still queued
+	 */
+	private class Trigger implements Runnable
+	{
+		private Runnable mCommand;
+		private volatile Future<?> mTimer;
+		private AtomicBoolean mQueued = new AtomicBoolean();
+
+		private Runnable mRun = new Runnable()
+		{
+			@Override
+			public void run()
+			{
+				mQueued.set( false );
+
+				Future<?> timer = mTimer;
+
+				/* Don't run a periodic task that was cancelled while queued */
+				if( timer == null || !timer.isCancelled() )
+				{
+					mCommand.run();
+				}
+			}
+		};
+
+		public Trigger( Runnable command )
+		{
+			mCommand = command;
+		}
+
+		public void setTimer( Future<?> timer )
+		{
+			mTimer = timer;
+		}
+
+		@Override
+		public void run()
+		{
+			if( !mShutdown && mQueued.compareAndSet( false, true ) )
+			{
+				try
+				{
+					execute( mRun );
+				}
+				catch( RejectedExecutionException ree )
+				{
+					mQueued.set( false );
+				}
+			}
+		}
+	}
+
+	/**
+	 * Future for a one-shot scheduled task.  Timing comes from the carrier's
+	 * timer and completion from the task.
+	 */
+	private static class SerialFuture<V> implements ScheduledFuture<V>
+	{
+		private ScheduledFuture<?> mTimer;
+		private FutureTask<V> mTask;
+
+		public SerialFuture( ScheduledFuture<?> timer, FutureTask<V> task )
+		{
+			mTimer = timer;
+			mTask = task;
+		}
+
+		@Override
+		public long getDelay( TimeUnit unit )
+		{
+			return mTimer.getDelay( unit );
+		}
+
+		@Override
+		public int compareTo( Delayed other )
+		{
+			return Long.compare( getDelay( TimeUnit.NANOSECONDS ), 
+					other.getDelay( TimeUnit.NANOSECONDS ) );
+		}
+
+		@Override
+		public boolean cancel( boolean mayInterruptIfRunning )
+		{
+			mTimer.cancel( false );
+
+			return mTask.cancel( mayInterruptIfRunning );
+		}
+
+		@Override
+		public boolean isCancelled()
+		{
+			return mTask.isCancelled();
+		}
+
+		@Override
+		public boolean isDone()
+		{
+			return mTask.isDone();
+		}
+
+		@Override
+		public V get() throws InterruptedException, ExecutionException
+		{
+			return mTask.get();
+		}
+
+		@Override
+		public V get( long timeout, TimeUnit unit ) throws InterruptedException, 
+				ExecutionException, TimeoutException
+		{
+			return mTask.get( timeout, unit );
+		}
+	}
+}
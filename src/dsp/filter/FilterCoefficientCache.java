@@ -0,0 +1,359 @@
+/*******************************************************************************
+ *     SDR Trunk 
+ *     Copyright (C) 2014-2016 Dennis Sheirer
+ * 
+ *     This program is free software: you can redistribute it and/or modify
+ *     it under the terms of the GNU General Public License as published by
+ *     the Free Software Foundation, either version 3 of the License, or
+ *     (at your option) any later version.
+ * 
+ *     This program is distributed in the hope that it will be useful,
+ *     but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *     MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *     GNU General Public License for more details.
+ * 
+ *     You should have received a copy of the GNU General Public License
+ *     along with this program.  If not, see <http://www.gnu.org/licenses/>
+ ******************************************************************************/
+package dsp.filter;
+
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayInputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import properties.SystemProperties;
+
+/**
+ * Cache of designed filter coefficients, keyed by a string that describes the
+ * complete filter specification (design method, sample rate, pass/stop 
+ * frequencies, attenuation or ripple, length and window).  Identical filters
+ * are designed once and each request receives its own copy of the cached 
+ * coefficients, so callers are free to modify the returned array.
+ * 
+ * When enabled (filter.cache.persist), newly designed filters are appended to
+ * a cache file in the application's cache folder and the file is loaded on
+ * first use, so that each filter is designed once per installation rather
+ * than once per channel start.  The file is versioned and is discarded when
+ * the version changes, so changes to a design algorithm must increment the
+ * CACHE_VERSION value.
+ */
+public class FilterCoefficientCache
+{
+	private final static Logger mLog = 
+			LoggerFactory.getLogger( FilterCoefficientCache.class );
+
+	public static final String PERSIST_PROPERTY = "filter.cache.persist";
+	public static final String CACHE_FOLDER = "cache";
+	public static final String CACHE_FILE_NAME = "filter_coefficients.bin";
+
+	private static final int CACHE_MAGIC = 0x46434346; //FCCF
+	private static final int CACHE_VERSION = 1;
+
+	/* Sanity limit for coefficient array length read from the cache file */
+	private static final int MAXIMUM_LENGTH = 1 << 20;
+
+	private static FilterCoefficientCache sInstance;
+
+	private Map<String,float[]> mCoefficients = new ConcurrentHashMap<>();
+	private Path mCachePath;
+	private AtomicLong mHitCount = new AtomicLong();
+	private AtomicLong mMissCount = new AtomicLong();
+
+	/**
+	 * Constructs a cache.
+	 * 
+	 * @param cachePath - file to load from and append new designs to, or null
+	 * for a memory-only cache
+	 */
+	public FilterCoefficientCache( Path cachePath )
+	{
+		mCachePath = cachePath;
+
+		if( mCachePath != null )
+		{
+			load();
+		}
+	}
+
+	/**
+	 * Shared cache instance, persisted to the application cache folder unless
+	 * persistence is disabled via the filter.cache.persist system property.
+	 */
+	public static synchronized FilterCoefficientCache getInstance()
+	{
+		if( sInstance == null )
+		{
+			Path path = null;
+
+			try
+			{
+				SystemProperties props = SystemProperties.getInstance();
+
+				if( props.get( PERSIST_PROPERTY, true ) )
+				{
+					path = props.getApplicationFolder( CACHE_FOLDER )
+							.resolve( CACHE_FILE_NAME );
+				}
+			}
+			catch( Exception e )
+			{
+				mLog.error( "Couldn't determine filter cache location - "
+						+ "using a memory-only filter cache", e );
+			}
+
+			sInstance = new FilterCoefficientCache( path );
+		}
+
+		return sInstance;
+	}
+
+	/**
+	 * Builds a cache key from the design method name and each of the design
+	 * parameters.
+	 */
+	public static String getKey( String method, Object... parameters )
+	{
+		StringBuilder sb = new StringBuilder();
+
+		sb.append( method );
+
+		for( Object parameter: parameters )
+		{
+			sb.append( ":" );
+			sb.append( parameter );
+		}
+
+		return sb.toString();
+	}
+
+	/**
+	 * Returns a copy of the cached coefficients for the key, or null if the
+	 * filter has not been designed.
+	 */
+	public float[] get( String key )
+	{
+		float[] coefficients = mCoefficients.get( key );
+
+		if( coefficients == null )
+		{
+			mMissCount.incrementAndGet();
+
+			return null;
+		}
+
+		mHitCount.incrementAndGet();
+
+		return coefficients.clone();
+	}
+
+	/**
+	 * Adds a copy of the designed coefficients to the cache and appends the
+	 * entry to the cache file.
+	 */
+	public void put( String key, float[] coefficients )
+	{
+		if( mCoefficients.putIfAbsent( key, coefficients.clone() ) == null &&
+			mCachePath != null )
+		{
+			append( key, coefficients );
+		}
+	}
+
+	public long getHitCount()
+	{
+		return mHitCount.get();
+	}
+
+	public long getMissCount()
+	{
+		return mMissCount.get();
+	}
+
+	public int size()
+	{
+		return mCoefficients.size();
+	}
+
+	/**
+	 * Removes all cached designs from memory and deletes the cache file
+	 */
+	public synchronized void clear()
+	{
+		mCoefficients.clear();
+
+		if( mCachePath != null )
+		{
+			try
+			{
+				Files.deleteIfExists( mCachePath );
+			}
+			catch( IOException ioe )
+			{
+				mLog.error( "Couldn't delete filter cache file [" + 
+						mCachePath.toString() + "]", ioe );
+			}
+		}
+	}
+
+	/**
+	 * Loads the cache file entries.  An incomplete entry at the end of the 
+	 * file, from an interrupted append, is truncated so that later entries are
+	 * appended after the last complete entry.  A file with the wrong version 
+	 * or invalid content is deleted.
+	 */
+	private synchronized void load()
+	{
+		if( !Files.exists( mCachePath ) )
+		{
+			return;
+		}
+
+		boolean valid = true;
+		long validLength = 0;
+		long fileLength = 0;
+
+		try
+		{
+			byte[] bytes = Files.readAllBytes( mCachePath );
+
+			fileLength = bytes.length;
+
+			ByteArrayInputStream bais = new ByteArrayInputStream( bytes );
+			DataInputStream in = new DataInputStream( bais );
+
+			if( in.readInt() != CACHE_MAGIC || in.readInt() != CACHE_VERSION )
+			{
+				valid = false;
+			}
+
+			while( valid && bais.available() > 0 )
+			{
+				validLength = fileLength - bais.available();
+
+				String key = in.readUTF();
+				int length = in.readInt();
+
+				if( length < 0 || length > MAXIMUM_LENGTH )
+				{
+					valid = false;
+					break;
+				}
+
+				float[] coefficients = new float[ length ];
+
+				for( int x = 0; x < length; x++ )
+				{
+					coefficients[ x ] = in.readFloat();
+				}
+
+				mCoefficients.put( key, coefficients );
+			}
+
+			validLength = fileLength - bais.available();
+		}
+		catch( EOFException eof )
+		{
+			/* Incomplete header or entry - truncate to the last good entry */
+			if( validLength == 0 )
+			{
+				valid = false;
+			}
+		}
+		catch( IOException ioe )
+		{
+			mLog.error( "Error reading filter cache file [" + 
+					mCachePath.toString() + "]", ioe );
+
+			valid = false;
+		}
+
+		try
+		{
+			if( !valid )
+			{
+				mLog.info( "Discarding filter cache file [" + 
+						mCachePath.toString() + "]" );
+
+				mCoefficients.clear();
+
+				Files.deleteIfExists( mCachePath );
+			}
+			else
+			{
+				if( validLength < fileLength )
+				{
+					try( FileChannel channel = FileChannel.open( mCachePath, 
+							StandardOpenOption.WRITE ) )
+					{
+						channel.truncate( validLength );
+					}
+				}
+
+				mLog.debug( "Loaded [" + mCoefficients.size() + "] filter "
+						+ "designs from the filter cache" );
+			}
+		}
+		catch( IOException ioe )
+		{
+			mLog.error( "Couldn't repair filter cache file [" + 
+					mCachePath.toString() + "] - filter designs will not be "
+					+ "persisted", ioe );
+
+			mCachePath = null;
+		}
+	}
+
+	/**
+	 * Appends the entry to the cache file, creating the file with a header
+	 * if it doesn't exist.  Persistence is disabled after a write error.
+	 */
+	private synchronized void append( String key, float[] coefficients )
+	{
+		if( mCachePath == null )
+		{
+			return;
+		}
+
+		boolean create = !Files.exists( mCachePath );
+
+		try( DataOutputStream out = new DataOutputStream( new BufferedOutputStream( 
+				Files.newOutputStream( mCachePath, StandardOpenOption.CREATE, 
+						StandardOpenOption.APPEND ) ) ) )
+		{
+			if( create )
+			{
+				out.writeInt( CACHE_MAGIC );
+				out.writeInt( CACHE_VERSION );
+			}
+
+			out.writeUTF( key );
+			out.writeInt( coefficients.length );
+
+			for( float coefficient: coefficients )
+			{
+				out.writeFloat( coefficient );
+			}
+		}
+		catch( IOException ioe )
+		{
+			mLog.error( "Error writing filter cache file [" + 
+					mCachePath.toString() + "] - filter designs will no "
+					+ "longer be persisted", ioe );
+
+			mCachePath = null;
+		}
+	}
+}
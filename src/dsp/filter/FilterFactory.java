@@ -201,6 +201,7 @@ public class FilterFactory
 	/**
 	 * Generates filter coefficients for a unity-gain, odd-length, windowed,
 	 * low pass filter with passband from 0-hertz to the cutoff frequency.
+	 * Designs are cached by FilterCoefficientCache.
 	 * 
 	 * @param sampleRate - hertz
 	 * @param cutoff - frequency in hertz
@@ -212,6 +213,26 @@ public class FilterFactory
 									  long cutoff, 
 									  int filterLength, 
 									  WindowType windowType )
+	{
+		String key = FilterCoefficientCache.getKey( "lowpass", sampleRate, 
+				cutoff, filterLength, windowType );
+
+		float[] coefficients = FilterCoefficientCache.getInstance().get( key );
+
+		if( coefficients == null )
+		{
+			coefficients = designLowPass( sampleRate, cutoff, filterLength, windowType );
+
+			FilterCoefficientCache.getInstance().put( key, coefficients );
+		}
+
+		return coefficients;
+	}
+
+	private static float[] designLowPass( int sampleRate, 
+										  long cutoff, 
+										  int filterLength, 
+										  WindowType windowType )
 	{
 		if( filterLength % 2 == 0 ) //even length
 		{
@@ -291,15 +312,27 @@ public class FilterFactory
 									   int filterLength, 
 									   WindowType windowType )
 	{
-		//Convert the high frequency cutoff to its low frequency cutoff 
-		//equivalent, so that when we generate the low pass filter, prior to 
-		//inversion, its at the correct frequency
-		long convertedCutoff = sampleRate / 2 - cutoff;
-		
-		return invert( getSinc( sampleRate, 
-								convertedCutoff, 
-								filterLength, 
-								windowType ) );
+		String key = FilterCoefficientCache.getKey( "highpass", sampleRate, 
+				cutoff, filterLength, windowType );
+
+		float[] coefficients = FilterCoefficientCache.getInstance().get( key );
+
+		if( coefficients == null )
+		{
+			//Convert the high frequency cutoff to its low frequency cutoff 
+			//equivalent, so that when we generate the low pass filter, prior to 
+			//inversion, its at the correct frequency
+			long convertedCutoff = sampleRate / 2 - cutoff;
+			
+			coefficients = invert( getSinc( sampleRate, 
+											convertedCutoff, 
+											filterLength, 
+											windowType ) );
+
+			FilterCoefficientCache.getInstance().put( key, coefficients );
+		}
+
+		return coefficients;
 	}
 	
 	public static float[] getHighPass( int sampleRate,
@@ -576,6 +609,27 @@ public class FilterFactory
 											   int passFrequency,
 											   int attenuation,
 											   WindowType window )
+	{
+		String key = FilterCoefficientCache.getKey( "cic_cleanup", 
+				outputSampleRate, passFrequency, attenuation, window );
+
+		float[] coefficients = FilterCoefficientCache.getInstance().get( key );
+
+		if( coefficients == null )
+		{
+			coefficients = designCICCleanupFilter( outputSampleRate, 
+					passFrequency, attenuation, window );
+
+			FilterCoefficientCache.getInstance().put( key, coefficients );
+		}
+
+		return coefficients;
+	}
+
+	private static float[] designCICCleanupFilter( int outputSampleRate, 
+												   int passFrequency,
+												   int attenuation,
+												   WindowType window )
 	{
 		int taps = getTapCount( outputSampleRate, passFrequency, passFrequency + 1500, 
 				attenuation );
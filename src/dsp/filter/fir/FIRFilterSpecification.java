@@ -56,6 +56,37 @@ public class FIRFilterSpecification
 		return sb.toString();
 	}
 
+	/**
+	 * Key that uniquely identifies the filter design described by this
+	 * specification (type, order, grid density and each band's edges, 
+	 * amplitude and ripple) for use with the filter coefficient cache.
+	 */
+	public String getDesignKey()
+	{
+		StringBuilder sb = new StringBuilder();
+		sb.append( "remez:" );
+		sb.append( mRemezFilterType.name() );
+		sb.append( ":" );
+		sb.append( mOrder );
+		sb.append( ":" );
+		sb.append( mGridDensity );
+
+		for ( FrequencyBand band : mFrequencyBands )
+		{
+			sb.append( ":[" );
+			sb.append( band.getStart() );
+			sb.append( "," );
+			sb.append( band.getEnd() );
+			sb.append( "," );
+			sb.append( band.getAmplitude() );
+			sb.append( "," );
+			sb.append( band.getRippleDB() );
+			sb.append( "]" );
+		}
+
+		return sb.toString();
+	}
+
 	public void addFrequencyBand( FrequencyBand band )
 	{
 		mFrequencyBands.add( band );
@@ -8,6 +8,7 @@ import java.util.List;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import dsp.filter.FilterCoefficientCache;
 import dsp.filter.design.FilterDesignException;
 import dsp.filter.fir.FIRFilterSpecification;
 
@@ -56,6 +57,31 @@ public class RemezFIRFilterDesigner
 		design();
 	}
 
+	/**
+	 * Designs the filter, or provides the previously designed filter from the
+	 * filter coefficient cache, for the specification.
+	 * 
+	 * @param specification that defines a Type 1-4 linear phase FIR Filter
+	 * @return filter impulse response
+	 * @throws FilterDesignException if the specified filter cannot be designed
+	 */
+	public static float[] getFilter( FIRFilterSpecification specification ) 
+			throws FilterDesignException
+	{
+		String key = specification.getDesignKey();
+
+		float[] coefficients = FilterCoefficientCache.getInstance().get( key );
+
+		if( coefficients == null )
+		{
+			coefficients = new RemezFIRFilterDesigner( specification ).getImpulseResponse();
+
+			FilterCoefficientCache.getInstance().put( key, coefficients );
+		}
+
+		return coefficients;
+	}
+
 	/**
 	 * Designs the filter according to the specification
 	 */
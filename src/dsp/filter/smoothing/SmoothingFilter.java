@@ -62,6 +62,15 @@ public abstract class SmoothingFilter
 	}
 	
 	public float[] filter( float[] data )
+	{
+		return filter( data, new float[ data.length ] );
+	}
+	
+	/**
+	 * Filters the data into the filtered array, which must be the same 
+	 * length as the data array, and returns the filtered array.
+	 */
+	public float[] filter( float[] data, float[] filtered )
 	{
 		if( mNewCoefficientsAvailable )
 		{
@@ -70,8 +79,6 @@ public abstract class SmoothingFilter
 		}
 
 		int middle = mCoefficients.length / 2;
-		
-		float[] filtered = new float[ data.length ];
 
 		int toCopy = middle;
 		
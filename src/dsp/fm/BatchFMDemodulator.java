@@ -0,0 +1,246 @@
+/*******************************************************************************
+ *     SDR Trunk 
+ *     Copyright (C) 2014-2016 Dennis Sheirer
+ * 
+ *     This program is free software: you can redistribute it and/or modify
+ *     it under the terms of the GNU General Public License as published by
+ *     the Free Software Foundation, either version 3 of the License, or
+ *     (at your option) any later version.
+ * 
+ *     This program is distributed in the hope that it will be useful,
+ *     but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *     MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *     GNU General Public License for more details.
+ * 
+ *     You should have received a copy of the GNU General Public License
+ *     along with this program.  If not, see <http://www.gnu.org/licenses/>
+ ******************************************************************************/
+package dsp.fm;
+
+/**
+ * I/Q low pass filter and FM demodulator for a batch of channels that are
+ * processed together, in lockstep, over equally sized sample blocks.
+ * 
+ * Filter histories, accumulators and demodulator state are held in structure
+ * of arrays layout, with one row of [ channels ] values per sample period.
+ * Filtering is performed over sub-blocks of sample periods so that each
+ * filter tap is applied across all channels and all periods of the sub-block
+ * in a single contiguous loop that the JIT compiler can vectorize, while the
+ * working set stays small enough to remain in cache.
+ * 
+ * Each channel produces the same output as a ComplexFIRFilter_CB_CB followed
+ * by an FMDemodulator_CB using the same coefficients and gains.
+ */
+public class BatchFMDemodulator
+{
+	/* Sample periods per sub-block */
+	private static final int BLOCK = 64;
+	
+	private int mChannels;
+	private int mTaps;
+	private float[] mCoefficients;
+	private float mFilterGain;
+	private float mGain;
+
+	/* Rows of [ channels ] samples - the ( taps - 1 ) most recent rows of the
+	 * previous sub-block followed by the rows of the current sub-block */
+	private float[] mHistoryInphase;
+	private float[] mHistoryQuadrature;
+
+	private float[] mAccumulatorInphase;
+	private float[] mAccumulatorQuadrature;
+	private float[] mPreviousInphase;
+	private float[] mPreviousQuadrature;
+
+	/**
+	 * Constructs a batch demodulator.
+	 * 
+	 * @param coefficients - I/Q low pass filter coefficients
+	 * @param filterGain - gain applied to the filter output
+	 * @param gain - gain applied to the demodulated output
+	 * @param channels - number of channels in the batch
+	 */
+	public BatchFMDemodulator( float[] coefficients, float filterGain, 
+			float gain, int channels )
+	{
+		mCoefficients = coefficients;
+		mTaps = coefficients.length;
+		mFilterGain = filterGain;
+		mGain = gain;
+		mChannels = channels;
+
+		mHistoryInphase = new float[ ( mTaps - 1 + BLOCK ) * mChannels ];
+		mHistoryQuadrature = new float[ ( mTaps - 1 + BLOCK ) * mChannels ];
+
+		mAccumulatorInphase = new float[ BLOCK * mChannels ];
+		mAccumulatorQuadrature = new float[ BLOCK * mChannels ];
+		mPreviousInphase = new float[ mChannels ];
+		mPreviousQuadrature = new float[ mChannels ];
+	}
+
+	/**
+	 * Number of channels in the batch
+	 */
+	public int getChannelCount()
+	{
+		return mChannels;
+	}
+
+	/**
+	 * Clears the filter history and demodulator state for the channel, for
+	 * reuse of the channel slot
+	 */
+	public void reset( int channel )
+	{
+		for( int row = 0; row < mTaps - 1; row++ )
+		{
+			mHistoryInphase[ row * mChannels + channel ] = 0.0f;
+			mHistoryQuadrature[ row * mChannels + channel ] = 0.0f;
+		}
+
+		mPreviousInphase[ channel ] = 0.0f;
+		mPreviousQuadrature[ channel ] = 0.0f;
+	}
+
+	/**
+	 * Filters and demodulates (length) complex samples for each channel.
+	 * 
+	 * @param samples - interleaved I/Q samples per channel, with at least 
+	 * length complex samples, or null for an unused channel slot, which is 
+	 * processed as zero valued samples
+	 * @param length - number of complex samples to process per channel
+	 * @param demodulated - demodulated output per channel, with at least 
+	 * length samples, or null to discard the output for the channel
+	 */
+	public void process( float[][] samples, int length, float[][] demodulated )
+	{
+		for( int offset = 0; offset < length; offset += BLOCK )
+		{
+			int count = Math.min( BLOCK, length - offset );
+			
+			load( samples, offset, count );
+			
+			filter( mHistoryInphase, mAccumulatorInphase, count );
+			filter( mHistoryQuadrature, mAccumulatorQuadrature, count );
+			
+			demodulate( demodulated, offset, count );
+
+			/* Retain the most recent rows as history for the next sub-block */
+			int retained = ( mTaps - 1 ) * mChannels;
+			
+			System.arraycopy( mHistoryInphase, count * mChannels, 
+					mHistoryInphase, 0, retained );
+			System.arraycopy( mHistoryQuadrature, count * mChannels, 
+					mHistoryQuadrature, 0, retained );
+		}
+	}
+
+	/**
+	 * Transposes the channel samples into history rows following the 
+	 * retained rows
+	 */
+	private void load( float[][] samples, int offset, int count )
+	{
+		int channels = mChannels;
+		
+		for( int channel = 0; channel < channels; channel++ )
+		{
+			float[] channelSamples = samples[ channel ];
+			
+			int row = ( mTaps - 1 ) * channels + channel;
+			
+			if( channelSamples != null )
+			{
+				int index = offset * 2;
+				
+				for( int x = 0; x < count; x++ )
+				{
+					mHistoryInphase[ row ] = channelSamples[ index++ ];
+					mHistoryQuadrature[ row ] = channelSamples[ index++ ];
+					row += channels;
+				}
+			}
+			else
+			{
+				for( int x = 0; x < count; x++ )
+				{
+					mHistoryInphase[ row ] = 0.0f;
+					mHistoryQuadrature[ row ] = 0.0f;
+					row += channels;
+				}
+			}
+		}
+	}
+
+	/**
+	 * Applies the filter to (count) rows of history, one tap at a time across
+	 * all rows and channels.  Taps are accumulated in the same order as the
+	 * RealFIRFilter, newest sample first.
+	 */
+	private void filter( float[] history, float[] accumulator, int count )
+	{
+		int size = count * mChannels;
+
+		for( int x = 0; x < size; x++ )
+		{
+			accumulator[ x ] = 0.0f;
+		}
+
+		for( int tap = 0; tap < mTaps; tap++ )
+		{
+			float coefficient = mCoefficients[ tap ];
+			int shift = ( mTaps - 1 - tap ) * mChannels;
+
+			for( int x = 0; x < size; x++ )
+			{
+				accumulator[ x ] += coefficient * history[ x + shift ];
+			}
+		}
+	}
+
+	/**
+	 * Demodulates (count) rows of filtered samples - see FMDemodulator
+	 */
+	private void demodulate( float[][] demodulated, int offset, int count )
+	{
+		int channels = mChannels;
+		
+		for( int channel = 0; channel < channels; channel++ )
+		{
+			float[] output = demodulated[ channel ];
+			float previousI = mPreviousInphase[ channel ];
+			float previousQ = mPreviousQuadrature[ channel ];
+			
+			int row = channel;
+			
+			for( int x = 0; x < count; x++ )
+			{
+				float currentI = mAccumulatorInphase[ row ] * mFilterGain;
+				float currentQ = mAccumulatorQuadrature[ row ] * mFilterGain;
+				row += channels;
+
+				double inphase = ( currentI * previousI ) - ( currentQ * -previousQ );
+				double quadrature = ( currentQ * previousI ) + ( currentI * -previousQ );
+
+				double angle = 0.0f;
+
+				if( inphase != 0 )
+				{
+					double denominator = 1.0d / inphase;
+					angle = Math.atan( quadrature * denominator );
+				}
+
+				previousI = currentI;
+				previousQ = currentQ;
+
+				if( output != null )
+				{
+					output[ offset + x ] = (float)( angle * mGain );
+				}
+			}
+			
+			mPreviousInphase[ channel ] = previousI;
+			mPreviousQuadrature[ channel ] = previousQ;
+		}
+	}
+}
@@ -28,6 +28,7 @@ import java.util.List;
 
 import sample.Listener;
 import sample.real.RealBuffer;
+import bits.PackedBitListener;
 import buffer.BooleanAveragingBuffer;
 import dsp.symbol.SymbolEvent;
 import dsp.symbol.SymbolEvent.Shift;
@@ -51,6 +52,10 @@ import dsp.symbol.SymbolEvent.Shift;
  * 
  * Implements instrumentable interface, so that slice events can be received
  * externally to analyze decoder performance.
+ * 
+ * Decoded bits are sent one at a time to the listener and/or packed into long
+ * words for the packed bit listener.  Packed bits are sent when a word fills
+ * and at the end of each sample buffer.
  */
 public class FSK2Decoder implements Instrumentable, Listener<RealBuffer>
 {
@@ -63,6 +68,9 @@ public class FSK2Decoder implements Instrumentable, Listener<RealBuffer>
 	private ArrayList<SymbolEventTap> mTaps = new ArrayList<SymbolEventTap>();
 	
 	private Listener<Boolean> mListener;
+	private PackedBitListener mPackedBitListener;
+	private long mPackedBits;
+	private int mPackedBitCount;
 	private BooleanAveragingBuffer mDelayBuffer;
 	private BooleanAveragingBuffer mLowPassFilter;
 	private Slicer mSlicer;
@@ -90,6 +98,7 @@ public class FSK2Decoder implements Instrumentable, Listener<RealBuffer>
 	public void dispose()
 	{
 		mListener = null;
+		mPackedBitListener = null;
 	}
 
 	/**
@@ -116,6 +125,27 @@ public class FSK2Decoder implements Instrumentable, Listener<RealBuffer>
 			/* Send the filtered correlated bit to the slicer */
 			mSlicer.receive( filteredSoftBit );
 		}
+		
+		sendPackedBits();
+	}
+
+	/**
+	 * Sends any accumulated packed bits to the packed bit listener
+	 */
+	private void sendPackedBits()
+	{
+		if( mPackedBitCount > 0 )
+		{
+			PackedBitListener listener = mPackedBitListener;
+			
+			if( listener != null )
+			{
+				listener.receive( mPackedBits, mPackedBitCount );
+			}
+			
+			mPackedBits = 0;
+			mPackedBitCount = 0;
+		}
 	}
 
 	/**
@@ -134,6 +164,15 @@ public class FSK2Decoder implements Instrumentable, Listener<RealBuffer>
 		mListener = null;
 	}
 
+	/**
+	 * Registers a listener to receive the decoded FSK bits packed into long
+	 * words, or null to stop sending packed bits
+	 */
+	public void setPackedBitListener( PackedBitListener listener )
+	{
+		mPackedBitListener = listener;
+	}
+
 	/**
 	 * Symbol slicer with auto-aligning baud timing
 	 */
@@ -224,9 +263,22 @@ public class FSK2Decoder implements Instrumentable, Listener<RealBuffer>
 		 */
 		private void send( boolean decision )
 		{
+			boolean bit = mNormalOutput ? decision : !decision;
+			
 			if( mListener != null )
 			{
-				mListener.receive( mNormalOutput ? decision : !decision );
+				mListener.receive( bit );
+			}
+			
+			if( mPackedBitListener != null )
+			{
+				mPackedBits = ( mPackedBits << 1 ) | ( bit ? 1 : 0 );
+				mPackedBitCount++;
+				
+				if( mPackedBitCount == 64 )
+				{
+					sendPackedBits();
+				}
 			}
 		}
 		
@@ -64,8 +64,37 @@ public class ComplexFeedForwardGainControl implements ComplexSampleListener
 	@Override
 	public void receive( float inphase, float quadrature )
 	{
-		float envelope = Complex.envelope( inphase, quadrature );
+		update( Complex.envelope( inphase, quadrature ) );
+		
+		/* Apply current gain value to the sample and send to the listener */
+		if( mListener != null )
+		{
+			mListener.receive( inphase *= mGain, quadrature *= mGain );
+		}
+	}
 
+	/**
+	 * Applies gain control in place to a block of interleaved inphase and
+	 * quadrature samples.  Produces the same output as sample at a time 
+	 * processing, without dispatching to the listener.
+	 */
+	public void process( float[] samples )
+	{
+		for( int x = 0; x < samples.length; x += 2 )
+		{
+			update( Complex.envelope( samples[ x ], samples[ x + 1 ] ) );
+			
+			samples[ x ] *= mGain;
+			samples[ x + 1 ] *= mGain;
+		}
+	}
+	
+	/**
+	 * Updates the envelope history and the gain value with the envelope of
+	 * the current sample
+	 */
+	private void update( float envelope )
+	{
 		if( envelope > mMaxEnvelope )
 		{
 			mMaxEnvelope = envelope;
@@ -92,12 +121,6 @@ public class ComplexFeedForwardGainControl implements ComplexSampleListener
 			
 			adjustGain();
 		}
-		
-		/* Apply current gain value to the sample and send to the listener */
-		if( mListener != null )
-		{
-			mListener.receive( inphase *= mGain, quadrature *= mGain );
-		}
 	}
 	
 	private void adjustGain()
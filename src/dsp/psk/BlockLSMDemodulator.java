@@ -0,0 +1,454 @@
+/*******************************************************************************
+ *     SDR Trunk 
+ *     Copyright (C) 2014-2016 Dennis Sheirer
+ * 
+ *     This program is free software: you can redistribute it and/or modify
+ *     it under the terms of the GNU General Public License as published by
+ *     the Free Software Foundation, either version 3 of the License, or
+ *     (at your option) any later version.
+ * 
+ *     This program is distributed in the hope that it will be useful,
+ *     but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *     MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *     GNU General Public License for more details.
+ * 
+ *     You should have received a copy of the GNU General Public License
+ *     along with this program.  If not, see <http://www.gnu.org/licenses/>
+ ******************************************************************************/
+package dsp.psk;
+
+import sample.Listener;
+import sample.complex.ComplexBuffer;
+import dsp.filter.interpolator.RealInterpolator;
+import dsp.symbol.Dibit;
+
+/**
+ * Block oriented LSM (Pi/4) demodulator.  Uses the same Gardner symbol timing
+ * detector and Costas Loop as the LSMDemodulator, but keeps all loop state in
+ * primitive fields and processes a complete sample buffer per call, producing
+ * a packed dibit array without any per-symbol object allocations.
+ * 
+ * Dibits are packed 32 per long word, oldest dibit in the least significant
+ * bits, with dibit (n) at bit position 2 * ( n % 32 ) of word ( n / 32 ) and
+ * the dibit value as ( bit1 << 1 ) | bit2.
+ * 
+ * Phase lock error corrections issued by the message framer while the dibits
+ * of a buffer are being dispatched are applied to the loop immediately, for 
+ * the next buffer, and to the remaining dibits of the current buffer by 
+ * rotating the dibit decisions by the phase error.
+ * 
+ * Sample Rate: 48000
+ * Symbol Rate: 4800
+ */
+public class BlockLSMDemodulator implements Listener<ComplexBuffer>, 
+	IPhaseErrorCorrector
+{
+	private static final int SAMPLES_PER_SYMBOL = 10;
+	private static final int TWICE_SAMPLES_PER_SYMBOL = 20;
+
+	private static final double TWO_PI = 2.0 * Math.PI;
+	private static final double HALF_PI = Math.PI / 2.0;
+	
+	/* Gardner timing loop gains */
+	private static final float GAIN_MU = 0.05f;
+	private static final float GAIN_OMEGA = 0.1f * GAIN_MU * GAIN_MU;
+	private static final float OMEGA_REL = 0.005f;
+	private static final float OMEGA_MID = 10.0f;
+
+	/* Costas loop gains - see LSMDemodulator.CostasLoop */
+	private static final float MAXIMUM_FREQUENCY = 
+			( 2400.0f * (float)TWO_PI ) / 48000.0f;
+	private static final float DAMPING = (float)Math.sqrt( 2.0 ) / 2.0f;
+	private static final float LOOP_BANDWIDTH = (float)( TWO_PI / 400.0d );
+	private static final float ALPHA_GAIN = ( 4.0f * DAMPING * LOOP_BANDWIDTH ) / 
+			  ( 1.0f + ( 2.0f * DAMPING * LOOP_BANDWIDTH ) + 
+					   ( LOOP_BANDWIDTH * LOOP_BANDWIDTH ) );
+	private static final float BETA_GAIN = ( 4.0f * LOOP_BANDWIDTH * LOOP_BANDWIDTH ) / 
+			  ( 1.0f + ( 2.0f * DAMPING * LOOP_BANDWIDTH ) + 
+					   ( LOOP_BANDWIDTH * LOOP_BANDWIDTH ) );
+
+	/* Dibits indexed by packed dibit value */
+	private static final Dibit[] DIBITS = { Dibit.D00_PLUS_1, Dibit.D01_PLUS_3, 
+		Dibit.D10_MINUS_1, Dibit.D11_MINUS_3 };
+	
+	/* Dibits indexed by counter-clockwise quarter turns and packed dibit 
+	 * value.  The polar constellation points, counter-clockwise from the 
+	 * positive inphase axis, are 10, 00, 01 and 11 */
+	private static final Dibit[][] ROTATED_DIBITS = 
+	{
+		{ Dibit.D00_PLUS_1, Dibit.D01_PLUS_3, Dibit.D10_MINUS_1, Dibit.D11_MINUS_3 },
+		{ Dibit.D01_PLUS_3, Dibit.D11_MINUS_3, Dibit.D00_PLUS_1, Dibit.D10_MINUS_1 },
+		{ Dibit.D11_MINUS_3, Dibit.D10_MINUS_1, Dibit.D01_PLUS_3, Dibit.D00_PLUS_1 },
+		{ Dibit.D10_MINUS_1, Dibit.D00_PLUS_1, Dibit.D11_MINUS_3, Dibit.D01_PLUS_3 }
+	};
+	
+	private Listener<Dibit> mDibitListener;
+
+	private RealInterpolator mInterpolator = new RealInterpolator( 1.0f );
+
+	private float[] mDelayLineInphase = new float[ 2 * TWICE_SAMPLES_PER_SYMBOL ];
+	private float[] mDelayLineQuadrature = new float[ 2 * TWICE_SAMPLES_PER_SYMBOL ];
+	private int mDelayLinePointer = 0;
+
+	/* Sampling point and samples per symbol */
+	private float mMu = 10.0f;
+	private float mOmega = 10.0f;
+
+	private float mPreviousSampleInphase;
+	private float mPreviousSampleQuadrature;
+	private float mPreviousMiddleSampleInphase;
+	private float mPreviousMiddleSampleQuadrature;
+	private float mPreviousSymbolInphase;
+	private float mPreviousSymbolQuadrature;
+
+	private float mLoopPhase = 0.0f;
+	private float mLoopFrequency = 0.0f;
+
+	private long[] mDibits = new long[ 8 ];
+	private int mDibitCount;
+	
+	/* Quarter turn rotation applied to the dibits being dispatched */
+	private int mRotation;
+
+	public BlockLSMDemodulator()
+	{
+	}
+	
+	public void dispose()
+	{
+		mDibitListener = null;
+	}
+	
+	/**
+	 * Registers a listener to receive the demodulated dibits of each buffer
+	 */
+	public void setDibitListener( Listener<Dibit> listener )
+	{
+		mDibitListener = listener;
+	}
+	
+	public void removeDibitListener()
+	{
+		mDibitListener = null;
+	}
+
+	/**
+	 * Demodulates the buffer and dispatches the dibits to the listener
+	 */
+	@Override
+	public void receive( ComplexBuffer buffer )
+	{
+		int count = demodulate( buffer.getSamples() );
+		
+		mRotation = 0;
+		
+		if( mDibitListener != null )
+		{
+			for( int x = 0; x < count; x++ )
+			{
+				int value = (int)( mDibits[ x >>> 5 ] >>> ( ( x & 31 ) << 1 ) ) & 3;
+				
+				mDibitListener.receive( ROTATED_DIBITS[ mRotation ][ value ] );
+			}
+		}
+	}
+
+	/**
+	 * Demodulates the interleaved inphase and quadrature samples into the
+	 * packed dibit array.
+	 * 
+	 * @param samples - 48 kHz complex samples
+	 * @return number of dibits demodulated from the samples
+	 */
+	public int demodulate( float[] samples )
+	{
+		/* Omega is constrained to 10 +/- .005, so there are at most 
+		 * samples / 9 symbols, plus one for the fractional sampling point */
+		int words = ( ( samples.length / 2 ) / ( SAMPLES_PER_SYMBOL - 1 ) + 32 ) / 32;
+		
+		if( mDibits.length < words )
+		{
+			mDibits = new long[ words ];
+		}
+		
+		mDibitCount = 0;
+		
+		for( int x = 0; x < samples.length; x += 2 )
+		{
+			/* Count down samples per symbol until we calculate the symbol */
+			mMu--;
+
+			/* Increment the costas loop phase and keep it in bounds */
+			mLoopPhase += mLoopFrequency;
+			
+			unwrapPhase();
+			
+			/* Mix incoming sample with costas loop to remove any rotation 
+			 * that is present from a mis-tuned carrier frequency */
+			float costasInphase = (float)Math.cos( mLoopPhase );
+			float costasQuadrature = (float)Math.sin( mLoopPhase );
+			
+			float inphase = samples[ x ];
+			float quadrature = samples[ x + 1 ];
+
+			float derotatedInphase = ( inphase * costasInphase ) - 
+					( quadrature * costasQuadrature );
+			float derotatedQuadrature = ( quadrature * costasInphase ) + 
+					( inphase * costasQuadrature );
+			
+			/* Fill up the delay line to use with the interpolator */
+			mDelayLineInphase[ mDelayLinePointer ] = derotatedInphase;
+			mDelayLineInphase[ mDelayLinePointer + TWICE_SAMPLES_PER_SYMBOL ] = derotatedInphase;
+
+			mDelayLineQuadrature[ mDelayLinePointer ] = derotatedQuadrature;
+			mDelayLineQuadrature[ mDelayLinePointer + TWICE_SAMPLES_PER_SYMBOL ] = derotatedQuadrature;
+
+			/* Increment pointer and keep pointer in bounds */
+			mDelayLinePointer = ( mDelayLinePointer + 1 ) % TWICE_SAMPLES_PER_SYMBOL;
+			
+			/* Calculate the symbol once we've stored enough samples */
+			if( mMu <= 1.0f )
+			{
+				symbol();
+			}
+		}
+		
+		return mDibitCount;
+	}
+
+	/**
+	 * Calculates the current symbol from the delay line, updates the timing
+	 * and costas loops and stores the sliced dibit
+	 */
+	private void symbol()
+	{
+		float halfOmega = mOmega / 2.0f;
+		int halfSPS = (int)Math.floor( halfOmega );
+		float halfMu = mMu + halfOmega - (float)halfSPS;
+		
+		if( halfMu > 1.0 )
+		{
+			halfMu -= 1.0;
+			halfSPS += 1;
+		}
+
+		/* Calculate interpolated middle sample and current sample */
+		float middleSampleInphase = mInterpolator.filter( 
+				mDelayLineInphase, mDelayLinePointer, mMu );
+		float middleSampleQuadrature = mInterpolator.filter( 
+				mDelayLineQuadrature, mDelayLinePointer, mMu );
+
+		int index = mDelayLinePointer + halfSPS;
+		
+		float currentSampleInphase = mInterpolator.filter( 
+				mDelayLineInphase, index, halfMu );
+		float currentSampleQuadrature = mInterpolator.filter( 
+				mDelayLineQuadrature, index, halfMu );
+
+		/* Multiply current sample and conjugate of previous sample to get 
+		 * symbols to use for gardner error feedback */
+		float middleSymbolInphase = ( middleSampleInphase * mPreviousMiddleSampleInphase ) + 
+				( middleSampleQuadrature * mPreviousMiddleSampleQuadrature );
+		float middleSymbolQuadrature = ( middleSampleQuadrature * mPreviousMiddleSampleInphase ) - 
+				( middleSampleInphase * mPreviousMiddleSampleQuadrature );
+
+		float currentSymbolInphase = ( currentSampleInphase * mPreviousSampleInphase ) + 
+				( currentSampleQuadrature * mPreviousSampleQuadrature );
+		float currentSymbolQuadrature = ( currentSampleQuadrature * mPreviousSampleInphase ) - 
+				( currentSampleInphase * mPreviousSampleQuadrature );
+		
+		/* Set gain to unity */
+		float middleMagnitude = (float)Math.sqrt( 
+				( middleSymbolInphase * middleSymbolInphase ) + 
+				( middleSymbolQuadrature * middleSymbolQuadrature ) );
+		
+		if( middleMagnitude != 0 )
+		{
+			float scalor = 1.0f / middleMagnitude;
+			middleSymbolInphase *= scalor;
+			middleSymbolQuadrature *= scalor;
+		}
+
+		float currentMagnitude = (float)Math.sqrt( 
+				( currentSymbolInphase * currentSymbolInphase ) + 
+				( currentSymbolQuadrature * currentSymbolQuadrature ) );
+
+		if( currentMagnitude != 0 )
+		{
+			float scalor = 1.0f / currentMagnitude;
+			currentSymbolInphase *= scalor;
+			currentSymbolQuadrature *= scalor;
+		}
+		
+		/* Gardner timing error calculations */
+		float errorInphase = ( mPreviousSymbolInphase - currentSymbolInphase ) * 
+				middleSymbolInphase;
+		float errorQuadrature = ( mPreviousSymbolQuadrature - currentSymbolQuadrature ) * 
+				middleSymbolQuadrature;
+
+		float gardnerError = errorInphase + errorQuadrature;
+		
+		if( Float.isNaN( gardnerError ) )
+		{
+			gardnerError = 0.0f;
+		}
+		else
+		{
+			gardnerError = LSMDemodulator.clip( gardnerError, 1.0f );
+		}
+		
+		/* mOmega is samples per symbol and is constrained to floating
+		 * between +/- .005 of the nominal 10.0 samples per symbol */
+		mOmega = mOmega + GAIN_OMEGA * gardnerError;
+		mOmega = OMEGA_MID + LSMDemodulator.clip( mOmega - OMEGA_MID, OMEGA_REL );
+
+		/* Adjust sample timing based on error of current sample */
+		mMu += mOmega + ( GAIN_MU * gardnerError );
+
+		/* Store current samples/symbols to use for the next period */
+		mPreviousSampleInphase = currentSampleInphase;
+		mPreviousSampleQuadrature = currentSampleQuadrature;
+		mPreviousMiddleSampleInphase = middleSampleInphase;
+		mPreviousMiddleSampleQuadrature = middleSampleQuadrature;
+		mPreviousSymbolInphase = currentSymbolInphase;
+		mPreviousSymbolQuadrature = currentSymbolQuadrature;
+
+		/* Slice the symbol and update the costas loop using the phase error
+		 * present in the current symbol */
+		float phaseError;
+		int value;
+		
+		if( Math.abs( currentSymbolInphase ) > Math.abs( currentSymbolQuadrature ) )
+		{
+			if( currentSymbolInphase > 0 )
+			{
+				phaseError = -currentSymbolQuadrature;
+				value = 2; /* 10 */
+			}
+			else
+			{
+				phaseError = currentSymbolQuadrature;
+				value = 1; /* 01 */
+			}
+		}
+		else
+		{
+			if( currentSymbolQuadrature > 0 )
+			{
+				phaseError = currentSymbolInphase;
+				value = 0; /* 00 */
+			}
+			else
+			{
+				phaseError = -currentSymbolInphase;
+				value = 3; /* 11 */
+			}
+		}
+
+		mLoopFrequency += BETA_GAIN * phaseError;
+		mLoopPhase += mLoopFrequency + ALPHA_GAIN * phaseError;
+
+		unwrapPhase();
+
+		if( mLoopFrequency > MAXIMUM_FREQUENCY )
+		{
+			mLoopFrequency = MAXIMUM_FREQUENCY;
+		}
+		
+		if( mLoopFrequency < -MAXIMUM_FREQUENCY )
+		{
+			mLoopFrequency = -MAXIMUM_FREQUENCY;
+		}
+
+		/* Store the dibit */
+		int word = mDibitCount >>> 5;
+		int shift = ( mDibitCount & 31 ) << 1;
+		
+		if( shift == 0 )
+		{
+			mDibits[ word ] = value;
+		}
+		else
+		{
+			mDibits[ word ] |= (long)value << shift;
+		}
+		
+		mDibitCount++;
+	}
+
+	/**
+	 * Keeps the costas loop phase between +/- 2 * PI
+	 */
+	private void unwrapPhase()
+	{
+		while( mLoopPhase > TWO_PI )
+		{
+			mLoopPhase -= TWO_PI;
+		}
+		
+		while( mLoopPhase < -TWO_PI )
+		{
+			mLoopPhase += TWO_PI;
+		}
+	}
+
+	/**
+	 * Packed dibits from the most recent demodulate() call.  See the class 
+	 * comment for the packing order.
+	 */
+	public long[] getDibits()
+	{
+		return mDibits;
+	}
+	
+	/**
+	 * Number of dibits from the most recent demodulate() call
+	 */
+	public int getDibitCount()
+	{
+		return mDibitCount;
+	}
+	
+	/**
+	 * Unpacks the dibit at the index from the packed dibit array
+	 */
+	public static Dibit getDibit( long[] dibits, int index )
+	{
+		return DIBITS[ (int)( dibits[ index >>> 5 ] >>> 
+				( ( index & 31 ) << 1 ) ) & 3 ];
+	}
+
+	/**
+	 * Applies a phase correction value to the costas loop to correct when a
+	 * phase lock error is detected in the binary output stream.  When invoked
+	 * while dispatching dibits, the remaining dibits of the buffer are rotated 
+	 * by the phase error that the correction removes.
+	 * 
+	 * If the supplied correction value places the loop frequency outside
+	 * of the max frequency, then the frequency will be corrected 360
+	 * degrees in the opposite direction to maintain within the max
+	 * frequency bounds.
+	 * 
+	 * @param correction - value in radians
+	 */
+	@Override
+	public void correctPhaseError( double correction )
+	{
+		mLoopFrequency += correction;
+		
+		if( mLoopFrequency > MAXIMUM_FREQUENCY )
+		{
+			mLoopFrequency -= 2.0d * MAXIMUM_FREQUENCY;
+		}
+		
+		if( mLoopFrequency < -MAXIMUM_FREQUENCY )
+		{
+			mLoopFrequency += 2.0d * MAXIMUM_FREQUENCY;
+		}
+
+		/* Phase rotation per symbol that the frequency correction removes */
+		int quarterTurns = (int)Math.round( ( correction * mOmega ) / HALF_PI );
+		
+		mRotation = ( mRotation + quarterTurns ) & 3;
+	}
+}
@@ -0,0 +1,93 @@
+/*******************************************************************************
+ *     SDR Trunk 
+ *     Copyright (C) 2014-2016 Dennis Sheirer
+ * 
+ *     This program is free software: you can redistribute it and/or modify
+ *     it under the terms of the GNU General Public License as published by
+ *     the Free Software Foundation, either version 3 of the License, or
+ *     (at your option) any later version.
+ * 
+ *     This program is distributed in the hope that it will be useful,
+ *     but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *     MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *     GNU General Public License for more details.
+ * 
+ *     You should have received a copy of the GNU General Public License
+ *     along with this program.  If not, see <http://www.gnu.org/licenses/>
+ ******************************************************************************/
+package dsp.psk;
+
+import instrument.Instrumentable;
+import instrument.tap.Tap;
+import instrument.tap.TapGroup;
+import instrument.tap.stream.EyeDiagramData;
+import instrument.tap.stream.EyeDiagramDataTap;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * LSM demodulator with an eye diagram instrumentation tap.  Only constructed
+ * for instrumented processing chains - see Instrumentation.
+ */
+public class InstrumentedLSMDemodulator extends LSMDemodulator 
+										 implements Instrumentable
+{
+	private List<TapGroup> mAvailableTaps;
+	private EyeDiagramDataTap mEyeDiagramDataTap;
+
+	public InstrumentedLSMDemodulator()
+	{
+	}
+
+	@Override
+	protected void symbolTiming( float[] inphase, float[] quadrature, float mu,
+			float offset, float error )
+	{
+		EyeDiagramDataTap tap = mEyeDiagramDataTap;
+		
+		if( tap != null )
+		{
+			tap.receive( new EyeDiagramData( 
+					Arrays.copyOfRange( inphase, 0, 20 ), 
+					Arrays.copyOfRange( quadrature, 0, 20 ), 
+					mu, offset, error ) );
+		}
+	}
+
+	@Override
+	public List<TapGroup> getTapGroups()
+	{
+		if( mAvailableTaps == null )
+		{
+			mAvailableTaps = new ArrayList<>();
+			
+			TapGroup group = new TapGroup( "LSM Demodulator" );
+			
+			group.add( new EyeDiagramDataTap( "Eye Diagram", 0, 4800 ) );
+
+			mAvailableTaps.add( group );
+		}
+		
+		return mAvailableTaps;
+	}
+
+	@Override
+	public void registerTap( Tap tap )
+	{
+		if( tap instanceof EyeDiagramDataTap )
+		{
+			mEyeDiagramDataTap = (EyeDiagramDataTap)tap;
+		}
+	}
+
+	@Override
+	public void unregisterTap( Tap tap )
+	{
+		if( tap instanceof EyeDiagramDataTap )
+		{
+			mEyeDiagramDataTap = null;
+		}
+	}
+}
@@ -30,16 +30,6 @@ package dsp.psk;
  *     along with this program.  If not, see <http://www.gnu.org/licenses/>
  ******************************************************************************/
 
-import instrument.Instrumentable;
-import instrument.tap.Tap;
-import instrument.tap.TapGroup;
-import instrument.tap.stream.EyeDiagramData;
-import instrument.tap.stream.EyeDiagramDataTap;
-
-import java.util.ArrayList;
-import java.util.Arrays;
-import java.util.List;
-
 import sample.Listener;
 import sample.complex.Complex;
 import sample.complex.ComplexSampleListener;
@@ -55,11 +45,12 @@ import dsp.symbol.Dibit;
  * 
  * Sample Rate: 48000
  * Symbol Rate: 4800
+ * 
+ * Instrumentation: see InstrumentedLSMDemodulator.
  */
-public class LSMDemodulator implements Instrumentable, ComplexSampleListener
+public class LSMDemodulator implements ComplexSampleListener, 
+	IPhaseErrorCorrector
 {
-	private List<TapGroup> mAvailableTaps;
-	
 	/* 45 degree rotation angle */
 	public static final float THETA = (float)( Math.PI / 4.0d ); 
 
@@ -75,8 +66,6 @@ public class LSMDemodulator implements Instrumentable, ComplexSampleListener
 	
 	private IFrequencyChangeListener mFrequencyChangeListener;
 	
-	private EyeDiagramDataTap mEyeDiagramDataTap;
-	
 	public LSMDemodulator()
 	{
 	}
@@ -96,6 +85,16 @@ public class LSMDemodulator implements Instrumentable, ComplexSampleListener
 	{
 		mSymbolListener = null;
 	}
+
+	/**
+	 * Symbol timing hook, invoked once per symbol with the interpolator delay
+	 * lines, the timing offset and the Gardner timing error.  Empty here and
+	 * overridden by the instrumented demodulator.
+	 */
+	protected void symbolTiming( float[] inphase, float[] quadrature, float mu,
+			float offset, float error )
+	{
+	}
 	
 	@Override
 	public void receive( float inphase, float quadrature )
@@ -109,6 +108,7 @@ public class LSMDemodulator implements Instrumentable, ComplexSampleListener
 	 * 
 	 * @param correction - value in radians
 	 */
+	@Override
 	public void correctPhaseError( double correction )
 	{
 		mCostasLoop.correctPhaseError( correction );
@@ -325,14 +325,8 @@ public class LSMDemodulator implements Instrumentable, ComplexSampleListener
 
 				float gardnerError = normalize( errorInphase + errorQuadrature, 1.0f );
 				
-				if( mEyeDiagramDataTap != null )
-				{
-					mEyeDiagramDataTap.receive( 
-						new EyeDiagramData( 
-								Arrays.copyOfRange( mDelayLineInphase, 0, 20 ), 
-								Arrays.copyOfRange( mDelayLineQuadrature, 0, 20 ), 
-							mMu, (float)half_sps + half_mu, gardnerError ) );
-				}
+				symbolTiming( mDelayLineInphase, mDelayLineQuadrature, 
+						mMu, (float)half_sps + half_mu, gardnerError );
 				
 				/* mOmega is samples per symbol and is constrained to floating
 				 * between +/- .005 of the nominal 10.0 samples per symbol */
@@ -551,39 +545,4 @@ public class LSMDemodulator implements Instrumentable, ComplexSampleListener
 			  return phase_error;
 		}
 	}
-
-	@Override
-	public List<TapGroup> getTapGroups()
-	{
-		if( mAvailableTaps == null )
-		{
-			mAvailableTaps = new ArrayList<>();
-			
-			TapGroup group = new TapGroup( "LSM Demodulator" );
-			
-			group.add( new EyeDiagramDataTap( "Eye Diagram", 0, 4800 ) );
-
-			mAvailableTaps.add( group );
-		}
-		
-		return mAvailableTaps;
-	}
-
-	@Override
-	public void registerTap( Tap tap )
-	{
-		if( tap instanceof EyeDiagramDataTap )
-		{
-			mEyeDiagramDataTap = (EyeDiagramDataTap)tap;
-		}
-	}
-
-	@Override
-	public void unregisterTap( Tap tap )
-	{
-		if( tap instanceof EyeDiagramDataTap )
-		{
-			mEyeDiagramDataTap = null;
-		}
-	}
 }
@@ -204,4 +204,34 @@ public class CRCFleetsync
 
 		return retVal;
     }
+
+    /**
+     * Calculates the CRC-15 checksum for message bits 0 - 47 and sets it in
+     * bits 48 - 62, followed by the even parity bit in bit 63.  Used to 
+     * encode valid message blocks, e.g. for synthetic test signals.
+     */
+    public static void setChecksum( BitSet msg )
+    {
+		int calculated = 1; //Starting value
+
+		for (int i = msg.nextSetBit( 0 ); i >= 0 && i < 48; i = msg.nextSetBit( i+1 ) ) 
+		{
+			calculated ^= sCHECKSUMS[ i ];
+		}
+
+		msg.clear( 48, 64 );
+
+    	for( int x = 0; x < 15; x++ )
+    	{
+    		if( ( calculated & ( 1<<( 14 - x ) ) ) != 0 )
+    		{
+    			msg.set( x + 48 );
+    		}
+    	}
+
+    	if( msg.cardinality() % 2 != 0 )
+    	{
+    		msg.set( 63 );
+    	}
+    }
 }
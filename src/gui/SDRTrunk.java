@@ -35,6 +35,7 @@ import java.nio.file.Path;
 import java.util.concurrent.TimeUnit;
 
 import javax.imageio.ImageIO;
+import javax.swing.JFileChooser;
 import javax.swing.JFrame;
 import javax.swing.JMenu;
 import javax.swing.JMenuBar;
@@ -42,9 +43,12 @@ import javax.swing.JMenuItem;
 import javax.swing.JOptionPane;
 import javax.swing.JSeparator;
 import javax.swing.KeyStroke;
+import javax.swing.filechooser.FileNameExtensionFilter;
 
+import instrument.metrics.MetricsManager;
 import map.IconManager;
 import map.MapService;
+import module.decode.state.TrafficChannelAdmission;
 import module.log.EventLogManager;
 import net.miginfocom.swing.MigLayout;
 
@@ -56,11 +60,14 @@ import properties.SystemProperties;
 import record.RecorderManager;
 import sample.Listener;
 import settings.SettingsManager;
+import source.SourceException;
 import source.SourceManager;
 import source.tuner.TunerEvent;
 import source.tuner.TunerModel;
 import source.tuner.TunerSpectralDisplayManager;
 import source.tuner.configuration.TunerConfigurationModel;
+import source.tuner.replay.ReplayTuner;
+import source.tuner.replay.ReplayTunerController;
 import spectrum.SpectralDisplayPanel;
 import util.TimeStamp;
 import alias.AliasModel;
@@ -71,7 +78,9 @@ import com.jidesoft.swing.JideSplitPane;
 
 import controller.ControllerPanel;
 import controller.ThreadPoolManager;
+import controller.overload.OverloadController;
 import controller.ThreadPoolManager.ThreadType;
+import controller.channel.ActivityScanner;
 import controller.channel.ChannelEventListener;
 import controller.channel.ChannelModel;
 import controller.channel.ChannelProcessingManager;
@@ -85,6 +94,7 @@ public class SDRTrunk implements Listener<TunerEvent>
 	private ControllerPanel mControllerPanel;
 	private SettingsManager mSettingsManager;
 	private SpectralDisplayPanel mSpectralPanel;
+	private TunerModel mTunerModel;
 	private JFrame mMainGui = new JFrame();
 	
 	private String mTitle;
@@ -116,10 +126,16 @@ public class SDRTrunk implements Listener<TunerEvent>
 		//Log current properties setting
 		SystemProperties.getInstance().logCurrentSettings();
 		
-		TunerConfigurationModel tunerConfigurationModel = new TunerConfigurationModel();
-		TunerModel tunerModel = new TunerModel( tunerConfigurationModel );
-		
 		ThreadPoolManager threadPoolManager = new ThreadPoolManager();
+
+		MetricsManager.getInstance().startReport( threadPoolManager );
+		OverloadController.getInstance().start( threadPoolManager );
+
+		RecorderManager recorderManager = new RecorderManager( threadPoolManager );
+		
+		TunerConfigurationModel tunerConfigurationModel = new TunerConfigurationModel();
+		TunerModel tunerModel = new TunerModel( tunerConfigurationModel, recorderManager );
+		mTunerModel = tunerModel;
 		
 		mSettingsManager = new SettingsManager( threadPoolManager, tunerConfigurationModel );
 
@@ -131,16 +147,20 @@ public class SDRTrunk implements Listener<TunerEvent>
 
 		EventLogManager eventLogManager = new EventLogManager();
 
-		RecorderManager recorderManager = new RecorderManager( threadPoolManager );
-		
 		SourceManager sourceManager = new SourceManager( tunerModel, 
 				mSettingsManager,  threadPoolManager );
 		
 		ChannelProcessingManager channelProcessingManager = new ChannelProcessingManager( 
 			channelModel, channelMapModel, aliasModel, eventLogManager, recorderManager, sourceManager );
 		channelProcessingManager.addAudioPacketListener( recorderManager );
+		channelProcessingManager.setThreadPoolManager( threadPoolManager );
 		
 		channelModel.addListener( channelProcessingManager );
+
+		if( ActivityScanner.isEnabled() )
+		{
+			new ActivityScanner( tunerModel, channelProcessingManager );
+		}
 		
 		ChannelSelectionManager channelSelectionManager = 
 				new ChannelSelectionManager( channelModel );
@@ -151,6 +171,7 @@ public class SDRTrunk implements Listener<TunerEvent>
 		
 		AudioManager audioManager = new AudioManager( threadPoolManager, sourceManager.getMixerManager() );
 		channelProcessingManager.addAudioPacketListener( audioManager );
+		TrafficChannelAdmission.getInstance().setAudioController( audioManager );
 
 		MapService mapService = new MapService( mSettingsManager );
 		channelProcessingManager.addMessageListener( mapService );
@@ -294,6 +315,25 @@ public class SDRTrunk implements Listener<TunerEvent>
         } );
         fileMenu.add( settingsMenu );
 
+        JMenuItem replayMenu = new JMenuItem( "Replay I/Q Recording ..." );
+        replayMenu.addActionListener( new ActionListener()
+        {
+			@Override
+            public void actionPerformed( ActionEvent arg0 )
+            {
+				JFileChooser chooser = new JFileChooser( SystemProperties
+						.getInstance().getApplicationFolder( "recordings" ).toFile() );
+				chooser.setFileFilter( new FileNameExtensionFilter( 
+						"I/Q Recording Metadata (.xml)", "xml" ) );
+
+				if( chooser.showOpenDialog( mMainGui ) == JFileChooser.APPROVE_OPTION )
+				{
+					addReplayTuner( chooser.getSelectedFile().toPath() );
+				}
+            }
+        } );
+        fileMenu.add( replayMenu );
+
         fileMenu.add( new JSeparator() );
         
         JMenuItem exitMenu = new JMenuItem( "Exit" );
@@ -377,6 +417,32 @@ public class SDRTrunk implements Listener<TunerEvent>
         menuBar.add( screenCaptureItem );
     }
     
+    /**
+     * Adds a replay tuner for the raw I/Q recording described by the metadata
+     * file so that channels can be decoded from the recording
+     */
+    private void addReplayTuner( Path metadataPath )
+    {
+    	try
+    	{
+    		ReplayTuner tuner = new ReplayTuner( 
+    				new ReplayTunerController( metadataPath ) );
+    		
+    		mTunerModel.addTuner( tuner );
+    		
+    		mLog.info( "Added replay tuner for recording [" + 
+    				metadataPath.toString() + "]" );
+    	}
+    	catch( SourceException se )
+    	{
+    		mLog.error( "Couldn't create replay tuner", se );
+    		
+			JOptionPane.showMessageDialog( mMainGui, 
+				"Couldn't load I/Q recording [" + metadataPath.toString() + "]",
+				"Replay Error", JOptionPane.ERROR_MESSAGE );
+    	}
+    }
+    
     /**
      * Loads the application properties file from the user's home directory,
      * creating the properties file for the first-time, if necessary
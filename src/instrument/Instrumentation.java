@@ -0,0 +1,69 @@
+/*******************************************************************************
+ *     SDR Trunk 
+ *     Copyright (C) 2014-2016 Dennis Sheirer
+ * 
+ *     This program is free software: you can redistribute it and/or modify
+ *     it under the terms of the GNU General Public License as published by
+ *     the Free Software Foundation, either version 3 of the License, or
+ *     (at your option) any later version.
+ * 
+ *     This program is distributed in the hope that it will be useful,
+ *     but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *     MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *     GNU General Public License for more details.
+ * 
+ *     You should have received a copy of the GNU General Public License
+ *     along with this program.  If not, see <http://www.gnu.org/licenses/>
+ ******************************************************************************/
+package instrument;
+
+/**
+ * Selects instrumented or production versions of processing stages at the
+ * time a processing chain is built.
+ * 
+ * Production stages carry no instrumentation taps.  Stages that have internal
+ * tap points expose them through empty hook methods that are overridden by an
+ * instrumented subclass (decorator).  While no instrumented subclass is 
+ * loaded, the JIT compiler inlines the empty hooks away, so the production 
+ * hot loops have no tap checks or allocations.  The instrumented subclasses 
+ * are only constructed for a chain that is built for a decoder view, ie:
+ * 
+ * Instrumentation.setEnabled( true );
+ * try { modules = DecoderFactory.getModules( ... ); }
+ * finally { Instrumentation.setEnabled( false ); }
+ * 
+ * The setting applies to the calling thread only.
+ */
+public class Instrumentation
+{
+	private static final ThreadLocal<Boolean> sEnabled = new ThreadLocal<Boolean>()
+	{
+		@Override
+		protected Boolean initialValue()
+		{
+			return Boolean.FALSE;
+		}
+	};
+
+	private Instrumentation()
+	{
+	}
+
+	/**
+	 * Indicates if stages constructed on the calling thread should be the
+	 * instrumented versions
+	 */
+	public static boolean isEnabled()
+	{
+		return sEnabled.get();
+	}
+
+	/**
+	 * Enables or disables construction of instrumented stages on the calling
+	 * thread
+	 */
+	public static void setEnabled( boolean enabled )
+	{
+		sEnabled.set( enabled );
+	}
+}
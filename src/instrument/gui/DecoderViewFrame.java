@@ -19,6 +19,7 @@ package instrument.gui;
 
 import instrument.Instrumentable;
 import instrument.InstrumentableProcessingChain;
+import instrument.Instrumentation;
 import instrument.tap.Tap;
 import instrument.tap.TapGroup;
 import instrument.tap.TapViewPanel;
@@ -53,6 +54,8 @@ import javax.swing.JMenu;
 import javax.swing.JMenuItem;
 import javax.swing.JPopupMenu;
 import javax.swing.JSeparator;
+import javax.swing.event.InternalFrameAdapter;
+import javax.swing.event.InternalFrameEvent;
 
 import message.Message;
 import module.Module;
@@ -74,6 +77,12 @@ import controller.channel.ChannelModel;
 import controller.channel.ChannelProcessingManager;
 import controller.channel.map.ChannelMapModel;
 
+/**
+ * Decoder view with instrumentation taps.  The frame builds its own 
+ * processing chain with the instrumented versions of the decoder stages (see
+ * Instrumentation), so production chains never carry tap points.  Taps are
+ * unregistered when the frame is closed.
+ */
 public class DecoderViewFrame extends JInternalFrame 
 							  implements Listener<Message>
 {
@@ -105,8 +114,22 @@ public class DecoderViewFrame extends JInternalFrame
 			new ChannelProcessingManager( channelModel, channelMapModel, 
 			new AliasModel(), new EventLogManager(), null, null );
 		
-		List<Module> modules = DecoderFactory.getModules( channelModel, 
-			channelMapModel, channelProcessingManager, new AliasModel(), channel );
+		/* Traffic channels are never allocated while viewing the decoder */
+		channelProcessingManager.setPrewarmEnabled( false );
+		
+		List<Module> modules;
+		
+		Instrumentation.setEnabled( true );
+		
+		try
+		{
+			modules = DecoderFactory.getModules( channelModel, channelMapModel, 
+				channelProcessingManager, new AliasModel(), channel );
+		}
+		finally
+		{
+			Instrumentation.setEnabled( false );
+		}
 
 		mProcessingChain.addModules( modules );
 
@@ -132,6 +155,20 @@ public class DecoderViewFrame extends JInternalFrame
 		setIconifiable( true );
 		setMaximizable( false );
 
+		addInternalFrameListener( new InternalFrameAdapter()
+		{
+			@Override
+			public void internalFrameClosed( InternalFrameEvent e )
+			{
+				for( Tap tap: mPanelMap.keySet() )
+				{
+					mProcessingChain.unregisterTap( tap );
+				}
+				
+				mPanelMap.clear();
+			}
+		} );
+
 		addMouseListener( new MouseListener() 
 		{
 			@Override
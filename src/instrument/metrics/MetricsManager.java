@@ -0,0 +1,260 @@
+/*******************************************************************************
+ *     SDR Trunk 
+ *     Copyright (C) 2014-2016 Dennis Sheirer
+ * 
+ *     This program is free software: you can redistribute it and/or modify
+ *     it under the terms of the GNU General Public License as published by
+ *     the Free Software Foundation, either version 3 of the License, or
+ *     (at your option) any later version.
+ * 
+ *     This program is distributed in the hope that it will be useful,
+ *     but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *     MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *     GNU General Public License for more details.
+ * 
+ *     You should have received a copy of the GNU General Public License
+ *     along with this program.  If not, see <http://www.gnu.org/licenses/>
+ ******************************************************************************/
+package instrument.metrics;
+
+import java.lang.management.ManagementFactory;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import properties.SystemProperties;
+import controller.ThreadPoolManager;
+import controller.ThreadPoolManager.ThreadType;
+
+/**
+ * Registry for processing stage metrics.  Registered stages are exposed as 
+ * JMX MXBeans (sdrtrunk:type=ProcessingStage) and are summarized in a text
+ * report that can be logged periodically.
+ * 
+ * Settings (application properties):
+ * 
+ * metrics.report.interval - seconds between logged reports, 0 to disable (0)
+ */
+public class MetricsManager
+{
+	private final static Logger mLog = 
+			LoggerFactory.getLogger( MetricsManager.class );
+
+	public static final String REPORT_INTERVAL_PROPERTY = "metrics.report.interval";
+
+	private static final MetricsManager INSTANCE = new MetricsManager();
+
+	private Map<StageMetrics,ObjectName> mStages = new ConcurrentHashMap<>();
+	private AtomicLong mStageID = new AtomicLong();
+	private MBeanServer mMBeanServer;
+	private ThreadPoolManager mThreadPoolManager;
+	private ScheduledFuture<?> mReportTask;
+	private long mLastReport = System.nanoTime();
+
+	private MetricsManager()
+	{
+	}
+
+	public static MetricsManager getInstance()
+	{
+		return INSTANCE;
+	}
+
+	/**
+	 * Registers the stage for reporting and with the platform MBean server
+	 */
+	public void register( StageMetrics stage )
+	{
+		if( stage == null || mStages.containsKey( stage ) )
+		{
+			return;
+		}
+
+		ObjectName name = null;
+
+		try
+		{
+			name = new ObjectName( "sdrtrunk:type=ProcessingStage,chain=" + 
+				ObjectName.quote( String.valueOf( stage.getChain() ) ) + 
+				",stage=" + ObjectName.quote( stage.getStage() ) + 
+				",id=" + mStageID.incrementAndGet() );
+
+			getMBeanServer().registerMBean( stage, name );
+		}
+		catch( Exception e )
+		{
+			mLog.error( "Couldn't register processing stage metrics [" + 
+				stage.toString() + "] with JMX", e );
+		}
+
+		/* Stages are reported even when JMX registration fails */
+		mStages.put( stage, name != null ? name : ObjectName.WILDCARD );
+	}
+
+	/**
+	 * Removes the stage from reporting and from the platform MBean server
+	 */
+	public void unregister( StageMetrics stage )
+	{
+		if( stage == null )
+		{
+			return;
+		}
+
+		ObjectName name = mStages.remove( stage );
+
+		if( name != null && name != ObjectName.WILDCARD )
+		{
+			try
+			{
+				if( getMBeanServer().isRegistered( name ) )
+				{
+					getMBeanServer().unregisterMBean( name );
+				}
+			}
+			catch( Exception e )
+			{
+				mLog.error( "Couldn't unregister processing stage metrics [" + 
+					stage.toString() + "] from JMX", e );
+			}
+		}
+	}
+
+	/**
+	 * Currently registered stages
+	 */
+	public List<StageMetrics> getStages()
+	{
+		return new ArrayList<>( mStages.keySet() );
+	}
+
+	private synchronized MBeanServer getMBeanServer()
+	{
+		if( mMBeanServer == null )
+		{
+			mMBeanServer = ManagementFactory.getPlatformMBeanServer();
+		}
+
+		return mMBeanServer;
+	}
+
+	/**
+	 * Schedules the periodic report when the report interval property is set
+	 */
+	public synchronized void startReport( ThreadPoolManager threadPoolManager )
+	{
+		int interval = SystemProperties.getInstance()
+				.get( REPORT_INTERVAL_PROPERTY, 0 );
+
+		if( interval > 0 && mReportTask == null )
+		{
+			mThreadPoolManager = threadPoolManager;
+
+			mReportTask = mThreadPoolManager.scheduleFixedRate( ThreadType.DECODER, 
+					new Runnable()
+			{
+				@Override
+				public void run()
+				{
+					if( !mStages.isEmpty() )
+					{
+						mLog.info( "Processing stage metrics\n" + getReport() );
+					}
+				}
+			}, interval, TimeUnit.SECONDS );
+
+			mLog.info( "Logging processing stage metrics every [" + interval + 
+				"] seconds" );
+		}
+	}
+
+	/**
+	 * Cancels the periodic report
+	 */
+	public synchronized void stopReport()
+	{
+		if( mReportTask != null )
+		{
+			mThreadPoolManager.cancel( mReportTask );
+			mReportTask = null;
+		}
+	}
+
+	/**
+	 * Text report of all registered stages, ordered by processor usage since 
+	 * the previous report.  CPU% is the stage's processing time as a 
+	 * percentage of one core over the report period.
+	 */
+	public synchronized String getReport()
+	{
+		long now = System.nanoTime();
+		long period = Math.max( now - mLastReport, 1 );
+		mLastReport = now;
+
+		final Map<StageMetrics,Double> usage = new ConcurrentHashMap<>();
+		Map<StageMetrics,Long> rate = new ConcurrentHashMap<>();
+
+		List<StageMetrics> stages = getStages();
+
+		for( StageMetrics stage: stages )
+		{
+			long nanos = stage.getProcessingNanos();
+			long samples = stage.getSamplesIn();
+
+			usage.put( stage, 100.0 * 
+				(double)( nanos - stage.mReportedProcessingNanos ) / (double)period );
+
+			rate.put( stage, (long)( (double)( samples - stage.mReportedSamplesIn ) * 
+				1E9 / (double)period ) );
+
+			stage.mReportedProcessingNanos = nanos;
+			stage.mReportedSamplesIn = samples;
+		}
+
+		Collections.sort( stages, new Comparator<StageMetrics>()
+		{
+			@Override
+			public int compare( StageMetrics a, StageMetrics b )
+			{
+				return Double.compare( usage.get( b ), usage.get( a ) );
+			}
+		} );
+
+		StringBuilder sb = new StringBuilder();
+
+		sb.append( String.format( "%-24s %-28s %6s %10s %12s %12s %8s %8s %8s %6s %8s\n", 
+			"CHAIN", "STAGE", "CPU%", "SAMPLES/S", "SAMPLES IN", "SAMPLES OUT", 
+			"MEAN US", "P99 US", "MAX US", "QUEUE", "DROPPED" ) );
+
+		double total = 0.0;
+
+		for( StageMetrics stage: stages )
+		{
+			double cpu = usage.get( stage );
+			total += cpu;
+
+			sb.append( String.format( "%-24.24s %-28.28s %6.2f %10d %12d %12d %8.1f %8d %8d %6d %8d\n", 
+				stage.getChain(), stage.getStage(), cpu, rate.get( stage ), 
+				stage.getSamplesIn(), stage.getSamplesOut(), 
+				stage.getMeanProcessingMicros(), stage.getProcessingMicros99(), 
+				stage.getMaxProcessingMicros(), stage.getQueueDepth(), 
+				stage.getDroppedBuffers() ) );
+		}
+
+		sb.append( String.format( "%-24s %-28s %6.2f\n", "TOTAL", "", total ) );
+
+		return sb.toString();
+	}
+}
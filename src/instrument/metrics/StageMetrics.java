@@ -0,0 +1,356 @@
+/*******************************************************************************
+ *     SDR Trunk 
+ *     Copyright (C) 2014-2016 Dennis Sheirer
+ * 
+ *     This program is free software: you can redistribute it and/or modify
+ *     it under the terms of the GNU General Public License as published by
+ *     the Free Software Foundation, either version 3 of the License, or
+ *     (at your option) any later version.
+ * 
+ *     This program is distributed in the hope that it will be useful,
+ *     but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *     MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *     GNU General Public License for more details.
+ * 
+ *     You should have received a copy of the GNU General Public License
+ *     along with this program.  If not, see <http://www.gnu.org/licenses/>
+ ******************************************************************************/
+package instrument.metrics;
+
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAdder;
+
+import sample.Buffer;
+import sample.Listener;
+
+/**
+ * Low overhead counters for a single processing stage (a processing chain's
+ * source or one of its modules): buffers and samples in, samples out, dropped
+ * buffers, queue depth, and processing time with a power of two histogram.
+ * 
+ * Processing time is measured between begin() and end() and excludes the time
+ * spent in any other stage that is invoked (on the same thread) in between, 
+ * so that a demodulator isn't charged for the decoders that it feeds.  A 
+ * stage is expected to be invoked by one thread at a time.  Counters can be
+ * updated from any thread.
+ */
+public class StageMetrics implements StageMetricsMXBean
+{
+	/* Histogram buckets for 0, 1, 2-3, 4-7 ... microseconds */
+	private static final int HISTOGRAM_BUCKETS = 32;
+
+	/* Per-thread total of measured stage time, used to exclude nested stage 
+	 * time from the enclosing stage */
+	private static final ThreadLocal<long[]> sNestedTime = new ThreadLocal<long[]>()
+	{
+		@Override
+		protected long[] initialValue()
+		{
+			return new long[ 1 ];
+		}
+	};
+
+	private String mChain;
+	private String mStage;
+
+	private LongAdder mBuffersIn = new LongAdder();
+	private LongAdder mSamplesIn = new LongAdder();
+	private LongAdder mSamplesOut = new LongAdder();
+	private LongAdder mDroppedBuffers = new LongAdder();
+	private LongAdder mProcessingNanos = new LongAdder();
+	private LongAdder mInvocations = new LongAdder();
+	private AtomicLongArray mHistogram = new AtomicLongArray( HISTOGRAM_BUCKETS );
+	private volatile long mMaxProcessingNanos;
+	private volatile int mQueueDepth;
+	private volatile int mMaxQueueDepth;
+
+	/* Invocation state - accessed by the processing thread only */
+	private long mBeginNanos;
+	private long mBeginNested;
+
+	/* Values at the last report - accessed by the report thread only */
+	long mReportedProcessingNanos;
+	long mReportedSamplesIn;
+
+	public StageMetrics( String chain, String stage )
+	{
+		mChain = chain;
+		mStage = stage;
+	}
+
+	@Override
+	public String getChain()
+	{
+		return mChain;
+	}
+
+	@Override
+	public String getStage()
+	{
+		return mStage;
+	}
+
+	/**
+	 * Marks the start of stage processing
+	 */
+	public void begin()
+	{
+		mBeginNested = sNestedTime.get()[ 0 ];
+		mBeginNanos = System.nanoTime();
+	}
+
+	/**
+	 * Marks the end of stage processing and records the processing time
+	 */
+	public void end()
+	{
+		long elapsed = System.nanoTime() - mBeginNanos;
+
+		long[] nested = sNestedTime.get();
+
+		long exclusive = elapsed - ( nested[ 0 ] - mBeginNested );
+
+		/* The enclosing stage excludes all of this stage's elapsed time */
+		nested[ 0 ] = mBeginNested + elapsed;
+
+		if( exclusive < 0 )
+		{
+			exclusive = 0;
+		}
+
+		mProcessingNanos.add( exclusive );
+		mInvocations.increment();
+
+		long micros = exclusive / 1000;
+
+		int bucket = 64 - Long.numberOfLeadingZeros( micros );
+
+		mHistogram.incrementAndGet( Math.min( bucket, HISTOGRAM_BUCKETS - 1 ) );
+
+		if( exclusive > mMaxProcessingNanos )
+		{
+			mMaxProcessingNanos = exclusive;
+		}
+	}
+
+	/**
+	 * Records a received buffer of samples
+	 */
+	public void received( int samples )
+	{
+		mBuffersIn.increment();
+		mSamplesIn.add( samples );
+	}
+
+	/**
+	 * Records a produced buffer of samples
+	 */
+	public void produced( int samples )
+	{
+		mSamplesOut.add( samples );
+	}
+
+	/**
+	 * Records dropped buffers
+	 */
+	public void dropped( int buffers )
+	{
+		mDroppedBuffers.add( buffers );
+	}
+
+	/**
+	 * Updates the current queue depth
+	 */
+	public void setQueueDepth( int depth )
+	{
+		mQueueDepth = depth;
+
+		if( depth > mMaxQueueDepth )
+		{
+			mMaxQueueDepth = depth;
+		}
+	}
+
+	/**
+	 * Wraps the listener so that each received element is counted and timed
+	 * as input to this stage
+	 */
+	public <T> Listener<T> input( final Listener<T> listener )
+	{
+		return new Listener<T>()
+		{
+			@Override
+			public void receive( T t )
+			{
+				received( getSampleCount( t ) );
+
+				begin();
+
+				try
+				{
+					listener.receive( t );
+				}
+				finally
+				{
+					end();
+				}
+			}
+		};
+	}
+
+	/**
+	 * Wraps the listener so that each element is counted as output from this
+	 * stage
+	 */
+	public <T> Listener<T> output( final Listener<T> listener )
+	{
+		return new Listener<T>()
+		{
+			@Override
+			public void receive( T t )
+			{
+				produced( getSampleCount( t ) );
+
+				listener.receive( t );
+			}
+		};
+	}
+
+	/**
+	 * Number of samples in a sample buffer, or 1 for any other element
+	 */
+	private static int getSampleCount( Object element )
+	{
+		if( element instanceof Buffer )
+		{
+			float[] samples = ( (Buffer)element ).getSamples();
+
+			return samples != null ? samples.length : 0;
+		}
+
+		return 1;
+	}
+
+	@Override
+	public long getBuffersIn()
+	{
+		return mBuffersIn.sum();
+	}
+
+	@Override
+	public long getSamplesIn()
+	{
+		return mSamplesIn.sum();
+	}
+
+	@Override
+	public long getSamplesOut()
+	{
+		return mSamplesOut.sum();
+	}
+
+	@Override
+	public long getDroppedBuffers()
+	{
+		return mDroppedBuffers.sum();
+	}
+
+	@Override
+	public long getProcessingTimeMillis()
+	{
+		return getProcessingNanos() / 1000000;
+	}
+
+	/**
+	 * Total processing time in nanoseconds
+	 */
+	public long getProcessingNanos()
+	{
+		return mProcessingNanos.sum();
+	}
+
+	@Override
+	public double getMeanProcessingMicros()
+	{
+		long invocations = mInvocations.sum();
+
+		if( invocations == 0 )
+		{
+			return 0.0;
+		}
+
+		return (double)mProcessingNanos.sum() / (double)invocations / 1000.0;
+	}
+
+	@Override
+	public long getProcessingMicros99()
+	{
+		long total = 0;
+
+		for( int x = 0; x < HISTOGRAM_BUCKETS; x++ )
+		{
+			total += mHistogram.get( x );
+		}
+
+		long target = total - ( total / 100 );
+		long count = 0;
+
+		for( int x = 0; x < HISTOGRAM_BUCKETS; x++ )
+		{
+			count += mHistogram.get( x );
+
+			if( count >= target && count > 0 )
+			{
+				/* Upper bound of the bucket */
+				return ( 1l << x ) - 1;
+			}
+		}
+
+		return 0;
+	}
+
+	@Override
+	public long getMaxProcessingMicros()
+	{
+		return mMaxProcessingNanos / 1000;
+	}
+
+	@Override
+	public int getQueueDepth()
+	{
+		return mQueueDepth;
+	}
+
+	@Override
+	public int getMaxQueueDepth()
+	{
+		return mMaxQueueDepth;
+	}
+
+	@Override
+	public void reset()
+	{
+		mBuffersIn.reset();
+		mSamplesIn.reset();
+		mSamplesOut.reset();
+		mDroppedBuffers.reset();
+		mProcessingNanos.reset();
+		mInvocations.reset();
+
+		for( int x = 0; x < HISTOGRAM_BUCKETS; x++ )
+		{
+			mHistogram.set( x, 0 );
+		}
+
+		mMaxProcessingNanos = 0;
+		mMaxQueueDepth = mQueueDepth;
+		mReportedProcessingNanos = 0;
+		mReportedSamplesIn = 0;
+	}
+
+	@Override
+	public String toString()
+	{
+		return mChain + " - " + mStage;
+	}
+}
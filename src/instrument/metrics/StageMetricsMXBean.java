@@ -0,0 +1,92 @@
+/*******************************************************************************
+ *     SDR Trunk 
+ *     Copyright (C) 2014-2016 Dennis Sheirer
+ * 
+ *     This program is free software: you can redistribute it and/or modify
+ *     it under the terms of the GNU General Public License as published by
+ *     the Free Software Foundation, either version 3 of the License, or
+ *     (at your option) any later version.
+ * 
+ *     This program is distributed in the hope that it will be useful,
+ *     but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *     MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *     GNU General Public License for more details.
+ * 
+ *     You should have received a copy of the GNU General Public License
+ *     along with this program.  If not, see <http://www.gnu.org/licenses/>
+ ******************************************************************************/
+package instrument.metrics;
+
+/**
+ * JMX management interface for processing stage metrics.  Counts and times 
+ * accumulate from the time that the stage is constructed or reset.
+ */
+public interface StageMetricsMXBean
+{
+	/**
+	 * Name of the processing chain (channel) that contains the stage
+	 */
+	public String getChain();
+
+	/**
+	 * Name of the processing stage (source or module)
+	 */
+	public String getStage();
+
+	/**
+	 * Number of buffers received by the stage
+	 */
+	public long getBuffersIn();
+
+	/**
+	 * Number of samples received by the stage
+	 */
+	public long getSamplesIn();
+
+	/**
+	 * Number of samples produced by the stage
+	 */
+	public long getSamplesOut();
+
+	/**
+	 * Number of buffers that were dropped by the stage
+	 */
+	public long getDroppedBuffers();
+
+	/**
+	 * Total processing time in milliseconds, excluding time spent in 
+	 * downstream stages that were invoked by this stage
+	 */
+	public long getProcessingTimeMillis();
+
+	/**
+	 * Average processing time per invocation in microseconds
+	 */
+	public double getMeanProcessingMicros();
+
+	/**
+	 * 99th percentile processing time per invocation in microseconds, with 
+	 * power of two resolution
+	 */
+	public long getProcessingMicros99();
+
+	/**
+	 * Maximum processing time per invocation in microseconds
+	 */
+	public long getMaxProcessingMicros();
+
+	/**
+	 * Current number of buffers waiting to be processed by the stage
+	 */
+	public int getQueueDepth();
+
+	/**
+	 * Maximum number of buffers waiting to be processed by the stage
+	 */
+	public int getMaxQueueDepth();
+
+	/**
+	 * Resets all counters
+	 */
+	public void reset();
+}
@@ -17,7 +17,7 @@
  ******************************************************************************/
 package instrument.tap;
 
-import java.util.ArrayList;
+import java.util.Arrays;
 
 public abstract class Tap
 {
@@ -25,7 +25,10 @@ public abstract class Tap
 	protected String mName;
 	protected int mDelay;
 
-	protected ArrayList<TapListener> mListeners = new ArrayList<TapListener>();
+	/* Copy-on-write array so that taps can dispatch on the processing thread
+	 * without locks or iterator allocation while the viewer adds and removes
+	 * listeners on the event dispatch thread */
+	protected volatile TapListener<?>[] mListeners = new TapListener<?>[ 0 ];
 
 	/**
 	 * Instrumentation tap.  Provides a tap into a data stream or event stream
@@ -70,20 +73,41 @@ public abstract class Tap
 	/**
 	 * Registers a listener for data or events produced by this tap
 	 */
-	public void addListener( TapListener listener )
+	public synchronized void addListener( TapListener<?> listener )
 	{
-		if( !mListeners.contains( listener ) )
+		for( TapListener<?> existing: mListeners )
 		{
-			mListeners.add( listener );
+			if( existing == listener )
+			{
+				return;
+			}
 		}
+		
+		TapListener<?>[] listeners = Arrays.copyOf( mListeners, mListeners.length + 1 );
+		
+		listeners[ mListeners.length ] = listener;
+		
+		mListeners = listeners;
 	}
 
 	/**
 	 * Removes the listener from receiving data or events from this tap
 	 */
-	public void removeListener( TapListener listener )
+	public synchronized void removeListener( TapListener<?> listener )
 	{
-		mListeners.remove( listener );
+		TapListener<?>[] listeners = new TapListener<?>[ mListeners.length ];
+		
+		int count = 0;
+		
+		for( TapListener<?> existing: mListeners )
+		{
+			if( existing != listener )
+			{
+				listeners[ count++ ] = existing;
+			}
+		}
+		
+		mListeners = Arrays.copyOf( listeners, count );
 	}
 
 	/**
@@ -91,6 +115,6 @@ public abstract class Tap
 	 */
 	public int getListenerCount()
 	{
-		return mListeners.size();
+		return mListeners.length;
 	}
 }
@@ -18,9 +18,11 @@
 package module;
 
 import java.util.ArrayList;
+import java.util.LinkedHashMap;
 import java.util.List;
-import java.util.concurrent.Executors;
+import java.util.Map;
 import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
 import java.util.concurrent.atomic.AtomicBoolean;
 
 import message.IMessageListener;
@@ -38,6 +40,9 @@ import module.decode.state.DecoderStateEvent.Event;
 import module.decode.state.IDecoderStateEventListener;
 import module.decode.state.IDecoderStateEventProvider;
 import module.decode.state.State;
+import module.decode.state.TrafficChannelManager;
+import module.decode.Decoder;
+import module.decode.DecoderType;
 
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
@@ -56,6 +61,8 @@ import source.RealSource;
 import source.Source;
 import source.SourceException;
 import source.tuner.TunerChannelSource;
+import source.tuner.affinity.TunerAffinityManager;
+import source.tuner.affinity.TunerWorkerGroup;
 import source.tuner.frequency.FrequencyChangeEvent;
 import source.tuner.frequency.IFrequencyChangeListener;
 import source.tuner.frequency.IFrequencyChangeProvider;
@@ -68,7 +75,14 @@ import audio.metadata.Metadata;
 import audio.squelch.ISquelchStateListener;
 import audio.squelch.ISquelchStateProvider;
 import audio.squelch.SquelchState;
+import instrument.metrics.MetricsManager;
+import instrument.metrics.StageMetrics;
 import controller.NamingThreadFactory;
+import controller.pipeline.ChannelPipelineManager;
+import controller.pipeline.HandOffQueue;
+import controller.pipeline.SerialExecutor;
+import controller.overload.OverloadController;
+import controller.overload.OverloadController.ShedLevel;
 import controller.channel.Channel.ChannelType;
 import controller.channel.ChannelEvent;
 import controller.channel.IChannelEventListener;
@@ -91,6 +105,10 @@ import controller.channel.IChannelEventProvider;
  * 
  * Optional: if you want to reuse the processing chain with a new sample source,
  * invoke the following method sequence:  stop(), setSource(), start()
+ * 
+ * Sample buffers flowing into and out of each module, and through a tuner 
+ * channel source, are counted and timed by per-stage metrics that are 
+ * registered with the MetricsManager while the chain is running.
  */
 public class ProcessingChain implements IChannelEventListener
 {
@@ -108,12 +126,23 @@ public class ProcessingChain implements IChannelEventListener
 	private Broadcaster<RealBuffer> mUnFilteredRealBufferBroadcaster = new Broadcaster<>();
 	private Broadcaster<SquelchState> mSquelchStateBroadcaster = new Broadcaster<>();
 	
+	private HandOffQueue<ComplexBuffer> mComplexBufferHandOff;
+	private HandOffQueue<RealBuffer> mFilteredRealBufferHandOff;
+	private HandOffQueue<RealBuffer> mUnFilteredRealBufferHandOff;
+	private List<StageMetrics> mHandOffMetrics = new ArrayList<>();
+	private SerialExecutor mSerialExecutor;
+	
 	private ScheduledExecutorService mScheduledExecutorService;
+	private TunerWorkerGroup mWorkerGroup;
+	private ScheduledExecutorService mWorkerExecutor;
 	private String mName;
+	private ChannelType mChannelType;
 	private AtomicBoolean mRunning = new AtomicBoolean();
 	
 	protected Source mSource;
 	private List<Module> mModules = new ArrayList<>();
+	private Map<Module,StageMetrics> mModuleMetrics = new LinkedHashMap<>();
+	private StageMetrics mSourceMetrics;
 	private CallEventModel mCallEventModel;
 	private ChannelState mChannelState;
 	private MessageActivityModel mMessageActivityModel;
@@ -127,6 +156,33 @@ public class ProcessingChain implements IChannelEventListener
 	public ProcessingChain( String name, ChannelType channelType )
 	{
 		mName = name;
+		mChannelType = channelType;
+		
+		ChannelPipelineManager pipeline = ChannelPipelineManager.getInstance();
+		
+		if( pipeline.isEnabled() )
+		{
+			/* Source, demodulator and decoder stages are linked by bounded
+			 * hand-off queues and run on the shared carrier threads.  The 
+			 * hand-off drains and the module timers share a serial executor
+			 * so that this chain's modules never run concurrently. */
+			mSerialExecutor = pipeline.createSerialExecutor();
+			
+			mComplexBufferHandOff = pipeline
+					.createHandOffQueue( mSerialExecutor, mComplexBufferBroadcaster );
+			mComplexBufferHandOff.setMetrics( 
+					createHandOffMetrics( "ComplexBufferHandOff" ) );
+			
+			mFilteredRealBufferHandOff = pipeline
+					.createHandOffQueue( mSerialExecutor, mFilteredRealBufferBroadcaster );
+			mFilteredRealBufferHandOff.setMetrics( 
+					createHandOffMetrics( "FilteredRealBufferHandOff" ) );
+			
+			mUnFilteredRealBufferHandOff = pipeline
+					.createHandOffQueue( mSerialExecutor, mUnFilteredRealBufferBroadcaster );
+			mUnFilteredRealBufferHandOff.setMetrics( 
+					createHandOffMetrics( "UnFilteredRealBufferHandOff" ) );
+		}
 		
 		mChannelState = new ChannelState( channelType );
 		addModule( mChannelState );
@@ -167,9 +223,7 @@ public class ProcessingChain implements IChannelEventListener
 		}
 		
 		mModules.clear();
-		
-		mScheduledExecutorService.shutdownNow();
-		mScheduledExecutorService = null;
+		mModuleMetrics.clear();
 		
 		mAudioPacketBroadcaster.dispose();
 		mCallEventBroadcaster.dispose();
@@ -182,6 +236,33 @@ public class ProcessingChain implements IChannelEventListener
 		if( mScheduledExecutorService != null )
 		{
 			mScheduledExecutorService.shutdownNow();
+			mScheduledExecutorService = null;
+		}
+		
+		if( mSerialExecutor != null )
+		{
+			mSerialExecutor.shutdownNow();
+			mSerialExecutor = null;
+		}
+	}
+
+	/**
+	 * Creates the chain's executor and starts its thread ahead of the first
+	 * start() so that a pre-built (pooled) chain can begin processing as soon
+	 * as it is given a source.  Invocations on a prepared chain, or with 
+	 * pipelined channel execution enabled, have no effect.
+	 */
+	public void prepare()
+	{
+		if( mScheduledExecutorService == null && 
+			!ChannelPipelineManager.getInstance().isEnabled() )
+		{
+			ScheduledThreadPoolExecutor executor = new ScheduledThreadPoolExecutor( 
+					1, new NamingThreadFactory( "channel " + mName ) );
+
+			executor.prestartAllCoreThreads();
+
+			mScheduledExecutorService = executor;
 		}
 	}
 
@@ -213,6 +294,14 @@ public class ProcessingChain implements IChannelEventListener
 		return mSource != null;
 	}
 
+	/**
+	 * Current sample source, or null
+	 */
+	public Source getSource()
+	{
+		return mSource;
+	}
+
 	/**
 	 * Applies a sample source to this processing chain.  Processing won't 
 	 * start until the start() method is invoked.
@@ -320,8 +409,8 @@ public class ProcessingChain implements IChannelEventListener
 		
 		if( module instanceof IComplexBufferListener )
 		{
-			mComplexBufferBroadcaster.addListener( 
-				((IComplexBufferListener)module).getComplexBufferListener() );
+			mComplexBufferBroadcaster.addListener( getStageMetrics( module )
+				.input( ((IComplexBufferListener)module).getComplexBufferListener() ) );
 		}
 		
 		if( module instanceof IDecoderStateEventListener )
@@ -350,8 +439,18 @@ public class ProcessingChain implements IChannelEventListener
 		
 		if( module instanceof IFilteredRealBufferListener )
 		{
-			mFilteredRealBufferBroadcaster.addListener( 
-				((IFilteredRealBufferListener)module).getFilteredRealBufferListener() );
+			Listener<RealBuffer> listener = getStageMetrics( module )
+				.input( ((IFilteredRealBufferListener)module).getFilteredRealBufferListener() );
+			
+			/* Auxiliary decoders are among the first work shed under overload */
+			if( isAuxiliaryDecoder( module ) && 
+				OverloadController.getInstance().isEnabled() )
+			{
+				listener = OverloadController.getInstance()
+						.gate( ShedLevel.AUXILIARY_DECODERS, listener );
+			}
+			
+			mFilteredRealBufferBroadcaster.addListener( listener );
 		}
 
 		if( module instanceof ISquelchStateListener )
@@ -362,8 +461,8 @@ public class ProcessingChain implements IChannelEventListener
 
 		if( module instanceof IUnFilteredRealBufferListener )
 		{
-			mUnFilteredRealBufferBroadcaster.addListener( 
-				((IUnFilteredRealBufferListener)module).getUnFilteredRealBufferListener() );
+			mUnFilteredRealBufferBroadcaster.addListener( getStageMetrics( module )
+				.input( ((IUnFilteredRealBufferListener)module).getUnFilteredRealBufferListener() ) );
 		}
 	}
 	
@@ -415,8 +514,8 @@ public class ProcessingChain implements IChannelEventListener
 
 		if( module instanceof IFilteredRealBufferProvider )
 		{
-			((IFilteredRealBufferProvider)module)
-				.setFilteredRealBufferListener( mFilteredRealBufferBroadcaster );
+			((IFilteredRealBufferProvider)module).setFilteredRealBufferListener( 
+				getStageMetrics( module ).output( getFilteredRealBufferInput() ) );
 		}
 		
 		if( module instanceof ISquelchStateProvider )
@@ -427,9 +526,159 @@ public class ProcessingChain implements IChannelEventListener
 
 		if( module instanceof IUnFilteredRealBufferProvider )
 		{
-			((IUnFilteredRealBufferProvider)module)
-				.setUnFilteredRealBufferListener( mUnFilteredRealBufferBroadcaster );
+			((IUnFilteredRealBufferProvider)module).setUnFilteredRealBufferListener( 
+				getStageMetrics( module ).output( mUnFilteredRealBufferHandOff != null ?
+					mUnFilteredRealBufferHandOff : mUnFilteredRealBufferBroadcaster ) );
+		}
+	}
+
+	/**
+	 * Indicates if the module is one of the auxiliary decoders
+	 */
+	private static boolean isAuxiliaryDecoder( Module module )
+	{
+		return module instanceof Decoder && DecoderType.getAuxDecoders()
+				.contains( ((Decoder)module).getDecoderType() );
+	}
+
+	/**
+	 * Indicates if this chain is a trunking control channel, i.e. a standard
+	 * channel that allocates traffic channels
+	 */
+	public boolean isControlChannel()
+	{
+		if( mChannelType == ChannelType.STANDARD )
+		{
+			for( Module module: mModules )
+			{
+				if( module instanceof TrafficChannelManager )
+				{
+					return true;
+				}
+			}
+		}
+		
+		return false;
+	}
+
+	/**
+	 * Deepest sample buffer queue across the stages of this chain
+	 */
+	public int getMaximumQueueDepth()
+	{
+		int depth = 0;
+		
+		for( StageMetrics metrics: getStageMetrics() )
+		{
+			depth = Math.max( depth, metrics.getQueueDepth() );
 		}
+		
+		return depth;
+	}
+
+	/**
+	 * Total sample buffers dropped across the stages of this chain
+	 */
+	public long getDroppedBufferCount()
+	{
+		long dropped = 0;
+		
+		for( StageMetrics metrics: getStageMetrics() )
+		{
+			dropped += metrics.getDroppedBuffers();
+		}
+		
+		return dropped;
+	}
+
+	/**
+	 * Listener that feeds complex buffers to the modules, either directly or
+	 * through the pipeline hand-off queue
+	 */
+	private Listener<ComplexBuffer> getComplexBufferInput()
+	{
+		return mComplexBufferHandOff != null ? 
+				mComplexBufferHandOff : mComplexBufferBroadcaster;
+	}
+
+	/**
+	 * Listener that feeds filtered real buffers to the modules, either 
+	 * directly or through the pipeline hand-off queue
+	 */
+	private Listener<RealBuffer> getFilteredRealBufferInput()
+	{
+		return mFilteredRealBufferHandOff != null ? 
+				mFilteredRealBufferHandOff : mFilteredRealBufferBroadcaster;
+	}
+
+	/**
+	 * Creates the metrics for a pipeline hand-off queue
+	 */
+	private StageMetrics createHandOffMetrics( String stage )
+	{
+		StageMetrics metrics = new StageMetrics( mName, stage );
+		
+		mHandOffMetrics.add( metrics );
+		
+		return metrics;
+	}
+
+	/**
+	 * Starts or stops the pipeline hand-off queues
+	 */
+	private void setHandOffsRunning( boolean running )
+	{
+		for( HandOffQueue<?> queue: new HandOffQueue<?>[] { mComplexBufferHandOff,
+				mFilteredRealBufferHandOff, mUnFilteredRealBufferHandOff } )
+		{
+			if( queue != null )
+			{
+				if( running )
+				{
+					queue.start();
+				}
+				else
+				{
+					queue.stop();
+				}
+			}
+		}
+	}
+
+	/**
+	 * Metrics for the module, created on first use
+	 */
+	private StageMetrics getStageMetrics( Module module )
+	{
+		StageMetrics metrics = mModuleMetrics.get( module );
+
+		if( metrics == null )
+		{
+			metrics = new StageMetrics( mName, module.getClass().getSimpleName() );
+
+			mModuleMetrics.put( module, metrics );
+		}
+
+		return metrics;
+	}
+
+	/**
+	 * Metrics for the sample source and for each module that consumes or 
+	 * produces sample buffers
+	 */
+	public List<StageMetrics> getStageMetrics()
+	{
+		List<StageMetrics> metrics = new ArrayList<>();
+
+		if( mSourceMetrics != null )
+		{
+			metrics.add( mSourceMetrics );
+		}
+
+		metrics.addAll( mHandOffMetrics );
+		metrics.addAll( mModuleMetrics.values() );
+
+		return metrics;
 	}
 	
 	/**
@@ -448,16 +697,27 @@ public class ProcessingChain implements IChannelEventListener
 					module.reset();
 				}
 				
+				/* Tuner channel source is measured as the first stage */
+				if( mSource instanceof TunerChannelSource )
+				{
+					if( mSourceMetrics == null )
+					{
+						mSourceMetrics = new StageMetrics( mName, "TunerChannelSource" );
+					}
+
+					((TunerChannelSource)mSource).setMetrics( mSourceMetrics );
+				}
+
 				/* Register with the source to receive sample data.  Setup a 
 				 * timer task to process the buffer queues 50 times a second 
 				 * (every 20 ms) */
 				switch( mSource.getSampleType() )
 				{
 					case COMPLEX:
-						((ComplexSource)mSource).setListener( mComplexBufferBroadcaster );
+						((ComplexSource)mSource).setListener( getComplexBufferInput() );
 						break;
 					case REAL:
-						((RealSource)mSource).setListener( mFilteredRealBufferBroadcaster );
+						((RealSource)mSource).setListener( getFilteredRealBufferInput() );
 						break;
 					default:
 						throw new IllegalArgumentException( "Unrecognized source "
@@ -484,10 +744,25 @@ public class ProcessingChain implements IChannelEventListener
 					}
 				}
 				
-				if( mScheduledExecutorService == null )
+				ScheduledExecutorService executor = getExecutor();
+				
+				/* With pipelined channel execution, the modules run serially
+				 * with the hand-off drains that feed them, on the same threads
+				 * as the source */
+				ScheduledExecutorService moduleExecutor = executor;
+				
+				if( mSerialExecutor != null )
 				{
-					mScheduledExecutorService = Executors.newScheduledThreadPool( 
-							1, new NamingThreadFactory( "channel " + mName ) );
+					mSerialExecutor.setCarrier( executor );
+					
+					moduleExecutor = mSerialExecutor;
+				}
+
+				setHandOffsRunning( true );
+
+				for( StageMetrics metrics: getStageMetrics() )
+				{
+					MetricsManager.getInstance().register( metrics );
 				}
 				
 				/* Start each of the modules */
@@ -495,7 +770,7 @@ public class ProcessingChain implements IChannelEventListener
 				{
 					try
 					{
-						module.start( mScheduledExecutorService );
+						module.start( moduleExecutor );
 					}
 					catch( Exception e )
 					{
@@ -503,7 +778,9 @@ public class ProcessingChain implements IChannelEventListener
 					}
 				}
 
-				mSource.start( mScheduledExecutorService );
+				mSource.start( executor );
+
+				OverloadController.getInstance().register( this );
 			}
 			else
 			{
@@ -520,6 +797,8 @@ public class ProcessingChain implements IChannelEventListener
 	{
 		if( mRunning.compareAndSet( true, false ) )
 		{
+			OverloadController.getInstance().unregister( this );
+			
 			if( mSource != null )
 			{
 				mSource.stop();
@@ -527,10 +806,10 @@ public class ProcessingChain implements IChannelEventListener
 				switch( mSource.getSampleType() )
 				{
 					case COMPLEX:
-						((ComplexSource)mSource).removeListener( mComplexBufferBroadcaster );
+						((ComplexSource)mSource).removeListener( getComplexBufferInput() );
 						break;
 					case REAL:
-						((RealSource)mSource).removeListener( mFilteredRealBufferBroadcaster );
+						((RealSource)mSource).removeListener( getFilteredRealBufferInput() );
 						break;
 					default:
 						throw new IllegalArgumentException( "Unrecognized source "
@@ -542,13 +821,65 @@ public class ProcessingChain implements IChannelEventListener
 				mSource = null;
 			}
 			
+			setHandOffsRunning( false );
+			
 			/* Stop each of the modules */
 			for( Module module: mModules )
 			{
 				module.stop();
 			}
+
+			/* Return the tuner worker once the modules have cancelled their 
+			 * scheduled tasks */
+			if( mWorkerGroup != null )
+			{
+				mWorkerGroup.release( mWorkerExecutor );
+				mWorkerGroup = null;
+				mWorkerExecutor = null;
+			}
+
+			for( StageMetrics metrics: getStageMetrics() )
+			{
+				MetricsManager.getInstance().unregister( metrics );
+			}
 		}
 	}
+
+	/**
+	 * Executor for the source and the modules.  With pipelined channel 
+	 * execution enabled, the modules and hand-off drains run on the chain's
+	 * serial executor, which runs its tasks on this executor.
+	 * 
+	 * With tuner affinity scheduling enabled, a tuner channel source runs on
+	 * the least loaded worker of its tuner's worker group so that the channel 
+	 * shares cores (and caches) with the tuner that produces its samples.  
+	 * Otherwise, with pipelined channel execution enabled, the shared carrier
+	 * threads are used, or else the chain's own executor.
+	 */
+	private ScheduledExecutorService getExecutor()
+	{
+		TunerAffinityManager affinity = TunerAffinityManager.getInstance();
+		
+		if( affinity.isEnabled() && mSource instanceof TunerChannelSource )
+		{
+			mWorkerGroup = affinity.getWorkerGroup( ((TunerChannelSource)mSource)
+					.getTuner().getTunerController() );
+			mWorkerExecutor = mWorkerGroup.acquire();
+			
+			return mWorkerExecutor;
+		}
+		
+		ChannelPipelineManager pipeline = ChannelPipelineManager.getInstance();
+		
+		if( pipeline.isEnabled() )
+		{
+			return pipeline.getExecutor();
+		}
+		
+		prepare();
+		
+		return mScheduledExecutorService;
+	}
 	
 	/**
 	 * Adds the listener to receive audio packets from all modules.
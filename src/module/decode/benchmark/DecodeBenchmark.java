@@ -0,0 +1,411 @@
+/*******************************************************************************
+ *     SDR Trunk 
+ *     Copyright (C) 2014-2016 Dennis Sheirer
+ * 
+ *     This program is free software: you can redistribute it and/or modify
+ *     it under the terms of the GNU General Public License as published by
+ *     the Free Software Foundation, either version 3 of the License, or
+ *     (at your option) any later version.
+ * 
+ *     This program is distributed in the hope that it will be useful,
+ *     but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *     MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *     GNU General Public License for more details.
+ * 
+ *     You should have received a copy of the GNU General Public License
+ *     along with this program.  If not, see <http://www.gnu.org/licenses/>
+ ******************************************************************************/
+package module.decode.benchmark;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicLong;
+
+import message.Message;
+import module.ProcessingChain;
+import module.decode.DecoderFactory;
+import module.decode.benchmark.SignalGenerator.SyntheticSignal;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import sample.Listener;
+import controller.channel.Channel;
+import controller.channel.Channel.ChannelType;
+import controller.channel.ChannelModel;
+import controller.channel.map.ChannelMapModel;
+
+/**
+ * End-to-end decode throughput benchmark.  Synthesizes P25 Phase 1 C4FM, 
+ * MPT1327 and LTR-Net control channel signals and plays them through 
+ * processing chains built by the DecoderFactory, exactly as they would be
+ * built for a playlist channel, and then reports for each protocol:
+ * 
+ * - decoded (valid) messages per second and the decode success ratio
+ * - processing speed relative to real time, per channel
+ * - CPU usage per channel, as a percentage of one core at real time rate
+ * - latency from the arrival of the final sample of a frame to the message
+ * 
+ * Usage: DecodeBenchmark [channels per protocol] [seconds] [fast|realtime]
+ * 
+ * Fast mode (default) dispatches samples as fast as each channel can process
+ * them and is intended for comparing releases and sizing hardware.  Real time
+ * mode paces the samples like a tuner channel and gives meaningful latency.
+ */
+public class DecodeBenchmark
+{
+	private final static Logger mLog = LoggerFactory.getLogger( DecodeBenchmark.class );
+
+	/* Duration of the generated signal that is looped for each pass */
+	private static final double SIGNAL_DURATION = 10.0;
+
+	private static final int DEFAULT_CHANNELS = 1;
+	private static final int DEFAULT_DURATION = 60;
+
+	private ChannelModel mChannelModel = new ChannelModel();
+	private ChannelMapModel mChannelMapModel = new ChannelMapModel();
+
+	private int mChannels;
+	private int mPasses;
+	private boolean mRealTime;
+
+	/**
+	 * Constructs a benchmark
+	 * 
+	 * @param channels - number of concurrent channels per protocol
+	 * @param seconds - signal duration to process per channel
+	 * @param realTime - pace samples in real time or process as fast as possible
+	 */
+	public DecodeBenchmark( int channels, int seconds, boolean realTime )
+	{
+		mChannels = channels;
+		mPasses = (int)Math.max( 1, Math.ceil( seconds / SIGNAL_DURATION ) );
+		mRealTime = realTime;
+	}
+
+	/**
+	 * Runs the benchmark for each of the signal generators and returns the 
+	 * results
+	 */
+	public List<Result> run( List<SignalGenerator> generators ) throws InterruptedException
+	{
+		List<Result> results = new ArrayList<>();
+
+		for( SignalGenerator generator: generators )
+		{
+			results.add( run( generator ) );
+		}
+
+		return results;
+	}
+
+	/**
+	 * Runs the configured number of concurrent channels decoding the signal
+	 * from the generator.
+	 */
+	public Result run( SignalGenerator generator ) throws InterruptedException
+	{
+		SyntheticSignal signal = generator.generate( SIGNAL_DURATION );
+
+		mLog.info( "Benchmarking [" + signal.getDecoderType().getDisplayString() + 
+				"] channels [" + mChannels + "] signal [" + 
+				( signal.getDuration() * mPasses ) + " seconds] mode [" + 
+				( mRealTime ? "real time" : "fast" ) + "]" );
+
+		List<ChannelBenchmark> channels = new ArrayList<>();
+
+		for( int x = 0; x < mChannels; x++ )
+		{
+			channels.add( new ChannelBenchmark( generator, signal, 
+				signal.getDecoderType().name() + " " + ( x + 1 ) ) );
+		}
+
+		for( ChannelBenchmark channel: channels )
+		{
+			channel.start();
+		}
+
+		Result result = new Result( signal, mPasses, mRealTime );
+
+		for( ChannelBenchmark channel: channels )
+		{
+			channel.awaitCompletion();
+
+			result.add( channel );
+
+			channel.dispose();
+		}
+
+		return result;
+	}
+
+	/**
+	 * Processing chain for a single channel, fed by a synthetic signal source
+	 * and monitored for decoded messages.
+	 */
+	public class ChannelBenchmark implements Listener<Message>
+	{
+		private ProcessingChain mProcessingChain;
+		private SyntheticSignalSource mSource;
+		private AtomicLong mMessages = new AtomicLong();
+		private AtomicLong mInvalidMessages = new AtomicLong();
+		private long mLatencyTotal;
+		private long mLatencyMaximum;
+		private long mLatencyCount;
+
+		public ChannelBenchmark( SignalGenerator generator, 
+								 SyntheticSignal signal, 
+								 String name )
+		{
+			Channel channel = new Channel( name, ChannelType.STANDARD );
+			channel.setDecodeConfiguration( generator.getDecodeConfiguration() );
+
+			mProcessingChain = new ProcessingChain( name, ChannelType.STANDARD );
+
+			mProcessingChain.addModules( DecoderFactory.getPrimaryModules( 
+				mChannelModel, mChannelMapModel, null, null, channel ) );
+
+			mSource = new SyntheticSignalSource( signal, mPasses, mRealTime );
+
+			mProcessingChain.setSource( mSource );
+
+			mProcessingChain.addMessageListener( this );
+		}
+
+		public void start()
+		{
+			mProcessingChain.start();
+		}
+
+		public void awaitCompletion() throws InterruptedException
+		{
+			mSource.awaitCompletion();
+		}
+
+		public void dispose()
+		{
+			mProcessingChain.dispose();
+		}
+
+		/**
+		 * Messages arrive on the processing chain thread that dispatched the
+		 * samples
+		 */
+		@Override
+		public void receive( Message message )
+		{
+			if( message.isValid() )
+			{
+				mMessages.incrementAndGet();
+
+				long frameTime = mSource.getLatestFrameTime();
+
+				if( frameTime != 0 )
+				{
+					long latency = System.nanoTime() - frameTime;
+
+					synchronized( this )
+					{
+						mLatencyTotal += latency;
+						mLatencyCount++;
+
+						if( latency > mLatencyMaximum )
+						{
+							mLatencyMaximum = latency;
+						}
+					}
+				}
+			}
+			else
+			{
+				mInvalidMessages.incrementAndGet();
+			}
+		}
+	}
+
+	/**
+	 * Aggregated results for all channels of one protocol
+	 */
+	public static class Result
+	{
+		private SyntheticSignal mSignal;
+		private int mPasses;
+		private boolean mRealTime;
+		private int mChannels;
+		private long mMessages;
+		private long mInvalidMessages;
+		private long mSamples;
+		private long mCPUTime;
+		private long mElapsedTime;
+		private long mLatencyTotal;
+		private long mLatencyCount;
+		private long mLatencyMaximum;
+
+		public Result( SyntheticSignal signal, int passes, boolean realTime )
+		{
+			mSignal = signal;
+			mPasses = passes;
+			mRealTime = realTime;
+		}
+
+		private void add( ChannelBenchmark channel )
+		{
+			mChannels++;
+			mMessages += channel.mMessages.get();
+			mInvalidMessages += channel.mInvalidMessages.get();
+			mSamples += channel.mSource.getSamplesDispatched();
+			mCPUTime += channel.mSource.getCPUTime();
+			mElapsedTime = Math.max( mElapsedTime, channel.mSource.getElapsedTime() );
+
+			synchronized( channel )
+			{
+				mLatencyTotal += channel.mLatencyTotal;
+				mLatencyCount += channel.mLatencyCount;
+				mLatencyMaximum = Math.max( mLatencyMaximum, channel.mLatencyMaximum );
+			}
+		}
+
+		/**
+		 * Valid messages decoded per second of elapsed time, all channels
+		 */
+		public double getMessageRate()
+		{
+			return mElapsedTime > 0 ? mMessages * 1E9 / mElapsedTime : 0.0;
+		}
+
+		/**
+		 * Ratio of valid decoded messages to transmitted messages
+		 */
+		public double getDecodeRatio()
+		{
+			long expected = (long)mSignal.getMessageCount() * mPasses * mChannels;
+
+			return expected > 0 ? (double)mMessages / (double)expected : 0.0;
+		}
+
+		/**
+		 * Signal seconds processed per elapsed second, per channel
+		 */
+		public double getRealTimeFactor()
+		{
+			if( mElapsedTime > 0 && mChannels > 0 )
+			{
+				double signalSeconds = (double)mSamples / mChannels / 
+						SignalGenerator.SAMPLE_RATE;
+
+				return signalSeconds * 1E9 / mElapsedTime;
+			}
+
+			return 0.0;
+		}
+
+		/**
+		 * Average CPU per channel as a percentage of one core when processing
+		 * the signal at the real time sample rate
+		 */
+		public double getCPUPercentage()
+		{
+			if( mSamples > 0 )
+			{
+				double signalNanos = (double)mSamples / 
+						SignalGenerator.SAMPLE_RATE * 1E9;
+
+				return mCPUTime / signalNanos * 100.0;
+			}
+
+			return 0.0;
+		}
+
+		/**
+		 * Average sample to message latency in milliseconds
+		 */
+		public double getAverageLatency()
+		{
+			return mLatencyCount > 0 ? mLatencyTotal / mLatencyCount / 1E6 : 0.0;
+		}
+
+		/**
+		 * Maximum sample to message latency in milliseconds
+		 */
+		public double getMaximumLatency()
+		{
+			return mLatencyMaximum / 1E6;
+		}
+
+		@Override
+		public String toString()
+		{
+			StringBuilder sb = new StringBuilder();
+
+			sb.append( String.format( "%-16s", 
+					mSignal.getDecoderType().getDisplayString() ) );
+			sb.append( String.format( " channels:%3d", mChannels ) );
+			sb.append( String.format( " messages:%8d", mMessages ) );
+			sb.append( String.format( " invalid:%6d", mInvalidMessages ) );
+			sb.append( String.format( " decoded:%6.1f%%", getDecodeRatio() * 100.0 ) );
+			sb.append( String.format( " msg/s:%9.1f", getMessageRate() ) );
+			sb.append( String.format( " speed:%7.1fx", getRealTimeFactor() ) );
+			sb.append( String.format( " cpu/channel:%6.2f%%", getCPUPercentage() ) );
+			sb.append( String.format( " latency avg:%7.2f ms max:%7.2f ms%s", 
+				getAverageLatency(), getMaximumLatency(), 
+				( mRealTime ? "" : " (fast mode)" ) ) );
+
+			return sb.toString();
+		}
+	}
+
+	public static void main( String[] args )
+	{
+		int channels = DEFAULT_CHANNELS;
+		int seconds = DEFAULT_DURATION;
+		boolean realTime = false;
+
+		try
+		{
+			if( args.length > 0 )
+			{
+				channels = Integer.parseInt( args[ 0 ] );
+			}
+
+			if( args.length > 1 )
+			{
+				seconds = Integer.parseInt( args[ 1 ] );
+			}
+		}
+		catch( NumberFormatException nfe )
+		{
+			mLog.error( "Usage: DecodeBenchmark [channels per protocol] "
+					+ "[seconds] [fast|realtime]" );
+			return;
+		}
+
+		if( args.length > 2 )
+		{
+			realTime = args[ 2 ].equalsIgnoreCase( "realtime" );
+		}
+
+		List<SignalGenerator> generators = new ArrayList<>();
+		generators.add( new P25C4FMSignalGenerator( 0x293 ) );
+		generators.add( new MPT1327SignalGenerator( 0x1234 ) );
+		generators.add( new LTRNetSignalGenerator( 1, 0x123 ) );
+
+		DecodeBenchmark benchmark = new DecodeBenchmark( channels, seconds, realTime );
+
+		try
+		{
+			List<Result> results = benchmark.run( generators );
+
+			mLog.info( "Decode benchmark results - available processors [" + 
+				Runtime.getRuntime().availableProcessors() + "]" );
+
+			for( Result result: results )
+			{
+				mLog.info( result.toString() );
+			}
+		}
+		catch( InterruptedException e )
+		{
+			mLog.error( "Decode benchmark interrupted" );
+		}
+	}
+}
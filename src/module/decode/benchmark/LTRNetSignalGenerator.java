@@ -0,0 +1,122 @@
+/*******************************************************************************
+ *     SDR Trunk 
+ *     Copyright (C) 2014-2016 Dennis Sheirer
+ * 
+ *     This program is free software: you can redistribute it and/or modify
+ *     it under the terms of the GNU General Public License as published by
+ *     the Free Software Foundation, either version 3 of the License, or
+ *     (at your option) any later version.
+ * 
+ *     This program is distributed in the hope that it will be useful,
+ *     but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *     MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *     GNU General Public License for more details.
+ * 
+ *     You should have received a copy of the GNU General Public License
+ *     along with this program.  If not, see <http://www.gnu.org/licenses/>
+ ******************************************************************************/
+package module.decode.benchmark;
+
+import message.MessageDirection;
+import module.decode.DecoderType;
+import module.decode.config.DecodeConfiguration;
+import module.decode.ltrnet.DecodeConfigLTRNet;
+import bits.BinaryMessage;
+import bits.SyncPattern;
+import edac.CRCLTR;
+
+/**
+ * LTR-Net repeater outbound status word (OSW) signal generator.  Frames are
+ * back-to-back 40-bit OSW messages with valid CRC-7 checksums that alternate
+ * between an idle channel message and a site identifier message.
+ * 
+ * Bits are 300 baud sub-audible NRZ data, frequency modulated with a peak
+ * deviation of 1000 Hz.
+ */
+public class LTRNetSignalGenerator extends SignalGenerator
+{
+	private static final int BAUD_RATE = 300;
+	private static final int SAMPLES_PER_BIT = SAMPLE_RATE / BAUD_RATE;
+	private static final double DEVIATION = 1000.0;
+
+	private static final int MESSAGE_LENGTH = 40;
+	private static final int CHANNEL_SITE_ID = 18;
+	private static final int HOME_SITE_ID = 24;
+	private static final int GROUP_IDLE = 255;
+
+	private int mRepeater;
+	private int mSiteID;
+
+	/**
+	 * Constructs a generator for the repeater and site
+	 * 
+	 * @param repeater - repeater (logical channel) number 1 - 20
+	 * @param siteID - 13-bit site identifier
+	 */
+	public LTRNetSignalGenerator( int repeater, int siteID )
+	{
+		mRepeater = repeater;
+		mSiteID = siteID & 0x1FFF;
+	}
+
+	@Override
+	public DecoderType getDecoderType()
+	{
+		return DecoderType.LTR_NET;
+	}
+
+	@Override
+	public DecodeConfiguration getDecodeConfiguration()
+	{
+		DecodeConfigLTRNet config = new DecodeConfigLTRNet();
+		config.setMessageDirection( MessageDirection.OSW );
+
+		return config;
+	}
+
+	@Override
+	protected int generateFrame( int frameNumber )
+	{
+		BinaryMessage message = new BinaryMessage( MESSAGE_LENGTH );
+
+		boolean[] sync = SyncPattern.LTR_STANDARD_OSW.getPattern();
+
+		for( int x = 0; x < sync.length; x++ )
+		{
+			if( sync[ x ] )
+			{
+				message.set( x );
+			}
+		}
+
+		if( frameNumber % 2 == 0 )
+		{
+			/* Idle: area, channel, home repeater, group and free repeater */
+			message.load( 10, 5, mRepeater );
+			message.load( 15, 5, mRepeater );
+			message.load( 20, 8, GROUP_IDLE );
+			message.load( 28, 5, mRepeater );
+		}
+		else
+		{
+			/* Site identifier carried in the group and free fields */
+			message.load( 10, 5, CHANNEL_SITE_ID );
+			message.load( 15, 5, HOME_SITE_ID );
+			message.load( 20, 13, mSiteID );
+		}
+
+		message.load( 33, 7, CRCLTR.getCalculatedChecksum( message ) );
+
+		for( int x = 0; x < MESSAGE_LENGTH; x++ )
+		{
+			double deviation = message.get( x ) ? DEVIATION : -DEVIATION;
+
+			for( int y = 0; y < SAMPLES_PER_BIT; y++ )
+			{
+				modulate( deviation );
+			}
+		}
+
+		return 1;
+	}
+}
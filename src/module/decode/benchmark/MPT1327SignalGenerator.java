@@ -0,0 +1,168 @@
+/*******************************************************************************
+ *     SDR Trunk 
+ *     Copyright (C) 2014-2016 Dennis Sheirer
+ * 
+ *     This program is free software: you can redistribute it and/or modify
+ *     it under the terms of the GNU General Public License as published by
+ *     the Free Software Foundation, either version 3 of the License, or
+ *     (at your option) any later version.
+ * 
+ *     This program is distributed in the hope that it will be useful,
+ *     but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *     MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *     GNU General Public License for more details.
+ * 
+ *     You should have received a copy of the GNU General Public License
+ *     along with this program.  If not, see <http://www.gnu.org/licenses/>
+ ******************************************************************************/
+package module.decode.benchmark;
+
+import java.util.BitSet;
+
+import module.decode.DecoderType;
+import module.decode.config.DecodeConfiguration;
+import module.decode.mpt1327.DecodeConfigMPT1327;
+import module.decode.mpt1327.MPT1327Decoder.Sync;
+import edac.CRCFleetsync;
+
+/**
+ * MPT1327 control channel signal generator.  Each frame contains preamble 
+ * reversals, the control channel sync word and two 64-bit codewords with
+ * valid CRC-15 checksums and parity: an address codeword that alternates
+ * between an ALH (aloha) and a BCAST (system parameters) message, followed 
+ * by a data codeword carrying the system identity.
+ * 
+ * Bits are 1200 baud FFSK audio tones (1200 Hz = 1, 1800 Hz = 0) that are
+ * frequency modulated with a peak deviation of 1500 Hz.
+ */
+public class MPT1327SignalGenerator extends SignalGenerator
+{
+	private static final int BAUD_RATE = 1200;
+	private static final int SAMPLES_PER_BIT = SAMPLE_RATE / BAUD_RATE;
+	private static final double DEVIATION = 1500.0;
+	private static final double MARK = 1200.0;
+	private static final double SPACE = 1800.0;
+
+	private static final int PREAMBLE_REVERSALS = 12;
+	private static final int CODEWORD_LENGTH = 64;
+	private static final int MESSAGE_TYPE_ALH = 256;
+	private static final int MESSAGE_TYPE_BCAST = 284;
+
+	private int mSystemID;
+	private double mTonePhase;
+
+	/**
+	 * Constructs a generator for a control channel with the system identity
+	 * 
+	 * @param systemID - 15-bit system identity code
+	 */
+	public MPT1327SignalGenerator( int systemID )
+	{
+		mSystemID = systemID & 0x7FFF;
+	}
+
+	@Override
+	public DecoderType getDecoderType()
+	{
+		return DecoderType.MPT1327;
+	}
+
+	@Override
+	public DecodeConfiguration getDecodeConfiguration()
+	{
+		DecodeConfigMPT1327 config = new DecodeConfigMPT1327();
+		config.setSync( Sync.NORMAL );
+
+		return config;
+	}
+
+	@Override
+	protected int generateFrame( int frameNumber )
+	{
+		for( int x = 0; x < PREAMBLE_REVERSALS; x++ )
+		{
+			bit( x % 2 == 0 );
+		}
+
+		/* Sync pattern includes the final 4 preamble reversals */
+		for( boolean bit: Sync.NORMAL.getControlSyncPattern().getPattern() )
+		{
+			bit( bit );
+		}
+
+		BitSet address = new BitSet( CODEWORD_LENGTH );
+
+		/* Address codeword flag */
+		address.set( 0 );
+
+		if( frameNumber % 2 == 0 )
+		{
+			/* ALH: prefix, ident1 (all call), ident2 and aloha parameters */
+			load( address, 1, 7, frameNumber & 0x7F );
+			load( address, 8, 13, 0x1FFF );
+			load( address, 21, 9, MESSAGE_TYPE_ALH );
+			load( address, 30, 13, frameNumber & 0x1FFF );
+		}
+		else
+		{
+			/* BCAST: system definition and system identity */
+			load( address, 1, 5, 0 );
+			load( address, 6, 15, mSystemID );
+			load( address, 21, 9, MESSAGE_TYPE_BCAST );
+		}
+
+		codeword( address );
+
+		/* Data codeword with the system identity */
+		BitSet data = new BitSet( CODEWORD_LENGTH );
+		load( data, 1, 15, mSystemID );
+
+		codeword( data );
+
+		return 1;
+	}
+
+	/**
+	 * Sets the CRC and parity bits and sends the codeword
+	 */
+	private void codeword( BitSet codeword )
+	{
+		CRCFleetsync.setChecksum( codeword );
+
+		for( int x = 0; x < CODEWORD_LENGTH; x++ )
+		{
+			bit( codeword.get( x ) );
+		}
+	}
+
+	/**
+	 * Loads the value into the bitset, most significant bit first
+	 */
+	private static void load( BitSet bits, int offset, int width, int value )
+	{
+		for( int x = 0; x < width; x++ )
+		{
+			bits.set( offset + x, ( ( value >> ( width - x - 1 ) ) & 1 ) == 1 );
+		}
+	}
+
+	/**
+	 * Modulates one bit as a phase continuous FFSK tone
+	 */
+	private void bit( boolean bit )
+	{
+		double tone = bit ? MARK : SPACE;
+
+		for( int x = 0; x < SAMPLES_PER_BIT; x++ )
+		{
+			mTonePhase += 2.0 * Math.PI * tone / SAMPLE_RATE;
+
+			if( mTonePhase > Math.PI )
+			{
+				mTonePhase -= 2.0 * Math.PI;
+			}
+
+			modulate( DEVIATION * Math.sin( mTonePhase ) );
+		}
+	}
+}
@@ -0,0 +1,333 @@
+/*******************************************************************************
+ *     SDR Trunk 
+ *     Copyright (C) 2014-2016 Dennis Sheirer
+ * 
+ *     This program is free software: you can redistribute it and/or modify
+ *     it under the terms of the GNU General Public License as published by
+ *     the Free Software Foundation, either version 3 of the License, or
+ *     (at your option) any later version.
+ * 
+ *     This program is distributed in the hope that it will be useful,
+ *     but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *     MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *     GNU General Public License for more details.
+ * 
+ *     You should have received a copy of the GNU General Public License
+ *     along with this program.  If not, see <http://www.gnu.org/licenses/>
+ ******************************************************************************/
+package module.decode.benchmark;
+
+import java.util.Random;
+
+import module.decode.DecoderType;
+import module.decode.config.DecodeConfiguration;
+import module.decode.p25.DecodeConfigP25Phase1;
+import module.decode.p25.P25Decoder.Modulation;
+import module.decode.p25.P25Interleave;
+import module.decode.p25.Trellis_1_2_Rate.Constellation;
+import module.decode.p25.reference.DataUnitID;
+import module.decode.p25.reference.Opcode;
+import bits.BinaryMessage;
+import dsp.symbol.Dibit;
+import dsp.symbol.FrameSync;
+import edac.CRCP25;
+
+/**
+ * P25 Phase 1 C4FM control channel signal generator.  Each frame is a 720-bit
+ * trunking signaling data unit carrying three TSBK messages (RFSS status, 
+ * network status and identifier update broadcasts) with valid NID BCH 
+ * parity, CCITT-16 CRC, 1/2 rate trellis encoding, data interleaving and
+ * status symbols.
+ * 
+ * Symbols are raised cosine shaped and frequency modulated with a deviation
+ * of 600 Hz per symbol level at 4800 symbols per second.
+ */
+public class P25C4FMSignalGenerator extends SignalGenerator
+{
+	private static final int SYMBOL_RATE = 4800;
+	private static final int SAMPLES_PER_SYMBOL = SAMPLE_RATE / SYMBOL_RATE;
+	private static final int FRAME_DIBITS = 360;
+	private static final double DEVIATION = 600.0;
+
+	/* Raised cosine pulse shaping - roll-off and span in symbols */
+	private static final double ROLL_OFF = 0.2;
+	private static final int PULSE_SPAN = 8;
+
+	/* BCH( 63,16,23 ) generator polynomial, octal 6331 1413 6723 5453 */
+	private static final long BCH_GENERATOR = 06331141367235453l;
+
+	private static final int TSBK_LENGTH = 96;
+	private static final int TSBK_CRC_START = 80;
+	private static final int TSBK_ENCODED_LENGTH = 196;
+
+	private static final int[] OPCODES = 
+		{ 
+			Opcode.RFSS_STATUS_BROADCAST.getCode(), 
+			Opcode.NETWORK_STATUS_BROADCAST.getCode(),
+			Opcode.IDENTIFIER_UPDATE_NON_VUHF.getCode() 
+		};
+
+	private double[] mPulse;
+	private double[] mOverlap;
+	private int mStatusPointer;
+	private int mFrameDibits;
+	private int mNAC;
+	private Random mRandom = new Random( 25l );
+
+	/**
+	 * Constructs a generator for a control channel with the network access code
+	 * 
+	 * @param nac - 12-bit network access code
+	 */
+	public P25C4FMSignalGenerator( int nac )
+	{
+		mNAC = nac & 0xFFF;
+
+		int length = PULSE_SPAN * SAMPLES_PER_SYMBOL + 1;
+
+		mPulse = new double[ length ];
+
+		for( int x = 0; x < length; x++ )
+		{
+			double t = (double)( x - ( length / 2 ) ) / SAMPLES_PER_SYMBOL;
+
+			mPulse[ x ] = raisedCosine( t );
+		}
+
+		mOverlap = new double[ length + SAMPLES_PER_SYMBOL ];
+	}
+
+	@Override
+	public DecoderType getDecoderType()
+	{
+		return DecoderType.P25_PHASE1;
+	}
+
+	@Override
+	public DecodeConfiguration getDecodeConfiguration()
+	{
+		DecodeConfigP25Phase1 config = new DecodeConfigP25Phase1();
+		config.setModulation( Modulation.C4FM );
+
+		return config;
+	}
+
+	@Override
+	protected int generateFrame( int frameNumber )
+	{
+		mFrameDibits = 0;
+
+		/* Frame sync */
+		long sync = FrameSync.P25_PHASE1_NORMAL.getSync();
+
+		for( int x = 46; x >= 0; x -= 2 )
+		{
+			symbol( dibit( ( ( sync >> ( x + 1 ) ) & 1 ) == 1, 
+						   ( ( sync >> x ) & 1 ) == 1 ) );
+		}
+
+		/* The status symbol counter starts after the 24 sync symbols */
+		mStatusPointer = 24;
+
+		data( getNID( mNAC, DataUnitID.TSBK1.getValue() ) );
+
+		for( int x = 0; x < OPCODES.length; x++ )
+		{
+			data( getTSBK( OPCODES[ x ], x == OPCODES.length - 1 ) );
+		}
+
+		/* Pad out the frame with null symbols */
+		while( mFrameDibits < FRAME_DIBITS )
+		{
+			symbol( Dibit.D00_PLUS_1 );
+		}
+
+		return OPCODES.length;
+	}
+
+	/**
+	 * Sends the message bits as data symbols, inserting status symbols
+	 */
+	private void data( BinaryMessage message )
+	{
+		for( int x = 0; x < message.size(); x += 2 )
+		{
+			if( mStatusPointer == 35 )
+			{
+				/* Status symbol: inbound channel is idle */
+				symbol( Dibit.D01_PLUS_3 );
+
+				mStatusPointer = 0;
+			}
+
+			symbol( dibit( message.get( x ), message.get( x + 1 ) ) );
+
+			mStatusPointer++;
+		}
+	}
+
+	/**
+	 * Network ID with BCH( 63,16,23 ) parity and even parity bit
+	 */
+	public static BinaryMessage getNID( int nac, int duid )
+	{
+		long info = ( ( nac & 0xFFF ) << 4 ) | ( duid & 0xF );
+
+		long remainder = info << 47;
+
+		for( int x = 62; x >= 47; x-- )
+		{
+			if( ( ( remainder >> x ) & 1 ) == 1 )
+			{
+				remainder ^= BCH_GENERATOR << ( x - 47 );
+			}
+		}
+
+		BinaryMessage nid = new BinaryMessage( 64 );
+		nid.load( 0, 16, info );
+		nid.load( 16, 47, remainder );
+
+		if( nid.cardinality() % 2 != 0 )
+		{
+			nid.set( 63 );
+		}
+
+		return nid;
+	}
+
+	/**
+	 * Creates a CRC protected, trellis encoded and interleaved TSBK block
+	 */
+	private BinaryMessage getTSBK( int opcode, boolean lastBlock )
+	{
+		BinaryMessage tsbk = new BinaryMessage( TSBK_LENGTH );
+
+		if( lastBlock )
+		{
+			tsbk.set( 0 );
+		}
+
+		tsbk.load( 2, 6, opcode );
+
+		/* Standard vendor ID (0) and message arguments */
+		tsbk.load( 16, 32, mRandom.nextInt() );
+		tsbk.load( 48, 32, mRandom.nextInt() );
+
+		/* CRC-CCITT over the first 80 bits */
+		int checksum = 0;
+
+		for( int x = tsbk.nextSetBit( 0 ); 
+				x >= 0 && x < TSBK_CRC_START; 
+				x = tsbk.nextSetBit( x + 1 ) )
+		{
+			checksum ^= CRCP25.CCITT_80_CHECKSUMS[ x ];
+		}
+
+		tsbk.load( TSBK_CRC_START, 16, checksum );
+
+		/* 1/2 rate trellis encoding of 48 dibits plus a flushing dibit */
+		BinaryMessage encoded = new BinaryMessage( TSBK_ENCODED_LENGTH );
+
+		Dibit state = Dibit.D00_PLUS_1;
+
+		for( int x = 0; x < 49; x++ )
+		{
+			Dibit input = x < 48 ? 
+					dibit( tsbk.get( x * 2 ), tsbk.get( x * 2 + 1 ) ) : 
+					Dibit.D00_PLUS_1;
+
+			Constellation constellation = 
+					Constellation.fromStateAndInputDibits( state, input );
+
+			encoded.load( x * 4, 4, constellation.getTransmittedValue() );
+
+			state = input;
+		}
+
+		return P25Interleave.interleaveData( encoded, 0, TSBK_ENCODED_LENGTH );
+	}
+
+	/**
+	 * Pulse shapes and modulates the symbol
+	 */
+	private void symbol( Dibit dibit )
+	{
+		double deviation = DEVIATION * level( dibit );
+
+		for( int x = 0; x < mPulse.length; x++ )
+		{
+			mOverlap[ x ] += deviation * mPulse[ x ];
+		}
+
+		for( int x = 0; x < SAMPLES_PER_SYMBOL; x++ )
+		{
+			modulate( mOverlap[ x ] );
+		}
+
+		System.arraycopy( mOverlap, SAMPLES_PER_SYMBOL, mOverlap, 0, 
+				mOverlap.length - SAMPLES_PER_SYMBOL );
+
+		for( int x = mOverlap.length - SAMPLES_PER_SYMBOL; x < mOverlap.length; x++ )
+		{
+			mOverlap[ x ] = 0.0;
+		}
+
+		mFrameDibits++;
+	}
+
+	/**
+	 * C4FM symbol level for the dibit
+	 */
+	private static int level( Dibit dibit )
+	{
+		switch( dibit )
+		{
+			case D01_PLUS_3:
+				return 3;
+			case D00_PLUS_1:
+				return 1;
+			case D10_MINUS_1:
+				return -1;
+			case D11_MINUS_3:
+			default:
+				return -3;
+		}
+	}
+
+	private static Dibit dibit( boolean bit1, boolean bit2 )
+	{
+		if( bit1 )
+		{
+			return bit2 ? Dibit.D11_MINUS_3 : Dibit.D10_MINUS_1;
+		}
+		else
+		{
+			return bit2 ? Dibit.D01_PLUS_3 : Dibit.D00_PLUS_1;
+		}
+	}
+
+	/**
+	 * Raised cosine impulse response at time t in symbol periods
+	 */
+	private static double raisedCosine( double t )
+	{
+		if( t == 0.0 )
+		{
+			return 1.0;
+		}
+
+		double denominator = 1.0 - ( 4.0 * ROLL_OFF * ROLL_OFF * t * t );
+
+		if( Math.abs( denominator ) < 1e-9 )
+		{
+			return ( Math.PI / 4.0 ) * sinc( 1.0 / ( 2.0 * ROLL_OFF ) );
+		}
+
+		return sinc( t ) * Math.cos( Math.PI * ROLL_OFF * t ) / denominator;
+	}
+
+	private static double sinc( double x )
+	{
+		return Math.sin( Math.PI * x ) / ( Math.PI * x );
+	}
+}
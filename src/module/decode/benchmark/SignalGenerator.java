@@ -0,0 +1,193 @@
+/*******************************************************************************
+ *     SDR Trunk 
+ *     Copyright (C) 2014-2016 Dennis Sheirer
+ * 
+ *     This program is free software: you can redistribute it and/or modify
+ *     it under the terms of the GNU General Public License as published by
+ *     the Free Software Foundation, either version 3 of the License, or
+ *     (at your option) any later version.
+ * 
+ *     This program is distributed in the hope that it will be useful,
+ *     but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *     MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *     GNU General Public License for more details.
+ * 
+ *     You should have received a copy of the GNU General Public License
+ *     along with this program.  If not, see <http://www.gnu.org/licenses/>
+ ******************************************************************************/
+package module.decode.benchmark;
+
+import java.util.Arrays;
+
+import module.decode.DecoderType;
+import module.decode.config.DecodeConfiguration;
+
+/**
+ * Base class for synthetic baseband signal generators used by the decode
+ * benchmark.  Subclasses encode valid protocol frames and use the frequency
+ * modulator in this class to produce complex 48 kHz baseband samples, the
+ * same rate that a TunerChannelSource delivers to a processing chain.
+ */
+public abstract class SignalGenerator
+{
+	public static final int SAMPLE_RATE = 48000;
+
+	private static final float AMPLITUDE = 0.5f;
+
+	private float[] mSamples = new float[ SAMPLE_RATE * 2 ];
+	private int mSampleCount;
+	private double mPhase;
+
+	private long[] mFrameEnds = new long[ 64 ];
+	private int mFrameCount;
+	private int mMessageCount;
+
+	/**
+	 * Decoder type that can decode the generated signal
+	 */
+	public abstract DecoderType getDecoderType();
+
+	/**
+	 * Decode configuration for a channel that will decode the generated signal
+	 */
+	public abstract DecodeConfiguration getDecodeConfiguration();
+
+	/**
+	 * Generates the next frame of the signal.  Implementations modulate the
+	 * frame samples and return the number of decodable messages in the frame.
+	 */
+	protected abstract int generateFrame( int frameNumber );
+
+	/**
+	 * Generates a signal with whole frames and a total duration of at least
+	 * the requested duration.
+	 */
+	public SyntheticSignal generate( double seconds )
+	{
+		mSampleCount = 0;
+		mFrameCount = 0;
+		mMessageCount = 0;
+		mPhase = 0.0;
+
+		long target = (long)( seconds * SAMPLE_RATE );
+
+		int frame = 0;
+
+		while( mSampleCount < target )
+		{
+			mMessageCount += generateFrame( frame++ );
+
+			if( mFrameCount == mFrameEnds.length )
+			{
+				mFrameEnds = Arrays.copyOf( mFrameEnds, mFrameEnds.length * 2 );
+			}
+
+			mFrameEnds[ mFrameCount++ ] = mSampleCount;
+		}
+
+		return new SyntheticSignal( getDecoderType(), 
+				Arrays.copyOf( mSamples, mSampleCount * 2 ), 
+				Arrays.copyOf( mFrameEnds, mFrameCount ), mMessageCount );
+	}
+
+	/**
+	 * Appends one complex sample to the signal, frequency modulated with the
+	 * instantaneous frequency deviation.
+	 * 
+	 * @param deviation in hertz
+	 */
+	protected void modulate( double deviation )
+	{
+		mPhase += 2.0 * Math.PI * deviation / SAMPLE_RATE;
+
+		if( mPhase > Math.PI )
+		{
+			mPhase -= 2.0 * Math.PI;
+		}
+		else if( mPhase < -Math.PI )
+		{
+			mPhase += 2.0 * Math.PI;
+		}
+
+		if( mSampleCount * 2 == mSamples.length )
+		{
+			mSamples = Arrays.copyOf( mSamples, mSamples.length * 2 );
+		}
+
+		int index = mSampleCount * 2;
+
+		mSamples[ index ] = (float)( Math.cos( mPhase ) * AMPLITUDE );
+		mSamples[ index + 1 ] = (float)( Math.sin( mPhase ) * AMPLITUDE );
+
+		mSampleCount++;
+	}
+
+	/**
+	 * Generated signal with the sample index that follows each frame and the
+	 * total number of decodable messages contained in the frames.
+	 */
+	public static class SyntheticSignal
+	{
+		private DecoderType mDecoderType;
+		private float[] mSamples;
+		private long[] mFrameEnds;
+		private int mMessageCount;
+
+		public SyntheticSignal( DecoderType decoderType, 
+								float[] samples, 
+								long[] frameEnds, 
+								int messageCount )
+		{
+			mDecoderType = decoderType;
+			mSamples = samples;
+			mFrameEnds = frameEnds;
+			mMessageCount = messageCount;
+		}
+
+		public DecoderType getDecoderType()
+		{
+			return mDecoderType;
+		}
+
+		/**
+		 * Interleaved I/Q samples
+		 */
+		public float[] getSamples()
+		{
+			return mSamples;
+		}
+
+		/**
+		 * Number of complex samples in the signal
+		 */
+		public int getSampleCount()
+		{
+			return mSamples.length / 2;
+		}
+
+		/**
+		 * Sample index immediately following the final sample of each frame,
+		 * in ascending order.
+		 */
+		public long[] getFrameEnds()
+		{
+			return mFrameEnds;
+		}
+
+		/**
+		 * Number of decodable messages contained in one pass of the signal
+		 */
+		public int getMessageCount()
+		{
+			return mMessageCount;
+		}
+
+		/**
+		 * Signal duration in seconds
+		 */
+		public double getDuration()
+		{
+			return (double)getSampleCount() / (double)SAMPLE_RATE;
+		}
+	}
+}
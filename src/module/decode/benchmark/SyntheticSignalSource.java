@@ -0,0 +1,323 @@
+/*******************************************************************************
+ *     SDR Trunk 
+ *     Copyright (C) 2014-2016 Dennis Sheirer
+ * 
+ *     This program is free software: you can redistribute it and/or modify
+ *     it under the terms of the GNU General Public License as published by
+ *     the Free Software Foundation, either version 3 of the License, or
+ *     (at your option) any later version.
+ * 
+ *     This program is distributed in the hope that it will be useful,
+ *     but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *     MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *     GNU General Public License for more details.
+ * 
+ *     You should have received a copy of the GNU General Public License
+ *     along with this program.  If not, see <http://www.gnu.org/licenses/>
+ ******************************************************************************/
+package module.decode.benchmark;
+
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadMXBean;
+import java.util.Arrays;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import module.decode.benchmark.SignalGenerator.SyntheticSignal;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import sample.Listener;
+import sample.complex.ComplexBuffer;
+import source.ComplexSource;
+
+/**
+ * Complex sample source that plays a synthetic signal into a processing chain
+ * for a number of passes, either paced in real time with 10 ms buffers like a
+ * tuner channel source, or as fast as the processing chain can consume them.
+ * 
+ * Samples are dispatched on the processing chain's thread, so the thread CPU
+ * time measured around each dispatch is the CPU cost of the complete chain.
+ */
+public class SyntheticSignalSource extends ComplexSource
+{
+	private final static Logger mLog = 
+			LoggerFactory.getLogger( SyntheticSignalSource.class );
+
+	/* 10 milliseconds of samples per buffer */
+	public static final int BUFFER_SIZE = SignalGenerator.SAMPLE_RATE / 100;
+
+	/* Buffers dispatched per task run in fast mode, before yielding the 
+	 * thread to any other tasks scheduled by the chain's modules */
+	private static final int FAST_BATCH_SIZE = 50;
+
+	private static ThreadMXBean sThreadMXBean = ManagementFactory.getThreadMXBean();
+
+	private SyntheticSignal mSignal;
+	private int mPasses;
+	private boolean mRealTime;
+
+	private Listener<ComplexBuffer> mListener;
+	private ScheduledExecutorService mExecutor;
+	private ScheduledFuture<?> mRealTimeTask;
+	private AtomicBoolean mRunning = new AtomicBoolean();
+	private CountDownLatch mCompleteLatch = new CountDownLatch( 1 );
+
+	private int mPass;
+	private int mPosition;
+	private int mFrameIndex;
+	private long mLatestFrameTime;
+
+	private volatile long mSamplesDispatched;
+	private volatile long mCPUTime;
+	private volatile long mStartTime;
+	private volatile long mStopTime;
+
+	/**
+	 * Constructs a source for the signal
+	 * 
+	 * @param signal - synthetic signal to play
+	 * @param passes - number of times to play the signal
+	 * @param realTime - true to pace the samples at the signal sample rate or
+	 * false to dispatch samples as fast as they can be processed
+	 */
+	public SyntheticSignalSource( SyntheticSignal signal, int passes, boolean realTime )
+	{
+		mSignal = signal;
+		mPasses = passes;
+		mRealTime = realTime;
+	}
+
+	@Override
+	public int getSampleRate()
+	{
+		return SignalGenerator.SAMPLE_RATE;
+	}
+
+	@Override
+	public long getFrequency()
+	{
+		return 0;
+	}
+
+	@Override
+	public void setListener( Listener<ComplexBuffer> listener )
+	{
+		mListener = listener;
+	}
+
+	@Override
+	public void removeListener( Listener<ComplexBuffer> listener )
+	{
+		mListener = null;
+	}
+
+	@Override
+	public void reset()
+	{
+	}
+
+	@Override
+	public void start( ScheduledExecutorService executor )
+	{
+		if( mRunning.compareAndSet( false, true ) )
+		{
+			mExecutor = executor;
+			mStartTime = System.nanoTime();
+
+			if( mRealTime )
+			{
+				mRealTimeTask = executor.scheduleAtFixedRate( new Runnable()
+				{
+					@Override
+					public void run()
+					{
+						process( 1 );
+					}
+				}, 0, 10, TimeUnit.MILLISECONDS );
+			}
+			else
+			{
+				executor.execute( new FastProcessor() );
+			}
+		}
+	}
+
+	@Override
+	public void stop()
+	{
+		if( mRunning.compareAndSet( true, false ) )
+		{
+			if( mRealTimeTask != null )
+			{
+				mRealTimeTask.cancel( false );
+				mRealTimeTask = null;
+			}
+
+			mStopTime = System.nanoTime();
+
+			mCompleteLatch.countDown();
+		}
+	}
+
+	@Override
+	public void dispose()
+	{
+		stop();
+
+		mListener = null;
+		mExecutor = null;
+	}
+
+	/**
+	 * Blocks until all passes of the signal have been dispatched
+	 */
+	public void awaitCompletion() throws InterruptedException
+	{
+		mCompleteLatch.await();
+	}
+
+	/**
+	 * Number of complex samples dispatched to the processing chain
+	 */
+	public long getSamplesDispatched()
+	{
+		return mSamplesDispatched;
+	}
+
+	/**
+	 * Processing chain thread CPU time, in nanoseconds, consumed while 
+	 * processing the dispatched samples
+	 */
+	public long getCPUTime()
+	{
+		return mCPUTime;
+	}
+
+	/**
+	 * Elapsed wall clock time in nanoseconds from start until all passes were
+	 * dispatched, or until now if still running.
+	 */
+	public long getElapsedTime()
+	{
+		long stop = mRunning.get() ? System.nanoTime() : mStopTime;
+
+		return stop - mStartTime;
+	}
+
+	/**
+	 * Nominal System.nanoTime() arrival time of the final sample of the most
+	 * recent complete frame, or 0 if no frame has been completed.  Messages 
+	 * are produced on the same thread that dispatches the samples, so a
+	 * message listener can use this value to measure sample to message 
+	 * latency.
+	 */
+	public long getLatestFrameTime()
+	{
+		return mLatestFrameTime;
+	}
+
+	/**
+	 * Dispatches up to the number of buffers while running and accumulates 
+	 * the thread CPU time used to process them
+	 */
+	private void process( int buffers )
+	{
+		try
+		{
+			long cpu = sThreadMXBean.getCurrentThreadCpuTime();
+
+			for( int x = 0; x < buffers && mRunning.get(); x++ )
+			{
+				dispatch();
+			}
+
+			mCPUTime += sThreadMXBean.getCurrentThreadCpuTime() - cpu;
+		}
+		catch( Exception e )
+		{
+			mLog.error( "Error dispatching synthetic signal samples", e );
+
+			stop();
+		}
+	}
+
+	/**
+	 * Dispatches the next buffer of samples to the listener
+	 */
+	private void dispatch()
+	{
+		int sampleCount = mSignal.getSampleCount();
+		int length = Math.min( BUFFER_SIZE, sampleCount - mPosition );
+		int end = mPosition + length;
+
+		float[] samples = Arrays.copyOfRange( mSignal.getSamples(), 
+				mPosition * 2, end * 2 );
+
+		long now = System.nanoTime();
+
+		long[] frameEnds = mSignal.getFrameEnds();
+
+		while( mFrameIndex < frameEnds.length && frameEnds[ mFrameIndex ] <= end )
+		{
+			if( mRealTime )
+			{
+				/* The buffer is dispatched when its final sample would arrive */
+				mLatestFrameTime = now - ( ( end - frameEnds[ mFrameIndex ] ) * 
+					1000000000l / SignalGenerator.SAMPLE_RATE );
+			}
+			else
+			{
+				mLatestFrameTime = now;
+			}
+
+			mFrameIndex++;
+		}
+
+		Listener<ComplexBuffer> listener = mListener;
+
+		if( listener != null )
+		{
+			listener.receive( new ComplexBuffer( samples ) );
+		}
+
+		mSamplesDispatched += length;
+		mPosition = end;
+
+		if( mPosition >= sampleCount )
+		{
+			mPosition = 0;
+			mFrameIndex = 0;
+			mPass++;
+
+			if( mPass >= mPasses )
+			{
+				stop();
+			}
+		}
+	}
+
+	/**
+	 * Dispatches batches of buffers as fast as possible, resubmitting itself
+	 * to the executor after each batch until all passes are complete.
+	 */
+	public class FastProcessor implements Runnable
+	{
+		@Override
+		public void run()
+		{
+			process( FAST_BATCH_SIZE );
+
+			ScheduledExecutorService executor = mExecutor;
+
+			if( mRunning.get() && executor != null )
+			{
+				executor.execute( this );
+			}
+		}
+	}
+}
@@ -0,0 +1,246 @@
+/*******************************************************************************
+ *     SDR Trunk 
+ *     Copyright (C) 2014-2016 Dennis Sheirer
+ * 
+ *     This program is free software: you can redistribute it and/or modify
+ *     it under the terms of the GNU General Public License as published by
+ *     the Free Software Foundation, either version 3 of the License, or
+ *     (at your option) any later version.
+ * 
+ *     This program is distributed in the hope that it will be useful,
+ *     but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *     MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *     GNU General Public License for more details.
+ * 
+ *     You should have received a copy of the GNU General Public License
+ *     along with this program.  If not, see <http://www.gnu.org/licenses/>
+ ******************************************************************************/
+package module.decode.benchmark;
+
+import instrument.Instrumentable;
+import instrument.Instrumentation;
+import instrument.tap.Tap;
+import instrument.tap.TapGroup;
+import instrument.tap.TapListener;
+
+import java.util.List;
+import java.util.concurrent.atomic.AtomicLong;
+
+import module.Module;
+import module.ProcessingChain;
+import module.decode.DecoderFactory;
+import module.decode.benchmark.SignalGenerator.SyntheticSignal;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import controller.channel.Channel;
+import controller.channel.Channel.ChannelType;
+import controller.channel.ChannelModel;
+import controller.channel.map.ChannelMapModel;
+
+/**
+ * Measures the cost of instrumentation taps by decoding the same synthetic 
+ * P25 C4FM signal through processing chains built as:
+ * 
+ * - production: the chain built for playlist channels, with no tap points
+ * - instrumented: the decoder view chain with no taps registered
+ * - tapped: the decoder view chain with every tap registered and listened to
+ * - production (again): after the instrumented stages have been loaded
+ * 
+ * The first production run gives the tap-free cost, since the production 
+ * stages only carry empty instrumentation hooks that are inlined away while 
+ * no instrumented stage is loaded.
+ * 
+ * Usage: TapOverheadBenchmark [seconds] [rounds]
+ */
+public class TapOverheadBenchmark
+{
+	private final static Logger mLog = 
+			LoggerFactory.getLogger( TapOverheadBenchmark.class );
+
+	private static final double SIGNAL_DURATION = 10.0;
+
+	private static final int DEFAULT_DURATION = 60;
+	private static final int DEFAULT_ROUNDS = 3;
+
+	private ChannelModel mChannelModel = new ChannelModel();
+	private ChannelMapModel mChannelMapModel = new ChannelMapModel();
+	private SignalGenerator mGenerator = new P25C4FMSignalGenerator( 0x293 );
+	private SyntheticSignal mSignal = mGenerator.generate( SIGNAL_DURATION );
+	private int mPasses;
+
+	public enum Mode
+	{
+		PRODUCTION( "production" ),
+		INSTRUMENTED( "instrumented, no taps" ),
+		TAPPED( "instrumented, all taps" );
+		
+		private String mLabel;
+		
+		private Mode( String label )
+		{
+			mLabel = label;
+		}
+		
+		public String toString()
+		{
+			return mLabel;
+		}
+	}
+
+	/**
+	 * Constructs a benchmark
+	 * 
+	 * @param seconds - signal duration to process for each run
+	 */
+	public TapOverheadBenchmark( int seconds )
+	{
+		mPasses = (int)Math.max( 1, Math.ceil( seconds / SIGNAL_DURATION ) );
+	}
+
+	/**
+	 * Decodes the signal with a chain built for the mode and returns the CPU
+	 * time per second of signal, in milliseconds
+	 */
+	public double run( Mode mode ) throws InterruptedException
+	{
+		Channel channel = new Channel( mode.name(), ChannelType.STANDARD );
+		channel.setDecodeConfiguration( mGenerator.getDecodeConfiguration() );
+
+		ProcessingChain chain = new ProcessingChain( mode.name(), ChannelType.STANDARD );
+
+		List<Module> modules;
+
+		Instrumentation.setEnabled( mode != Mode.PRODUCTION );
+
+		try
+		{
+			modules = DecoderFactory.getPrimaryModules( mChannelModel, 
+					mChannelMapModel, null, null, channel );
+		}
+		finally
+		{
+			Instrumentation.setEnabled( false );
+		}
+
+		chain.addModules( modules );
+
+		final AtomicLong tapEvents = new AtomicLong();
+
+		if( mode == Mode.TAPPED )
+		{
+			TapListener<Object> counter = new TapListener<Object>()
+			{
+				@Override
+				public void receive( Object t )
+				{
+					tapEvents.incrementAndGet();
+				}
+			};
+
+			for( Module module: modules )
+			{
+				if( module instanceof Instrumentable )
+				{
+					Instrumentable instrumentable = (Instrumentable)module;
+
+					for( TapGroup group: instrumentable.getTapGroups() )
+					{
+						for( Tap tap: group.getTaps() )
+						{
+							instrumentable.registerTap( tap );
+							tap.addListener( counter );
+						}
+					}
+				}
+			}
+		}
+
+		SyntheticSignalSource source = 
+				new SyntheticSignalSource( mSignal, mPasses, false );
+
+		chain.setSource( source );
+		chain.start();
+
+		source.awaitCompletion();
+
+		double signalSeconds = (double)source.getSamplesDispatched() / 
+				SignalGenerator.SAMPLE_RATE;
+
+		double cpu = source.getCPUTime() / 1E6 / signalSeconds;
+
+		mLog.info( String.format( "%-24s cpu:%8.3f ms per signal second  "
+				+ "tap events:%d", mode.toString(), cpu, tapEvents.get() ) );
+
+		chain.dispose();
+
+		return cpu;
+	}
+
+	public static void main( String[] args )
+	{
+		int seconds = DEFAULT_DURATION;
+		int rounds = DEFAULT_ROUNDS;
+
+		try
+		{
+			if( args.length > 0 )
+			{
+				seconds = Integer.parseInt( args[ 0 ] );
+			}
+
+			if( args.length > 1 )
+			{
+				rounds = Integer.parseInt( args[ 1 ] );
+			}
+		}
+		catch( NumberFormatException nfe )
+		{
+			mLog.error( "Usage: TapOverheadBenchmark [seconds] [rounds]" );
+			return;
+		}
+
+		TapOverheadBenchmark benchmark = new TapOverheadBenchmark( seconds );
+
+		try
+		{
+			/* Warm up the production stages before any instrumented stage is
+			 * loaded */
+			benchmark.run( Mode.PRODUCTION );
+
+			double production = Double.MAX_VALUE;
+
+			for( int x = 0; x < rounds; x++ )
+			{
+				production = Math.min( production, benchmark.run( Mode.PRODUCTION ) );
+			}
+
+			double instrumented = Double.MAX_VALUE;
+			double tapped = Double.MAX_VALUE;
+			double productionAfter = Double.MAX_VALUE;
+
+			for( int x = 0; x < rounds; x++ )
+			{
+				instrumented = Math.min( instrumented, benchmark.run( Mode.INSTRUMENTED ) );
+				tapped = Math.min( tapped, benchmark.run( Mode.TAPPED ) );
+				productionAfter = Math.min( productionAfter, benchmark.run( Mode.PRODUCTION ) );
+			}
+
+			mLog.info( String.format( "Tap overhead results (best of %d, CPU ms "
+				+ "per signal second)\n"
+				+ "  production (tap-free):           %8.3f\n"
+				+ "  instrumented, no taps:          %8.3f (%+.1f%%)\n"
+				+ "  instrumented, all taps:         %8.3f (%+.1f%%)\n"
+				+ "  production, after instrumented: %8.3f (%+.1f%%)", rounds,
+				production, 
+				instrumented, ( instrumented / production - 1.0 ) * 100.0,
+				tapped, ( tapped / production - 1.0 ) * 100.0,
+				productionAfter, ( productionAfter / production - 1.0 ) * 100.0 ) );
+		}
+		catch( InterruptedException e )
+		{
+			mLog.error( "Tap overhead benchmark interrupted" );
+		}
+	}
+}
@@ -19,15 +19,13 @@ package module.decode.event;
 
 import java.text.DecimalFormat;
 import java.text.SimpleDateFormat;
-import java.util.ArrayList;
-import java.util.List;
-
-import javax.swing.table.AbstractTableModel;
 
 import module.decode.event.CallEvent.CallEventType;
+import properties.SystemProperties;
 import sample.Listener;
 
-public class CallEventModel extends AbstractTableModel implements Listener<CallEvent>
+public class CallEventModel extends CoalescingTableModel<CallEvent> 
+							implements Listener<CallEvent>
 {
     private static final long serialVersionUID = 1L;
 
@@ -43,9 +41,8 @@ public class CallEventModel extends AbstractTableModel implements Listener<CallE
     public static final int FREQUENCY = 7;
     public static final int DETAILS = 8;
 
-	protected int mMaxMessages = 500;
-
-	protected List<CallEvent> mEvents = new ArrayList<CallEvent>();
+	public static final String CAPACITY_PROPERTY = "call.event.model.capacity";
+	public static final int CAPACITY_DEFAULT = 500;
 
 	protected String[] mHeaders = new String[] { "Time",
 												 "Event",
@@ -61,28 +58,23 @@ public class CallEventModel extends AbstractTableModel implements Listener<CallE
 	
 	public CallEventModel()
 	{
-	}
-	
-	public void dispose()
-	{
-		mEvents.clear();
+		super( SystemProperties.getInstance().get( CAPACITY_PROPERTY, 
+				CAPACITY_DEFAULT ), true );
 	}
 	
 	public void reset()
 	{
-		mEvents.clear();
-		
-		fireTableDataChanged();
+		clear();
 	}
 	
 	public int getMaxMessageCount()
 	{
-		return mMaxMessages;
+		return getCapacity();
 	}
 
 	public void setMaxMessageCount( int count )
 	{
-		mMaxMessages = count;
+		setCapacity( count );
 	}
 
 	/**
@@ -95,51 +87,14 @@ public class CallEventModel extends AbstractTableModel implements Listener<CallE
 	{
 		if( event.isValid() )
 		{
-			if( !mEvents.contains( event ) )
-			{
-				mEvents.add( 0, event );
-				
-				fireTableRowsInserted( 0, 0 );
-
-				prune();
-			}
-			else
-			{
-				int row = mEvents.indexOf( event );
-				
-				fireTableRowsUpdated( row, row );
-			}
+			put( event );
 		}
 		else
 		{
-			if( mEvents.contains( event ) )
-			{
-				int row = mEvents.indexOf( event );
-				
-				mEvents.remove( event );
-				
-				fireTableRowsDeleted( row, row );
-			}
-		}
-	}
-	
-	private void prune()
-	{
-		while( mEvents.size() > mMaxMessages )
-		{
-			int index = mEvents.size() - 1;
-			mEvents.remove( index );
-			
-			fireTableRowsDeleted( index, index );
+			remove( event );
 		}
 	}
 
-	@Override
-    public int getRowCount()
-    {
-		return mEvents.size();
-    }
-
 	@Override
     public int getColumnCount()
     {
@@ -154,43 +109,42 @@ public class CallEventModel extends AbstractTableModel implements Listener<CallE
 	@Override
     public Object getValueAt( int rowIndex, int columnIndex )
     {
-		synchronized( mEvents )
+		CallEvent event = getItem( rowIndex );
+
+		if( event != null )
 		{
 			switch( columnIndex )
 			{
 				case TIME:
 					StringBuilder sb = new StringBuilder();
 					
-					sb.append( mSDFTime.format( 
-							mEvents.get( rowIndex ).getEventStartTime() ) );
+					sb.append( mSDFTime.format( event.getEventStartTime() ) );
 					
-					if( mEvents.get( rowIndex ).getEventEndTime() != 0 )
+					if( event.getEventEndTime() != 0 )
 					{
 						sb.append( " - " );
-						sb.append( mSDFTime.format( 
-								mEvents.get( rowIndex ).getEventEndTime() ) );
+						sb.append( mSDFTime.format( event.getEventEndTime() ) );
 					}
-					else if( mEvents.get( rowIndex )
-							.getCallEventType() == CallEventType.CALL )
+					else if( event.getCallEventType() == CallEventType.CALL )
 					{
 						sb.append( " - In Progress" );
 					}
 					
 					return sb.toString();
 				case EVENT:
-					return mEvents.get( rowIndex ).getCallEventType();
+					return event.getCallEventType();
 				case FROM_ID:
-					return mEvents.get( rowIndex ).getFromID();
+					return event.getFromID();
 				case FROM_ALIAS:
-					return mEvents.get( rowIndex ).getFromIDAlias();
+					return event.getFromIDAlias();
 				case TO_ID:
-					return mEvents.get( rowIndex ).getToID();
+					return event.getToID();
 				case TO_ALIAS:
-					return mEvents.get( rowIndex ).getToIDAlias();
+					return event.getToIDAlias();
 				case CHANNEL:
-					return mEvents.get( rowIndex ).getChannel();
+					return event.getChannel();
 				case FREQUENCY:
-					long frequency = mEvents.get( rowIndex ).getFrequency();
+					long frequency = event.getFrequency();
 					
 					if( frequency != 0 )
 					{
@@ -201,7 +155,7 @@ public class CallEventModel extends AbstractTableModel implements Listener<CallE
 						return null;
 					}
 				case DETAILS:
-					return mEvents.get( rowIndex ).getDetails();
+					return event.getDetails();
 			}
 		}
 		
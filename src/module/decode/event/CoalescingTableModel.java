@@ -0,0 +1,465 @@
+/*******************************************************************************
+ *     SDR Trunk 
+ *     Copyright (C) 2014-2016 Dennis Sheirer
+ * 
+ *     This program is free software: you can redistribute it and/or modify
+ *     it under the terms of the GNU General Public License as published by
+ *     the Free Software Foundation, either version 3 of the License, or
+ *     (at your option) any later version.
+ * 
+ *     This program is distributed in the hope that it will be useful,
+ *     but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *     MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *     GNU General Public License for more details.
+ * 
+ *     You should have received a copy of the GNU General Public License
+ *     along with this program.  If not, see <http://www.gnu.org/licenses/>
+ ******************************************************************************/
+package module.decode.event;
+
+import java.awt.EventQueue;
+import java.awt.event.ActionEvent;
+import java.awt.event.ActionListener;
+import java.util.HashSet;
+import java.util.Set;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+import javax.swing.Timer;
+import javax.swing.table.AbstractTableModel;
+
+/**
+ * Table model backed by a fixed capacity ring buffer that lists the newest
+ * item in row 0.  Items can be added (or updated) and removed from any thread.
+ * Changes are queued and applied on the Swing event dispatch thread in 
+ * batches, with at most one coalesced table change event per frame interval,
+ * regardless of the rate that items arrive.
+ * 
+ * When no table is attached to the model (no table model listeners) changes
+ * are applied immediately on the calling thread and the model is simply a
+ * bounded in-memory history.
+ * 
+ * Once the ring buffer is full, each new item replaces the oldest item.  The
+ * pending change queue is also limited to the model capacity, so memory use
+ * is bounded even if the event dispatch thread stalls.  When the queue is 
+ * full, the oldest pending add or update is discarded.  Pending removals are
+ * never discarded, so that removed items don't linger in the table.
+ */
+public abstract class CoalescingTableModel<T> extends AbstractTableModel
+{
+	private static final long serialVersionUID = 1L;
+
+	/* Minimum interval between table change events - 20 frames per second */
+	public static final int FRAME_INTERVAL = 50;
+
+	/* Apply result indicating changes other than rows added at the top */
+	private static final int CHANGED = -1;
+
+	private enum Action { PUT, REMOVE, CLEAR };
+
+	private ConcurrentLinkedQueue<Change<T>> mPendingChanges = new ConcurrentLinkedQueue<>();
+	private AtomicInteger mPendingCount = new AtomicInteger();
+	private AtomicBoolean mFlushScheduled = new AtomicBoolean();
+	private AtomicLong mDroppedCount = new AtomicLong();
+	private volatile boolean mStale = false;
+	private long mLastFlush;
+	private Timer mFlushTimer;
+
+	private Object[] mItems;
+	private int mHead;
+	private int mCount;
+
+	/* Items currently in the ring buffer when updates are tracked */
+	private Set<T> mContents;
+
+	private Runnable mFlushRequest = new Runnable()
+	{
+		@Override
+		public void run()
+		{
+			long delay = mLastFlush + FRAME_INTERVAL - System.currentTimeMillis();
+
+			if( delay > 0 )
+			{
+				if( mFlushTimer == null )
+				{
+					mFlushTimer = new Timer( FRAME_INTERVAL, new ActionListener()
+					{
+						@Override
+						public void actionPerformed( ActionEvent e )
+						{
+							flush();
+						}
+					} );
+
+					mFlushTimer.setRepeats( false );
+				}
+
+				mFlushTimer.setInitialDelay( (int)delay );
+				mFlushTimer.restart();
+			}
+			else
+			{
+				flush();
+			}
+		}
+	};
+
+	/**
+	 * Constructs the model
+	 * 
+	 * @param capacity - maximum number of items (rows) in the model
+	 * @param trackUpdates - true if items are re-sent to indicate that they
+	 * have been updated and can be removed, or false if every item that is
+	 * put to the model is a new row.
+	 */
+	public CoalescingTableModel( int capacity, boolean trackUpdates )
+	{
+		mItems = new Object[ Math.max( 1, capacity ) ];
+
+		if( trackUpdates )
+		{
+			mContents = new HashSet<>();
+		}
+	}
+
+	/**
+	 * Adds the item as the newest row, or updates the row when the item is
+	 * already in the model and updates are tracked.
+	 */
+	protected void put( T item )
+	{
+		enqueue( new Change<T>( Action.PUT, item ) );
+	}
+
+	/**
+	 * Removes the item from the model, if updates are tracked
+	 */
+	protected void remove( T item )
+	{
+		if( mContents != null )
+		{
+			enqueue( new Change<T>( Action.REMOVE, item ) );
+		}
+	}
+
+	/**
+	 * Item at the row, where row 0 is the newest item, or null
+	 */
+	@SuppressWarnings( "unchecked" )
+	protected synchronized T getItem( int row )
+	{
+		if( 0 <= row && row < mCount )
+		{
+			return (T)mItems[ index( row ) ];
+		}
+
+		return null;
+	}
+
+	@Override
+	public synchronized int getRowCount()
+	{
+		return mCount;
+	}
+
+	/**
+	 * Maximum number of rows
+	 */
+	public synchronized int getCapacity()
+	{
+		return mItems.length;
+	}
+
+	/**
+	 * Changes the maximum number of rows, keeping the newest rows
+	 */
+	public void setCapacity( int capacity )
+	{
+		synchronized( this )
+		{
+			int size = Math.max( 1, capacity );
+
+			Object[] items = new Object[ size ];
+
+			int count = Math.min( mCount, size );
+
+			/* Copy oldest to newest of the retained rows */
+			for( int x = 0; x < count; x++ )
+			{
+				items[ x ] = mItems[ index( count - 1 - x ) ];
+			}
+
+			for( int x = count; x < mCount; x++ )
+			{
+				evicted( mItems[ index( x ) ] );
+			}
+
+			mItems = items;
+			mHead = count % size;
+			mCount = count;
+		}
+
+		mStale = true;
+
+		scheduleFlush();
+	}
+
+	/**
+	 * Number of changes discarded because the pending change queue was full
+	 */
+	public long getDroppedCount()
+	{
+		return mDroppedCount.get();
+	}
+
+	/**
+	 * Removes all rows.  The rows are cleared on the event dispatch thread, 
+	 * in order with the other pending changes.
+	 */
+	public void clear()
+	{
+		enqueue( new Change<T>( Action.CLEAR, null ) );
+	}
+
+	/**
+	 * Removes all rows and pending changes without notifying the table
+	 */
+	public void dispose()
+	{
+		mPendingChanges.clear();
+		mPendingCount.set( 0 );
+
+		synchronized( this )
+		{
+			clearItems();
+		}
+	}
+
+	private void clearItems()
+	{
+		for( int x = 0; x < mItems.length; x++ )
+		{
+			mItems[ x ] = null;
+		}
+
+		mHead = 0;
+		mCount = 0;
+
+		if( mContents != null )
+		{
+			mContents.clear();
+		}
+	}
+
+	/**
+	 * Ring buffer index for the row
+	 */
+	private int index( int row )
+	{
+		int index = mHead - 1 - row;
+
+		return index < 0 ? index + mItems.length : index;
+	}
+
+	private void evicted( Object item )
+	{
+		if( mContents != null )
+		{
+			mContents.remove( item );
+		}
+	}
+
+	private void enqueue( Change<T> change )
+	{
+		mPendingChanges.offer( change );
+
+		/* Limit the pending changes by discarding the oldest add or update,
+		 * since the oldest item would be evicted from the ring buffer anyway */
+		if( mPendingCount.incrementAndGet() > mItems.length )
+		{
+			for( Change<T> pending: mPendingChanges )
+			{
+				if( pending.getAction() == Action.PUT )
+				{
+					if( mPendingChanges.remove( pending ) )
+					{
+						mPendingCount.decrementAndGet();
+						mDroppedCount.incrementAndGet();
+					}
+
+					break;
+				}
+			}
+		}
+
+		if( getTableModelListeners().length == 0 )
+		{
+			/* No table attached - apply the changes on this thread */
+			synchronized( this )
+			{
+				apply();
+			}
+
+			mStale = true;
+		}
+		else
+		{
+			scheduleFlush();
+		}
+	}
+
+	/**
+	 * Schedules a flush of the pending changes on the event dispatch thread,
+	 * unless a flush is already scheduled.
+	 */
+	private void scheduleFlush()
+	{
+		if( getTableModelListeners().length > 0 && 
+			mFlushScheduled.compareAndSet( false, true ) )
+		{
+			EventQueue.invokeLater( mFlushRequest );
+		}
+	}
+
+	/**
+	 * Applies pending changes and fires a single table change event.  Runs on
+	 * the event dispatch thread.
+	 */
+	private void flush()
+	{
+		mFlushScheduled.set( false );
+
+		mLastFlush = System.currentTimeMillis();
+
+		int changes;
+
+		synchronized( this )
+		{
+			changes = apply();
+		}
+
+		if( mStale || changes == CHANGED )
+		{
+			mStale = false;
+
+			fireTableDataChanged();
+		}
+		else if( changes > 0 )
+		{
+			fireTableRowsInserted( 0, changes - 1 );
+		}
+	}
+
+	/**
+	 * Applies all pending changes to the ring buffer.
+	 * 
+	 * @return number of rows added at the top of the table when those are the
+	 * only changes, or CHANGED for any other combination of changes
+	 */
+	@SuppressWarnings( "unchecked" )
+	private int apply()
+	{
+		int added = 0;
+		boolean changed = false;
+
+		Change<T> change = mPendingChanges.poll();
+
+		while( change != null )
+		{
+			mPendingCount.decrementAndGet();
+
+			T item = change.getItem();
+
+			switch( change.getAction() )
+			{
+				case PUT:
+					if( mContents != null && mContents.contains( item ) )
+					{
+						changed = true;
+					}
+					else
+					{
+						if( mCount == mItems.length )
+						{
+							evicted( mItems[ mHead ] );
+
+							mCount--;
+
+							changed = true;
+						}
+
+						mItems[ mHead ] = item;
+						mHead = ( mHead + 1 ) % mItems.length;
+						mCount++;
+
+						if( mContents != null )
+						{
+							mContents.add( item );
+						}
+
+						added++;
+					}
+					break;
+				case REMOVE:
+					if( mContents != null && mContents.remove( item ) )
+					{
+						/* Compact the rows newer than the removed item */
+						int row = 0;
+
+						while( row < mCount && mItems[ index( row ) ] != item )
+						{
+							row++;
+						}
+
+						for( int x = row; x > 0; x-- )
+						{
+							mItems[ index( x ) ] = mItems[ index( x - 1 ) ];
+						}
+
+						mItems[ index( 0 ) ] = null;
+						mHead = index( 0 );
+						mCount--;
+
+						changed = true;
+					}
+					break;
+				case CLEAR:
+					clearItems();
+
+					changed = true;
+					break;
+				default:
+					break;
+			}
+
+			change = mPendingChanges.poll();
+		}
+
+		return changed ? CHANGED : added;
+	}
+
+	private static class Change<T>
+	{
+		private Action mAction;
+		private T mItem;
+
+		public Change( Action action, T item )
+		{
+			mAction = action;
+			mItem = item;
+		}
+
+		public Action getAction()
+		{
+			return mAction;
+		}
+
+		public T getItem()
+		{
+			return mItem;
+		}
+	}
+}
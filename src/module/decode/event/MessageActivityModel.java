@@ -17,18 +17,15 @@
  ******************************************************************************/
 package module.decode.event;
 
-import java.awt.EventQueue;
 import java.text.SimpleDateFormat;
 import java.util.Date;
-import java.util.LinkedList;
-
-import javax.swing.table.AbstractTableModel;
 
 import message.Message;
+import properties.SystemProperties;
 import sample.Listener;
 import filter.FilterSet;
 
-public class MessageActivityModel extends AbstractTableModel
+public class MessageActivityModel extends CoalescingTableModel<Message>
 								  implements Listener<Message>
 {
     private static final long serialVersionUID = 1L;
@@ -38,8 +35,8 @@ public class MessageActivityModel extends AbstractTableModel
     private static final int MESSAGE = 3;
     private static final int MESSAGE_BITS = 4;
 
-	protected int mMaxMessages = 500;
-	protected LinkedList<Message> mMessages = new LinkedList<Message>();
+	public static final String CAPACITY_PROPERTY = "message.activity.model.capacity";
+	public static final int CAPACITY_DEFAULT = 500;
 
 	protected int[] mColumnWidths = { 110, 110, 110, -1, -1 };
 
@@ -57,30 +54,15 @@ public class MessageActivityModel extends AbstractTableModel
 	
 	public MessageActivityModel( FilterSet<Message> messageFilter )
 	{
+		super( SystemProperties.getInstance().get( CAPACITY_PROPERTY, 
+				CAPACITY_DEFAULT ), false );
+
 		mMessageFilter = messageFilter;
 	}
 	
 	public MessageActivityModel()
 	{
-	}
-	
-	/**
-	 * Clears all messages from history
-	 */
-	public void clear()
-	{
-		EventQueue.invokeLater( new Runnable()
-		{
-			@Override
-            public void run()
-            {
-				int messageCount = mMessages.size();
-				
-				mMessages.clear();
-
-				fireTableRowsDeleted( 0, messageCount - 1 );
-            }
-		});
+		this( null );
 	}
 	
 	public FilterSet<Message> getMessageFilter()
@@ -88,11 +70,6 @@ public class MessageActivityModel extends AbstractTableModel
 		return mMessageFilter;
 	}
 	
-	public void dispose()
-	{
-		mMessages.clear();
-	}
-	
 	public int[] getColumnWidths()
 	{
 		return mColumnWidths;
@@ -113,49 +90,23 @@ public class MessageActivityModel extends AbstractTableModel
 	
 	public int getMaxMessageCount()
 	{
-		return mMaxMessages;
+		return getCapacity();
 	}
 
 	public void setMaxMessageCount( int count )
 	{
-		mMaxMessages = count;
+		setCapacity( count );
 	}
 	
 	public void receive( final Message message )
 	{
-		if( message.isValid() && mMessageFilter.passes( message ) )
+		if( message.isValid() && 
+			( mMessageFilter == null || mMessageFilter.passes( message ) ) )
 		{
-			EventQueue.invokeLater( new Runnable() 
-			{
-				@Override
-	            public void run()
-	            {
-					mMessages.addFirst( message );
-
-					MessageActivityModel.this.fireTableRowsInserted( 0, 0 );
-
-					prune();
-	            }
-			} );
-		}
-	}
-	
-	private void prune()
-	{
-		while( mMessages.size() > mMaxMessages )
-		{
-			mMessages.removeLast();
-			
-			super.fireTableRowsDeleted( mMessages.size() - 1, mMessages.size() - 1 );
+			put( message );
 		}
 	}
 
-	@Override
-    public int getRowCount()
-    {
-		return mMessages.size();
-    }
-
 	@Override
     public int getColumnCount()
     {
@@ -170,10 +121,10 @@ public class MessageActivityModel extends AbstractTableModel
 	@Override
     public Object getValueAt( int rowIndex, int columnIndex )
     {
-		if( 0 <= rowIndex && rowIndex < mMessages.size() )
+		Message message = getItem( rowIndex );
+
+		if( message != null )
 		{
-			Message message = mMessages.get( rowIndex );
-			
 			switch( columnIndex )
 			{
 				case TIME:
@@ -101,7 +101,7 @@ public class MessageActivityPanel extends JPanel implements ChannelEventListener
 				ProcessingChain chain = mChannelProcessingManager
 						.getProcessingChain( mDisplayedChannel );
 
-				if( chain != null )
+				if( chain != null && chain.getMessageActivityModel() != null )
 				{
 					mDisplayedModel = chain.getMessageActivityModel();
 				}
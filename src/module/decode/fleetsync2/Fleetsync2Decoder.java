@@ -33,7 +33,7 @@ import sample.Listener;
 import sample.real.IFilteredRealBufferListener;
 import sample.real.RealBuffer;
 import alias.AliasList;
-import bits.MessageFramer;
+import bits.PackedMessageFramer;
 import bits.SyncPattern;
 import dsp.filter.Filters;
 import dsp.filter.fir.real.RealFIRFilter_RB_RB;
@@ -67,7 +67,7 @@ public class Fleetsync2Decoder extends Decoder implements IFilteredRealBufferLis
     private FSK2Decoder mFSKDecoder;
     private HalfBandFilter_RB_RB mDecimationFilter;
     private RealFIRFilter_RB_RB mBandPassFilter;
-    private MessageFramer mMessageFramer;
+    private PackedMessageFramer mMessageFramer;
     private Fleetsync2MessageProcessor mMessageProcessor;
     
     public Fleetsync2Decoder( AliasList aliasList )
@@ -84,9 +84,9 @@ public class Fleetsync2Decoder extends Decoder implements IFilteredRealBufferLis
         					sSYMBOL_RATE, Output.INVERTED );
         mBandPassFilter.setListener( mFSKDecoder );
 
-        mMessageFramer = new MessageFramer( 
-        		SyncPattern.FLEETSYNC2.getPattern(), sMESSAGE_LENGTH );
-        mFSKDecoder.setListener( mMessageFramer );
+        mMessageFramer = new PackedMessageFramer( sMESSAGE_LENGTH, 
+        		SyncPattern.FLEETSYNC2.getPattern() );
+        mFSKDecoder.setPackedBitListener( mMessageFramer );
         
         mMessageProcessor = new Fleetsync2MessageProcessor( aliasList );
         mMessageFramer.addMessageListener( mMessageProcessor );
@@ -147,6 +147,7 @@ public class Fleetsync2Decoder extends Decoder implements IFilteredRealBufferLis
 				break;
 			case INSTRUMENT_FSK2_DECODER_TO_MESSAGE_FRAMER:
 				BinaryTap decoderTap = (BinaryTap)tap;
+				mFSKDecoder.setPackedBitListener( null );
 				mFSKDecoder.setListener( decoderTap );
 				decoderTap.setListener( mMessageFramer );
 		        break;
@@ -164,7 +165,8 @@ public class Fleetsync2Decoder extends Decoder implements IFilteredRealBufferLis
 				mBandPassFilter.setListener( mFSKDecoder );
 				break;
 			case INSTRUMENT_FSK2_DECODER_TO_MESSAGE_FRAMER:
-				mFSKDecoder.setListener( mMessageFramer );
+				mFSKDecoder.removeListener( (BinaryTap)tap );
+				mFSKDecoder.setPackedBitListener( mMessageFramer );
 		        break;
 		}
     }
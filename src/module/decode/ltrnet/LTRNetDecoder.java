@@ -32,7 +32,7 @@ import sample.Listener;
 import sample.real.IUnFilteredRealBufferListener;
 import sample.real.RealBuffer;
 import alias.AliasList;
-import bits.MessageFramer;
+import bits.PackedMessageFramer;
 import bits.SyncPattern;
 import dsp.fsk.LTRFSKDecoder;
 
@@ -41,7 +41,7 @@ public class LTRNetDecoder extends Decoder
 {
 	public static final int LTR_STANDARD_MESSAGE_LENGTH = 40;
 	private LTRFSKDecoder mLTRFSKDecoder;
-	private MessageFramer mLTRMessageFramer;
+	private PackedMessageFramer mLTRMessageFramer;
 	private LTRNetMessageProcessor mLTRMessageProcessor;
 
     private List<TapGroup> mAvailableTaps;
@@ -58,14 +58,14 @@ public class LTRNetDecoder extends Decoder
 		if( config.getMessageDirection() == MessageDirection.OSW )
 		{
 			mLTRMessageFramer = 
-					new MessageFramer( SyncPattern.LTR_STANDARD_OSW.getPattern(),
-							LTR_STANDARD_MESSAGE_LENGTH );
+					new PackedMessageFramer( LTR_STANDARD_MESSAGE_LENGTH,
+							SyncPattern.LTR_STANDARD_OSW.getPattern() );
 		}
 		else
 		{
 			mLTRMessageFramer = 
-					new MessageFramer( SyncPattern.LTR_STANDARD_ISW.getPattern(),
-							LTR_STANDARD_MESSAGE_LENGTH );
+					new PackedMessageFramer( LTR_STANDARD_MESSAGE_LENGTH,
+							SyncPattern.LTR_STANDARD_ISW.getPattern() );
 		}
 		
 		mLTRFSKDecoder.addListener( mLTRMessageFramer );
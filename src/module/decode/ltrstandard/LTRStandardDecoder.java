@@ -26,7 +26,7 @@ import sample.Listener;
 import sample.real.IUnFilteredRealBufferListener;
 import sample.real.RealBuffer;
 import alias.AliasList;
-import bits.MessageFramer;
+import bits.PackedMessageFramer;
 import bits.SyncPattern;
 import dsp.fsk.LTRFSKDecoder;
 
@@ -35,7 +35,7 @@ public class LTRStandardDecoder extends Decoder implements IUnFilteredRealBuffer
 	public static final int LTR_STANDARD_MESSAGE_LENGTH = 40;
 
 	private LTRFSKDecoder mLTRFSKDecoder;
-	private MessageFramer mLTRMessageFramer;
+	private PackedMessageFramer mLTRMessageFramer;
 	private LTRStandardMessageProcessor mLTRMessageProcessor;
     
     /**
@@ -50,14 +50,14 @@ public class LTRStandardDecoder extends Decoder implements IUnFilteredRealBuffer
 		if( direction == MessageDirection.OSW )
 		{
 			mLTRMessageFramer = 
-					new MessageFramer( SyncPattern.LTR_STANDARD_OSW.getPattern(),
-							LTR_STANDARD_MESSAGE_LENGTH );
+					new PackedMessageFramer( LTR_STANDARD_MESSAGE_LENGTH,
+							SyncPattern.LTR_STANDARD_OSW.getPattern() );
 		}
 		else
 		{
 			mLTRMessageFramer = 
-					new MessageFramer( SyncPattern.LTR_STANDARD_ISW.getPattern(),
-							LTR_STANDARD_MESSAGE_LENGTH );
+					new PackedMessageFramer( LTR_STANDARD_MESSAGE_LENGTH,
+							SyncPattern.LTR_STANDARD_ISW.getPattern() );
 		}
 		
 		mLTRFSKDecoder.addListener( mLTRMessageFramer );
@@ -34,7 +34,7 @@ import sample.Listener;
 import sample.real.IFilteredRealBufferListener;
 import sample.real.RealBuffer;
 import alias.AliasList;
-import bits.MessageFramer;
+import bits.PackedMessageFramer;
 import bits.SyncPattern;
 import dsp.NRZDecoder;
 import dsp.filter.Filters;
@@ -72,7 +72,7 @@ public class MDCDecoder extends Decoder implements IFilteredRealBufferListener,
     private HalfBandFilter_RB_RB mDecimationFilter;
     private RealFIRFilter_RB_RB mBandPassFilter;
     private NRZDecoder mNRZDecoder;
-    private MessageFramer mMessageFramer;
+    private PackedMessageFramer mMessageFramer;
     private MDCMessageProcessor mMessageProcessor;
     
     public MDCDecoder( AliasList aliasList )
@@ -96,8 +96,8 @@ public class MDCDecoder extends Decoder implements IFilteredRealBufferListener,
         mFSKDecoder.setListener( mNRZDecoder );
 
         /* Message Framer */
-        mMessageFramer = new MessageFramer( SyncPattern.MDC1200.getPattern(), 
-				sMESSAGE_LENGTH );
+        mMessageFramer = new PackedMessageFramer( sMESSAGE_LENGTH, 
+				SyncPattern.MDC1200.getPattern() );
         mNRZDecoder.setListener( mMessageFramer );
 
         /* Message Processor */
@@ -34,12 +34,11 @@ import module.decode.DecoderType;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
-import sample.Broadcaster;
 import sample.Listener;
 import sample.real.IFilteredRealBufferListener;
 import sample.real.RealBuffer;
 import alias.AliasList;
-import bits.MessageFramer;
+import bits.PackedMessageFramer;
 import bits.SyncPattern;
 import dsp.filter.FilterFactory;
 import dsp.filter.Filters;
@@ -83,9 +82,7 @@ public class MPT1327Decoder extends Decoder
 	private RealFIRFilter_RB_RB mLowPassFilter;
 	private DCRemovalFilterLyons mDCRemovalFilter; 
 	private FSK2Decoder mFSKDecoder;
-	private Broadcaster<Boolean> mSymbolBroadcaster;
-    private MessageFramer mControlMessageFramer;
-    private MessageFramer mTrafficMessageFramer;
+    private PackedMessageFramer mMessageFramer;
     private MPT1327MessageProcessor mMessageProcessor;
 
     public MPT1327Decoder( AliasList aliasList, Sync sync )
@@ -124,26 +121,16 @@ public class MPT1327Decoder extends Decoder
 		}
 		mLowPassFilter.setListener( mFSKDecoder );
 		
-		mSymbolBroadcaster = new Broadcaster<Boolean>();
-        mFSKDecoder.setListener( mSymbolBroadcaster );
-
-        /* Message framer for control channel messages */
-        mControlMessageFramer = 
-        		new MessageFramer( sync.getControlSyncPattern().getPattern(), 
-        						   sMESSAGE_LENGTH );
-        mSymbolBroadcaster.addListener( mControlMessageFramer );
-
-        /* Message framer for traffic channel massages */
-        mTrafficMessageFramer = 
-        		new MessageFramer( sync.getTrafficSyncPattern().getPattern(), 
-        								sMESSAGE_LENGTH );
-        mSymbolBroadcaster.addListener( mTrafficMessageFramer );
+        /* Message framer for control and traffic channel messages */
+        mMessageFramer = new PackedMessageFramer( sMESSAGE_LENGTH, 
+        		sync.getControlSyncPattern().getPattern(), 
+        		sync.getTrafficSyncPattern().getPattern() );
+        mFSKDecoder.setPackedBitListener( mMessageFramer );
 
         /* Fully decoded and framed messages processor */
         mMessageProcessor = new MPT1327MessageProcessor( aliasList );
         mMessageProcessor.setMessageListener( this );
-        mControlMessageFramer.addMessageListener( mMessageProcessor );
-        mTrafficMessageFramer.addMessageListener( mMessageProcessor );
+        mMessageFramer.addMessageListener( mMessageProcessor );
 	}
     
 	@Override
@@ -165,9 +152,7 @@ public class MPT1327Decoder extends Decoder
 	{
 		super.dispose();
 
-		mSymbolBroadcaster.dispose();
-		
-		mControlMessageFramer.dispose();
+		mMessageFramer.dispose();
 
 		if( mDCRemovalFilter != null )
 		{
@@ -181,8 +166,6 @@ public class MPT1327Decoder extends Decoder
 		mLowPassFilter.dispose();
 		
 		mMessageProcessor.dispose();
-
-		mTrafficMessageFramer.dispose();
 	}
 
 	/* Instrumentation Taps */
@@ -231,8 +214,9 @@ public class MPT1327Decoder extends Decoder
 				break;
 			case INSTRUMENT_DECODER_TO_FRAMER:
 				BinaryTap decoderTap = (BinaryTap)tap;
+				mFSKDecoder.setPackedBitListener( null );
 				mFSKDecoder.setListener( decoderTap );
-				decoderTap.setListener( mSymbolBroadcaster );
+				decoderTap.setListener( mMessageFramer );
 		        break;
 		}
     }
@@ -251,7 +235,8 @@ public class MPT1327Decoder extends Decoder
 				mLowPassFilter.setListener( mFSKDecoder );
 				break;
 			case INSTRUMENT_DECODER_TO_FRAMER:
-		        mFSKDecoder.setListener( mSymbolBroadcaster );
+				mFSKDecoder.removeListener( (BinaryTap)tap );
+				mFSKDecoder.setPackedBitListener( mMessageFramer );
 		        break;
 		}
     }
@@ -302,8 +287,7 @@ public class MPT1327Decoder extends Decoder
 	@Override
 	public void reset()
 	{
-		mControlMessageFramer.reset();
-		mTrafficMessageFramer.reset();
+		mMessageFramer.reset();
 	}
 
 	@Override
@@ -1,14 +1,5 @@
 package module.decode.p25;
 
-import instrument.Instrumentable;
-import instrument.tap.Tap;
-import instrument.tap.TapGroup;
-import instrument.tap.stream.AdditiveFloatTap;
-import instrument.tap.stream.FloatTap;
-
-import java.util.ArrayList;
-import java.util.List;
-
 import sample.Listener;
 import sample.real.RealBuffer;
 import sample.real.RealSampleListener;
@@ -18,10 +9,12 @@ import source.tuner.frequency.FrequencyChangeEvent.Event;
 import source.tuner.frequency.IFrequencyChangeListener;
 import dsp.gain.DirectGainControl;
 
+/**
+ * Instrumentation: see InstrumentedC4FMSymbolFilter.
+ */
 public class C4FMSymbolFilter implements Listener<RealBuffer>, 
 										 IFrequencyChangeListener,
-										 RealSampleProvider,
-										 Instrumentable
+										 RealSampleProvider
 {
 	private static final float TAPS[][] = 
 	{ 
@@ -156,11 +149,6 @@ public class C4FMSymbolFilter implements Listener<RealBuffer>,
 		{  0.00000e+00f,  0.00000e+00f,  0.00000e+00f,  1.00000e+00f,  0.00000e+00f,  0.00000e+00f,  0.00000e+00f,  0.00000e+00f }, // 128/128
 	};
 	
-    /* Instrumentation Taps */
-	private static final String INSTRUMENT_SYMBOL_SPREAD = "Tap Point: Symbol Spread (Goal=2.0)";
-	private FloatTap mSymbolSpreadTap;
-    private List<TapGroup> mAvailableTaps;
-	
 	private static final int NUMBER_FILTER_TAPS = 8;
 	private static final int NUMBER_FILTER_STEPS = 128;
 	
@@ -387,10 +375,7 @@ public class C4FMSymbolFilter implements Listener<RealBuffer>,
 						500 * ( mCoarseFrequencyCorrection > 0 ? 1 : -1 );
 			}
 			
-			if( mSymbolSpreadTap != null )
-			{
-				mSymbolSpreadTap.receive( mSymbolSpread );
-			}
+			symbolSpread( mSymbolSpread );
 
 			/* dispatch the interpolated value to the listener */
 			if( mListener != null )
@@ -412,45 +397,13 @@ public class C4FMSymbolFilter implements Listener<RealBuffer>,
 		mListener = null;
     }
 	
-	@Override
-    public List<TapGroup> getTapGroups()
-    {
-		if( mAvailableTaps == null )
-		{
-			mAvailableTaps = new ArrayList<>();
-			
-			/*
-			 * Since the target is 2.0, we subtract 2.0 from the value so that
-			 * a good value is plotted right on the zero center line
-			 */
-			TapGroup group = new TapGroup( "C4FM Symbol Filter" );
-			
-			group.add( 
-					new AdditiveFloatTap( INSTRUMENT_SYMBOL_SPREAD, 0, 0.1f, -2.0f ) );
-			
-			mAvailableTaps.add( group );
-		}
-		
-		return mAvailableTaps;
-    }
-
-	@Override
-    public void registerTap( Tap tap )
-    {
-		if( tap.getName().contentEquals( INSTRUMENT_SYMBOL_SPREAD ) )
-		{
-			mSymbolSpreadTap = (FloatTap)tap;
-		}
-    }
-
-	@Override
-    public void unregisterTap( Tap tap )
-    {
-		if( tap.getName().contentEquals( INSTRUMENT_SYMBOL_SPREAD ) )
-		{
-			mSymbolSpreadTap = null;
-		}
-    }
+	/**
+	 * Symbol spread hook, invoked once per symbol.  Empty here and overridden
+	 * by the instrumented symbol filter.
+	 */
+	protected void symbolSpread( float spread )
+	{
+	}
 
 	public void broadcast( FrequencyChangeEvent event )
 	{
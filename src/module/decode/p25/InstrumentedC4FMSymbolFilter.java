@@ -0,0 +1,95 @@
+/*******************************************************************************
+ *     SDR Trunk 
+ *     Copyright (C) 2014-2016 Dennis Sheirer
+ * 
+ *     This program is free software: you can redistribute it and/or modify
+ *     it under the terms of the GNU General Public License as published by
+ *     the Free Software Foundation, either version 3 of the License, or
+ *     (at your option) any later version.
+ * 
+ *     This program is distributed in the hope that it will be useful,
+ *     but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *     MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *     GNU General Public License for more details.
+ * 
+ *     You should have received a copy of the GNU General Public License
+ *     along with this program.  If not, see <http://www.gnu.org/licenses/>
+ ******************************************************************************/
+package module.decode.p25;
+
+import instrument.Instrumentable;
+import instrument.tap.Tap;
+import instrument.tap.TapGroup;
+import instrument.tap.stream.AdditiveFloatTap;
+import instrument.tap.stream.FloatTap;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * C4FM symbol filter with a symbol spread instrumentation tap.  Only 
+ * constructed for instrumented processing chains - see Instrumentation.
+ */
+public class InstrumentedC4FMSymbolFilter extends C4FMSymbolFilter 
+										  implements Instrumentable
+{
+	private static final String INSTRUMENT_SYMBOL_SPREAD = "Tap Point: Symbol Spread (Goal=2.0)";
+	private FloatTap mSymbolSpreadTap;
+	private List<TapGroup> mAvailableTaps;
+
+	public InstrumentedC4FMSymbolFilter( int frequencyCorrectionMaximum )
+	{
+		super( frequencyCorrectionMaximum );
+	}
+
+	@Override
+	protected void symbolSpread( float spread )
+	{
+		FloatTap tap = mSymbolSpreadTap;
+		
+		if( tap != null )
+		{
+			tap.receive( spread );
+		}
+	}
+
+	@Override
+	public List<TapGroup> getTapGroups()
+	{
+		if( mAvailableTaps == null )
+		{
+			mAvailableTaps = new ArrayList<>();
+			
+			/*
+			 * Since the target is 2.0, we subtract 2.0 from the value so that
+			 * a good value is plotted right on the zero center line
+			 */
+			TapGroup group = new TapGroup( "C4FM Symbol Filter" );
+			
+			group.add( 
+					new AdditiveFloatTap( INSTRUMENT_SYMBOL_SPREAD, 0, 0.1f, -2.0f ) );
+			
+			mAvailableTaps.add( group );
+		}
+		
+		return mAvailableTaps;
+	}
+
+	@Override
+	public void registerTap( Tap tap )
+	{
+		if( tap.getName().contentEquals( INSTRUMENT_SYMBOL_SPREAD ) )
+		{
+			mSymbolSpreadTap = (FloatTap)tap;
+		}
+	}
+
+	@Override
+	public void unregisterTap( Tap tap )
+	{
+		if( tap.getName().contentEquals( INSTRUMENT_SYMBOL_SPREAD ) )
+		{
+			mSymbolSpreadTap = null;
+		}
+	}
+}
@@ -32,7 +32,7 @@ import bits.ISyncDetectListener;
 import bits.MultiSyncPatternMatcher;
 import bits.SoftSyncDetector;
 import bits.SyncDetector;
-import dsp.psk.LSMDemodulator;
+import dsp.psk.IPhaseErrorCorrector;
 import dsp.symbol.Dibit;
 import dsp.symbol.FrameSync;
 import edac.BCH_63_16_11;
@@ -124,7 +124,7 @@ public class P25MessageFramer implements Listener<Dibit>
 		mAssemblers.add( new P25MessageAssembler() );
 	}
 	
-	public P25MessageFramer( AliasList aliasList, LSMDemodulator demodulator )
+	public P25MessageFramer( AliasList aliasList, IPhaseErrorCorrector demodulator )
 	{
 		this( aliasList );
 
@@ -686,11 +686,11 @@ public class P25MessageFramer implements Listener<Dibit>
      */
     public class CostasPhaseErrorDetector extends SyncDetector
     {
-    	private LSMDemodulator mDemodulator;
+    	private IPhaseErrorCorrector mDemodulator;
     	private double mCorrection;
     	
     	public CostasPhaseErrorDetector( FrameSync frameSync, 
-    			LSMDemodulator demodulator, double correction )
+    			IPhaseErrorCorrector demodulator, double correction )
     	{
     		super( frameSync.getSync() );
 
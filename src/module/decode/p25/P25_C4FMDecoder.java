@@ -17,6 +17,8 @@
  ******************************************************************************/
 package module.decode.p25;
 
+import instrument.Instrumentable;
+import instrument.Instrumentation;
 import instrument.tap.Tap;
 import instrument.tap.TapGroup;
 import instrument.tap.stream.DibitTap;
@@ -32,7 +34,7 @@ import org.slf4j.LoggerFactory;
 
 import alias.AliasList;
 import sample.Listener;
-import sample.real.IFilteredRealBufferListener;
+import sample.real.IUnFilteredRealBufferListener;
 import sample.real.RealBuffer;
 import source.tuner.frequency.FrequencyChangeEvent;
 import source.tuner.frequency.IFrequencyChangeListener;
@@ -42,7 +44,7 @@ import dsp.filter.Window.WindowType;
 import dsp.filter.fir.real.RealFIRFilter_RB_RB;
 
 public class P25_C4FMDecoder extends P25Decoder 
-	implements IFrequencyChangeListener, IFrequencyChangeProvider,IFilteredRealBufferListener
+	implements IFrequencyChangeListener, IFrequencyChangeProvider, IUnFilteredRealBufferListener
 {
 	private final static Logger mLog = LoggerFactory.getLogger( P25_C4FMDecoder.class );
 	
@@ -80,7 +82,9 @@ public class P25_C4FMDecoder extends P25Decoder
 		mC4FMPreFilter = new RealFIRFilter_RB_RB( filter, 1.0f );
 
 		/* Shape gain and frequency offsets to optimize sample stream */
-		mSymbolFilter = new C4FMSymbolFilter( frequencyCorrectionMaximum );
+		mSymbolFilter = Instrumentation.isEnabled() ? 
+			new InstrumentedC4FMSymbolFilter( frequencyCorrectionMaximum ) : 
+			new C4FMSymbolFilter( frequencyCorrectionMaximum );
 		mC4FMPreFilter.setListener( mSymbolFilter );
 		
 		/* Convert samples to symbols */
@@ -119,7 +123,7 @@ public class P25_C4FMDecoder extends P25Decoder
 	}
 	
 	@Override
-	public Listener<RealBuffer> getFilteredRealBufferListener()
+	public Listener<RealBuffer> getUnFilteredRealBufferListener()
 	{
 		return mC4FMPreFilter;
 	}
@@ -143,9 +147,10 @@ public class P25_C4FMDecoder extends P25Decoder
 
 			mAvailableTaps.add( group );
 			
-			if( mSymbolFilter != null )
+			if( mSymbolFilter instanceof Instrumentable )
 			{
-				mAvailableTaps.addAll( mSymbolFilter.getTapGroups() );
+				mAvailableTaps.addAll( 
+					((Instrumentable)mSymbolFilter).getTapGroups() );
 			}
 		}
 		
@@ -158,9 +163,9 @@ public class P25_C4FMDecoder extends P25Decoder
 	@Override
     public void registerTap( Tap tap )
     {
-		if( mSymbolFilter != null )
+		if( mSymbolFilter instanceof Instrumentable )
 		{
-			mSymbolFilter.registerTap( tap );
+			((Instrumentable)mSymbolFilter).registerTap( tap );
 		}
 		
 		switch( tap.getName() )
@@ -194,9 +199,9 @@ public class P25_C4FMDecoder extends P25Decoder
 	@Override
     public void unregisterTap( Tap tap )
     {
-		if( mSymbolFilter != null )
+		if( mSymbolFilter instanceof Instrumentable )
 		{
-			mSymbolFilter.unregisterTap( tap );
+			((Instrumentable)mSymbolFilter).unregisterTap( tap );
 		}
 		
 		switch( tap.getName() )
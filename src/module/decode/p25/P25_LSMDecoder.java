@@ -17,6 +17,8 @@
  ******************************************************************************/
 package module.decode.p25;
 
+import instrument.Instrumentable;
+import instrument.Instrumentation;
 import instrument.tap.Tap;
 import instrument.tap.TapGroup;
 import instrument.tap.stream.ComplexSampleTap;
@@ -40,9 +42,17 @@ import dsp.filter.FilterFactory;
 import dsp.filter.Window.WindowType;
 import dsp.filter.fir.complex.ComplexFIRFilter_CB_CB;
 import dsp.gain.ComplexFeedForwardGainControl;
+import dsp.psk.BlockLSMDemodulator;
+import dsp.psk.InstrumentedLSMDemodulator;
 import dsp.psk.LSMDemodulator;
 import dsp.psk.QPSKPolarSlicer;
 
+/**
+ * P25 Phase 1 CQPSK (LSM) decoder.  Production decoders demodulate each 
+ * baseband buffer as a block with the BlockLSMDemodulator.  Instrumented 
+ * decoders use the sample stream LSMDemodulator chain so that the internal
+ * processing stages can be tapped.
+ */
 public class P25_LSMDecoder extends P25Decoder implements IComplexBufferListener
 {
 	private final static Logger mLog = LoggerFactory.getLogger( P25_LSMDecoder.class );
@@ -56,12 +66,12 @@ public class P25_LSMDecoder extends P25Decoder implements IComplexBufferListener
 	private List<TapGroup> mAvailableTaps;
 	
 	private ComplexFIRFilter_CB_CB mBasebandFilter;
-	private ComplexBufferToStreamConverter mStreamConverter = 
-							new ComplexBufferToStreamConverter();
+	private ComplexBufferToStreamConverter mStreamConverter;
 	private ComplexFeedForwardGainControl mAGC = 
 							new ComplexFeedForwardGainControl( 32 );
-	private LSMDemodulator mLSMDemodulator = new LSMDemodulator();
-	private QPSKPolarSlicer mQPSKSlicer = new QPSKPolarSlicer();
+	private LSMDemodulator mLSMDemodulator;
+	private QPSKPolarSlicer mQPSKSlicer;
+	private BlockLSMDemodulator mBlockDemodulator;
 	private P25MessageFramer mMessageFramer;
 	
 	public P25_LSMDecoder( AliasList aliasList )
@@ -71,16 +81,41 @@ public class P25_LSMDecoder extends P25Decoder implements IComplexBufferListener
 		mBasebandFilter = new ComplexFIRFilter_CB_CB( FilterFactory.getLowPass( 
 				48000, 7250, 8000, 60, WindowType.HANNING, true ), 1.0f );
 		
-		mBasebandFilter.setListener( mStreamConverter );
-		
-		mStreamConverter.setListener( mAGC );
+		if( Instrumentation.isEnabled() )
+		{
+			mStreamConverter = new ComplexBufferToStreamConverter();
+			mLSMDemodulator = new InstrumentedLSMDemodulator();
+			mQPSKSlicer = new QPSKPolarSlicer();
+			
+			mBasebandFilter.setListener( mStreamConverter );
+			
+			mStreamConverter.setListener( mAGC );
 
-		mAGC.setListener( mLSMDemodulator );
-		
-		mLSMDemodulator.setSymbolListener( mQPSKSlicer );
-		
-		mMessageFramer = new P25MessageFramer( aliasList, mLSMDemodulator );
-		mQPSKSlicer.addListener( mMessageFramer );
+			mAGC.setListener( mLSMDemodulator );
+			
+			mLSMDemodulator.setSymbolListener( mQPSKSlicer );
+			
+			mMessageFramer = new P25MessageFramer( aliasList, mLSMDemodulator );
+			mQPSKSlicer.addListener( mMessageFramer );
+		}
+		else
+		{
+			mBlockDemodulator = new BlockLSMDemodulator();
+			
+			mBasebandFilter.setListener( new Listener<ComplexBuffer>()
+			{
+				@Override
+				public void receive( ComplexBuffer buffer )
+				{
+					mAGC.process( buffer.getSamples() );
+					
+					mBlockDemodulator.receive( buffer );
+				}
+			} );
+			
+			mMessageFramer = new P25MessageFramer( aliasList, mBlockDemodulator );
+			mBlockDemodulator.setDibitListener( mMessageFramer );
+		}
 		
         mMessageFramer.setListener( getMessageProcessor() );
 	}
@@ -92,17 +127,32 @@ public class P25_LSMDecoder extends P25Decoder implements IComplexBufferListener
 		mBasebandFilter.dispose();
 		mBasebandFilter = null;
 		
-		mStreamConverter.dispose();
-		mStreamConverter = null;
+		if( mStreamConverter != null )
+		{
+			mStreamConverter.dispose();
+			mStreamConverter = null;
+		}
 		
 		mAGC.dispose();
 		mAGC = null;
 
-		mLSMDemodulator.dispose();
-		mLSMDemodulator = null;
+		if( mLSMDemodulator != null )
+		{
+			mLSMDemodulator.dispose();
+			mLSMDemodulator = null;
+		}
 		
-		mQPSKSlicer.dispose();
-		mQPSKSlicer = null;
+		if( mQPSKSlicer != null )
+		{
+			mQPSKSlicer.dispose();
+			mQPSKSlicer = null;
+		}
+		
+		if( mBlockDemodulator != null )
+		{
+			mBlockDemodulator.dispose();
+			mBlockDemodulator = null;
+		}
 		
 		mMessageFramer.dispose();
 		mMessageFramer = null;
@@ -120,7 +170,8 @@ public class P25_LSMDecoder extends P25Decoder implements IComplexBufferListener
 	}
 	
 	/**
-	 * Provides a list of instrumentation taps for monitoring internal processing
+	 * Provides a list of instrumentation taps for monitoring internal processing.
+	 * Taps are only available from instrumented decoders.
 	 */
 	@Override
     public List<TapGroup> getTapGroups()
@@ -128,6 +179,11 @@ public class P25_LSMDecoder extends P25Decoder implements IComplexBufferListener
 		if( mAvailableTaps == null )
 		{
 			mAvailableTaps = new ArrayList<>();
+			
+			if( mLSMDemodulator == null )
+			{
+				return mAvailableTaps;
+			}
 
 			TapGroup group = new TapGroup( "P25 LSM Decoder" );
 			
@@ -138,9 +194,10 @@ public class P25_LSMDecoder extends P25Decoder implements IComplexBufferListener
 
 			mAvailableTaps.add( group );
 			
-			if( mLSMDemodulator != null )
+			if( mLSMDemodulator instanceof Instrumentable )
 			{
-				mAvailableTaps.addAll( mLSMDemodulator.getTapGroups() );
+				mAvailableTaps.addAll( 
+					((Instrumentable)mLSMDemodulator).getTapGroups() );
 			}
 		}
 		
@@ -153,9 +210,15 @@ public class P25_LSMDecoder extends P25Decoder implements IComplexBufferListener
 	@Override
     public void registerTap( Tap tap )
     {
-		if( mLSMDemodulator != null )
+		if( mLSMDemodulator == null )
+		{
+			throw new IllegalArgumentException( "Taps are not available from "
+					+ "a production decoder: " + tap.getName() );
+		}
+		
+		if( mLSMDemodulator instanceof Instrumentable )
 		{
-			mLSMDemodulator.registerTap( tap );
+			((Instrumentable)mLSMDemodulator).registerTap( tap );
 		}
 		
 		switch( tap.getName() )
@@ -190,9 +253,14 @@ public class P25_LSMDecoder extends P25Decoder implements IComplexBufferListener
 	@Override
     public void unregisterTap( Tap tap )
     {
-		if( mLSMDemodulator != null )
+		if( mLSMDemodulator == null )
+		{
+			return;
+		}
+		
+		if( mLSMDemodulator instanceof Instrumentable )
 		{
-			mLSMDemodulator.unregisterTap( tap );
+			((Instrumentable)mLSMDemodulator).unregisterTap( tap );
 		}
 		
 		switch( tap.getName() )
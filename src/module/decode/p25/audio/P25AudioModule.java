@@ -114,7 +114,7 @@ public class P25AudioModule extends Module implements Listener<Message>,
 						audio = mGain.apply( audio );
 
 						mAudioPacketListener.receive( 
-								new AudioPacket( audio, mAudioMetadata.copyOf() ) );
+								new AudioPacket( audio, mAudioMetadata.getSnapshot() ) );
 					}
 				}
 			}
@@ -259,7 +259,7 @@ public class P25AudioModule extends Module implements Listener<Message>,
 			if( state == SquelchState.SQUELCH && mAudioPacketListener != null )
 			{
 				mAudioPacketListener.receive( new AudioPacket( AudioPacket.Type.END, 
-						mAudioMetadata.copyOf() ) );
+						mAudioMetadata.getSnapshot() ) );
 
 				mAudioMetadata.reset();
 			}
@@ -32,7 +32,7 @@ import sample.Listener;
 import sample.real.IUnFilteredRealBufferListener;
 import sample.real.RealBuffer;
 import alias.AliasList;
-import bits.MessageFramer;
+import bits.PackedMessageFramer;
 import bits.SyncPattern;
 import dsp.fsk.LTRFSKDecoder;
 
@@ -43,7 +43,7 @@ public class PassportDecoder extends Decoder
 	public static final int PASSPORT_SYNC_LENGTH = 9;
 
 	private LTRFSKDecoder mPassportFSKDecoder;
-	private MessageFramer mPassportMessageFramer;
+	private PackedMessageFramer mPassportMessageFramer;
 	private PassportMessageProcessor mPassportMessageProcessor;
 
     private List<TapGroup> mAvailableTaps;
@@ -57,8 +57,8 @@ public class PassportDecoder extends Decoder
 		mPassportFSKDecoder = new LTRFSKDecoder();
 
 		mPassportMessageFramer = 
-				new MessageFramer( SyncPattern.PASSPORT.getPattern(),
-						PASSPORT_MESSAGE_LENGTH );
+				new PackedMessageFramer( PASSPORT_MESSAGE_LENGTH,
+						SyncPattern.PASSPORT.getPattern() );
 
 		mPassportFSKDecoder.addListener( mPassportMessageFramer );
 
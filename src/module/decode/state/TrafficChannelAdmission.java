@@ -0,0 +1,204 @@
+/*******************************************************************************
+ *     SDR Trunk 
+ *     Copyright (C) 2014-2016 Dennis Sheirer
+ * 
+ *     This program is free software: you can redistribute it and/or modify
+ *     it under the terms of the GNU General Public License as published by
+ *     the Free Software Foundation, either version 3 of the License, or
+ *     (at your option) any later version.
+ * 
+ *     This program is distributed in the hope that it will be useful,
+ *     but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *     MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *     GNU General Public License for more details.
+ * 
+ *     You should have received a copy of the GNU General Public License
+ *     along with this program.  If not, see <http://www.gnu.org/licenses/>
+ ******************************************************************************/
+package module.decode.state;
+
+import java.util.Map;
+
+import module.decode.event.CallEvent;
+import properties.SystemProperties;
+import record.RecorderType;
+import record.config.RecordConfiguration;
+import alias.Alias;
+import alias.id.priority.Priority;
+import audio.IAudioController;
+import audio.output.AudioOutput;
+
+/**
+ * Traffic channel admission policy shared by the traffic channel managers.
+ * 
+ * When traffic channel capacity (the traffic channel pool or tuner bandwidth)
+ * is exhausted, a call may preempt the active traffic channel with the lowest
+ * call priority, provided that channel's priority is lower than the new call.
+ * Call priority comes from the priority alias IDs of the call's to and from
+ * aliases, where lower values are higher priority.  When the pool has a free
+ * channel but its tuner channel couldn't be sourced, only calls on a tuner
+ * that could source the new call once released are candidates.
+ * 
+ * Optionally, traffic channels aren't allocated at all while their calls
+ * would be neither heard nor recorded, i.e. every audio output is muted (or
+ * there are none) or the call's aliases are do not monitor, and the traffic 
+ * channels don't record audio or the call's aliases are non-recordable.
+ * 
+ * Settings (application properties):
+ * 
+ * traffic.channel.preemption - enables preemption (default true)
+ * traffic.channel.skip.unmonitored - skips traffic channels for calls that
+ *   would be neither heard nor recorded (default false)
+ */
+public class TrafficChannelAdmission
+{
+	public static final String PREEMPTION_PROPERTY = "traffic.channel.preemption";
+	public static final String SKIP_UNMONITORED_PROPERTY = "traffic.channel.skip.unmonitored";
+
+	private static TrafficChannelAdmission sInstance;
+
+	private boolean mPreemption;
+	private boolean mSkipUnmonitored;
+	private IAudioController mAudioController;
+	private boolean mAudioControllerSet = false;
+
+	/**
+	 * Constructs an admission policy.
+	 * 
+	 * @param preemption - enables preemption of lower priority traffic channels
+	 * @param skipUnmonitored - skips traffic channels that would be neither
+	 * heard nor recorded
+	 */
+	public TrafficChannelAdmission( boolean preemption, boolean skipUnmonitored )
+	{
+		mPreemption = preemption;
+		mSkipUnmonitored = skipUnmonitored;
+	}
+
+	public static synchronized TrafficChannelAdmission getInstance()
+	{
+		if( sInstance == null )
+		{
+			SystemProperties properties = SystemProperties.getInstance();
+
+			sInstance = new TrafficChannelAdmission( 
+					properties.get( PREEMPTION_PROPERTY, true ),
+					properties.get( SKIP_UNMONITORED_PROPERTY, false ) );
+		}
+
+		return sInstance;
+	}
+
+	/**
+	 * Sets the audio controller whose outputs indicate if anyone is listening,
+	 * or null when the application has no audio output.  Until this is set,
+	 * calls are always considered to be heard.
+	 */
+	public void setAudioController( IAudioController controller )
+	{
+		mAudioController = controller;
+		mAudioControllerSet = true;
+	}
+
+	public boolean isPreemptionEnabled()
+	{
+		return mPreemption;
+	}
+
+	/**
+	 * Indicates if a traffic channel with the record configuration should be
+	 * allocated for the call, because the call will be heard or recorded.  
+	 * Always true unless skipping unmonitored traffic channels is enabled.
+	 * 
+	 * The call is recorded when the record configuration includes audio and
+	 * neither the to nor the from alias is non-recordable.  The call is heard
+	 * when neither alias has a do not monitor priority and an audio output 
+	 * isn't muted.
+	 */
+	public boolean isMonitored( RecordConfiguration recordConfiguration, 
+			CallEvent callEvent )
+	{
+		if( !mSkipUnmonitored )
+		{
+			return true;
+		}
+
+		Alias to = callEvent.getToIDAlias();
+		Alias from = callEvent.getFromIDAlias();
+
+		if( recordConfiguration != null && 
+			recordConfiguration.getRecorders().contains( RecorderType.AUDIO ) &&
+			( to == null || to.isRecordable() ) &&
+			( from == null || from.isRecordable() ) )
+		{
+			return true;
+		}
+
+		/* Do not monitor audio is never routed to an audio output */
+		if( isDoNotMonitor( to ) || isDoNotMonitor( from ) )
+		{
+			return false;
+		}
+
+		if( !mAudioControllerSet )
+		{
+			return true;
+		}
+
+		IAudioController controller = mAudioController;
+
+		if( controller == null )
+		{
+			return false;
+		}
+
+		for( AudioOutput output: controller.getAudioOutputs() )
+		{
+			if( !output.isMuted() )
+			{
+				return true;
+			}
+		}
+
+		return false;
+	}
+
+	private static boolean isDoNotMonitor( Alias alias )
+	{
+		return alias != null && 
+			   alias.hasCallPriority() && 
+			   alias.getCallPriority() == Priority.DO_NOT_MONITOR;
+	}
+
+	/**
+	 * Selects the active traffic channel to preempt for a new call.
+	 * 
+	 * @param priorities - call priority of each active traffic channel, keyed 
+	 * by channel number
+	 * @param priority - call priority of the new call
+	 * @return channel number of the lowest priority active channel that has a
+	 * lower priority than the new call, or null if preemption is disabled or
+	 * there's no such channel
+	 */
+	public String getPreemptionCandidate( Map<String,Integer> priorities, int priority )
+	{
+		if( !mPreemption )
+		{
+			return null;
+		}
+
+		String candidate = null;
+		int lowest = priority;
+
+		for( Map.Entry<String,Integer> entry: priorities.entrySet() )
+		{
+			if( entry.getValue() > lowest )
+			{
+				candidate = entry.getKey();
+				lowest = entry.getValue();
+			}
+		}
+
+		return candidate;
+	}
+}
@@ -1,12 +1,15 @@
 package module.decode.state;
 
 import java.util.ArrayList;
+import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
 
 import module.Module;
+import module.ProcessingChain;
 import module.decode.config.DecodeConfiguration;
 import module.decode.event.CallEvent;
 import module.decode.event.CallEvent.CallEventType;
@@ -17,11 +20,14 @@ import org.slf4j.LoggerFactory;
 
 import record.config.RecordConfiguration;
 import sample.Listener;
+import source.Source;
 import source.config.SourceConfigTuner;
 import source.tuner.TunerChannel;
+import source.tuner.TunerChannelSource;
 import source.tuner.TunerChannel.Type;
 import alias.Alias;
 import alias.id.priority.Priority;
+import controller.ThreadPoolManager;
 import controller.channel.Channel;
 import controller.channel.Channel.ChannelType;
 import controller.channel.ChannelEvent;
@@ -29,6 +35,8 @@ import controller.channel.ChannelEvent.Event;
 import controller.channel.ChannelModel;
 import controller.channel.ChannelProcessingManager;
 import controller.channel.TrafficChannelEvent;
+import properties.SystemProperties;
+import controller.overload.OverloadController;
 
 public class TrafficChannelManager extends Module 
 			implements ICallEventProvider, IDecoderStateEventListener
@@ -37,11 +45,19 @@ public class TrafficChannelManager extends Module
     public static final String CHANNEL_START_REJECTED = "CHANNEL START REJECTED";
     public static final String NO_TUNER_AVAILABLE = "NO TUNER AVAILABLE";
     public static final String UNKNOWN_FREQUENCY = "UNKNOWN FREQUENCY";
+    public static final String OVERLOAD_REFUSED = "OVERLOAD - CHANNEL REFUSED";
+    public static final String NOT_MONITORED = "NOT MONITORED";
+
+    /* Number of traffic channel processing chains to build ahead of the first
+     * traffic channel allocation, limited by the traffic channel pool size */
+    public static final String TRAFFIC_CHANNEL_PREWARM_PROPERTY = "traffic.channel.prewarm";
+    public static final int TRAFFIC_CHANNEL_PREWARM_DEFAULT = 2;
 
     private int mTrafficChannelPoolMaximumSize =
 			DecodeConfiguration.TRAFFIC_CHANNEL_LIMIT_DEFAULT;
 	private List<Channel> mTrafficChannelPool = new ArrayList<Channel>();
 	private Map<String,Channel> mTrafficChannelsInUse = new ConcurrentHashMap<String,Channel>();
+	private Map<String,Integer> mTrafficChannelPriorities = new ConcurrentHashMap<String,Integer>();
 
 	private DecoderStateEventListener mEventListener = new DecoderStateEventListener();
 	private Listener<CallEvent> mCallEventListener;
@@ -104,14 +120,25 @@ public class TrafficChannelManager extends Module
 	@Override
 	public void dispose()
 	{
-		for( Channel trafficChannel: mTrafficChannelPool )
+		List<Channel> trafficChannels = new ArrayList<>();
+
+		synchronized( mTrafficChannelsInUse )
 		{
-			mChannelModel.broadcast( new ChannelEvent( trafficChannel, Event.REQUEST_DISABLE ) );
+			trafficChannels.addAll( mTrafficChannelPool );
+
+			mTrafficChannelPool.clear();
+			
+			mTrafficChannelsInUse.clear();
+			mTrafficChannelPriorities.clear();
 		}
 
-		mTrafficChannelPool.clear();
-		
-		mTrafficChannelsInUse.clear();
+		/* Delete the traffic channels so that their processing chains are 
+		 * released */
+		for( Channel trafficChannel: trafficChannels )
+		{
+			mChannelModel.broadcast( new ChannelEvent( trafficChannel, Event.REQUEST_DISABLE ) );
+			mChannelModel.broadcast( new ChannelEvent( trafficChannel, Event.REQUEST_DELETE ) );
+		}
 		
 		mCallEventListener = null;
 		mDecodeConfiguration = null;
@@ -146,13 +173,7 @@ public class TrafficChannelManager extends Module
 			
 			if( channel == null && mTrafficChannelPool.size() < mTrafficChannelPoolMaximumSize )
 			{
-				channel = new Channel( "Traffic", ChannelType.TRAFFIC );
-				
-				channel.setDecodeConfiguration( mDecodeConfiguration );
-				
-				channel.setRecordConfiguration( mRecordConfiguration );
-				
-				channel.setAliasListName( mAliasListName );
+				channel = createTrafficChannel();
 				
 				mChannelModel.addChannel( channel );
 				
@@ -174,6 +195,61 @@ public class TrafficChannelManager extends Module
 		return channel;
 	}
 	
+	/**
+	 * Creates a new (disabled) traffic channel using this manager's decode,
+	 * record and alias list configuration.
+	 */
+	private Channel createTrafficChannel()
+	{
+		Channel channel = new Channel( "Traffic", ChannelType.TRAFFIC );
+		
+		channel.setDecodeConfiguration( mDecodeConfiguration );
+		
+		channel.setRecordConfiguration( mRecordConfiguration );
+		
+		channel.setAliasListName( mAliasListName );
+
+		channel.setSystem( mSystem );
+		
+		channel.setSite( mSite );
+
+		return channel;
+	}
+
+	/**
+	 * Adds traffic channels to the pool, up to the prewarm count, and has the
+	 * channel processing manager build each channel's processing chain ahead
+	 * of time.  A pre-built chain only needs a source to start decoding, so
+	 * the start of the first call on each channel isn't lost while the 
+	 * decoder and filters are constructed.
+	 * 
+	 * Note: the chain is built outside of the traffic channels in use lock,
+	 * since the channel processing manager can call back into this manager.
+	 */
+	private void prewarm( int count )
+	{
+		for( int x = 0; x < count; x++ )
+		{
+			Channel channel = null;
+
+			synchronized( mTrafficChannelsInUse )
+			{
+				if( mDecodeConfiguration == null || mTrafficChannelPool.size() >= count )
+				{
+					return;
+				}
+
+				channel = createTrafficChannel();
+
+				mTrafficChannelPool.add( channel );
+			}
+
+			mChannelModel.addChannel( channel );
+
+			mChannelProcessingManager.prepareProcessing( channel );
+		}
+	}
+	
 	/**
 	 * Processes the event and creates a traffic channel is resources are
 	 * available
@@ -206,75 +282,78 @@ public class TrafficChannelManager extends Module
 					mPreviousDoNotMonitorCallEvent = callEvent;
 				}
 			}
+			else if( frequency > 0 && OverloadController.getInstance()
+						.isRefused( getCallPriority( callEvent ) ) )
+			{
+				/* Shed low priority traffic to protect this control channel */
+				setCallDetect( callEvent, OVERLOAD_REFUSED );
+			}
+			else if( frequency > 0 && !TrafficChannelAdmission.getInstance()
+						.isMonitored( mRecordConfiguration, callEvent ) )
+			{
+				/* Nobody would hear or record the call - don't spend a tuner
+				 * channel or any processing on it */
+				setCallDetect( callEvent, NOT_MONITORED );
+			}
 			else if( frequency > 0 )
 			{
-				Channel channel = getChannel( callEvent.getChannel(), new TunerChannel( Type.TRAFFIC, 
-					frequency, mDecodeConfiguration.getDecoderType().getChannelBandwidth() ) );
+				int priority = getCallPriority( callEvent );
+
+				TunerChannel tunerChannel = new TunerChannel( Type.TRAFFIC, 
+					frequency, mDecodeConfiguration.getDecoderType().getChannelBandwidth() );
+
+				Channel channel = getChannel( callEvent.getChannel(), tunerChannel );
+
+				boolean started = channel != null && start( channel, callEvent );
 
-				if( channel != null )
+				/* Out of traffic channels or tuner bandwidth - preempt the lowest
+				 * priority call if it has a lower priority than this call.  When
+				 * a pooled channel is available but couldn't be started, only a
+				 * call whose tuner could then source this call is preempted. */
+				if( !started && 
+					TrafficChannelAdmission.getInstance().isPreemptionEnabled() )
 				{
-					TrafficChannelEvent trafficChannelEvent = 
-						new TrafficChannelEvent( this, channel, Event.REQUEST_ENABLE, callEvent );
-					
-					//Request to enable the channel
-					mChannelModel.broadcast( trafficChannelEvent );
+					Map<String,Integer> candidates = channel == null ? 
+						mTrafficChannelPriorities : getCoveringPriorities( tunerChannel );
 
-					if( channel.getEnabled() )
-					{
-						mTrafficChannelsInUse.put( callEvent.getChannel(), channel );
-					}
-					else
+					String preempted = TrafficChannelAdmission.getInstance()
+						.getPreemptionCandidate( candidates, priority );
+
+					if( preempted != null )
 					{
-						callEvent.setCallEventType( CallEventType.CALL_DETECT );
-
-                        String details = callEvent.getDetails();
-
-                        if(details == null || details.isEmpty())
-                        {
-                            callEvent.setDetails(CHANNEL_START_REJECTED);
-                        }
-                        else if(!details.contains(CHANNEL_START_REJECTED))
-                        {
-                            callEvent.setDetails(new StringBuilder(CHANNEL_START_REJECTED)
-                                    .append(" : ")
-                                    .append(callEvent.getDetails()).toString());
-                        }
+						mLog.info( "Preempting traffic channel [" + preempted + 
+							"] priority [" + mTrafficChannelPriorities.get( preempted ) + 
+							"] for call on channel [" + callEvent.getChannel() + 
+							"] priority [" + priority + "]" );
+
+						callEnd( preempted );
+
+						if( channel == null )
+						{
+							channel = getChannel( callEvent.getChannel(), tunerChannel );
+						}
+
+						started = channel != null && start( channel, callEvent );
 					}
 				}
+
+				if( started )
+				{
+					mTrafficChannelsInUse.put( callEvent.getChannel(), channel );
+					mTrafficChannelPriorities.put( callEvent.getChannel(), priority );
+				}
+				else if( channel != null )
+				{
+					setCallDetect( callEvent, CHANNEL_START_REJECTED );
+				}
 				else
 				{
-					callEvent.setCallEventType( CallEventType.CALL_DETECT );
-
-                    String details = callEvent.getDetails();
-
-                    if(details == null || details.isEmpty())
-                    {
-                        callEvent.setDetails(NO_TUNER_AVAILABLE);
-                    }
-                    else if(!details.contains(NO_TUNER_AVAILABLE))
-                    {
-                        callEvent.setDetails(new StringBuilder(NO_TUNER_AVAILABLE)
-                                .append(" : ")
-                                .append(callEvent.getDetails()).toString());
-                    }
+					setCallDetect( callEvent, NO_TUNER_AVAILABLE );
 				}
 			}
 			else
 			{
-				callEvent.setCallEventType( CallEventType.CALL_DETECT );
-
-                String details = callEvent.getDetails();
-
-                if(details == null || details.isEmpty())
-                {
-                    callEvent.setDetails(UNKNOWN_FREQUENCY);
-                }
-                else if(!details.contains(UNKNOWN_FREQUENCY))
-                {
-                    callEvent.setDetails(new StringBuilder(UNKNOWN_FREQUENCY)
-                            .append(" : ")
-                            .append(callEvent.getDetails()).toString());
-                }
+				setCallDetect( callEvent, UNKNOWN_FREQUENCY );
 			}
 
 			final Listener<CallEvent> listener = mCallEventListener;
@@ -286,6 +365,48 @@ public class TrafficChannelManager extends Module
 		}
 	}
 
+	/**
+	 * Call priorities of the active traffic channels whose tuner could source
+	 * the tuner channel once the active traffic channel is released.
+	 * 
+	 * Note: you must enforce thread safety on the mTrafficChannelsInUse 
+	 * external to this method.
+	 */
+	private Map<String,Integer> getCoveringPriorities( TunerChannel tunerChannel )
+	{
+		Map<String,Integer> priorities = new HashMap<String,Integer>();
+
+		/* Without a channel processing manager (e.g. benchmarking), the 
+		 * active channels' sources aren't known */
+		if( mChannelProcessingManager == null )
+		{
+			return priorities;
+		}
+
+		for( Map.Entry<String,Integer> entry: mTrafficChannelPriorities.entrySet() )
+		{
+			Channel active = mTrafficChannelsInUse.get( entry.getKey() );
+
+			ProcessingChain chain = active != null ? 
+					mChannelProcessingManager.getProcessingChain( active ) : null;
+
+			Source source = chain != null ? chain.getSource() : null;
+
+			if( source instanceof TunerChannelSource )
+			{
+				TunerChannelSource tcs = (TunerChannelSource)source;
+
+				if( tcs.getTuner().getTunerController()
+						.canTune( tunerChannel, tcs.getTunerChannel() ) )
+				{
+					priorities.put( entry.getKey(), entry.getValue() );
+				}
+			}
+		}
+
+		return priorities;
+	}
+
 	/**
 	 * Compares the call type, channel and to fields for equivalence and the 
 	 * from field for either both null, or equivalence.
@@ -339,6 +460,66 @@ public class TrafficChannelManager extends Module
 		return false;
 	}
 	
+	/**
+	 * Requests to enable the traffic channel for the call
+	 * 
+	 * @return true if the channel was started
+	 */
+	private boolean start( Channel channel, CallEvent callEvent )
+	{
+		mChannelModel.broadcast( new TrafficChannelEvent( this, channel, 
+				Event.REQUEST_ENABLE, callEvent ) );
+
+		return channel.getEnabled();
+	}
+
+	/**
+	 * Changes the call event to a call detect and prefixes the reason to the
+	 * call event details
+	 */
+	private static void setCallDetect( CallEvent callEvent, String reason )
+	{
+		callEvent.setCallEventType( CallEventType.CALL_DETECT );
+
+		String details = callEvent.getDetails();
+
+		if( details == null || details.isEmpty() )
+		{
+			callEvent.setDetails( reason );
+		}
+		else if( !details.contains( reason ) )
+		{
+			callEvent.setDetails( new StringBuilder( reason )
+					.append( " : " )
+					.append( details ).toString() );
+		}
+	}
+
+	/**
+	 * Highest priority (lowest value) of the to and from aliases of the call,
+	 * or the default priority when neither alias specifies a priority
+	 */
+	public static int getCallPriority( CallEvent event )
+	{
+		int priority = Priority.DEFAULT_PRIORITY;
+
+		Alias to = event.getToIDAlias();
+
+		if( to != null && to.hasCallPriority() )
+		{
+			priority = Math.min( priority, to.getCallPriority() );
+		}
+
+		Alias from = event.getFromIDAlias();
+
+		if( from != null && from.hasCallPriority() )
+		{
+			priority = Math.min( priority, from.getCallPriority() );
+		}
+
+		return priority;
+	}
+
 	/**
 	 * Checks for aliases that contain a do not follow/process priority.  
 	 * 
@@ -394,6 +575,43 @@ public class TrafficChannelManager extends Module
 	@Override
 	public void start( ScheduledExecutorService executor )
 	{
+		/* Chains built without a channel processing manager (benchmarks) or
+		 * with prewarm disabled never allocate pooled chains ahead of time */
+		if( mChannelProcessingManager == null || 
+			!mChannelProcessingManager.isPrewarmEnabled() )
+		{
+			return;
+		}
+
+		final int prewarm = Math.min( mTrafficChannelPoolMaximumSize, 
+			SystemProperties.getInstance().get( TRAFFIC_CHANNEL_PREWARM_PROPERTY, 
+				TRAFFIC_CHANNEL_PREWARM_DEFAULT ) );
+
+		if( mTrafficChannelPool.size() < prewarm )
+		{
+			Runnable task = new Runnable()
+			{
+				@Override
+				public void run()
+				{
+					prewarm( prewarm );
+				}
+			};
+
+			/* Build the chains in the background so that the control channel
+			 * isn't stalled while it starts decoding */
+			ThreadPoolManager threadPoolManager = 
+					mChannelProcessingManager.getThreadPoolManager();
+
+			if( threadPoolManager != null )
+			{
+				threadPoolManager.scheduleOnce( task, 0, TimeUnit.MILLISECONDS );
+			}
+			else
+			{
+				executor.execute( task );
+			}
+		}
 	}
 
 	@Override
@@ -431,6 +649,7 @@ public class TrafficChannelManager extends Module
 				mChannelModel.broadcast( new ChannelEvent( channel, Event.REQUEST_DISABLE ) );
 			
 				mTrafficChannelsInUse.remove( channelNumber );
+				mTrafficChannelPriorities.remove( channelNumber );
 			}
 		}
 	}
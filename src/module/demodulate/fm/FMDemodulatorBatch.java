@@ -0,0 +1,448 @@
+/*******************************************************************************
+ *     SDR Trunk 
+ *     Copyright (C) 2014-2016 Dennis Sheirer
+ * 
+ *     This program is free software: you can redistribute it and/or modify
+ *     it under the terms of the GNU General Public License as published by
+ *     the Free Software Foundation, either version 3 of the License, or
+ *     (at your option) any later version.
+ * 
+ *     This program is distributed in the hope that it will be useful,
+ *     but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *     MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *     GNU General Public License for more details.
+ * 
+ *     You should have received a copy of the GNU General Public License
+ *     along with this program.  If not, see <http://www.gnu.org/licenses/>
+ ******************************************************************************/
+package module.demodulate.fm;
+
+import java.util.Arrays;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import sample.Listener;
+import sample.complex.ComplexBuffer;
+import sample.real.RealBuffer;
+import dsp.filter.FilterFactory;
+import dsp.filter.Window.WindowType;
+import dsp.fm.BatchFMDemodulator;
+
+/**
+ * Batch of FM demodulator channels that share the same I/Q filter and are 
+ * processed together by a single worker task, using the structure of arrays 
+ * BatchFMDemodulator.
+ * 
+ * Each channel is assigned a lane.  Lanes queue the sample buffers received
+ * from their channel source and every 10 ms the worker processes the samples 
+ * that are available on all lanes, in lockstep, and dispatches each lane's
+ * demodulated samples to the lane's listener.
+ * 
+ * A lane that falls more than 100 ms behind the most current lane (e.g. a 
+ * stalled channel source) no longer holds up the batch and is processed with
+ * zero padding, with the padded output discarded.
+ */
+public class FMDemodulatorBatch implements Runnable
+{
+	private final static Logger mLog = 
+			LoggerFactory.getLogger( FMDemodulatorBatch.class );
+
+	private static final int SAMPLE_RATE = 48000;
+
+	/* Maximum complex samples per lane for each pass of the demodulator */
+	private static final int MAXIMUM_BLOCK = 4800;
+
+	/* Lag, in complex samples, before a lane is treated as stalled */
+	private static final int MAXIMUM_LAG = 4800;
+
+	/* Maximum queued complex samples per lane, beyond which buffers are dropped */
+	private static final int MAXIMUM_PENDING = 2 * SAMPLE_RATE;
+
+	private int mPass;
+	private int mStop;
+	private BatchFMDemodulator mDemodulator;
+	private Lane[] mLanes;
+	private int mLaneCount;
+	private ScheduledFuture<?> mTaskHandle;
+
+	private float[][] mSamples;
+	private float[][] mDemodulated;
+	private int[] mCounts;
+
+	/**
+	 * Constructs a batch of FM demodulator lanes.  Invoke start() to schedule
+	 * the batch worker task.
+	 * 
+	 * @param pass - I/Q filter pass frequency
+	 * @param stop - I/Q filter stop frequency
+	 * @param size - number of lanes in the batch
+	 */
+	public FMDemodulatorBatch( int pass, int stop, int size )
+	{
+		mPass = pass;
+		mStop = stop;
+
+		mDemodulator = new BatchFMDemodulator( FilterFactory.getLowPass( 
+			SAMPLE_RATE, pass, stop, 60, WindowType.HAMMING, true ), 1.0f, 1.0f, size );
+
+		mLanes = new Lane[ size ];
+
+		mSamples = new float[ size ][];
+		mDemodulated = new float[ size ][];
+		mCounts = new int[ size ];
+	}
+
+	/**
+	 * Indicates if this batch uses the I/Q filter pass and stop frequencies
+	 */
+	public boolean matches( int pass, int stop )
+	{
+		return mPass == pass && mStop == stop;
+	}
+
+	/**
+	 * Number of lanes currently assigned
+	 */
+	public synchronized int getLaneCount()
+	{
+		return mLaneCount;
+	}
+
+	/**
+	 * Indicates if the batch has an unassigned lane
+	 */
+	public synchronized boolean hasCapacity()
+	{
+		return mLaneCount < mLanes.length;
+	}
+
+	/**
+	 * Schedules the batch worker task to run every 10 ms
+	 */
+	public void start( ScheduledExecutorService executor )
+	{
+		if( mTaskHandle == null )
+		{
+			mTaskHandle = executor.scheduleAtFixedRate( this, 0, 10, 
+					TimeUnit.MILLISECONDS );
+		}
+	}
+
+	/**
+	 * Cancels the batch worker task
+	 */
+	public void stop()
+	{
+		if( mTaskHandle != null )
+		{
+			mTaskHandle.cancel( false );
+			mTaskHandle = null;
+		}
+	}
+
+	/**
+	 * Assigns an unused lane
+	 * 
+	 * @return lane or null if all lanes are assigned
+	 */
+	public synchronized Lane addLane()
+	{
+		for( int x = 0; x < mLanes.length; x++ )
+		{
+			if( mLanes[ x ] == null )
+			{
+				Lane lane = new Lane( this, x );
+
+				mLanes[ x ] = lane;
+				mLaneCount++;
+
+				return lane;
+			}
+		}
+
+		return null;
+	}
+
+	/**
+	 * Releases the lane so that it can be reassigned
+	 */
+	public synchronized void removeLane( Lane lane )
+	{
+		if( mLanes[ lane.getIndex() ] == lane )
+		{
+			mLanes[ lane.getIndex() ] = null;
+			mLaneCount--;
+
+			lane.dispose();
+		}
+	}
+
+	@Override
+	public void run()
+	{
+		/* General exception handler so that any errors won't kill the
+		 * worker task */
+		try
+		{
+			synchronized( this )
+			{
+				while( process() )
+				{
+					/* Keep processing until the lanes are drained */
+				}
+			}
+		}
+		catch( Exception e )
+		{
+			mLog.error( "Error while processing FM demodulator batch", e );
+		}
+	}
+
+	/**
+	 * Processes the samples that are available on all lanes that aren't
+	 * stalled, up to the maximum block size.
+	 * 
+	 * @return true if samples were processed
+	 */
+	private boolean process()
+	{
+		int maximum = 0;
+
+		for( Lane lane: mLanes )
+		{
+			if( lane != null )
+			{
+				maximum = Math.max( maximum, lane.getPendingCount() );
+			}
+		}
+
+		if( maximum == 0 )
+		{
+			return false;
+		}
+
+		int length = maximum;
+
+		for( Lane lane: mLanes )
+		{
+			if( lane != null )
+			{
+				int pending = lane.getPendingCount();
+
+				if( maximum - pending <= MAXIMUM_LAG )
+				{
+					length = Math.min( length, pending );
+				}
+			}
+		}
+
+		/* Wait for the lanes that are behind, but not stalled, to catch up */
+		if( length == 0 )
+		{
+			return false;
+		}
+
+		length = Math.min( length, MAXIMUM_BLOCK );
+
+		for( int x = 0; x < mLanes.length; x++ )
+		{
+			Lane lane = mLanes[ x ];
+
+			if( lane != null )
+			{
+				if( lane.isReset() )
+				{
+					mDemodulator.reset( x );
+				}
+
+				mSamples[ x ] = lane.getSamples();
+				mDemodulated[ x ] = lane.getDemodulated();
+				mCounts[ x ] = lane.take( length );
+			}
+			else
+			{
+				mSamples[ x ] = null;
+				mDemodulated[ x ] = null;
+				mCounts[ x ] = 0;
+			}
+		}
+
+		mDemodulator.process( mSamples, length, mDemodulated );
+
+		for( int x = 0; x < mLanes.length; x++ )
+		{
+			Lane lane = mLanes[ x ];
+
+			if( lane != null && mCounts[ x ] > 0 )
+			{
+				lane.dispatch( mCounts[ x ] );
+			}
+		}
+
+		return true;
+	}
+
+	/**
+	 * Channel lane within a batch.  Receives the channel's complex sample 
+	 * buffers and dispatches the demodulated samples to the listener.
+	 */
+	public static class Lane implements Listener<ComplexBuffer>
+	{
+		private FMDemodulatorBatch mBatch;
+		private int mIndex;
+		private volatile Listener<RealBuffer> mListener;
+
+		/* Queued interleaved I/Q samples */
+		private float[] mPending = new float[ 2 * MAXIMUM_BLOCK ];
+		private int mPendingCount;
+
+		/* Working buffers, used only by the batch worker */
+		private float[] mSamples = new float[ 2 * MAXIMUM_BLOCK ];
+		private float[] mDemodulated = new float[ MAXIMUM_BLOCK ];
+
+		private boolean mReset = true;
+		private long mDroppedBuffers;
+
+		private Lane( FMDemodulatorBatch batch, int index )
+		{
+			mBatch = batch;
+			mIndex = index;
+		}
+
+		public FMDemodulatorBatch getBatch()
+		{
+			return mBatch;
+		}
+
+		public int getIndex()
+		{
+			return mIndex;
+		}
+
+		public void setListener( Listener<RealBuffer> listener )
+		{
+			mListener = listener;
+		}
+
+		public void removeListener()
+		{
+			mListener = null;
+		}
+
+		/**
+		 * Clears the queued samples and resets the lane's filter and 
+		 * demodulator state before the next samples are processed
+		 */
+		public synchronized void reset()
+		{
+			mPendingCount = 0;
+			mReset = true;
+		}
+
+		/**
+		 * Number of buffers dropped because the batch couldn't keep up
+		 */
+		public synchronized long getDroppedBufferCount()
+		{
+			return mDroppedBuffers;
+		}
+
+		private synchronized void dispose()
+		{
+			mListener = null;
+			mPendingCount = 0;
+		}
+
+		@Override
+		public synchronized void receive( ComplexBuffer buffer )
+		{
+			float[] samples = buffer.getSamples();
+
+			int count = samples.length / 2;
+
+			if( mPendingCount + count > MAXIMUM_PENDING )
+			{
+				if( mDroppedBuffers++ % 100 == 0 )
+				{
+					mLog.error( "FM demodulator batch can't keep up - dropped [" + 
+							mDroppedBuffers + "] buffers on lane [" + mIndex + "]" );
+				}
+
+				return;
+			}
+
+			if( mPending.length < 2 * ( mPendingCount + count ) )
+			{
+				mPending = Arrays.copyOf( mPending, 
+						Math.max( 2 * mPending.length, 2 * ( mPendingCount + count ) ) );
+			}
+
+			System.arraycopy( samples, 0, mPending, 2 * mPendingCount, samples.length );
+
+			mPendingCount += count;
+		}
+
+		private synchronized int getPendingCount()
+		{
+			return mPendingCount;
+		}
+
+		private synchronized boolean isReset()
+		{
+			boolean reset = mReset;
+
+			mReset = false;
+
+			return reset;
+		}
+
+		/**
+		 * Moves up to length queued samples to the working sample buffer and 
+		 * zero pads the remainder.
+		 * 
+		 * @return number of queued samples moved
+		 */
+		private synchronized int take( int length )
+		{
+			int count = Math.min( length, mPendingCount );
+
+			System.arraycopy( mPending, 0, mSamples, 0, 2 * count );
+
+			Arrays.fill( mSamples, 2 * count, 2 * length, 0.0f );
+
+			mPendingCount -= count;
+
+			System.arraycopy( mPending, 2 * count, mPending, 0, 2 * mPendingCount );
+
+			return count;
+		}
+
+		private float[] getSamples()
+		{
+			return mSamples;
+		}
+
+		private float[] getDemodulated()
+		{
+			return mDemodulated;
+		}
+
+		/**
+		 * Sends the first count demodulated samples to the listener
+		 */
+		private void dispatch( int count )
+		{
+			Listener<RealBuffer> listener = mListener;
+
+			if( listener != null )
+			{
+				listener.receive( new RealBuffer( 
+						Arrays.copyOf( mDemodulated, count ) ) );
+			}
+		}
+	}
+}
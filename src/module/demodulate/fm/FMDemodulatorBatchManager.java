@@ -0,0 +1,163 @@
+/*******************************************************************************
+ *     SDR Trunk 
+ *     Copyright (C) 2014-2016 Dennis Sheirer
+ * 
+ *     This program is free software: you can redistribute it and/or modify
+ *     it under the terms of the GNU General Public License as published by
+ *     the Free Software Foundation, either version 3 of the License, or
+ *     (at your option) any later version.
+ * 
+ *     This program is distributed in the hope that it will be useful,
+ *     but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *     MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *     GNU General Public License for more details.
+ * 
+ *     You should have received a copy of the GNU General Public License
+ *     along with this program.  If not, see <http://www.gnu.org/licenses/>
+ ******************************************************************************/
+package module.demodulate.fm;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import properties.SystemProperties;
+import controller.NamingThreadFactory;
+
+/**
+ * Assigns FM demodulator modules to lanes of shared FM demodulator batches 
+ * when batch execution mode is enabled.  Channels with the same I/Q filter,
+ * which is determined by the decoder type, are grouped into batches of up to
+ * the configured batch size.  Batches are created as needed and stopped once
+ * their last lane is released.
+ * 
+ * Batch worker tasks run on a thread pool owned by this manager, so that a 
+ * batch isn't tied to the lifecycle of any one channel's processing chain.
+ * 
+ * Settings (application properties):
+ * 
+ * decoder.batch.size - number of channels per batch, or 0 to process each
+ *   channel separately (default 0)
+ * decoder.batch.threads - threads shared by all batch worker tasks (default
+ *   the number of available processors)
+ */
+public class FMDemodulatorBatchManager
+{
+	private final static Logger mLog = 
+			LoggerFactory.getLogger( FMDemodulatorBatchManager.class );
+
+	public static final String BATCH_SIZE_PROPERTY = "decoder.batch.size";
+	public static final String THREADS_PROPERTY = "decoder.batch.threads";
+
+	private static FMDemodulatorBatchManager sInstance;
+
+	private List<FMDemodulatorBatch> mBatches = new ArrayList<>();
+	private int mBatchSize;
+	private int mThreads;
+	private ScheduledThreadPoolExecutor mExecutor;
+
+	private FMDemodulatorBatchManager( int batchSize, int threads )
+	{
+		mBatchSize = batchSize;
+		mThreads = Math.max( 1, threads );
+	}
+
+	public static synchronized FMDemodulatorBatchManager getInstance()
+	{
+		if( sInstance == null )
+		{
+			SystemProperties properties = SystemProperties.getInstance();
+
+			sInstance = new FMDemodulatorBatchManager( 
+					properties.get( BATCH_SIZE_PROPERTY, 0 ),
+					properties.get( THREADS_PROPERTY, 
+							Runtime.getRuntime().availableProcessors() ) );
+		}
+
+		return sInstance;
+	}
+
+	/**
+	 * Indicates if FM demodulation should be performed in batches
+	 */
+	public boolean isEnabled()
+	{
+		return mBatchSize > 1;
+	}
+
+	/**
+	 * Assigns a lane from a batch with a matching I/Q filter, creating and
+	 * starting a new batch when all matching batches are full.
+	 * 
+	 * @param pass - I/Q filter pass frequency
+	 * @param stop - I/Q filter stop frequency
+	 */
+	public synchronized FMDemodulatorBatch.Lane getLane( int pass, int stop )
+	{
+		for( FMDemodulatorBatch batch: mBatches )
+		{
+			if( batch.matches( pass, stop ) && batch.hasCapacity() )
+			{
+				return batch.addLane();
+			}
+		}
+
+		FMDemodulatorBatch batch = new FMDemodulatorBatch( pass, stop, mBatchSize );
+
+		mBatches.add( batch );
+
+		if( mExecutor == null )
+		{
+			mExecutor = new ScheduledThreadPoolExecutor( mThreads, 
+					new NamingThreadFactory( "fm demodulator batch" ) );
+			mExecutor.setRemoveOnCancelPolicy( true );
+		}
+
+		batch.start( mExecutor );
+
+		mLog.info( "Started FM demodulator batch - size [" + mBatchSize + 
+				"] filter pass [" + pass + "] stop [" + stop + "] batches [" + 
+				mBatches.size() + "]" );
+
+		return batch.addLane();
+	}
+
+	/**
+	 * Releases the lane and stops the batch when it has no remaining lanes
+	 */
+	public synchronized void releaseLane( FMDemodulatorBatch.Lane lane )
+	{
+		FMDemodulatorBatch batch = lane.getBatch();
+
+		batch.removeLane( lane );
+
+		if( batch.getLaneCount() == 0 )
+		{
+			batch.stop();
+
+			mBatches.remove( batch );
+		}
+	}
+
+	/**
+	 * Stops all batches and the batch worker threads
+	 */
+	public synchronized void shutdown()
+	{
+		for( FMDemodulatorBatch batch: mBatches )
+		{
+			batch.stop();
+		}
+
+		mBatches.clear();
+
+		if( mExecutor != null )
+		{
+			mExecutor.shutdownNow();
+			mExecutor = null;
+		}
+	}
+}
@@ -41,8 +41,28 @@ public class FMDemodulatorModule extends Module
 	
 	private static final int SAMPLE_RATE = 48000;
 	
+	private int mPass;
+	private int mStop;
 	private ComplexFIRFilter_CB_CB mIQFilter;
 	private FMDemodulator_CB mDemodulator;
+	private volatile FMDemodulatorBatch.Lane mLane;
+	private Listener<RealBuffer> mListener;
+	private boolean mBatched;
+	
+	/* Forwards sample buffers to the batch lane while started */
+	private Listener<ComplexBuffer> mLaneListener = new Listener<ComplexBuffer>()
+	{
+		@Override
+		public void receive( ComplexBuffer buffer )
+		{
+			FMDemodulatorBatch.Lane lane = mLane;
+			
+			if( lane != null )
+			{
+				lane.receive( buffer );
+			}
+		}
+	};
 	
 	/**
 	 * FM Demodulator with I/Q filter.  Demodulated output is unfiltered and
@@ -54,59 +74,127 @@ public class FMDemodulatorModule extends Module
 	 * combined pass bandwidth will be twice this value.
 	 * 
 	 * @param stop - stop frequency for IQ filtering prior to demodulation.
+	 * 
+	 * When batch execution mode is enabled, filtering and demodulation are
+	 * performed by a lane of a shared FM demodulator batch while the module is
+	 * started, and sample buffers received while stopped are ignored.
 	 */
 	public FMDemodulatorModule( int pass, int stop )
 	{
 		assert( stop > pass );
 
-		mIQFilter = new ComplexFIRFilter_CB_CB( FilterFactory.getLowPass( 
-				SAMPLE_RATE, pass, stop, 60, WindowType.HAMMING, true ), 1.0f );
+		mPass = pass;
+		mStop = stop;
 		
-		mDemodulator = new FMDemodulator_CB( 1.0f );
-		mIQFilter.setListener( mDemodulator );
+		mBatched = FMDemodulatorBatchManager.getInstance().isEnabled();
+		
+		if( !mBatched )
+		{
+			mIQFilter = new ComplexFIRFilter_CB_CB( FilterFactory.getLowPass( 
+					SAMPLE_RATE, pass, stop, 60, WindowType.HAMMING, true ), 1.0f );
+			
+			mDemodulator = new FMDemodulator_CB( 1.0f );
+			mIQFilter.setListener( mDemodulator );
+		}
 	}
 
 	@Override
 	public Listener<ComplexBuffer> getComplexBufferListener()
 	{
+		if( mBatched )
+		{
+			return mLaneListener;
+		}
+		
 		return mIQFilter;
 	}
 
 	@Override
 	public void dispose()
 	{
-		mIQFilter.dispose();
-		mIQFilter = null;
+		if( mIQFilter != null )
+		{
+			mIQFilter.dispose();
+			mIQFilter = null;
+		}
+		
+		if( mDemodulator != null )
+		{
+			mDemodulator.dispose();
+			mDemodulator = null;
+		}
 		
-		mDemodulator.dispose();
-		mDemodulator = null;
+		mListener = null;
 	}
 
 	@Override
 	public void reset()
 	{
-		mDemodulator.reset();
+		if( mDemodulator != null )
+		{
+			mDemodulator.reset();
+		}
+		
+		if( mLane != null )
+		{
+			mLane.reset();
+		}
 	}
 
 	@Override
 	public void setUnFilteredRealBufferListener( Listener<RealBuffer> listener )
 	{
-		mDemodulator.setListener( listener );
+		mListener = listener;
+		
+		if( mDemodulator != null )
+		{
+			mDemodulator.setListener( listener );
+		}
+		
+		if( mLane != null )
+		{
+			mLane.setListener( listener );
+		}
 	}
 
 	@Override
 	public void removeUnFilteredRealBufferListener()
 	{
-		mDemodulator.removeListener();
+		mListener = null;
+		
+		if( mDemodulator != null )
+		{
+			mDemodulator.removeListener();
+		}
+		
+		if( mLane != null )
+		{
+			mLane.removeListener();
+		}
 	}
 
 	@Override
 	public void start( ScheduledExecutorService executor )
 	{
+		if( mBatched && mLane == null )
+		{
+			FMDemodulatorBatch.Lane lane = FMDemodulatorBatchManager
+					.getInstance().getLane( mPass, mStop );
+			
+			lane.setListener( mListener );
+			
+			mLane = lane;
+		}
 	}
 
 	@Override
 	public void stop()
 	{
+		if( mLane != null )
+		{
+			FMDemodulatorBatchManager.getInstance().releaseLane( mLane );
+			
+			mLane = null;
+		}
 	}
 }
@@ -0,0 +1,245 @@
+/*******************************************************************************
+ *     SDR Trunk 
+ *     Copyright (C) 2014-2016 Dennis Sheirer
+ * 
+ *     This program is free software: you can redistribute it and/or modify
+ *     it under the terms of the GNU General Public License as published by
+ *     the Free Software Foundation, either version 3 of the License, or
+ *     (at your option) any later version.
+ * 
+ *     This program is distributed in the hope that it will be useful,
+ *     but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *     MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *     GNU General Public License for more details.
+ * 
+ *     You should have received a copy of the GNU General Public License
+ *     along with this program.  If not, see <http://www.gnu.org/licenses/>
+ ******************************************************************************/
+package playlist;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+
+import javax.xml.bind.JAXBContext;
+import javax.xml.bind.JAXBException;
+import javax.xml.bind.Marshaller;
+import javax.xml.bind.Unmarshaller;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Append-only change log that sits next to the playlist file.  The journal 
+ * starts with a header that holds the revision of the playlist file that the
+ * entries apply to, followed by length-prefixed xml journal entries.
+ * 
+ * A journal whose revision doesn't match the playlist file is stale (ie the
+ * playlist was compacted but the journal wasn't removed) and is ignored.  A
+ * partially written entry at the end of the journal, from a crash while 
+ * appending, is truncated when the journal is read.
+ */
+public class PlaylistJournal
+{
+	private final static Logger mLog = 
+			LoggerFactory.getLogger( PlaylistJournal.class );
+
+	private static final int MAGIC = 0x534A4E4C;
+	private static final int HEADER_SIZE = 12;
+
+	private Path mPath;
+	private long mRevision = -1;
+	private volatile int mEntryCount;
+
+	/**
+	 * Constructs a journal for the playlist file
+	 */
+	public PlaylistJournal( Path playlistPath )
+	{
+		mPath = playlistPath.resolveSibling( 
+				playlistPath.getFileName().toString() + ".journal" );
+	}
+
+	public Path getPath()
+	{
+		return mPath;
+	}
+
+	/**
+	 * Number of entries in the journal file
+	 */
+	public int getEntryCount()
+	{
+		return mEntryCount;
+	}
+
+	/**
+	 * Reads the journal entries that apply to the playlist revision.  A stale
+	 * journal is deleted and a partially written last entry is truncated.
+	 */
+	public List<PlaylistJournalEntry> read( long revision, JAXBContext context )
+			throws IOException
+	{
+		List<PlaylistJournalEntry> entries = new ArrayList<>();
+
+		mRevision = -1;
+		mEntryCount = 0;
+
+		if( !Files.exists( mPath ) )
+		{
+			return entries;
+		}
+
+		long validLength = 0;
+		boolean truncated = false;
+
+		try( DataInputStream in = new DataInputStream( 
+				new BufferedInputStream( Files.newInputStream( mPath ) ) ) )
+		{
+			if( in.readInt() != MAGIC || in.readLong() != revision )
+			{
+				mLog.info( "Discarding stale playlist journal [" + 
+						mPath.toString() + "]" );
+
+				delete();
+
+				return entries;
+			}
+
+			validLength = HEADER_SIZE;
+
+			Unmarshaller unmarshaller = context.createUnmarshaller();
+
+			while( true )
+			{
+				int length;
+
+				try
+				{
+					length = in.readInt();
+				}
+				catch( EOFException eof )
+				{
+					break;
+				}
+
+				byte[] bytes = new byte[ length ];
+
+				in.readFully( bytes );
+
+				entries.add( (PlaylistJournalEntry)unmarshaller
+						.unmarshal( new ByteArrayInputStream( bytes ) ) );
+
+				validLength += 4 + length;
+			}
+		}
+		catch( EOFException | JAXBException | NegativeArraySizeException e )
+		{
+			truncated = true;
+		}
+
+		if( validLength < HEADER_SIZE )
+		{
+			delete();
+
+			return entries;
+		}
+
+		if( truncated )
+		{
+			mLog.info( "Truncating incomplete playlist journal entry [" + 
+					mPath.toString() + "]" );
+
+			try( FileChannel channel = FileChannel.open( mPath, 
+					StandardOpenOption.WRITE ) )
+			{
+				channel.truncate( validLength );
+			}
+		}
+
+		mRevision = revision;
+		mEntryCount = entries.size();
+
+		return entries;
+	}
+
+	/**
+	 * Appends the entries to the journal and forces them to disk.  The journal
+	 * file is created with a header for the revision if it doesn't exist.
+	 * 
+	 * @return false if the existing journal applies to a different playlist
+	 * revision and can't be appended to
+	 */
+	public boolean append( List<PlaylistJournalEntry> entries, long revision, 
+			JAXBContext context ) throws IOException, JAXBException
+	{
+		boolean create = !Files.exists( mPath );
+
+		if( !create && mRevision != revision )
+		{
+			return false;
+		}
+
+		Marshaller marshaller = context.createMarshaller();
+
+		marshaller.setProperty( Marshaller.JAXB_FRAGMENT, true );
+
+		ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+
+		try( FileOutputStream file = new FileOutputStream( mPath.toFile(), true ) )
+		{
+			DataOutputStream out = new DataOutputStream( 
+					new BufferedOutputStream( file ) );
+
+			if( create )
+			{
+				out.writeInt( MAGIC );
+				out.writeLong( revision );
+
+				mRevision = revision;
+				mEntryCount = 0;
+			}
+
+			for( PlaylistJournalEntry entry: entries )
+			{
+				bytes.reset();
+
+				marshaller.marshal( entry, bytes );
+
+				out.writeInt( bytes.size() );
+				bytes.writeTo( out );
+
+				mEntryCount++;
+			}
+
+			out.flush();
+
+			file.getFD().sync();
+		}
+
+		return true;
+	}
+
+	/**
+	 * Deletes the journal file
+	 */
+	public void delete() throws IOException
+	{
+		Files.deleteIfExists( mPath );
+
+		mRevision = -1;
+		mEntryCount = 0;
+	}
+}
@@ -0,0 +1,160 @@
+/*******************************************************************************
+ *     SDR Trunk 
+ *     Copyright (C) 2014-2016 Dennis Sheirer
+ * 
+ *     This program is free software: you can redistribute it and/or modify
+ *     it under the terms of the GNU General Public License as published by
+ *     the Free Software Foundation, either version 3 of the License, or
+ *     (at your option) any later version.
+ * 
+ *     This program is distributed in the hope that it will be useful,
+ *     but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *     MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *     GNU General Public License for more details.
+ * 
+ *     You should have received a copy of the GNU General Public License
+ *     along with this program.  If not, see <http://www.gnu.org/licenses/>
+ ******************************************************************************/
+package playlist;
+
+import javax.xml.bind.annotation.XmlAttribute;
+import javax.xml.bind.annotation.XmlElement;
+import javax.xml.bind.annotation.XmlRootElement;
+
+import alias.Alias;
+import controller.channel.Channel;
+
+/**
+ * Single incremental playlist change recorded in the playlist journal.  The 
+ * index refers to the position of the alias or channel in the playlist as it 
+ * stands after all previous journal entries have been applied.
+ */
+@XmlRootElement( name = "journal_entry" )
+public class PlaylistJournalEntry
+{
+	private Type mType;
+	private int mIndex;
+	private Alias mAlias;
+	private Channel mChannel;
+
+	/**
+	 * Default constructor for JAXB
+	 */
+	public PlaylistJournalEntry()
+	{
+	}
+
+	public PlaylistJournalEntry( Type type, int index, Alias alias )
+	{
+		mType = type;
+		mIndex = index;
+		mAlias = alias;
+	}
+
+	public PlaylistJournalEntry( int index, Channel channel )
+	{
+		mType = Type.CHANNEL_CHANGE;
+		mIndex = index;
+		mChannel = channel;
+	}
+
+	@XmlAttribute( name = "type" )
+	public Type getType()
+	{
+		return mType;
+	}
+
+	public void setType( Type type )
+	{
+		mType = type;
+	}
+
+	@XmlAttribute( name = "index" )
+	public int getIndex()
+	{
+		return mIndex;
+	}
+
+	public void setIndex( int index )
+	{
+		mIndex = index;
+	}
+
+	@XmlElement( name = "alias" )
+	public Alias getAlias()
+	{
+		return mAlias;
+	}
+
+	public void setAlias( Alias alias )
+	{
+		mAlias = alias;
+	}
+
+	@XmlElement( name = "channel" )
+	public Channel getChannel()
+	{
+		return mChannel;
+	}
+
+	public void setChannel( Channel channel )
+	{
+		mChannel = channel;
+	}
+
+	/**
+	 * Applies this change to the playlist.
+	 * 
+	 * @return true if the change was applied, or false if the index doesn't
+	 * match the playlist contents
+	 */
+	public boolean apply( PlaylistV2 playlist )
+	{
+		switch( mType )
+		{
+			case ALIAS_ADD:
+				if( mAlias != null && mIndex == playlist.getAliases().size() )
+				{
+					playlist.getAliases().add( mAlias );
+					return true;
+				}
+				break;
+			case ALIAS_CHANGE:
+				if( mAlias != null && 0 <= mIndex && 
+					mIndex < playlist.getAliases().size() )
+				{
+					playlist.getAliases().set( mIndex, mAlias );
+					return true;
+				}
+				break;
+			case ALIAS_DELETE:
+				if( 0 <= mIndex && mIndex < playlist.getAliases().size() )
+				{
+					playlist.getAliases().remove( mIndex );
+					return true;
+				}
+				break;
+			case CHANNEL_CHANGE:
+				if( mChannel != null && 0 <= mIndex && 
+					mIndex < playlist.getChannels().size() )
+				{
+					playlist.getChannels().set( mIndex, mChannel );
+					return true;
+				}
+				break;
+			default:
+				throw new IllegalArgumentException( "Unrecognized playlist "
+						+ "journal entry type [" + mType.name() + "]" );
+		}
+
+		return false;
+	}
+
+	public enum Type
+	{
+		ALIAS_ADD,
+		ALIAS_CHANGE,
+		ALIAS_DELETE,
+		CHANNEL_CHANGE;
+	}
+}
@@ -17,14 +17,16 @@
  ******************************************************************************/
 package playlist;
 
-import java.io.File;
+import java.io.BufferedOutputStream;
 import java.io.FileInputStream;
-import java.io.FileOutputStream;
 import java.io.IOException;
 import java.io.InputStream;
 import java.io.OutputStream;
 import java.nio.file.Files;
 import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.List;
 import java.util.concurrent.TimeUnit;
 import java.util.concurrent.atomic.AtomicBoolean;
 
@@ -39,9 +41,12 @@ import org.slf4j.LoggerFactory;
 import playlist.version1.PlaylistConverterV1ToV2;
 import properties.SystemProperties;
 import sample.Listener;
+import alias.Alias;
 import alias.AliasEvent;
 import alias.AliasModel;
 import controller.ThreadPoolManager;
+import controller.ThreadPoolManager.ThreadType;
+import controller.channel.Channel;
 import controller.channel.Channel.ChannelType;
 import controller.channel.ChannelEvent;
 import controller.channel.ChannelEventListener;
@@ -49,11 +54,39 @@ import controller.channel.ChannelModel;
 import controller.channel.map.ChannelMapEvent;
 import controller.channel.map.ChannelMapModel;
 
+/**
+ * Loads and persists the playlist.
+ * 
+ * Channel additions and deletions and channel map changes are persisted by 
+ * rewriting the full playlist file.  Alias changes and channel configuration
+ * and processing state changes are appended to a playlist journal file 
+ * instead, and the journal is compacted into the full playlist file 
+ * periodically.  The journal is replayed when the playlist is loaded.  The 
+ * full playlist is written to a temporary file and then moved into place so 
+ * that an interrupted save never leaves a partial playlist file.
+ * 
+ * Settings (application properties):
+ * 
+ * playlist.journal.enabled - journal incremental changes (default true)
+ * playlist.journal.compact.entries - journal entries that trigger compaction
+ *   into the full playlist file (1000)
+ * playlist.journal.compact.interval - minutes between compactions of a
+ *   non-empty journal, 0 to disable (15)
+ */
 public class PlaylistManager implements ChannelEventListener
 {
 	private final static Logger mLog = 
 			LoggerFactory.getLogger( PlaylistManager.class );
 
+	public static final String JOURNAL_ENABLED_PROPERTY = 
+			"playlist.journal.enabled";
+	public static final String JOURNAL_COMPACT_ENTRIES_PROPERTY = 
+			"playlist.journal.compact.entries";
+	public static final String JOURNAL_COMPACT_INTERVAL_PROPERTY = 
+			"playlist.journal.compact.interval";
+
+	private static JAXBContext sContext;
+
 	private ThreadPoolManager mThreadPoolManager;
 	private AliasModel mAliasModel;
 	private ChannelModel mChannelModel;
@@ -61,6 +94,20 @@ public class PlaylistManager implements ChannelEventListener
 	private Path mCurrentPlaylistPath;
 	private AtomicBoolean mPlaylistSavePending = new AtomicBoolean();
 	private boolean mPlaylistLoading = false;
+
+	private boolean mJournalEnabled;
+	private int mJournalCompactEntries;
+	private int mJournalCompactInterval;
+	private PlaylistJournal mJournal;
+	private AtomicBoolean mJournalFlushPending = new AtomicBoolean();
+	private Object mSaveLock = new Object();
+	private long mRevision;
+
+	/* Aliases and channels as persisted by the playlist file plus journal, 
+	 * used to index journal entries.  Guarded by the pending entries list. */
+	private List<Alias> mJournalAliases = new ArrayList<>();
+	private List<Channel> mJournalChannels = new ArrayList<>();
+	private List<PlaylistJournalEntry> mPendingEntries = new ArrayList<>();
 	
 	/**
 	 * Playlist manager - manages all channel configurations, channel maps, and
@@ -82,6 +129,12 @@ public class PlaylistManager implements ChannelEventListener
 		mChannelModel = channelModel;
 		mChannelMapModel = channelMapModel;
 
+		SystemProperties props = SystemProperties.getInstance();
+
+		mJournalEnabled = props.get( JOURNAL_ENABLED_PROPERTY, true );
+		mJournalCompactEntries = props.get( JOURNAL_COMPACT_ENTRIES_PROPERTY, 1000 );
+		mJournalCompactInterval = props.get( JOURNAL_COMPACT_INTERVAL_PROPERTY, 15 );
+
 		//Register for alias, channel and channel map events so that we can 
 		//save the playlist when there are any changes
 		mChannelModel.addListener( this );
@@ -91,7 +144,7 @@ public class PlaylistManager implements ChannelEventListener
 			@Override
 			public void receive( AliasEvent t )
 			{
-				schedulePlaylistSave();
+				aliasChanged( t );
 			}
 		} );
 		
@@ -121,11 +174,32 @@ public class PlaylistManager implements ChannelEventListener
 		String playlistFile = 
 				props.get( "playlist.v2.currentfilename", defaultPlaylistFile );
 
-		mCurrentPlaylistPath = playlistFolder.resolve( playlistFile );
+		init( playlistFolder.resolve( playlistFile ) );
+	}
+
+	/**
+	 * Loads the specified playlist file, or converts a version 1 playlist 
+	 * (playlist.xml) from the same folder when the file doesn't exist.  Any
+	 * subsequent changes are saved to the specified playlist file.
+	 */
+	public void init( Path playlistPath )
+	{
+		mCurrentPlaylistPath = playlistPath;
+		mJournal = new PlaylistJournal( playlistPath );
+
+		Path playlistFolder = playlistPath.toAbsolutePath().getParent();
 
 		PlaylistV2 playlist = load( mCurrentPlaylistPath );
 
 		boolean saveRequired = false;
+
+		if( playlist != null )
+		{
+			mRevision = playlist.getRevision();
+
+			//Compact the journal right away when there are changes to replay
+			saveRequired = replay( playlist );
+		}
 		
 		if( playlist == null )
 		{
@@ -154,6 +228,63 @@ public class PlaylistManager implements ChannelEventListener
 		{
 			schedulePlaylistSave();
 		}
+
+		if( mJournalEnabled && mJournalCompactInterval > 0 )
+		{
+			mThreadPoolManager.scheduleFixedRate( ThreadType.DECODER, 
+					new Runnable()
+			{
+				@Override
+				public void run()
+				{
+					if( mJournal.getEntryCount() > 0 )
+					{
+						schedulePlaylistSave();
+					}
+				}
+			}, mJournalCompactInterval, TimeUnit.MINUTES );
+		}
+	}
+
+	/**
+	 * Applies the playlist journal entries for the playlist revision to the
+	 * playlist.
+	 * 
+	 * @return true if there were journal entries
+	 */
+	private boolean replay( PlaylistV2 playlist )
+	{
+		try
+		{
+			List<PlaylistJournalEntry> entries = 
+					mJournal.read( playlist.getRevision(), getContext() );
+
+			int applied = 0;
+
+			for( PlaylistJournalEntry entry: entries )
+			{
+				if( entry.apply( playlist ) )
+				{
+					applied++;
+				}
+			}
+
+			if( !entries.isEmpty() )
+			{
+				mLog.info( "Replayed [" + applied + "] of [" + entries.size() + 
+					"] playlist journal entries [" + 
+					mJournal.getPath().toString() + "]" );
+			}
+
+			return !entries.isEmpty();
+		}
+		catch( IOException | JAXBException e )
+		{
+			mLog.error( "Couldn't read playlist journal [" + 
+					mJournal.getPath().toString() + "]", e );
+		}
+
+		return false;
 	}
 
 	/**
@@ -171,6 +302,131 @@ public class PlaylistManager implements ChannelEventListener
 			
 			mPlaylistLoading = false;
 		}
+
+		synchronized( mPendingEntries )
+		{
+			mJournalAliases = new ArrayList<>( mAliasModel.getAliases() );
+			mJournalChannels = new ArrayList<>( mChannelModel.getChannels() );
+		}
+	}
+
+	/**
+	 * Alias event listener method.  Journals the alias change, or queues a 
+	 * full playlist save when the change can't be journaled.
+	 */
+	private void aliasChanged( AliasEvent event )
+	{
+		if( mPlaylistLoading )
+		{
+			return;
+		}
+
+		Alias alias = event.getAlias();
+
+		boolean journaled = false;
+
+		synchronized( mPendingEntries )
+		{
+			int index = mJournalAliases.indexOf( alias );
+
+			PlaylistJournalEntry entry = null;
+
+			switch( event.getEvent() )
+			{
+				case ADD:
+					if( index < 0 )
+					{
+						entry = new PlaylistJournalEntry( 
+							PlaylistJournalEntry.Type.ALIAS_ADD, 
+							mJournalAliases.size(), alias );
+
+						mJournalAliases.add( alias );
+					}
+					break;
+				case CHANGE:
+					if( index >= 0 )
+					{
+						entry = new PlaylistJournalEntry( 
+							PlaylistJournalEntry.Type.ALIAS_CHANGE, index, alias );
+					}
+					break;
+				case DELETE:
+					if( index >= 0 )
+					{
+						entry = new PlaylistJournalEntry( 
+							PlaylistJournalEntry.Type.ALIAS_DELETE, index, null );
+
+						mJournalAliases.remove( index );
+					}
+					break;
+				default:
+					throw new IllegalArgumentException( "Unrecognized Alias "
+							+ "Event [" + event.getEvent().name() + "]" );
+			}
+
+			journaled = journal( entry );
+		}
+
+		if( journaled )
+		{
+			scheduleJournalFlush();
+		}
+		else
+		{
+			schedulePlaylistSave();
+		}
+	}
+
+	/**
+	 * Journals the channel's current configuration and enabled state, or 
+	 * queues a full playlist save when the change can't be journaled.
+	 */
+	private void channelChanged( Channel channel )
+	{
+		if( mPlaylistLoading )
+		{
+			return;
+		}
+
+		boolean journaled = false;
+
+		synchronized( mPendingEntries )
+		{
+			int index = mJournalChannels.indexOf( channel );
+
+			if( index >= 0 )
+			{
+				journaled = journal( new PlaylistJournalEntry( index, channel ) );
+			}
+		}
+
+		if( journaled )
+		{
+			scheduleJournalFlush();
+		}
+		else
+		{
+			schedulePlaylistSave();
+		}
+	}
+
+	/**
+	 * Adds the entry to the pending journal entries.  Invoke while holding the
+	 * pending entries lock, together with the journal alias and channel list
+	 * updates.
+	 * 
+	 * @return true if the entry was queued for the journal
+	 */
+	private boolean journal( PlaylistJournalEntry entry )
+	{
+		if( mJournalEnabled && entry != null )
+		{
+			mPendingEntries.add( entry );
+
+			return true;
+		}
+
+		return false;
 	}
 
 	
@@ -188,11 +444,15 @@ public class PlaylistManager implements ChannelEventListener
 			switch( event.getEvent() )
 			{
 				case NOTIFICATION_ADD:
-				case NOTIFICATION_CONFIGURATION_CHANGE:
 				case NOTIFICATION_DELETE:
+					schedulePlaylistSave();
+					break;
+				case NOTIFICATION_CONFIGURATION_CHANGE:
 				case NOTIFICATION_PROCESSING_START:
 				case NOTIFICATION_PROCESSING_STOP:
-					schedulePlaylistSave();
+				case NOTIFICATION_SCANNING_START:
+				case NOTIFICATION_SCANNING_STOP:
+					channelChanged( event.getChannel() );
 					break;
 				case NOTIFICATION_ENABLE_REJECTED:
 				case NOTIFICATION_SELECTION_CHANGE:
@@ -214,84 +474,118 @@ public class PlaylistManager implements ChannelEventListener
 		}
 	}
 
+	/**
+	 * Saves the full playlist and removes the playlist journal, since the 
+	 * playlist file then contains all journaled changes.
+	 */
 	public void save()
 	{
-		PlaylistV2 playlist = new PlaylistV2();
-		
-		playlist.setAliases( mAliasModel.getAliases() );
-		playlist.setChannels( mChannelModel.getChannels() );
-		playlist.setChannelMaps( mChannelMapModel.getChannelMaps() );
-		
-		JAXBContext context = null;
-
-		if( mCurrentPlaylistPath == null )
+		synchronized( mSaveLock )
 		{
-			SystemProperties props = SystemProperties.getInstance();
-
-			Path playlistPath = props.getApplicationFolder( "playlist" );
+			PlaylistV2 playlist = new PlaylistV2();
 			
-			String playlistDefault = props.get( "playlist.defaultfilename", 
-											 "playlist_v2.xml" );
+			synchronized( mPendingEntries )
+			{
+				mJournalChannels = new ArrayList<>( mChannelModel.getChannels() );
+
+				playlist.setAliases( new ArrayList<>( mJournalAliases ) );
+				playlist.setChannels( new ArrayList<>( mJournalChannels ) );
 
-			String playlistCurrent = props.get( "playlist.currentfilename", 
-											 playlistDefault );
+				//Pending entries are included in the full playlist
+				mPendingEntries.clear();
+
+				mRevision++;
+
+				playlist.setRevision( mRevision );
+			}
+
+			playlist.setChannelMaps( mChannelMapModel.getChannelMaps() );
 			
-			mCurrentPlaylistPath = playlistPath.resolve( playlistCurrent );
-		}
-		
-		File outputFile = new File( mCurrentPlaylistPath.toString() );
+			if( mCurrentPlaylistPath == null )
+			{
+				SystemProperties props = SystemProperties.getInstance();
+	
+				Path playlistPath = props.getApplicationFolder( "playlist" );
+				
+				String playlistDefault = props.get( "playlist.defaultfilename", 
+												 "playlist_v2.xml" );
+	
+				String playlistCurrent = props.get( "playlist.currentfilename", 
+												 playlistDefault );
+				
+				mCurrentPlaylistPath = playlistPath.resolve( playlistCurrent );
+				mJournal = new PlaylistJournal( mCurrentPlaylistPath );
+			}
 
-		try
-		{
-			if( !outputFile.exists() )
+			Path temp = mCurrentPlaylistPath.resolveSibling( 
+					mCurrentPlaylistPath.getFileName().toString() + ".tmp" );
+
+			try
 			{
-				outputFile.createNewFile();
+				try( OutputStream out = new BufferedOutputStream( 
+						Files.newOutputStream( temp ) ) )
+				{
+					Marshaller m = getContext().createMarshaller();
+	
+					m.setProperty( Marshaller.JAXB_FORMATTED_OUTPUT, true );
+	
+					m.marshal( playlist, out );
+				}
+	
+				Files.move( temp, mCurrentPlaylistPath, 
+						StandardCopyOption.REPLACE_EXISTING, 
+						StandardCopyOption.ATOMIC_MOVE );
+
+				mJournal.delete();
+			}
+			catch( JAXBException e )
+			{
+				mLog.error( "jaxb exception while saving playlist: ", e );
+			}
+			catch( IOException e )
+			{
+				mLog.error( "couldn't save playlist [" + 
+						mCurrentPlaylistPath.toString() + "]", e );
 			}
 		}
-		catch( Exception e )
+	}
+
+	/**
+	 * Appends the pending entries to the playlist journal.  Queues a full 
+	 * playlist save when the journal can't be appended to, or when the 
+	 * journal is due for compaction.
+	 */
+	public void flushJournal()
+	{
+		synchronized( mSaveLock )
 		{
-			mLog.error( "couldn't create file to save "
-					+ "playlist [" + mCurrentPlaylistPath.toString() + "]" );
-		}
-		
-		OutputStream out = null;
-		
-		try
-        {
-	        out = new FileOutputStream( outputFile );
-	        
-			try
-	        {
-		        context = JAXBContext.newInstance( PlaylistV2.class );
+			List<PlaylistJournalEntry> entries;
+			long revision;
 
-		        Marshaller m = context.createMarshaller();
+			synchronized( mPendingEntries )
+			{
+				entries = new ArrayList<>( mPendingEntries );
+				mPendingEntries.clear();
+				revision = mRevision;
+			}
 
-		        m.setProperty( Marshaller.JAXB_FORMATTED_OUTPUT, true );
-	        
-		        m.marshal( playlist, out );
-	        }
-	        catch ( JAXBException e )
-	        {
-	        	mLog.error( "jaxb exception while saving playlist: ", e );
-	        }
-        }
-        catch ( Exception e )
-        {
-        	mLog.error( "coulcn't open outputstream to save playlist [" + 
-        			mCurrentPlaylistPath.toString() + "]", e );
-        }
-		finally
-		{
-			if( out != null )
+			if( !entries.isEmpty() && mJournal != null )
 			{
 				try
-                {
-	                out.close();
-                }
-                catch ( IOException e )
-                {
-	                e.printStackTrace();
-                }
+				{
+					if( !mJournal.append( entries, revision, getContext() ) ||
+						mJournal.getEntryCount() >= mJournalCompactEntries )
+					{
+						schedulePlaylistSave();
+					}
+				}
+				catch( IOException | JAXBException e )
+				{
+					mLog.error( "couldn't append to playlist journal [" + 
+							mJournal.getPath().toString() + "]", e );
+
+					schedulePlaylistSave();
+				}
 			}
 		}
 	}
@@ -317,7 +611,7 @@ public class PlaylistManager implements ChannelEventListener
 		        
 				try
 		        {
-			        context = JAXBContext.newInstance( PlaylistV2.class );
+			        context = getContext();
 
 			        Unmarshaller m = context.createUnmarshaller();
 
@@ -357,6 +651,42 @@ public class PlaylistManager implements ChannelEventListener
 		return playlist;
 	}
 
+	/**
+	 * Shared JAXB context for the playlist and playlist journal entries.  
+	 * Creating the context is expensive, so it is created once and reused.
+	 */
+	private static synchronized JAXBContext getContext() throws JAXBException
+	{
+		if( sContext == null )
+		{
+			sContext = JAXBContext.newInstance( PlaylistV2.class, 
+					PlaylistJournalEntry.class );
+		}
+
+		return sContext;
+	}
+
+	/**
+	 * Schedules a playlist journal flush task.  Subsequent calls to this 
+	 * method will be ignored until the flush occurs.
+	 */
+	private void scheduleJournalFlush()
+	{
+		if( mJournalFlushPending.compareAndSet( false, true ) )
+		{
+			mThreadPoolManager.scheduleOnce( new Runnable()
+			{
+				@Override
+				public void run()
+				{
+					mJournalFlushPending.set( false );
+
+					flushJournal();
+				}
+			}, 1, TimeUnit.SECONDS );
+		}
+	}
+
 	/**
 	 * Schedules a playlist save task.  Subsequent calls to this method will be 
 	 * ignored until the save event occurs, thus limiting repetitive playlist 
@@ -20,6 +20,7 @@ package playlist;
 import java.util.ArrayList;
 import java.util.List;
 
+import javax.xml.bind.annotation.XmlAttribute;
 import javax.xml.bind.annotation.XmlElement;
 import javax.xml.bind.annotation.XmlRootElement;
 import javax.xml.bind.annotation.XmlSeeAlso;
@@ -37,10 +38,26 @@ public class PlaylistV2
 	private List<Alias> mAliases = new ArrayList<>();
 	private List<Channel> mChannels = new ArrayList<>();
 	private List<ChannelMap> mChannelMaps = new ArrayList<>();
+	private long mRevision;
 	
 	public PlaylistV2()
 	{
 	}
+
+	/**
+	 * Revision number that is incremented each time the full playlist is 
+	 * saved.  Identifies the playlist journal entries that apply to this file.
+	 */
+	@XmlAttribute( name = "revision" )
+	public long getRevision()
+	{
+		return mRevision;
+	}
+
+	public void setRevision( long revision )
+	{
+		mRevision = revision;
+	}
 	
 	@XmlElement( name = "alias" )
 	public List<Alias> getAliases()
@@ -25,13 +25,19 @@ import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 import properties.SystemProperties;
+import record.raw.RawIQRecorder;
+import record.raw.RawRecordingMetadata;
+import record.raw.RawSampleFormat;
 import record.wave.ComplexBufferWaveRecorder;
 import record.wave.RealBufferWaveRecorder;
 import sample.Listener;
+import source.tuner.Tuner;
 import audio.AudioPacket;
 import audio.metadata.Metadata;
 import audio.metadata.MetadataType;
 import controller.ThreadPoolManager;
+import controller.overload.OverloadController;
+import controller.overload.OverloadController.ShedLevel;
 
 public class RecorderManager implements Listener<AudioPacket>
 {
@@ -63,6 +69,20 @@ public class RecorderManager implements Listener<AudioPacket>
 		{
 			String identifier = audioPacket.getAudioMetadata().getIdentifier();
 
+			/* Recording of do not monitor talkgroups is shed under overload */
+			if( audioPacket.getAudioMetadata().isDoNotMonitor() && 
+				OverloadController.getInstance().isShedding( ShedLevel.RECORDING ) )
+			{
+				RealBufferWaveRecorder shed = mRecorders.remove( identifier );
+
+				if( shed != null )
+				{
+					shed.stop();
+				}
+
+				return;
+			}
+
 			if( mRecorders.containsKey( identifier ) )
 			{
 				RealBufferWaveRecorder recorder = mRecorders.get( identifier );
@@ -178,4 +198,37 @@ public class RecorderManager implements Listener<AudioPacket>
 
         return new ComplexBufferWaveRecorder( AUDIO_SAMPLE_RATE, sb.toString() );
 	}
+
+	/**
+	 * Constructs a full-rate raw I/Q recorder for the tuner.  Sample format
+	 * and segment file size are read from the system properties.
+	 */
+	public RawIQRecorder getTunerRecorder( Tuner tuner )
+	{
+		SystemProperties props = SystemProperties.getInstance();
+
+		RawSampleFormat format = RawSampleFormat.fromName( 
+				props.get( "recording.tuner.sample.format", 
+						RawSampleFormat.SIGNED_16_BIT.name() ) );
+		
+		long segmentSize = props.get( "recording.tuner.segment.size.mb", 512 ) 
+				* 1024l * 1024l;
+
+		RawRecordingMetadata metadata = new RawRecordingMetadata();
+		metadata.setFrequency( tuner.getTunerController().getFrequency() );
+		metadata.setSampleRate( tuner.getTunerController().getSampleRate() );
+		metadata.setTunerType( tuner.getTunerType().name() );
+		metadata.setTunerID( tuner.getUniqueID() );
+		metadata.setSampleFormat( format );
+
+		StringBuilder sb = new StringBuilder();
+		sb.append( props.getApplicationFolder( "recordings" ) );
+		sb.append( File.separator );
+		sb.append( tuner.getTunerType().name() );
+		sb.append( "_" );
+		sb.append( tuner.getUniqueID().replaceAll( "[^A-Za-z0-9.-]", "_" ) );
+		sb.append( "_tuner" );
+
+		return new RawIQRecorder( sb.toString(), metadata, segmentSize );
+	}
 }
@@ -0,0 +1,426 @@
+/*******************************************************************************
+ *     SDR Trunk 
+ *     Copyright (C) 2014-2016 Dennis Sheirer
+ * 
+ *     This program is free software: you can redistribute it and/or modify
+ *     it under the terms of the GNU General Public License as published by
+ *     the Free Software Foundation, either version 3 of the License, or
+ *     (at your option) any later version.
+ * 
+ *     This program is distributed in the hope that it will be useful,
+ *     but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *     MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *     GNU General Public License for more details.
+ * 
+ *     You should have received a copy of the GNU General Public License
+ *     along with this program.  If not, see <http://www.gnu.org/licenses/>
+ ******************************************************************************/
+package record.raw;
+
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteOrder;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileChannel.MapMode;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.concurrent.locks.LockSupport;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import sample.Listener;
+import sample.complex.ComplexBuffer;
+import source.tuner.TunerController;
+import util.TimeStamp;
+import buffer.SPSCRingBuffer;
+import buffer.SPSCRingBuffer.OverflowPolicy;
+
+/**
+ * Full-rate raw I/Q recorder.  Writes interleaved I/Q samples into a series of
+ * preallocated, memory-mapped segment files and maintains an xml sidecar
+ * (see RawRecordingMetadata) that describes the recording.
+ *
+ * Sample buffers are handed off to a dedicated writer thread so that slow
+ * storage never blocks the tuner's sample dispatch thread.  When the writer
+ * falls behind, buffers are dropped and counted, per the sample buffer 
+ * overflow policy, rather than purging everything that is queued.
+ */
+public class RawIQRecorder implements Listener<ComplexBuffer>
+{
+	private final static Logger mLog = LoggerFactory.getLogger( RawIQRecorder.class );
+
+	public static final long DEFAULT_SEGMENT_SIZE = 512l * 1024l * 1024l;
+	private static final int BUFFER_QUEUE_SIZE = 1024;
+
+	/* Writer wait between checks for queued buffers */
+	private static final long WRITER_PARK_NANOS = 1000000; //1 ms
+
+	private SPSCRingBuffer<ComplexBuffer> mBuffers = new SPSCRingBuffer<>( 
+			BUFFER_QUEUE_SIZE, TunerController.getSampleBufferOverflowPolicy() );
+
+	private RawRecordingMetadata mMetadata;
+	private RawSampleFormat mSampleFormat;
+	private String mFilePrefix;
+	private Path mMetadataPath;
+	private long mSegmentSize;
+
+	private RandomAccessFile mSegmentFile;
+	private MappedByteBuffer mSegment;
+	private RawRecordingMetadata.Segment mSegmentEntry;
+
+	private Thread mWriterThread;
+	private AtomicBoolean mRunning = new AtomicBoolean();
+	private AtomicLong mSamplesReceived = new AtomicLong();
+	private long mDroppedLogged;
+
+	/**
+	 * Constructs a raw I/Q recorder.
+	 *
+	 * @param filePrefix - path and file name prefix for the sidecar and segments
+	 * @param metadata - recording metadata with frequency, sample rate and
+	 * tuner details populated.  Timestamps and segments are added by this
+	 * recorder.
+	 * @param segmentSize - size in bytes of each preallocated segment file
+	 */
+	public RawIQRecorder( String filePrefix,
+						  RawRecordingMetadata metadata,
+						  long segmentSize )
+	{
+		mFilePrefix = filePrefix;
+		mMetadata = metadata;
+		mSampleFormat = metadata.getSampleFormat();
+
+		/* Segments must hold a whole number of sample frames */
+		long frameSize = mSampleFormat.getFrameSize();
+		long size = segmentSize > 0 ? segmentSize : DEFAULT_SEGMENT_SIZE;
+
+		/* A single mapping is limited to Integer.MAX_VALUE bytes */
+		size = Math.min( size, Integer.MAX_VALUE - frameSize );
+
+		mSegmentSize = size - ( size % frameSize );
+	}
+
+	/**
+	 * Sidecar metadata file for this recording, or null if not started
+	 */
+	public Path getMetadataPath()
+	{
+		return mMetadataPath;
+	}
+
+	public boolean isRunning()
+	{
+		return mRunning.get();
+	}
+
+	/**
+	 * Number of sample buffers dropped because the writer couldn't keep up
+	 */
+	public long getDroppedBufferCount()
+	{
+		return mBuffers.getDroppedCount();
+	}
+
+	/**
+	 * Starts the recording and the writer thread
+	 */
+	public void start() throws IOException
+	{
+		if( mRunning.compareAndSet( false, true ) )
+		{
+			StringBuilder sb = new StringBuilder();
+			sb.append( mFilePrefix );
+			sb.append( "_" );
+			sb.append( TimeStamp.getTimeStamp( "_" ) );
+
+			mFilePrefix = sb.toString();
+
+			mMetadataPath = Paths.get( mFilePrefix + ".xml" );
+
+			mMetadata.setStartTime( System.currentTimeMillis() );
+
+			try
+			{
+				nextSegment();
+			}
+			catch( IOException ioe )
+			{
+				mRunning.set( false );
+				throw ioe;
+			}
+
+			mWriterThread = new Thread( new BufferProcessor(),
+					"sdrtrunk raw iq recorder" );
+			mWriterThread.setPriority( Thread.MAX_PRIORITY );
+			mWriterThread.start();
+
+			mLog.info( "Started raw I/Q recording [" + mMetadataPath.toString() +
+				"] format [" + mSampleFormat.getLabel() + "] sample rate [" +
+				mMetadata.getSampleRate() + "]" );
+		}
+	}
+
+	/**
+	 * Stops the recording.  The writer thread finishes writing any queued
+	 * buffers and then closes out the final segment and the sidecar file.
+	 */
+	public void stop()
+	{
+		if( mRunning.compareAndSet( true, false ) )
+		{
+			if( mWriterThread != null )
+			{
+				try
+				{
+					mWriterThread.join( 5000 );
+				}
+				catch( InterruptedException e )
+				{
+					Thread.currentThread().interrupt();
+				}
+
+				mWriterThread = null;
+			}
+		}
+	}
+
+	@Override
+	public void receive( ComplexBuffer buffer )
+	{
+		if( mRunning.get() )
+		{
+			/* With drop oldest, the buffer is queued even when an older
+			 * buffer is dropped to make room */
+			if( mBuffers.offer( buffer ) || 
+				mBuffers.getOverflowPolicy() == OverflowPolicy.DROP_OLDEST )
+			{
+				mSamplesReceived.addAndGet( buffer.getSamples().length / 2 );
+			}
+
+			long dropped = mBuffers.getDroppedCount();
+
+			if( dropped != mDroppedLogged && dropped % 100 == 1 )
+			{
+				mDroppedLogged = dropped;
+
+				mLog.error( "Raw I/Q recorder can't keep up - dropped [" +
+					dropped + "] buffers [" + mMetadataPath.toString() + "]" );
+			}
+		}
+	}
+
+	/**
+	 * Records a tuner center frequency change at the current sample position
+	 */
+	public void frequencyChanged( long frequency )
+	{
+		if( mRunning.get() )
+		{
+			synchronized( mMetadata )
+			{
+				mMetadata.getTunes().add( new RawRecordingMetadata
+					.Tune( mSamplesReceived.get(), frequency ) );
+			}
+		}
+	}
+
+	/**
+	 * Closes the current segment, if any, and opens the next preallocated
+	 * segment file, mapping it into memory.
+	 */
+	private void nextSegment() throws IOException
+	{
+		closeSegment();
+
+		String fileName = mFilePrefix + "_" +
+				String.format( "%04d", mMetadata.getSegments().size() + 1 ) + ".iq";
+
+		Path path = Paths.get( fileName );
+
+		mSegmentFile = new RandomAccessFile( path.toFile(), "rw" );
+		mSegmentFile.setLength( mSegmentSize );
+
+		mSegment = mSegmentFile.getChannel()
+				.map( MapMode.READ_WRITE, 0, mSegmentSize );
+		mSegment.order( ByteOrder.LITTLE_ENDIAN );
+
+		mSegmentEntry = new RawRecordingMetadata.Segment(
+				path.getFileName().toString(), 0 );
+
+		synchronized( mMetadata )
+		{
+			mMetadata.getSegments().add( mSegmentEntry );
+
+			mMetadata.save( mMetadataPath );
+		}
+	}
+
+	/**
+	 * Flushes and closes the current segment.  The preallocated file is
+	 * truncated to the number of bytes written where the platform allows it.
+	 * The valid length is always recorded in the sidecar metadata.
+	 */
+	private void closeSegment() throws IOException
+	{
+		if( mSegment != null )
+		{
+			int length = mSegment.position();
+
+			mSegmentEntry.setLength( length );
+
+			mSegment.force();
+			mSegment = null;
+
+			FileChannel channel = mSegmentFile.getChannel();
+
+			try
+			{
+				if( length < mSegmentSize )
+				{
+					channel.truncate( length );
+				}
+			}
+			catch( IOException ioe )
+			{
+				/* Some platforms won't truncate a file with an open mapping */
+				mLog.debug( "Couldn't truncate raw I/Q segment - length is "
+						+ "recorded in the metadata" );
+			}
+
+			mSegmentFile.close();
+			mSegmentFile = null;
+		}
+	}
+
+	/**
+	 * Converts the float sample buffer into the recording sample format and
+	 * writes it into the mapped segment, rolling over to a new segment as
+	 * each segment fills.
+	 */
+	private void write( float[] samples ) throws IOException
+	{
+		int offset = 0;
+
+		while( offset < samples.length )
+		{
+			if( mSegment.remaining() < mSampleFormat.getFrameSize() )
+			{
+				nextSegment();
+			}
+
+			int count = Math.min( samples.length - offset,
+				mSegment.remaining() / mSampleFormat.getBytesPerSample() );
+
+			/* Keep I/Q pairs together within a segment */
+			count -= ( count % 2 );
+
+			int end = offset + count;
+
+			switch( mSampleFormat )
+			{
+				case SIGNED_8_BIT:
+					for( int x = offset; x < end; x++ )
+					{
+						mSegment.put( (byte)( clip( samples[ x ] ) * Byte.MAX_VALUE ) );
+					}
+					break;
+				case SIGNED_16_BIT:
+					for( int x = offset; x < end; x++ )
+					{
+						mSegment.putShort( (short)( clip( samples[ x ] ) * Short.MAX_VALUE ) );
+					}
+					break;
+				case FLOAT_32_BIT:
+					mSegment.asFloatBuffer().put( samples, offset, count );
+					mSegment.position( mSegment.position() + ( count * 4 ) );
+					break;
+				default:
+					throw new IllegalArgumentException( "Unrecognized sample "
+						+ "format [" + mSampleFormat.name() + "]" );
+			}
+
+			offset = end;
+		}
+	}
+
+	/**
+	 * Limits the sample to the range -1.0 to 1.0 so that integer conversion
+	 * doesn't wrap around
+	 */
+	private static float clip( float sample )
+	{
+		if( sample > 1.0f )
+		{
+			return 1.0f;
+		}
+		else if( sample < -1.0f )
+		{
+			return -1.0f;
+		}
+
+		return sample;
+	}
+
+	/**
+	 * Writer thread.  Drains the buffer queue into the mapped segments until
+	 * the recorder is stopped and then finalizes the segment and metadata.
+	 */
+	public class BufferProcessor implements Runnable
+	{
+		@Override
+		public void run()
+		{
+			try
+			{
+				while( mRunning.get() || !mBuffers.isEmpty() )
+				{
+					ComplexBuffer buffer = mBuffers.poll();
+
+					if( buffer != null )
+					{
+						write( buffer.getSamples() );
+					}
+					else
+					{
+						LockSupport.parkNanos( WRITER_PARK_NANOS );
+					}
+				}
+			}
+			catch( IOException ioe )
+			{
+				mRunning.set( false );
+
+				mLog.error( "Error while writing raw I/Q recording [" +
+						mMetadataPath.toString() + "]", ioe );
+			}
+			finally
+			{
+				mBuffers.clear();
+
+				try
+				{
+					closeSegment();
+
+					synchronized( mMetadata )
+					{
+						mMetadata.setStopTime( System.currentTimeMillis() );
+						mMetadata.save( mMetadataPath );
+					}
+				}
+				catch( IOException ioe )
+				{
+					mLog.error( "Error closing raw I/Q recording [" +
+							mMetadataPath.toString() + "]", ioe );
+				}
+
+				mLog.info( "Stopped raw I/Q recording [" + mMetadataPath.toString() +
+						"] samples [" + mMetadata.getSampleCount() +
+						"] dropped buffers [" + mBuffers.getDroppedCount() + "]" );
+			}
+		}
+	}
+}
@@ -0,0 +1,314 @@
+/*******************************************************************************
+ *     SDR Trunk 
+ *     Copyright (C) 2014-2016 Dennis Sheirer
+ * 
+ *     This program is free software: you can redistribute it and/or modify
+ *     it under the terms of the GNU General Public License as published by
+ *     the Free Software Foundation, either version 3 of the License, or
+ *     (at your option) any later version.
+ * 
+ *     This program is distributed in the hope that it will be useful,
+ *     but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *     MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *     GNU General Public License for more details.
+ * 
+ *     You should have received a copy of the GNU General Public License
+ *     along with this program.  If not, see <http://www.gnu.org/licenses/>
+ ******************************************************************************/
+package record.raw;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+
+import javax.xml.bind.JAXBContext;
+import javax.xml.bind.JAXBException;
+import javax.xml.bind.Marshaller;
+import javax.xml.bind.Unmarshaller;
+import javax.xml.bind.annotation.XmlAttribute;
+import javax.xml.bind.annotation.XmlElement;
+import javax.xml.bind.annotation.XmlRootElement;
+
+/**
+ * Sidecar metadata describing a raw I/Q recording that is stored across one
+ * or more segment files.  The sidecar is persisted as xml next to the
+ * segment files and contains everything needed to replay the recording.
+ */
+@XmlRootElement( name = "raw_recording" )
+public class RawRecordingMetadata
+{
+	private long mFrequency;
+	private int mSampleRate;
+	private long mStartTime;
+	private long mStopTime;
+	private String mTunerType;
+	private String mTunerID;
+	private RawSampleFormat mSampleFormat = RawSampleFormat.SIGNED_16_BIT;
+	private List<Segment> mSegments = new ArrayList<>();
+	private List<Tune> mTunes = new ArrayList<>();
+
+	public RawRecordingMetadata()
+	{
+	}
+
+	/**
+	 * Center frequency of the tuner when the recording was started
+	 */
+	@XmlAttribute( name = "frequency" )
+	public long getFrequency()
+	{
+		return mFrequency;
+	}
+
+	public void setFrequency( long frequency )
+	{
+		mFrequency = frequency;
+	}
+
+	/**
+	 * Complex sample rate of the recording
+	 */
+	@XmlAttribute( name = "sample_rate" )
+	public int getSampleRate()
+	{
+		return mSampleRate;
+	}
+
+	public void setSampleRate( int sampleRate )
+	{
+		mSampleRate = sampleRate;
+	}
+
+	/**
+	 * Recording start time in milliseconds since epoch
+	 */
+	@XmlAttribute( name = "start_time" )
+	public long getStartTime()
+	{
+		return mStartTime;
+	}
+
+	public void setStartTime( long startTime )
+	{
+		mStartTime = startTime;
+	}
+
+	/**
+	 * Recording stop time in milliseconds since epoch, or 0 if the recording
+	 * was not stopped normally
+	 */
+	@XmlAttribute( name = "stop_time" )
+	public long getStopTime()
+	{
+		return mStopTime;
+	}
+
+	public void setStopTime( long stopTime )
+	{
+		mStopTime = stopTime;
+	}
+
+	@XmlAttribute( name = "tuner_type" )
+	public String getTunerType()
+	{
+		return mTunerType;
+	}
+
+	public void setTunerType( String tunerType )
+	{
+		mTunerType = tunerType;
+	}
+
+	@XmlAttribute( name = "tuner_id" )
+	public String getTunerID()
+	{
+		return mTunerID;
+	}
+
+	public void setTunerID( String tunerID )
+	{
+		mTunerID = tunerID;
+	}
+
+	@XmlAttribute( name = "sample_format" )
+	public RawSampleFormat getSampleFormat()
+	{
+		return mSampleFormat;
+	}
+
+	public void setSampleFormat( RawSampleFormat format )
+	{
+		mSampleFormat = format;
+	}
+
+	/**
+	 * Ordered list of segment files that make up the recording
+	 */
+	@XmlElement( name = "segment" )
+	public List<Segment> getSegments()
+	{
+		return mSegments;
+	}
+
+	public void setSegments( List<Segment> segments )
+	{
+		mSegments = segments;
+	}
+
+	/**
+	 * Center frequency changes that occurred while recording
+	 */
+	@XmlElement( name = "tune" )
+	public List<Tune> getTunes()
+	{
+		return mTunes;
+	}
+
+	public void setTunes( List<Tune> tunes )
+	{
+		mTunes = tunes;
+	}
+
+	/**
+	 * Total number of complex sample frames across all segments
+	 */
+	public long getSampleCount()
+	{
+		long bytes = 0;
+
+		for( Segment segment: mSegments )
+		{
+			bytes += segment.getLength();
+		}
+
+		return bytes / mSampleFormat.getFrameSize();
+	}
+
+	/**
+	 * Writes this metadata to the xml sidecar file
+	 */
+	public void save( Path path ) throws IOException
+	{
+		try( OutputStream out = Files.newOutputStream( path ) )
+		{
+			Marshaller marshaller = JAXBContext
+					.newInstance( RawRecordingMetadata.class ).createMarshaller();
+
+			marshaller.setProperty( Marshaller.JAXB_FORMATTED_OUTPUT, true );
+
+			marshaller.marshal( this, out );
+		}
+		catch( JAXBException e )
+		{
+			throw new IOException( "Couldn't write raw recording metadata [" +
+					path.toString() + "]", e );
+		}
+	}
+
+	/**
+	 * Loads the metadata from the xml sidecar file
+	 */
+	public static RawRecordingMetadata load( Path path ) throws IOException
+	{
+		try( InputStream in = Files.newInputStream( path ) )
+		{
+			Unmarshaller unmarshaller = JAXBContext
+					.newInstance( RawRecordingMetadata.class ).createUnmarshaller();
+
+			return (RawRecordingMetadata)unmarshaller.unmarshal( in );
+		}
+		catch( JAXBException e )
+		{
+			throw new IOException( "Couldn't read raw recording metadata [" +
+					path.toString() + "]", e );
+		}
+	}
+
+	/**
+	 * Segment file entry.  The file name is relative to the sidecar file and
+	 * the length is the number of valid bytes, since the segment file is
+	 * preallocated and the last segment may not be filled.
+	 */
+	public static class Segment
+	{
+		private String mFileName;
+		private long mLength;
+
+		public Segment()
+		{
+		}
+
+		public Segment( String fileName, long length )
+		{
+			mFileName = fileName;
+			mLength = length;
+		}
+
+		@XmlAttribute( name = "file" )
+		public String getFileName()
+		{
+			return mFileName;
+		}
+
+		public void setFileName( String fileName )
+		{
+			mFileName = fileName;
+		}
+
+		@XmlAttribute( name = "length" )
+		public long getLength()
+		{
+			return mLength;
+		}
+
+		public void setLength( long length )
+		{
+			mLength = length;
+		}
+	}
+
+	/**
+	 * Center frequency change that takes effect at the sample frame index
+	 */
+	public static class Tune
+	{
+		private long mSample;
+		private long mFrequency;
+
+		public Tune()
+		{
+		}
+
+		public Tune( long sample, long frequency )
+		{
+			mSample = sample;
+			mFrequency = frequency;
+		}
+
+		@XmlAttribute( name = "sample" )
+		public long getSample()
+		{
+			return mSample;
+		}
+
+		public void setSample( long sample )
+		{
+			mSample = sample;
+		}
+
+		@XmlAttribute( name = "frequency" )
+		public long getFrequency()
+		{
+			return mFrequency;
+		}
+
+		public void setFrequency( long frequency )
+		{
+			mFrequency = frequency;
+		}
+	}
+}
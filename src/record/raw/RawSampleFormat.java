@@ -0,0 +1,85 @@
+/*******************************************************************************
+ *     SDR Trunk 
+ *     Copyright (C) 2014-2016 Dennis Sheirer
+ * 
+ *     This program is free software: you can redistribute it and/or modify
+ *     it under the terms of the GNU General Public License as published by
+ *     the Free Software Foundation, either version 3 of the License, or
+ *     (at your option) any later version.
+ * 
+ *     This program is distributed in the hope that it will be useful,
+ *     but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *     MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *     GNU General Public License for more details.
+ * 
+ *     You should have received a copy of the GNU General Public License
+ *     along with this program.  If not, see <http://www.gnu.org/licenses/>
+ ******************************************************************************/
+package record.raw;
+
+/**
+ * Sample formats for raw (headerless) interleaved I/Q recordings.  All
+ * multi-byte formats are little-endian.
+ */
+public enum RawSampleFormat
+{
+	SIGNED_8_BIT( "8-bit Signed", 1 ),
+	SIGNED_16_BIT( "16-bit Signed", 2 ),
+	FLOAT_32_BIT( "32-bit Float", 4 );
+
+	private String mLabel;
+	private int mBytesPerSample;
+
+	private RawSampleFormat( String label, int bytesPerSample )
+	{
+		mLabel = label;
+		mBytesPerSample = bytesPerSample;
+	}
+
+	public String getLabel()
+	{
+		return mLabel;
+	}
+
+	/**
+	 * Number of bytes for a single I or Q sample value
+	 */
+	public int getBytesPerSample()
+	{
+		return mBytesPerSample;
+	}
+
+	/**
+	 * Number of bytes for a complex (I and Q) sample frame
+	 */
+	public int getFrameSize()
+	{
+		return mBytesPerSample * 2;
+	}
+
+	@Override
+	public String toString()
+	{
+		return mLabel;
+	}
+
+	/**
+	 * Returns the format that matches the enum entry name, or the default
+	 * 16-bit signed format if the value can't be matched.
+	 */
+	public static RawSampleFormat fromName( String name )
+	{
+		if( name != null )
+		{
+			for( RawSampleFormat format: values() )
+			{
+				if( format.name().equalsIgnoreCase( name ) )
+				{
+					return format;
+				}
+			}
+		}
+
+		return SIGNED_16_BIT;
+	}
+}
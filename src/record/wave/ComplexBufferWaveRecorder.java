@@ -20,7 +20,6 @@ package record.wave;
 import java.io.IOException;
 import java.nio.file.Path;
 import java.nio.file.Paths;
-import java.util.concurrent.LinkedBlockingQueue;
 import java.util.concurrent.ScheduledExecutorService;
 import java.util.concurrent.ScheduledFuture;
 import java.util.concurrent.TimeUnit;
@@ -33,12 +32,14 @@ import module.Module;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
-import sample.Buffer;
 import sample.ConversionUtils;
 import sample.Listener;
 import sample.complex.ComplexBuffer;
 import sample.complex.IComplexBufferListener;
+import source.tuner.TunerController;
 import util.TimeStamp;
+import buffer.SPSCRingBuffer;
+import buffer.SPSCRingBuffer.OverflowPolicy;
 
 /**
  * WAVE audio recorder module for recording complex (I&Q) samples to a wave file
@@ -48,15 +49,16 @@ public class ComplexBufferWaveRecorder extends Module
 {
 	private final static Logger mLog = 
 			LoggerFactory.getLogger( ComplexBufferWaveRecorder.class );
+	
+	private static final int BUFFER_QUEUE_SIZE = 512;
 
-    private WaveWriter mWriter;
     private String mFilePrefix;
     private Path mFile;
 	private AudioFormat mAudioFormat;
 	
-	private BufferProcessor mBufferProcessor;
-	private ScheduledFuture<?> mProcessorHandle;
-	private LinkedBlockingQueue<ComplexBuffer> mBuffers = new LinkedBlockingQueue<>( 500 );
+	private volatile BufferProcessor mBufferProcessor;
+	private SPSCRingBuffer<ComplexBuffer> mBuffers = new SPSCRingBuffer<>( BUFFER_QUEUE_SIZE, 
+			getOverflowPolicy() );
 	
 	private AtomicBoolean mRunning = new AtomicBoolean();
 	
@@ -71,20 +73,35 @@ public class ComplexBufferWaveRecorder extends Module
 		mFilePrefix = filePrefix;
 	}
 
+	/**
+	 * Overflow policy for the buffer queue, from the sample buffer overflow
+	 * policy setting.  The producer is never blocked, since the buffer 
+	 * processor can run on the producer's (single threaded) executor.
+	 */
+	private static OverflowPolicy getOverflowPolicy()
+	{
+		OverflowPolicy policy = TunerController.getSampleBufferOverflowPolicy();
+		
+		return policy == OverflowPolicy.BLOCK ? OverflowPolicy.DROP_OLDEST : policy;
+	}
+
 	public Path getFile()
 	{
 		return mFile;
 	}
 	
+	/**
+	 * Number of buffers dropped because the buffer processor couldn't keep up
+	 */
+	public long getDroppedBufferCount()
+	{
+		return mBuffers.getDroppedCount();
+	}
+	
 	public void start( ScheduledExecutorService executor )
 	{
 		if( mRunning.compareAndSet( false, true ) )
 		{
-			if( mBufferProcessor == null )
-			{
-				mBufferProcessor = new BufferProcessor();
-			}
-
 			try
 			{
 				StringBuilder sb = new StringBuilder();
@@ -95,11 +112,12 @@ public class ComplexBufferWaveRecorder extends Module
 				
 				mFile = Paths.get( sb.toString() );
 
-				mWriter = new WaveWriter( mAudioFormat, mFile );
+				mBufferProcessor = new BufferProcessor( 
+						new WaveWriter( mAudioFormat, mFile ), mFile );
 
 				/* Schedule the processor to run every 500 milliseconds */
-				mProcessorHandle = executor.scheduleAtFixedRate( 
-						mBufferProcessor, 0, 500, TimeUnit.MILLISECONDS );
+				mBufferProcessor.setHandle( executor.scheduleAtFixedRate( 
+					mBufferProcessor, 0, 500, TimeUnit.MILLISECONDS ) );
 			}
 			catch( IOException io )
 			{
@@ -108,11 +126,22 @@ public class ComplexBufferWaveRecorder extends Module
 		}
 	}
 	
+	/**
+	 * Stops recording.  The buffer processor writes the buffers that are 
+	 * already queued and then closes the recording.
+	 */
 	public void stop()
 	{
 		if( mRunning.compareAndSet( true, false ) )
 		{
-			receive( new PoisonPill() );
+			BufferProcessor processor = mBufferProcessor;
+			
+			if( processor != null )
+			{
+				processor.stop();
+			}
+			
+			mBufferProcessor = null;
 		}
 	}
 	
@@ -121,15 +150,14 @@ public class ComplexBufferWaveRecorder extends Module
     {
 		if( mRunning.get() )
 		{
-			boolean success = mBuffers.offer( buffer );
-			
-			if( !success )
+			if( !mBuffers.offer( buffer ) && 
+				mBuffers.getDroppedCount() % 100 == 1 )
 			{
-				mLog.error( "recorder buffer overflow - purging [" + 
-						mFile.toFile().getAbsolutePath() + "]" );
-				
-				mBuffers.clear();
+				mLog.error( "recorder buffer overflow - dropped [" + 
+					mBuffers.getDroppedCount() + "] buffers [" + 
+					mFile.toFile().getAbsolutePath() + "]" );
 			}
+
 		}
     }
 	
@@ -150,72 +178,90 @@ public class ComplexBufferWaveRecorder extends Module
 	{
 	}
 	
+	/**
+	 * Writes queued buffers to the recording on each run.  Once stopped, it
+	 * writes the remaining queued buffers, closes the recording and cancels
+	 * itself.  Each recording has its own processor, so a processor that is
+	 * still closing a recording doesn't affect a restarted recorder.
+	 */
 	public class BufferProcessor implements Runnable
     {
-    	public void run()
+		private WaveWriter mWriter;
+		private Path mPath;
+		private ScheduledFuture<?> mHandle;
+		private volatile boolean mStopped;
+		
+		public BufferProcessor( WaveWriter writer, Path path )
+		{
+			mWriter = writer;
+			mPath = path;
+		}
+		
+		public void setHandle( ScheduledFuture<?> handle )
+		{
+			mHandle = handle;
+		}
+		
+		public void stop()
+		{
+			mStopped = true;
+		}
+		
+    	public synchronized void run()
     	{
+			if( mWriter == null )
+			{
+				return;
+			}
+			
+			/* Read the stop flag ahead of the final drain so that the last
+			 * buffers queued before stop() are written */
+			boolean stopped = mStopped;
+			
 			try
             {
-				Buffer buffer = mBuffers.poll();
+				ComplexBuffer buffer = mBuffers.poll();
 				
 				while( buffer != null )
 				{
-					if( buffer instanceof PoisonPill )
-					{
-						buffer = null;
-						
-						mBuffers.clear();
-						
-						if( mWriter != null )
-						{
-							try
-							{
-								mWriter.close();
-								mWriter = null;
-							}
-							catch( IOException io )
-							{
-								mLog.error( "Error stopping complex wave recorder [" + 
-											getFile() + "]", io );
-							}
-						}
-						
-						mFile = null;
-
-						if( mProcessorHandle != null )
-						{
-							mProcessorHandle.cancel( true );
-						}
-						
-						mProcessorHandle = null;
-					}
-					else
-					{
-						mWriter.write( ConversionUtils.convertToSigned16BitSamples( buffer ) );
-						buffer = mBuffers.poll();
-					}
+					mWriter.write( ConversionUtils.convertToSigned16BitSamples( buffer ) );
+					buffer = mBuffers.poll();
 				}
             }
 			catch ( IOException ioe )
 			{
-				/* Stop this module if/when we get an IO exception */
-				mBuffers.clear();
-				stop();
+				/* Stop this module if/when we get an IO exception, unless the
+				 * module has already moved on to another recording */
+				if( mBufferProcessor == this )
+				{
+					ComplexBufferWaveRecorder.this.stop();
+				}
+				
+				stopped = true;
 				
 				mLog.error( "IOException while trying to write to the wave "
 						+ "writer", ioe );
 			}
+			
+			if( stopped )
+			{
+				try
+				{
+					mWriter.close();
+				}
+				catch( IOException io )
+				{
+					mLog.error( "Error stopping complex wave recorder [" + 
+								mPath + "]", io );
+				}
+				
+				mWriter = null;
+				
+				if( mHandle != null )
+				{
+					mHandle.cancel( false );
+				}
+			}
     	}
     }
-
-	/**
-	 * This is used as a sentinel value to signal the buffer processor to end
-	 */
-	public class PoisonPill extends ComplexBuffer
-	{
-		public PoisonPill()
-		{
-			super( new float[ 1 ] );
-		}
-	}
 }
@@ -20,7 +20,6 @@ package record.wave;
 import java.io.IOException;
 import java.nio.file.Path;
 import java.nio.file.Paths;
-import java.util.concurrent.LinkedBlockingQueue;
 import java.util.concurrent.ScheduledExecutorService;
 import java.util.concurrent.ScheduledFuture;
 import java.util.concurrent.TimeUnit;
@@ -37,7 +36,10 @@ import sample.ConversionUtils;
 import sample.Listener;
 import sample.real.IFilteredRealBufferListener;
 import sample.real.RealBuffer;
+import source.tuner.TunerController;
 import util.TimeStamp;
+import buffer.SPSCRingBuffer;
+import buffer.SPSCRingBuffer.OverflowPolicy;
 
 /**
  * WAVE audio recorder module for recording real sample buffers to a wave file
@@ -47,16 +49,16 @@ public class RealBufferWaveRecorder extends Module
 {
 	private final static Logger mLog = 
 			LoggerFactory.getLogger( RealBufferWaveRecorder.class );
+	
+	private static final int BUFFER_QUEUE_SIZE = 512;
 
-    private WaveWriter mWriter;
     private String mFilePrefix;
     private Path mFile;
 	private AudioFormat mAudioFormat;
 	
-	private BufferProcessor mBufferProcessor;
-	private ScheduledFuture<?> mProcessorHandle;
-	private LinkedBlockingQueue<RealBuffer> mBuffers = 
-			new LinkedBlockingQueue<>( 500 );
+	private volatile BufferProcessor mBufferProcessor;
+	private SPSCRingBuffer<RealBuffer> mBuffers = new SPSCRingBuffer<>( BUFFER_QUEUE_SIZE, 
+			getOverflowPolicy() );
 	private long mLastBufferReceived;
 	
 	private AtomicBoolean mRunning = new AtomicBoolean();
@@ -72,6 +74,18 @@ public class RealBufferWaveRecorder extends Module
 		mFilePrefix = filePrefix;
 	}
 
+	/**
+	 * Overflow policy for the buffer queue, from the sample buffer overflow
+	 * policy setting.  The producer is never blocked, since the buffer 
+	 * processor can run on the producer's (single threaded) executor.
+	 */
+	private static OverflowPolicy getOverflowPolicy()
+	{
+		OverflowPolicy policy = TunerController.getSampleBufferOverflowPolicy();
+		
+		return policy == OverflowPolicy.BLOCK ? OverflowPolicy.DROP_OLDEST : policy;
+	}
+
 	/**
 	 * Timestamp of when the latest buffer was received by this recorder
 	 */
@@ -85,15 +99,18 @@ public class RealBufferWaveRecorder extends Module
 		return mFile;
 	}
 	
+	/**
+	 * Number of buffers dropped because the buffer processor couldn't keep up
+	 */
+	public long getDroppedBufferCount()
+	{
+		return mBuffers.getDroppedCount();
+	}
+	
 	public void start( ScheduledExecutorService executor )
 	{
 		if( mRunning.compareAndSet( false, true ) )
 		{
-			if( mBufferProcessor == null )
-			{
-				mBufferProcessor = new BufferProcessor();
-			}
-
 			try
 			{
 				StringBuilder sb = new StringBuilder();
@@ -104,11 +121,12 @@ public class RealBufferWaveRecorder extends Module
 				
 				mFile = Paths.get( sb.toString() );
 
-				mWriter = new WaveWriter( mAudioFormat, mFile );
+				mBufferProcessor = new BufferProcessor( 
+						new WaveWriter( mAudioFormat, mFile ), mFile );
 
 				/* Schedule the processor to run every 500 milliseconds */
-				mProcessorHandle = executor.scheduleAtFixedRate( 
-					mBufferProcessor, 0, 500, TimeUnit.MILLISECONDS );
+				mBufferProcessor.setHandle( executor.scheduleAtFixedRate( 
+					mBufferProcessor, 0, 500, TimeUnit.MILLISECONDS ) );
 			}
 			catch( IOException io )
 			{
@@ -117,12 +135,23 @@ public class RealBufferWaveRecorder extends Module
 		}
 	}
 	
+	/**
+	 * Stops recording.  The buffer processor writes the buffers that are 
+	 * already queued and then closes the recording.
+	 */
 	public void stop()
 	{
-		/* Signal the buffer processor to end with a poison pill */
-		receive( new PoisonPill() );
-		
-		mRunning.set( false );
+		if( mRunning.compareAndSet( true, false ) )
+		{
+			BufferProcessor processor = mBufferProcessor;
+			
+			if( processor != null )
+			{
+				processor.stop();
+			}
+			
+			mBufferProcessor = null;
+		}
 	}
 	
 	@Override
@@ -130,16 +159,14 @@ public class RealBufferWaveRecorder extends Module
     {
 		if( mRunning.get() )
 		{
-			boolean success = mBuffers.offer( buffer );
-			
-			if( !success )
+			if( !mBuffers.offer( buffer ) && 
+				mBuffers.getDroppedCount() % 100 == 1 )
 			{
-				mLog.error( "recorder buffer overflow - purging [" + 
-						mFile.toFile().getAbsolutePath() + "]" );
-				
-				mBuffers.clear();
+				mLog.error( "recorder buffer overflow - dropped [" + 
+					mBuffers.getDroppedCount() + "] buffers [" + 
+					mFile.toFile().getAbsolutePath() + "]" );
 			}
-			
+
 			mLastBufferReceived = System.currentTimeMillis();
 		}
     }
@@ -161,71 +188,90 @@ public class RealBufferWaveRecorder extends Module
 	{
 	}
 	
+	/**
+	 * Writes queued buffers to the recording on each run.  Once stopped, it
+	 * writes the remaining queued buffers, closes the recording and cancels
+	 * itself.  Each recording has its own processor, so a processor that is
+	 * still closing a recording doesn't affect a restarted recorder.
+	 */
 	public class BufferProcessor implements Runnable
     {
-    	public void run()
+		private WaveWriter mWriter;
+		private Path mPath;
+		private ScheduledFuture<?> mHandle;
+		private volatile boolean mStopped;
+		
+		public BufferProcessor( WaveWriter writer, Path path )
+		{
+			mWriter = writer;
+			mPath = path;
+		}
+		
+		public void setHandle( ScheduledFuture<?> handle )
+		{
+			mHandle = handle;
+		}
+		
+		public void stop()
+		{
+			mStopped = true;
+		}
+		
+    	public synchronized void run()
     	{
+			if( mWriter == null )
+			{
+				return;
+			}
+			
+			/* Read the stop flag ahead of the final drain so that the last
+			 * buffers queued before stop() are written */
+			boolean stopped = mStopped;
+			
 			try
             {
 				RealBuffer buffer = mBuffers.poll();
 				
 				while( buffer != null )
 				{
-					if( buffer instanceof PoisonPill )
-					{
-						buffer = null;
-						
-						mBuffers.clear();
-						
-						if( mWriter != null )
-						{
-							try
-							{
-								mWriter.close();
-							}
-							catch( IOException io )
-							{
-								mLog.error( "Error stopping complex wave recorder [" + 
-											getFile() + "]", io );
-							}
-						}
-						
-						if( mProcessorHandle != null )
-						{
-							mProcessorHandle.cancel( true );
-						}
-						
-						mProcessorHandle = null;
-						mWriter = null;
-						mFile = null;
-					}
-					else
-					{
-						mWriter.write( ConversionUtils.convertToSigned16BitSamples( buffer ) );
-						buffer = mBuffers.poll();
-					}
+					mWriter.write( ConversionUtils.convertToSigned16BitSamples( buffer ) );
+					buffer = mBuffers.poll();
 				}
             }
 			catch ( IOException ioe )
 			{
-				/* Stop this module if/when we get an IO exception */
-				mBuffers.clear();
-				stop();
+				/* Stop this module if/when we get an IO exception, unless the
+				 * module has already moved on to another recording */
+				if( mBufferProcessor == this )
+				{
+					RealBufferWaveRecorder.this.stop();
+				}
+				
+				stopped = true;
 				
 				mLog.error( "IOException while trying to write to the wave "
 						+ "writer", ioe );
 			}
+			
+			if( stopped )
+			{
+				try
+				{
+					mWriter.close();
+				}
+				catch( IOException io )
+				{
+					mLog.error( "Error stopping real wave recorder [" + 
+								mPath + "]", io );
+				}
+				
+				mWriter = null;
+				
+				if( mHandle != null )
+				{
+					mHandle.cancel( false );
+				}
+			}
     	}
     }
-	
-	/**
-	 * This is used as a sentinel value to signal the buffer processor to end
-	 */
-	public class PoisonPill extends RealBuffer
-	{
-		public PoisonPill()
-		{
-			super( new float[ 1 ] );
-		}
-	}
 }
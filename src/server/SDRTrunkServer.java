@@ -0,0 +1,383 @@
+/*******************************************************************************
+ *     SDR Trunk 
+ *     Copyright (C) 2014-2016 Dennis Sheirer
+ * 
+ *     This program is free software: you can redistribute it and/or modify
+ *     it under the terms of the GNU General Public License as published by
+ *     the Free Software Foundation, either version 3 of the License, or
+ *     (at your option) any later version.
+ * 
+ *     This program is distributed in the hope that it will be useful,
+ *     but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *     MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *     GNU General Public License for more details.
+ * 
+ *     You should have received a copy of the GNU General Public License
+ *     along with this program.  If not, see <http://www.gnu.org/licenses/>
+ ******************************************************************************/
+package server;
+
+import java.io.IOException;
+import java.nio.file.FileSystems;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.List;
+
+import instrument.metrics.MetricsManager;
+import module.decode.state.TrafficChannelAdmission;
+import module.demodulate.fm.FMDemodulatorBatchManager;
+import module.log.EventLogManager;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import playlist.PlaylistManager;
+import properties.SystemProperties;
+import record.RecorderManager;
+import settings.SettingsManager;
+import source.SourceException;
+import source.SourceManager;
+import source.tuner.TunerModel;
+import source.tuner.configuration.TunerConfigurationModel;
+import source.tuner.replay.ReplayTuner;
+import source.tuner.replay.ReplayTunerController;
+import spectrum.monitor.SpectralMonitorManager;
+import alias.AliasModel;
+import audio.AudioManager;
+import audio.output.AudioOutput;
+import audio.output.FileAudioOutput;
+import controller.ThreadPoolManager;
+import controller.overload.OverloadController;
+import controller.channel.ActivityScanner;
+import controller.channel.Channel;
+import controller.channel.ChannelEvent;
+import controller.channel.ChannelEvent.Event;
+import controller.channel.ChannelModel;
+import controller.channel.ChannelProcessingManager;
+import controller.channel.map.ChannelMapModel;
+
+/**
+ * Headless sdrtrunk.  Loads the playlist and runs channel decoding, event
+ * logging and recording without a user interface, for systems that don't have
+ * a display.
+ * 
+ * The java.awt.headless property is set before anything else is loaded.  No
+ * windows, spectral displays or controller panels are constructed and the
+ * per-channel message activity models are disabled, so nothing is handed to
+ * the Swing event dispatch thread.  Each channel's call event model remains as
+ * a bounded (500 event) in-memory history with no table listeners.  Alias 
+ * actions (popups, beeps) and the map service are user interface features and
+ * are not started.
+ * 
+ * Audio is recorded per the alias/channel recording configuration.  Live audio
+ * is not played unless an audio wave file is specified, in which case all
+ * audio is written to that file.
+ * 
+ * When a spectrum folder is specified, each tuner is monitored by a headless
+ * spectral monitor and the per-bin noise floor and occupancy statistics are
+ * periodically written to CSV files in that folder.
+ * 
+ * Usage: SDRTrunkServer [-playlist playlist.xml] [-replay recording.xml]
+ *                       [-audio audio.wav] [-spectrum folder]
+ */
+public class SDRTrunkServer
+{
+	private final static Logger mLog = LoggerFactory.getLogger( SDRTrunkServer.class );
+
+	private ThreadPoolManager mThreadPoolManager;
+	private ChannelModel mChannelModel;
+	private TunerModel mTunerModel;
+	private AudioManager mAudioManager;
+	private SpectralMonitorManager mSpectralMonitorManager;
+	private ActivityScanner mActivityScanner;
+
+	/**
+	 * Constructs the headless application and starts processing
+	 * 
+	 * @param playlistPath - playlist to load, or null for the playlist 
+	 * specified in the application properties
+	 * @param replayPaths - raw I/Q recording metadata files to add as tuners
+	 * @param audioPath - wave file for all live audio, or null for no audio
+	 * @param spectrumPath - folder for spectral monitor statistics, or null
+	 * for no spectral monitoring
+	 */
+	public SDRTrunkServer( Path playlistPath, List<Path> replayPaths, 
+			Path audioPath, Path spectrumPath )
+	{
+		mLog.info( "" );
+		mLog.info( "*******************************************************************" );
+		mLog.info( "**** sdrtrunk: a trunked radio and digital decoding application ***" );
+		mLog.info( "****  headless server mode                                      ***" );
+		mLog.info( "*******************************************************************" );
+		mLog.info( "" );
+
+		Path home = getHomePath();
+
+		if( home != null )
+		{
+			mLog.info( "Home path: " + home.toString() );
+
+			loadProperties( home );
+		}
+
+		SystemProperties.getInstance().logCurrentSettings();
+
+		mThreadPoolManager = new ThreadPoolManager();
+
+		MetricsManager.getInstance().startReport( mThreadPoolManager );
+		OverloadController.getInstance().start( mThreadPoolManager );
+
+		RecorderManager recorderManager = new RecorderManager( mThreadPoolManager );
+
+		TunerConfigurationModel tunerConfigurationModel = new TunerConfigurationModel();
+		mTunerModel = new TunerModel( tunerConfigurationModel, recorderManager );
+
+		SettingsManager settingsManager = 
+				new SettingsManager( mThreadPoolManager, tunerConfigurationModel );
+
+		AliasModel aliasModel = new AliasModel();
+
+		mChannelModel = new ChannelModel();
+
+		ChannelMapModel channelMapModel = new ChannelMapModel();
+
+		EventLogManager eventLogManager = new EventLogManager();
+
+		SourceManager sourceManager = new SourceManager( mTunerModel, 
+				settingsManager, mThreadPoolManager );
+
+		for( Path replayPath: replayPaths )
+		{
+			addReplayTuner( replayPath );
+		}
+
+		if( spectrumPath != null )
+		{
+			mSpectralMonitorManager = new SpectralMonitorManager( mTunerModel, 
+					mThreadPoolManager, spectrumPath );
+			mSpectralMonitorManager.start();
+
+			mLog.info( "Writing spectral monitor statistics to [" + 
+					spectrumPath.toString() + "]" );
+		}
+
+		ChannelProcessingManager channelProcessingManager = new ChannelProcessingManager( 
+			mChannelModel, channelMapModel, aliasModel, eventLogManager, 
+			recorderManager, sourceManager );
+		channelProcessingManager.setMessageActivityModelEnabled( false );
+		channelProcessingManager.addAudioPacketListener( recorderManager );
+		channelProcessingManager.setThreadPoolManager( mThreadPoolManager );
+
+		mChannelModel.addListener( channelProcessingManager );
+
+		if( ActivityScanner.isEnabled() )
+		{
+			mActivityScanner = new ActivityScanner( mTunerModel, 
+					channelProcessingManager );
+
+			mLog.info( "Conventional channels are processed only while active" );
+		}
+
+		if( audioPath != null )
+		{
+			try
+			{
+				List<AudioOutput> outputs = new ArrayList<>();
+				outputs.add( new FileAudioOutput( audioPath ) );
+
+				mAudioManager = new AudioManager( mThreadPoolManager, outputs );
+				channelProcessingManager.addAudioPacketListener( mAudioManager );
+
+				mLog.info( "Writing live audio to [" + audioPath.toString() + "]" );
+			}
+			catch( IOException ioe )
+			{
+				mLog.error( "Couldn't create audio file [" + audioPath.toString() + 
+						"] - live audio is disabled", ioe );
+			}
+		}
+
+		/* Without live audio, only recorded traffic channels are monitored */
+		TrafficChannelAdmission.getInstance().setAudioController( mAudioManager );
+
+		PlaylistManager playlistManager = new PlaylistManager( mThreadPoolManager, 
+				aliasModel, mChannelModel, channelMapModel );
+
+		if( playlistPath != null )
+		{
+			playlistManager.init( playlistPath );
+		}
+		else
+		{
+			playlistManager.init();
+		}
+
+		Runtime.getRuntime().addShutdownHook( new Thread( new Runnable()
+		{
+			@Override
+			public void run()
+			{
+				shutdown();
+			}
+		}, "sdrtrunk shutdown" ) );
+
+		mLog.info( "Headless server started with [" + 
+				mChannelModel.getChannels().size() + "] channels and [" + 
+				mTunerModel.getTuners().size() + "] tuners" );
+	}
+
+	/**
+	 * Stops all channels so that event logs and recordings are closed out, and
+	 * closes the audio output.
+	 */
+	private void shutdown()
+	{
+		mLog.info( "Shutting down headless server" );
+
+		for( Channel channel: new ArrayList<>( mChannelModel.getChannels() ) )
+		{
+			if( channel.getEnabled() )
+			{
+				mChannelModel.broadcast( new ChannelEvent( channel, Event.REQUEST_DISABLE ) );
+			}
+		}
+
+		if( mActivityScanner != null )
+		{
+			mActivityScanner.dispose();
+		}
+
+		if( mAudioManager != null )
+		{
+			mAudioManager.dispose();
+		}
+
+		if( mSpectralMonitorManager != null )
+		{
+			mSpectralMonitorManager.stop();
+		}
+		MetricsManager.getInstance().stopReport();
+		OverloadController.getInstance().stop();
+		FMDemodulatorBatchManager.getInstance().shutdown();
+	}
+
+	/**
+	 * Adds a replay tuner for the raw I/Q recording described by the metadata
+	 * file so that channels can be decoded from the recording
+	 */
+	private void addReplayTuner( Path metadataPath )
+	{
+		try
+		{
+			mTunerModel.addTuner( new ReplayTuner( 
+					new ReplayTunerController( metadataPath ) ) );
+
+			mLog.info( "Added replay tuner for recording [" + 
+					metadataPath.toString() + "]" );
+		}
+		catch( SourceException se )
+		{
+			mLog.error( "Couldn't create replay tuner for recording [" + 
+					metadataPath.toString() + "]", se );
+		}
+	}
+
+	/**
+	 * Loads the application properties file from the application home 
+	 * directory, creating the properties file for the first-time, if necessary
+	 */
+	private void loadProperties( Path homePath )
+	{
+		Path propsPath = homePath.resolve( "SDRTrunk.properties" );
+
+		if( !Files.exists( propsPath ) )
+		{
+			try
+			{
+				Files.createFile( propsPath );
+			}
+			catch( IOException e )
+			{
+				mLog.error( "Couldn't create application properties file [" + 
+						propsPath.toAbsolutePath() + "]", e );
+			}
+		}
+
+		if( Files.exists( propsPath ) )
+		{
+			SystemProperties.getInstance().load( propsPath );
+		}
+	}
+
+	/**
+	 * Gets (or creates) the SDRTrunk application home directory
+	 */
+	private Path getHomePath()
+	{
+		Path homePath = FileSystems.getDefault()
+				.getPath( System.getProperty( "user.home" ), "SDRTrunk" );
+
+		if( !Files.exists( homePath ) )
+		{
+			try
+			{
+				Files.createDirectory( homePath );
+			}
+			catch( Exception e )
+			{
+				mLog.error( "Exception while creating SDRTrunk home directory "
+						+ "in the user's home directory", e );
+
+				homePath = null;
+			}
+		}
+
+		return homePath;
+	}
+
+	/**
+	 * Launch the headless application
+	 */
+	public static void main( String[] args )
+	{
+		System.setProperty( "java.awt.headless", "true" );
+
+		Path playlistPath = null;
+		List<Path> replayPaths = new ArrayList<>();
+		Path audioPath = null;
+		Path spectrumPath = null;
+
+		for( int x = 0; x < args.length; x++ )
+		{
+			String arg = args[ x ];
+
+			if( x + 1 < args.length && arg.equalsIgnoreCase( "-playlist" ) )
+			{
+				playlistPath = Paths.get( args[ ++x ] );
+			}
+			else if( x + 1 < args.length && arg.equalsIgnoreCase( "-replay" ) )
+			{
+				replayPaths.add( Paths.get( args[ ++x ] ) );
+			}
+			else if( x + 1 < args.length && arg.equalsIgnoreCase( "-audio" ) )
+			{
+				audioPath = Paths.get( args[ ++x ] );
+			}
+			else if( x + 1 < args.length && arg.equalsIgnoreCase( "-spectrum" ) )
+			{
+				spectrumPath = Paths.get( args[ ++x ] );
+			}
+			else
+			{
+				System.out.println( "Usage: SDRTrunkServer [-playlist playlist.xml] "
+						+ "[-replay recording.xml] [-audio audio.wav] "
+						+ "[-spectrum folder]" );
+				System.exit( 1 );
+			}
+		}
+
+		new SDRTrunkServer( playlistPath, replayPaths, audioPath, spectrumPath );
+	}
+}
@@ -33,6 +33,7 @@ import source.tuner.configuration.TunerConfiguration;
 import source.tuner.fcd.proV1.FCD1TunerConfiguration;
 import source.tuner.fcd.proplusV2.FCD2TunerConfiguration;
 import source.tuner.hackrf.HackRFTunerConfiguration;
+import source.tuner.replay.ReplayTunerConfiguration;
 import source.tuner.rtl.e4k.E4KTunerConfiguration;
 import source.tuner.rtl.r820t.R820TTunerConfiguration;
 
@@ -51,6 +52,7 @@ import source.tuner.rtl.r820t.R820TTunerConfiguration;
 			   MapIcon.class,
 			   R820TTunerConfiguration.class,
 			   RecordingConfiguration.class,
+			   ReplayTunerConfiguration.class,
 			   Setting.class,
 			   TunerConfiguration.class } )
 
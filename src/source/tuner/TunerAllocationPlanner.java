@@ -0,0 +1,371 @@
+/*******************************************************************************
+ *     SDR Trunk 
+ *     Copyright (C) 2014-2016 Dennis Sheirer
+ * 
+ *     This program is free software: you can redistribute it and/or modify
+ *     it under the terms of the GNU General Public License as published by
+ *     the Free Software Foundation, either version 3 of the License, or
+ *     (at your option) any later version.
+ * 
+ *     This program is distributed in the hope that it will be useful,
+ *     but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *     MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *     GNU General Public License for more details.
+ * 
+ *     You should have received a copy of the GNU General Public License
+ *     along with this program.  If not, see <http://www.gnu.org/licenses/>
+ ******************************************************************************/
+package source.tuner;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+import java.util.SortedSet;
+import java.util.TreeSet;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import source.SourceException;
+
+/**
+ * Plans the allocation of tuner channels across all available tuners.
+ * 
+ * Rather than assigning a requested channel to the first tuner that can 
+ * accommodate it, the planner evaluates every tuner that can accommodate the
+ * channel and ranks them by:
+ * 
+ * 1. Coverage: the amount of spectrum, around the currently sourced channels, 
+ *    that the complete set of tuners can still accommodate after the channel
+ *    is added.  Placing a channel on a tuner that already covers it, or on the
+ *    tuner whose reach is reduced the least, keeps the other tuners free to
+ *    cover the rest of the system.
+ * 2. Disruption: the number of active channels that are interrupted when the
+ *    tuner has to be re-centered to accommodate the channel.
+ * 
+ * The planner also calculates the tuner center frequency for a set of 
+ * channels.  The center frequency is placed as close as possible to the 
+ * middle of the channel span, outside of any central DC spike region, so that
+ * the tuner has equal headroom on either side and future channels are less
+ * likely to require a retune.
+ */
+public class TunerAllocationPlanner
+{
+	private final static Logger mLog = 
+			LoggerFactory.getLogger( TunerAllocationPlanner.class );
+
+	public static final long NO_FREQUENCY = -1;
+	
+	/**
+	 * Returns the tuners that can accommodate the channel, ordered from the
+	 * best to the worst allocation.
+	 * 
+	 * @param tuners available tuners
+	 * @param channel requested tuner channel
+	 * @return ordered list of tuners, or an empty list if no tuner can 
+	 * accommodate the channel
+	 */
+	public static List<Tuner> plan( List<Tuner> tuners, TunerChannel channel )
+	{
+		/* Snapshot the current channel allocations */
+		List<SortedSet<TunerChannel>> allocations = new ArrayList<>();
+		
+		long minimum = channel.getMinFrequency();
+		long maximum = channel.getMaxFrequency();
+		int reach = 0;
+		
+		for( Tuner tuner: tuners )
+		{
+			TunerController controller = tuner.getTunerController();
+			
+			SortedSet<TunerChannel> channels = 
+					new TreeSet<>( controller.getTunedChannels() );
+			
+			allocations.add( channels );
+			
+			if( !channels.isEmpty() )
+			{
+				minimum = Math.min( minimum, channels.first().getMinFrequency() );
+				maximum = Math.max( maximum, channels.last().getMaxFrequency() );
+			}
+			
+			reach = Math.max( reach, controller.getUsableBandwidth() );
+		}
+		
+		/* Region of interest: the active and requested channels plus the 
+		 * reach of the widest tuner on either side */
+		long regionMinimum = minimum - reach;
+		long regionMaximum = maximum + reach;
+		
+		final List<Allocation> candidates = new ArrayList<>();
+		
+		for( int x = 0; x < tuners.size(); x++ )
+		{
+			Tuner tuner = tuners.get( x );
+			TunerController controller = tuner.getTunerController();
+			
+			SortedSet<TunerChannel> channels = new TreeSet<>( allocations.get( x ) );
+			channels.add( channel );
+			
+			if( getCenterFrequency( controller, channels ) != NO_FREQUENCY )
+			{
+				List<long[]> coverage = new ArrayList<>();
+				
+				for( int y = 0; y < tuners.size(); y++ )
+				{
+					long[] range = getCoverage( tuners.get( y ).getTunerController(), 
+							y == x ? channels : allocations.get( y ) );
+					
+					if( range != null )
+					{
+						coverage.add( range );
+					}
+				}
+				
+				int disrupted = 0;
+				
+				try
+				{
+					if( controller.requiresLOUpdate( channel ) )
+					{
+						disrupted = allocations.get( x ).size();
+					}
+				}
+				catch( SourceException se )
+				{
+					disrupted = allocations.get( x ).size();
+				}
+				
+				candidates.add( new Allocation( tuner, x, 
+					getMeasure( coverage, regionMinimum, regionMaximum ), disrupted ) );
+			}
+		}
+		
+		Collections.sort( candidates, new Comparator<Allocation>()
+		{
+			@Override
+			public int compare( Allocation first, Allocation second )
+			{
+				int comparison = Long.compare( second.mCoverage, first.mCoverage );
+				
+				if( comparison == 0 )
+				{
+					comparison = Integer.compare( first.mDisrupted, second.mDisrupted );
+				}
+				
+				if( comparison == 0 )
+				{
+					comparison = Integer.compare( first.mOrder, second.mOrder );
+				}
+				
+				return comparison;
+			}
+		} );
+		
+		List<Tuner> planned = new ArrayList<>();
+		
+		for( Allocation allocation: candidates )
+		{
+			planned.add( allocation.mTuner );
+		}
+		
+		if( mLog.isDebugEnabled() && !candidates.isEmpty() )
+		{
+			Allocation best = candidates.get( 0 );
+			
+			mLog.debug( "Planned " + channel + " on tuner [" + 
+				best.mTuner.getName() + "] coverage [" + best.mCoverage + 
+				"] disrupted channels [" + best.mDisrupted + "] of [" + 
+				candidates.size() + "] candidate tuners" );
+		}
+		
+		return planned;
+	}
+
+	/**
+	 * Calculates a center frequency for the tuner that accommodates all of the
+	 * channels within the usable bandwidth, without any channel overlapping
+	 * the central DC spike region.
+	 * 
+	 * @param controller for the tuner
+	 * @param channels sorted set of channels to accommodate
+	 * @return center frequency closest to the middle of the channel span, or
+	 * NO_FREQUENCY if the channels can't be accommodated by the tuner.
+	 */
+	public static long getCenterFrequency( TunerController controller, 
+										   SortedSet<TunerChannel> channels )
+	{
+		if( channels.isEmpty() )
+		{
+			return NO_FREQUENCY;
+		}
+		
+		long minimum = channels.first().getMinFrequency();
+		long maximum = channels.last().getMaxFrequency();
+
+		/* Channels must be within the tunable frequency range */
+		if( minimum <= controller.getMinFrequency() || 
+			maximum >= controller.getMaxFrequency() )
+		{
+			return NO_FREQUENCY;
+		}
+		
+		int half = controller.getUsableBandwidth() / 2;
+		int middleUnusable = controller.getMiddleUnusable();
+		
+		if( controller.isFixedFrequency() )
+		{
+			long frequency = controller.getFrequency();
+			
+			return fits( frequency, half, middleUnusable, channels ) ? 
+					frequency : NO_FREQUENCY;
+		}
+
+		/* Range of center frequencies that place every channel within the 
+		 * usable bandwidth */
+		long lowest = Math.max( maximum - half, controller.getMinFrequency() );
+		long highest = Math.min( minimum + half, controller.getMaxFrequency() );
+		
+		if( lowest > highest )
+		{
+			return NO_FREQUENCY;
+		}
+		
+		long preferred = minimum + ( ( maximum - minimum ) / 2 );
+		
+		preferred = Math.min( Math.max( preferred, lowest ), highest );
+		
+		if( middleUnusable == 0 )
+		{
+			return preferred;
+		}
+		
+		/* Candidates are the preferred frequency and each edge of the DC spike
+		 * region around each channel */
+		long best = NO_FREQUENCY;
+		
+		List<Long> candidates = new ArrayList<>();
+		candidates.add( preferred );
+		
+		for( TunerChannel channel: channels )
+		{
+			candidates.add( channel.getMinFrequency() - middleUnusable - 1 );
+			candidates.add( channel.getMaxFrequency() + middleUnusable + 1 );
+		}
+		
+		for( long candidate: candidates )
+		{
+			if( lowest <= candidate && candidate <= highest &&
+				fits( candidate, half, middleUnusable, channels ) &&
+				( best == NO_FREQUENCY || 
+				  Math.abs( candidate - preferred ) < Math.abs( best - preferred ) ) )
+			{
+				best = candidate;
+			}
+		}
+		
+		return best;
+	}
+	
+	/**
+	 * Indicates if all of the channels fit within the usable bandwidth around
+	 * the center frequency without overlapping the central DC spike region
+	 */
+	private static boolean fits( long frequency, int half, int middleUnusable, 
+								 Collection<TunerChannel> channels )
+	{
+		for( TunerChannel channel: channels )
+		{
+			if( channel.getMinFrequency() < frequency - half ||
+				channel.getMaxFrequency() > frequency + half )
+			{
+				return false;
+			}
+			
+			if( middleUnusable > 0 && channel.overlaps( 
+					frequency - middleUnusable, frequency + middleUnusable ) )
+			{
+				return false;
+			}
+		}
+		
+		return true;
+	}
+	
+	/**
+	 * Range of frequencies where the tuner can still accommodate a channel,
+	 * along with the channels, or null if the tuner has no coverage.
+	 */
+	private static long[] getCoverage( TunerController controller, 
+									   SortedSet<TunerChannel> channels )
+	{
+		long minimum = controller.getMinFrequency();
+		long maximum = controller.getMaxFrequency();
+		
+		int usable = controller.getUsableBandwidth();
+		
+		if( controller.isFixedFrequency() )
+		{
+			minimum = Math.max( minimum, controller.getFrequency() - ( usable / 2 ) );
+			maximum = Math.min( maximum, controller.getFrequency() + ( usable / 2 ) );
+		}
+		else if( !channels.isEmpty() )
+		{
+			minimum = Math.max( minimum, channels.last().getMaxFrequency() - usable );
+			maximum = Math.min( maximum, channels.first().getMinFrequency() + usable );
+		}
+		
+		return minimum < maximum ? new long[] { minimum, maximum } : null;
+	}
+
+	/**
+	 * Measures the union of the frequency ranges within the region
+	 */
+	private static long getMeasure( List<long[]> ranges, long regionMinimum, 
+									long regionMaximum )
+	{
+		Collections.sort( ranges, new Comparator<long[]>()
+		{
+			@Override
+			public int compare( long[] first, long[] second )
+			{
+				return Long.compare( first[ 0 ], second[ 0 ] );
+			}
+		} );
+		
+		long measure = 0;
+		long covered = regionMinimum;
+		
+		for( long[] range: ranges )
+		{
+			long start = Math.max( range[ 0 ], covered );
+			long end = Math.min( range[ 1 ], regionMaximum );
+			
+			if( start < end )
+			{
+				measure += end - start;
+				covered = end;
+			}
+		}
+		
+		return measure;
+	}
+	
+	private static class Allocation
+	{
+		private Tuner mTuner;
+		private int mOrder;
+		private long mCoverage;
+		private int mDisrupted;
+		
+		public Allocation( Tuner tuner, int order, long coverage, int disrupted )
+		{
+			mTuner = tuner;
+			mOrder = order;
+			mCoverage = coverage;
+			mDisrupted = disrupted;
+		}
+	}
+}
@@ -19,7 +19,6 @@ package source.tuner;
 
 import java.util.ArrayList;
 import java.util.List;
-import java.util.concurrent.LinkedTransferQueue;
 import java.util.concurrent.RejectedExecutionException;
 import java.util.concurrent.ScheduledExecutorService;
 import java.util.concurrent.ScheduledFuture;
@@ -42,6 +41,10 @@ import dsp.filter.FilterFactory;
 import dsp.filter.Window.WindowType;
 import dsp.filter.cic.ComplexPrimeCICDecimate;
 import dsp.mixer.Oscillator;
+import controller.pipeline.ChannelPipelineManager;
+import controller.pipeline.HandOffQueue;
+import instrument.metrics.StageMetrics;
+import buffer.SPSCRingBuffer;
 
 public class TunerChannelSource extends ComplexSource
 		 implements IFrequencyChangeProcessor, Listener<ComplexBuffer>
@@ -52,8 +55,8 @@ public class TunerChannelSource extends ComplexSource
 	private static int CHANNEL_RATE = 48000;
 	private static int CHANNEL_PASS_FREQUENCY = 12000;
 	
-	private LinkedTransferQueue<ComplexBuffer> mBuffer =
-							new LinkedTransferQueue<ComplexBuffer>();
+	private SPSCRingBuffer<ComplexBuffer> mBuffer = 
+							TunerController.createSampleBuffer();
 	private Tuner mTuner;
 	private TunerChannel mTunerChannel;
 	private Oscillator mMixer;
@@ -61,6 +64,8 @@ public class TunerChannelSource extends ComplexSource
 	private Listener<ComplexBuffer> mListener;
 	private IFrequencyChangeProcessor mFrequencyChangeProcessor;
 	private ScheduledFuture<?> mTaskHandle;
+	private HandOffQueue<ComplexBuffer> mHandOffQueue;
+	private StageMetrics mMetrics;
 
 	private long mTunerFrequency = 0;
 	private int mTunerSampleRate;
@@ -122,9 +127,31 @@ public class TunerChannelSource extends ComplexSource
 		
 		if( mRunning.compareAndSet( false, true ))
 		{
-			/* Schedule the decimation task to run every 10 ms (100 iterations/second) */
-		    mTaskHandle = executor.scheduleAtFixedRate( mDecimationProcessor, 
-		    		0, 10, TimeUnit.MILLISECONDS );
+			ChannelPipelineManager pipeline = ChannelPipelineManager.getInstance();
+			
+			if( pipeline.isEnabled() )
+			{
+				/* Decimate each tuner buffer on a carrier thread (or the tuner 
+				 * worker, with tuner affinity scheduling) as it arrives */
+				mHandOffQueue = pipeline.createHandOffQueue( executor, 
+						new Listener<ComplexBuffer>()
+				{
+					@Override
+					public void receive( ComplexBuffer buffer )
+					{
+						mDecimationProcessor.process( buffer );
+					}
+				} );
+				
+				mHandOffQueue.setMetrics( mMetrics );
+				mHandOffQueue.start();
+			}
+			else
+			{
+				/* Schedule the decimation task to run every 10 ms (100 iterations/second) */
+			    mTaskHandle = executor.scheduleAtFixedRate( mDecimationProcessor, 
+			    		0, 10, TimeUnit.MILLISECONDS );
+			}
 
 		    /* Finally, register to receive samples from the tuner */
 			mTuner.addListener( (Listener<ComplexBuffer>)this );
@@ -154,6 +181,11 @@ public class TunerChannelSource extends ComplexSource
 				mTaskHandle = null;
 			}
 			
+			if( mHandOffQueue != null )
+			{
+				mHandOffQueue.stop();
+			}
+			
 			mBuffer.clear();
 			
 			mExpended = true;
@@ -193,12 +225,53 @@ public class TunerChannelSource extends ComplexSource
 		return mTunerChannel;
 	}
 	
+	/**
+	 * Number of tuner sample buffers waiting to be decimated
+	 */
+	public int getBufferCount()
+	{
+		SPSCRingBuffer<ComplexBuffer> buffer = mBuffer;
+		HandOffQueue<ComplexBuffer> handOffQueue = mHandOffQueue;
+		
+		if( handOffQueue != null )
+		{
+			return handOffQueue.size();
+		}
+		
+		return buffer != null ? buffer.size() : 0;
+	}
+	
+	/**
+	 * Sets the metrics that count buffers received from the tuner, decimated
+	 * samples produced, decimation time and queue depth.  Set the metrics 
+	 * before registering the sample listener.
+	 */
+	public void setMetrics( StageMetrics metrics )
+	{
+		mMetrics = metrics;
+	}
+
 	@Override
     public void receive( ComplexBuffer buffer )
     {
 		if( mRunning.get() )
 		{
-			mBuffer.add( buffer );
+			StageMetrics metrics = mMetrics;
+
+			if( metrics != null )
+			{
+				metrics.received( buffer.getSamples().length );
+			}
+
+			if( mHandOffQueue != null )
+			{
+				mHandOffQueue.receive( buffer );
+			}
+			else if( !mBuffer.offer( buffer ) && metrics != null )
+			{
+				/* Overflow - the oldest or this buffer was dropped */
+				metrics.dropped( 1 );
+			}
 		}
     }
 
@@ -212,9 +285,9 @@ public class TunerChannelSource extends ComplexSource
 	{
 		/* Save a pointer to the listener so that if we have to change the 
 		 * decimation filter, we can re-add the listener */
-		mListener = listener;
+		mListener = mMetrics != null ? mMetrics.output( listener ) : listener;
 		
-		mDecimationFilter.setListener( listener );
+		mDecimationFilter.setListener( mListener );
 	}
 
 	@Override
@@ -319,6 +392,66 @@ public class TunerChannelSource extends ComplexSource
 			mProcessing = false;
 		}
 		
+		/**
+		 * Decimates a single tuner buffer as it is handed off from the tuner,
+		 * for pipelined channel execution
+		 */
+		public void process( Buffer buffer )
+		{
+			if( mProcessing )
+			{
+				StageMetrics metrics = mMetrics;
+				
+				if( metrics != null )
+				{
+					metrics.begin();
+				}
+				
+				try
+				{
+					decimate( buffer );
+				}
+				finally
+				{
+					if( metrics != null )
+					{
+						metrics.end();
+					}
+				}
+			}
+		}
+		
+		/**
+		 * Translates the buffer to baseband and sends it to the decimation 
+		 * filter
+		 */
+		private void decimate( Buffer buffer )
+		{
+			float[] samples = buffer.getSamples();
+
+			/* We make a copy of the buffer so that we don't affect
+			 * anyone else that is using the same buffer, like other
+			 * channels or the spectral display */
+			float[] translated = new float[ samples.length ];
+			
+			/* Perform frequency translation */
+			for( int x = 0; x < samples.length; x += 2 )
+			{
+				mMixer.rotate();
+				
+				translated[ x ] = Complex.multiplyInphase( 
+					samples[ x ], samples[ x + 1 ], mMixer.inphase(), mMixer.quadrature() );
+
+				translated[ x + 1 ] = Complex.multiplyQuadrature( 
+						samples[ x ], samples[ x + 1 ], mMixer.inphase(), mMixer.quadrature() );
+			}
+			
+			if( mProcessing && mDecimationFilter != null )
+			{
+				mDecimationFilter.receive( new ComplexBuffer( translated ) );
+			}
+		}
+		
 		@Override
         public void run()
         {
@@ -329,11 +462,18 @@ public class TunerChannelSource extends ComplexSource
 			{
 				if( mProcessing )
 				{
+					StageMetrics metrics = mMetrics;
+
+					mBuffer.drainTo( mSampleBuffers, 8 );
+
+					if( metrics != null )
+					{
+						metrics.setQueueDepth( mBuffer.size() + mSampleBuffers.size() );
+						metrics.begin();
+					}
+
+					try
 					{
-//						long start = System.currentTimeMillis();
-						
-						mBuffer.drainTo( mSampleBuffers, 8 );
-				
 						for( Buffer buffer: mSampleBuffers )
 						{
 							/* Check to see if we've been shutdown */
@@ -344,36 +484,19 @@ public class TunerChannelSource extends ComplexSource
 							}
 							else
 							{
-								float[] samples = buffer.getSamples();
-
-								/* We make a copy of the buffer so that we don't affect
-								 * anyone else that is using the same buffer, like other
-								 * channels or the spectral display */
-								float[] translated = new float[ samples.length ];
-								
-								/* Perform frequency translation */
-								for( int x = 0; x < samples.length; x += 2 )
-								{
-									mMixer.rotate();
-									
-									translated[ x ] = Complex.multiplyInphase( 
-										samples[ x ], samples[ x + 1 ], mMixer.inphase(), mMixer.quadrature() );
-
-									translated[ x + 1 ] = Complex.multiplyQuadrature( 
-											samples[ x ], samples[ x + 1 ], mMixer.inphase(), mMixer.quadrature() );
-								}
-								
-								if( mProcessing && mDecimationFilter != null )
-								{
-									mDecimationFilter.receive( new ComplexBuffer( translated ) );
-								}
+								decimate( buffer );
 							}
 						}
-						
-//						mLog.debug( "Processed [" + mSampleBuffers.size() + "] in " + ( System.currentTimeMillis() - start  ) );
-						
-						mSampleBuffers.clear();
 					}
+					finally
+					{
+						if( metrics != null )
+						{
+							metrics.end();
+						}
+					}
+
+					mSampleBuffers.clear();
 				}
 			}
 			catch( Exception e )
@@ -17,26 +17,41 @@
  ******************************************************************************/
 package source.tuner;
 
+import java.util.Collections;
 import java.util.SortedSet;
+import java.util.TreeSet;
 import java.util.concurrent.ConcurrentSkipListSet;
 import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
 
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import properties.SystemProperties;
 import source.SourceException;
+import source.tuner.affinity.TunerAffinityManager;
 import source.tuner.configuration.TunerConfiguration;
 import source.tuner.frequency.FrequencyChangeEvent;
 import source.tuner.frequency.FrequencyChangeEvent.Event;
 import source.tuner.frequency.FrequencyController;
 import source.tuner.frequency.FrequencyController.Tunable;
 import source.tuner.frequency.IFrequencyChangeProcessor;
+import controller.ThreadPoolManager;
+import controller.ThreadPoolManager.ThreadType;
+import buffer.SPSCRingBuffer;
+import buffer.SPSCRingBuffer.OverflowPolicy;
 
 public abstract class TunerController implements Tunable, IFrequencyChangeProcessor
 {
 	private final static Logger mLog = 
 			LoggerFactory.getLogger( TunerController.class );
 
+	/* Sample buffer hand-off queue settings (application properties) */
+	public static final String SAMPLE_BUFFER_CAPACITY_PROPERTY = "sample.buffer.capacity";
+	public static final String SAMPLE_BUFFER_OVERFLOW_PROPERTY = "sample.buffer.overflow.policy";
+	public static final int DEFAULT_SAMPLE_BUFFER_CAPACITY = 64;
+
 	/* List of currently tuned channels being served to demod channels */
 	private SortedSet<TunerChannel> mTunedChannels = new ConcurrentSkipListSet<>();
 	protected FrequencyController mFrequencyController;
@@ -154,44 +169,25 @@ public abstract class TunerController implements Tunable, IFrequencyChangeProces
 	 */
 	private boolean canTune( TunerChannel channel )
 	{
-		//Make sure we're within the tunable frequency range of this tuner
-		if( getMinFrequency() < channel.getMinFrequency() &&
-			getMaxFrequency() > channel.getMaxFrequency() )
-		{
-			//If this is the first lock, then we're good
-			if( mTunedChannels.isEmpty() )
-			{
-				return true;
-			}
-			else
-			{
-				int usableBandwidth = getUsableBandwidth();
-				long minLockedFrequency = mTunedChannels.first().getMinFrequency();
-				long maxLockedFrequency = mTunedChannels.last().getMaxFrequency();
+		SortedSet<TunerChannel> channels = new TreeSet<>( mTunedChannels );
+		channels.add( channel );
+		
+		return TunerAllocationPlanner.getCenterFrequency( this, channels ) != 
+				TunerAllocationPlanner.NO_FREQUENCY;
+	}
 
-				//Requested channel is within current locked channel frequency range
-				if( minLockedFrequency <= channel.getMinFrequency() &&
-					channel.getMaxFrequency() <= maxLockedFrequency )
-				{
-					return true;
-				}
-				
-				//Requested channel is higher than min locked frequency
-				if( channel.getMaxFrequency() > minLockedFrequency &&
-					channel.getMaxFrequency() - minLockedFrequency <= usableBandwidth )
-				{
-					return true;
-				}
-				//Requested channel is lower than the max locked frequency
-				if( channel.getMinFrequency() <= maxLockedFrequency && 
-					maxLockedFrequency - channel.getMinFrequency() <= usableBandwidth )
-				{
-					return true;
-				}
-			}
-		}
+	/**
+	 * Indicates if the channel could be sourced from this tuner once the
+	 * released channel, currently sourced from this tuner, is released.
+	 */
+	public boolean canTune( TunerChannel channel, TunerChannel released )
+	{
+		SortedSet<TunerChannel> channels = new TreeSet<>( mTunedChannels );
+		channels.remove( released );
+		channels.add( channel );
 		
-		return false;
+		return TunerAllocationPlanner.getCenterFrequency( this, channels ) != 
+				TunerAllocationPlanner.NO_FREQUENCY;
 	}
 
 	/**
@@ -245,11 +241,55 @@ public abstract class TunerController implements Tunable, IFrequencyChangeProces
 		return mTunedChannels.size();
 	}
 
+	/**
+	 * Reserves tuner bandwidth for the channel without sourcing the channel,
+	 * so that the LO frequency is only changed in ways that keep the channel
+	 * within the tuner bandwidth.  Retunes the LO, if needed, to accommodate
+	 * the channel.  Release the reservation with releaseReservation().
+	 * 
+	 * @return true if the channel is reserved, or false if the channel can't 
+	 * be accommodated along with the currently sourced channels
+	 */
+	public boolean reserveChannel( TunerChannel channel )
+	{
+		if( canTune( channel ) )
+		{
+			try
+			{
+				mTunedChannels.add( channel );
+
+				if( requiresLOUpdate( channel ) )
+				{
+					updateLOFrequency();
+				}
+
+				return true;
+			}
+			catch( SourceException se )
+			{
+				mTunedChannels.remove( channel );
+			}
+		}
+
+		return false;
+	}
+
+	/**
+	 * Releases a channel reserved with reserveChannel()
+	 */
+	public void releaseReservation( TunerChannel channel )
+	{
+		if( channel != null )
+		{
+			mTunedChannels.remove( channel );
+		}
+	}
+
 	/**
 	 * Indicates if the tuner's LO frequency must be updated in order to 
 	 * accomodate the tuner channel
 	 */
-	private boolean requiresLOUpdate( TunerChannel channel ) throws SourceException
+	boolean requiresLOUpdate( TunerChannel channel ) throws SourceException
 	{
 		return !( getMinTunedFrequency() <= channel.getMinFrequency() &&
 				  channel.getMaxFrequency() <= getMaxTunedFrequency() &&
@@ -271,18 +311,10 @@ public abstract class TunerController implements Tunable, IFrequencyChangeProces
 	}
 	
 	/**
-	 * Sets the Local Oscillator frequency accomodate the current set of tuned
-	 * channels.  
-	 * 
-	 * If there is only a single tuned channel, it is placed immediately to the
-	 * right of the usable bandwidth right of the central DC spike.
-	 * 
-	 * Otherwise, it places the highest channel frequency at the upper end of
-	 * the tuner bandwidth, and then iteratively moves the center frequency 
-	 * higher until all channels fit within the bandwidth and none of the
-	 * channels overlap any defined central DC spike unusable region.  If a 
-	 * center tune frequency cannot be calculated, throw an exception so that 
-	 * the most recently added channel can be removed.
+	 * Sets the Local Oscillator frequency to accomodate the current set of 
+	 * tuned channels.  The allocation planner places the center frequency as
+	 * close as possible to the middle of the tuned channels without any of the
+	 * channels overlapping the central DC spike unusable region.  
 	 * 
 	 * Note: the tuned frequency is not changed until a legitimate new frequency
 	 * can be calculated.  If an exception is thrown, the current frequency is
@@ -295,66 +327,10 @@ public abstract class TunerController implements Tunable, IFrequencyChangeProces
 	 */
 	private void updateLOFrequency() throws SourceException
 	{
-		long frequency = getFrequency();
-		
-		boolean frequencyValid = true;
-
-		//If there is only 1 channel, position it to the right of center
-		if( mTunedChannels.size() == 1 )
-		{
-			frequency = mTunedChannels.first().getMinFrequency() - mMiddleUnusable;
-		}
-		else
-		{
-			long minLockedFrequency = mTunedChannels.first().getMinFrequency();
-			long maxLockedFrequency = mTunedChannels.last().getMaxFrequency();
-
-			//Start by placing the highest frequency channel at the high end of
-			//the spectrum
-			frequency = maxLockedFrequency - ( getUsableBandwidth() / 2 );
-
-			//Iterate the channels and make sure that none of them overlap the
-			//center DC spike buffer, if one exists
-			if( mMiddleUnusable > 0 )
-			{
-				boolean processingRequired = true;
-				
-				while( frequencyValid && processingRequired )
-				{
-					processingRequired = false;
-					
-					long minAvoid = frequency - mMiddleUnusable;
-					long maxAvoid = frequency + mMiddleUnusable;
-
-					for( TunerChannel channel: mTunedChannels )
-					{
-						if( channel.overlaps( minAvoid, maxAvoid ) )
-						{
-							//Can we move the frequency lower so that the
-							//channel sits to the right of center?
-							long adjustment = channel.getMaxFrequency() - minAvoid;
-
-							if( frequency + adjustment - 
-								( getUsableBandwidth() / 2 ) <= minLockedFrequency )
-							{
-								frequency += adjustment;
-								processingRequired = true;
-							}
-							else
-							{
-								frequencyValid = false;
-							}
-							
-							//break out of the for/each loop, so that we can 
-							//start over again with all of the channels
-							break;
-						}
-					}
-				}
-			}
-		}
+		long frequency = TunerAllocationPlanner.getCenterFrequency( this, 
+				new TreeSet<>( mTunedChannels ) );
 
-		if( frequencyValid )
+		if( frequency != TunerAllocationPlanner.NO_FREQUENCY )
 		{
 			mFrequencyController.setFrequency( frequency );
 		}
@@ -369,10 +345,35 @@ public abstract class TunerController implements Tunable, IFrequencyChangeProces
 	 * Usable bandwidth - total bandwidth minus the unusable space at either end
 	 * of the spectrum.
 	 */
-	private int getUsableBandwidth()
+	public int getUsableBandwidth()
 	{
 		return (int)( getBandwidth() * mUsableBandwidthPercentage );
 	}
+	
+	/**
+	 * Central DC spike region (+/- hertz) where channels can't be placed
+	 */
+	public int getMiddleUnusable()
+	{
+		return mMiddleUnusable;
+	}
+	
+	/**
+	 * Indicates if the center frequency of this tuner is fixed and can't be
+	 * changed to accommodate channels, like a replayed recording.
+	 */
+	public boolean isFixedFrequency()
+	{
+		return false;
+	}
+	
+	/**
+	 * Currently sourced tuner channels
+	 */
+	public SortedSet<TunerChannel> getTunedChannels()
+	{
+		return Collections.unmodifiableSortedSet( mTunedChannels );
+	}
 
 	/**
 	 * Sets the listener to be notified any time that the tuner changes frequency
@@ -393,4 +394,80 @@ public abstract class TunerController implements Tunable, IFrequencyChangeProces
     {
     	mFrequencyController.removeFrequencyChangeProcessor( processor );
     }
+
+    /**
+     * Schedules the task that converts and dispatches filled sample buffers to
+     * the registered listeners.  With tuner affinity scheduling enabled, the 
+     * task runs on this tuner's worker group, otherwise on the thread pool.
+     */
+    protected ScheduledFuture<?> scheduleDispatcher( ThreadPoolManager threadPoolManager,
+    		Runnable dispatcher, long period, TimeUnit unit )
+    {
+    	TunerAffinityManager affinity = TunerAffinityManager.getInstance();
+    	
+    	if( affinity.isEnabled() )
+    	{
+    		return affinity.getWorkerGroup( this )
+    				.scheduleDispatcher( dispatcher, period, unit );
+    	}
+    	
+    	return threadPoolManager.scheduleFixedRate( 
+    			ThreadType.SOURCE_SAMPLE_PROCESSING, dispatcher, period, unit );
+    }
+    
+    /**
+     * Cancels the sample buffer dispatcher task
+     */
+    protected void cancelDispatcher( ThreadPoolManager threadPoolManager, 
+    		ScheduledFuture<?> task )
+    {
+    	TunerAffinityManager affinity = TunerAffinityManager.getInstance();
+    	
+    	if( affinity.isEnabled() )
+    	{
+    		affinity.getWorkerGroup( this ).cancelDispatcher( task );
+    	}
+    	else
+    	{
+    		threadPoolManager.cancel( task );
+    	}
+    }
+
+	/**
+	 * Creates a bounded queue for handing off sample buffers between threads,
+	 * sized by the sample.buffer.capacity property (default 64 buffers) with
+	 * the sample.buffer.overflow.policy property (DROP_OLDEST, DROP_NEWEST or
+	 * BLOCK, default DROP_OLDEST).
+	 */
+	public static <T> SPSCRingBuffer<T> createSampleBuffer()
+	{
+		int capacity = SystemProperties.getInstance().get( 
+				SAMPLE_BUFFER_CAPACITY_PROPERTY, DEFAULT_SAMPLE_BUFFER_CAPACITY );
+		
+		return new SPSCRingBuffer<T>( capacity, getSampleBufferOverflowPolicy() );
+	}
+	
+	/**
+	 * Overflow policy for sample buffer hand-off queues, from the 
+	 * sample.buffer.overflow.policy property (default DROP_OLDEST)
+	 */
+	public static OverflowPolicy getSampleBufferOverflowPolicy()
+	{
+		return OverflowPolicy.fromName( SystemProperties.getInstance().get( 
+			SAMPLE_BUFFER_OVERFLOW_PROPERTY, OverflowPolicy.DROP_OLDEST.name() ), 
+			OverflowPolicy.DROP_OLDEST );
+	}
+	
+	/**
+	 * Logs a sample buffer overflow, once for every 100 dropped buffers
+	 */
+	protected void logOverflow( SPSCRingBuffer<?> buffer )
+	{
+		if( buffer.getDroppedCount() % 100 == 1 )
+		{
+			mLog.warn( getClass().getSimpleName() + " sample buffer overflow - "
+				+ "dispatcher can't keep up - dropped [" + 
+				buffer.getDroppedCount() + "] buffers" );
+		}
+	}
 }
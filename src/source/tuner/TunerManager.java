@@ -82,6 +82,8 @@ public class TunerManager
 		{
 			mLog.error( "unable to initialize libusb [" + 
 						LibUsb.errorName( result ) + "]" );
+
+			return;
 		}
 		else
 		{
@@ -94,6 +96,9 @@ public class TunerManager
 			{
 				mLog.error( "unable to get device list from libusb [" + result + " / " + 
 							LibUsb.errorName( result ) + "]" );
+
+				/* The device list isn't allocated - nothing to iterate or free */
+				return;
 			}
 			else
 			{
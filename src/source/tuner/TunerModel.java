@@ -1,9 +1,12 @@
 package source.tuner;
 
+import java.io.IOException;
 import java.text.DecimalFormat;
 import java.util.ArrayList;
 import java.util.Iterator;
 import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.RejectedExecutionException;
 
 import javax.swing.table.AbstractTableModel;
@@ -11,6 +14,8 @@ import javax.swing.table.AbstractTableModel;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import record.RecorderManager;
+import record.raw.RawIQRecorder;
 import sample.Listener;
 import source.Source;
 import source.SourceException;
@@ -32,10 +37,12 @@ public class TunerModel extends AbstractTableModel implements Listener<TunerEven
 	public static final int CHANNEL_COUNT = 4;
 	public static final int SPECTRAL_DISPLAY_MAIN = 5;
 	public static final int SPECTRAL_DISPLAY_NEW = 6;
+	public static final int RECORD = 7;
 	
 	private static final String MHZ = " MHz";
 	private static final String[] COLUMNS = 
-		{ "Tuner", "ID", "Sample Rate", "Frequency", "Channels", "Spectral", "Display" };
+		{ "Tuner", "ID", "Sample Rate", "Frequency", "Channels", "Spectral", 
+		  "Display", "Record" };
 	
 	private List<Tuner> mTuners = new ArrayList<>();
 	private List<Listener<TunerEvent>> mTunerEventListeners = new ArrayList<>();
@@ -43,10 +50,14 @@ public class TunerModel extends AbstractTableModel implements Listener<TunerEven
 	private DecimalFormat mSampleRateFormat = new DecimalFormat( "0.000" );
 	
 	private TunerConfigurationModel mTunerConfigurationModel;
+	private RecorderManager mRecorderManager;
+	private Map<Tuner,RawIQRecorder> mRecorders = new ConcurrentHashMap<>();
 
-	public TunerModel( TunerConfigurationModel tunerConfigurationModel )
+	public TunerModel( TunerConfigurationModel tunerConfigurationModel,
+					   RecorderManager recorderManager )
 	{
 		mTunerConfigurationModel = tunerConfigurationModel;
+		mRecorderManager = recorderManager;
 	}
 	
 	public TunerConfigurationModel getTunerConfigurationModel()
@@ -103,6 +114,8 @@ public class TunerModel extends AbstractTableModel implements Listener<TunerEven
 				fireTableRowsInserted( index, index );
 				
 				tuner.addTunerChangeListener( this );
+				
+				broadcast( new TunerEvent( tuner, Event.ADD ) );
 			}
 			catch( SourceException se )
 			{
@@ -121,6 +134,8 @@ public class TunerModel extends AbstractTableModel implements Listener<TunerEven
 	{
 		if( mTuners.contains( tuner ) )
 		{
+			stopRecording( tuner );
+			
 			tuner.removeTunerChangeListener( this );
 			
 			int index = mTuners.indexOf( tuner );
@@ -128,6 +143,92 @@ public class TunerModel extends AbstractTableModel implements Listener<TunerEven
 			mTuners.remove( tuner );
 			
 			fireTableRowsDeleted( index, index );
+			
+			broadcast( new TunerEvent( tuner, Event.REMOVE ) );
+		}
+	}
+	
+	/**
+	 * Indicates if the tuner is currently producing a full-rate I/Q recording
+	 */
+	public boolean isRecording( Tuner tuner )
+	{
+		return mRecorders.containsKey( tuner );
+	}
+	
+	/**
+	 * Starts a full-rate I/Q recording of the tuner, or stops the recording 
+	 * if the tuner is already being recorded.
+	 */
+	public void toggleRecording( Tuner tuner )
+	{
+		if( isRecording( tuner ) )
+		{
+			stopRecording( tuner );
+		}
+		else
+		{
+			startRecording( tuner );
+		}
+	}
+	
+	/**
+	 * Starts a full-rate I/Q recording of the tuner
+	 */
+	public void startRecording( Tuner tuner )
+	{
+		if( mRecorderManager != null && !isRecording( tuner ) )
+		{
+			RawIQRecorder recorder = mRecorderManager.getTunerRecorder( tuner );
+
+			/* Recording can be toggled from the gui and from tuner events */
+			if( mRecorders.putIfAbsent( tuner, recorder ) != null )
+			{
+				return;
+			}
+			
+			try
+			{
+				recorder.start();
+				
+				tuner.addListener( recorder );
+			}
+			catch( IOException ioe )
+			{
+				mRecorders.remove( tuner );
+
+				mLog.error( "Couldn't start raw I/Q recording for tuner [" + 
+						tuner.getName() + "]", ioe );
+			}
+			
+			fireRecordCellUpdated( tuner );
+		}
+	}
+	
+	/**
+	 * Stops the full-rate I/Q recording of the tuner, if one is in progress
+	 */
+	public void stopRecording( Tuner tuner )
+	{
+		RawIQRecorder recorder = mRecorders.remove( tuner );
+		
+		if( recorder != null )
+		{
+			tuner.removeListener( recorder );
+			
+			recorder.stop();
+
+			fireRecordCellUpdated( tuner );
+		}
+	}
+	
+	private void fireRecordCellUpdated( Tuner tuner )
+	{
+		int index = mTuners.indexOf( tuner );
+		
+		if( index >= 0 )
+		{
+			fireTableCellUpdated( index, RECORD );
 		}
 	}
 	
@@ -180,9 +281,25 @@ public class TunerModel extends AbstractTableModel implements Listener<TunerEven
 					case FREQUENCY:
 						fireTableCellUpdated( index, FREQUENCY );
 						mTunerConfigurationModel.tunerFrequencyChanged( event.getTuner() );
+						
+						RawIQRecorder recorder = mRecorders.get( event.getTuner() );
+						
+						if( recorder != null )
+						{
+							recorder.frequencyChanged( event.getTuner()
+									.getTunerController().getFrequency() );
+						}
 						break;
 					case SAMPLE_RATE:
 						fireTableCellUpdated( index, SAMPLE_RATE );
+						
+						//A recording can't span a sample rate change
+						if( isRecording( event.getTuner() ) )
+						{
+							mLog.info( "Tuner sample rate changed - stopping raw "
+									+ "I/Q recording" );
+							stopRecording( event.getTuner() );
+						}
 						break;
 					case REQUEST_MAIN_SPECTRAL_DISPLAY:
 						fireTableCellUpdated( index, SPECTRAL_DISPLAY_MAIN );
@@ -241,6 +358,8 @@ public class TunerModel extends AbstractTableModel implements Listener<TunerEven
 					return "Main";
 				case SPECTRAL_DISPLAY_NEW:
 					return "New";
+				case RECORD:
+					return isRecording( tuner ) ? "Stop" : "Record";
 				default:
 					break;
 			}
@@ -257,7 +376,10 @@ public class TunerModel extends AbstractTableModel implements Listener<TunerEven
 	
     /**
      * Iterates current tuners to get a tuner channel source for the frequency
-     * specified in the channel config's source config object.
+     * specified in the channel config's source config object.  Tuners are 
+     * tried in the order planned by the tuner allocation planner, so that the
+     * channel is placed where it preserves the most spectrum coverage across 
+     * all tuners and disrupts the fewest active channels.
      * 
      * Returns null if no tuner can source the channel
      */
@@ -269,7 +391,9 @@ public class TunerModel extends AbstractTableModel implements Listener<TunerEven
 		
 		tunerChannel.setBandwidth( bandwidth );
 		
-		Iterator<Tuner> it = mTuners.iterator();
+		/* Try the tuners in order from the best to the worst allocation */
+		Iterator<Tuner> it = TunerAllocationPlanner
+				.plan( mTuners, tunerChannel ).iterator();
 		
 		Tuner tuner;
 		
@@ -31,6 +31,7 @@ public enum TunerType
 	HACKRF( "HackRF" ),
 	RAFAELMICRO_R820T( "R820T" ),
 	RAFAELMICRO_R828D( "R828D" ),
+	REPLAY( "I/Q Replay" ),
 	RTL2832_VARIOUS( "Generic" ),
 	UNKNOWN( "Unknown" );
 	
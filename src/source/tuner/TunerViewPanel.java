@@ -127,6 +127,18 @@ public class TunerViewPanel extends JPanel
 								Event.REQUEST_NEW_SPECTRAL_DISPLAY ) );
 					}
 				}
+				else if( column == TunerModel.RECORD )
+				{
+					int tableRow = mTunerTable.rowAtPoint( e.getPoint() );
+					int modelRow = mTunerTable.convertRowIndexToModel( tableRow );
+					
+					Tuner tuner = mTunerModel.getTuner( modelRow );
+					
+					if( tuner != null )
+					{
+						mTunerModel.toggleRecording( tuner );
+					}
+				}
 			}
 		} );
 		
@@ -134,6 +146,7 @@ public class TunerViewPanel extends JPanel
 		
 		mTunerTable.getColumnModel().getColumn( 5 ).setCellRenderer( renderer );
 		mTunerTable.getColumnModel().getColumn( 6 ).setCellRenderer( renderer );
+		mTunerTable.getColumnModel().getColumn( 7 ).setCellRenderer( renderer );
 		
 		JScrollPane listScroller = new JScrollPane( mTunerTable );
 		listScroller.setPreferredSize( new Dimension( 400, 20 ) );
@@ -171,6 +184,10 @@ public class TunerViewPanel extends JPanel
 			{
 				label.setToolTipText( "Show this tuner in a new spectral display" );
 			}
+			else if( column == TunerModel.RECORD )
+			{
+				label.setToolTipText( "Start or stop a full-rate I/Q recording of this tuner" );
+			}
 			
 			return label;
 		}
@@ -0,0 +1,123 @@
+/*******************************************************************************
+ *     SDR Trunk 
+ *     Copyright (C) 2014-2016 Dennis Sheirer
+ * 
+ *     This program is free software: you can redistribute it and/or modify
+ *     it under the terms of the GNU General Public License as published by
+ *     the Free Software Foundation, either version 3 of the License, or
+ *     (at your option) any later version.
+ * 
+ *     This program is distributed in the hope that it will be useful,
+ *     but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *     MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *     GNU General Public License for more details.
+ * 
+ *     You should have received a copy of the GNU General Public License
+ *     along with this program.  If not, see <http://www.gnu.org/licenses/>
+ ******************************************************************************/
+package source.tuner.affinity;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.regex.Pattern;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Pins the calling thread to a set of CPUs.  Java doesn't expose thread 
+ * affinity, so this uses the Linux /proc/thread-self link to find the native
+ * thread id and the taskset utility to apply the CPU list.  On other 
+ * platforms, or when taskset isn't installed, threads are left unpinned.
+ */
+public class CPUAffinity
+{
+	private final static Logger mLog = LoggerFactory.getLogger( CPUAffinity.class );
+
+	private static final Path THREAD_SELF = Paths.get( "/proc/thread-self" );
+	
+	/* CPU list in taskset format, e.g. 0-3,8,10-11 */
+	private static final Pattern CPU_LIST = 
+			Pattern.compile( "\\d+(-\\d+)?(,\\d+(-\\d+)?)*" );
+
+	private CPUAffinity()
+	{
+	}
+
+	/**
+	 * Indicates if the CPU list is in a valid taskset list format
+	 */
+	public static boolean isValid( String cpus )
+	{
+		return cpus != null && CPU_LIST.matcher( cpus ).matches();
+	}
+	
+	/**
+	 * Pins the calling thread to the CPU list
+	 * 
+	 * @param cpus - CPU list, e.g. 0-3,8
+	 * @return true if the thread was pinned
+	 */
+	public static boolean pin( String cpus )
+	{
+		if( !isValid( cpus ) )
+		{
+			mLog.warn( "Invalid CPU list [" + cpus + "] - thread [" + 
+				Thread.currentThread().getName() + "] will not be pinned" );
+			
+			return false;
+		}
+		
+		if( !Files.isSymbolicLink( THREAD_SELF ) )
+		{
+			mLog.warn( "CPU pinning is only supported on Linux - thread [" + 
+				Thread.currentThread().getName() + "] will not be pinned" );
+			
+			return false;
+		}
+		
+		try
+		{
+			/* Link target is [pid]/task/[tid] */
+			String tid = Files.readSymbolicLink( THREAD_SELF )
+					.getFileName().toString();
+			
+			Process process = new ProcessBuilder( "taskset", "-p", "-c", cpus, tid )
+					.redirectErrorStream( true ).start();
+
+			StringBuilder sb = new StringBuilder();
+			
+			try( InputStream in = process.getInputStream() )
+			{
+				int value;
+				
+				while( ( value = in.read() ) != -1 )
+				{
+					sb.append( (char)value );
+				}
+			}
+
+			if( process.waitFor() == 0 )
+			{
+				return true;
+			}
+
+			mLog.warn( "Couldn't pin thread [" + Thread.currentThread().getName() + 
+					"] to CPUs [" + cpus + "] - " + sb.toString().trim() );
+		}
+		catch( IOException ioe )
+		{
+			mLog.warn( "Couldn't pin thread [" + Thread.currentThread().getName() + 
+					"] to CPUs [" + cpus + "] - " + ioe.getMessage() );
+		}
+		catch( InterruptedException ie )
+		{
+			Thread.currentThread().interrupt();
+		}
+		
+		return false;
+	}
+}
@@ -0,0 +1,161 @@
+/*******************************************************************************
+ *     SDR Trunk 
+ *     Copyright (C) 2014-2016 Dennis Sheirer
+ * 
+ *     This program is free software: you can redistribute it and/or modify
+ *     it under the terms of the GNU General Public License as published by
+ *     the Free Software Foundation, either version 3 of the License, or
+ *     (at your option) any later version.
+ * 
+ *     This program is distributed in the hope that it will be useful,
+ *     but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *     MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *     GNU General Public License for more details.
+ * 
+ *     You should have received a copy of the GNU General Public License
+ *     along with this program.  If not, see <http://www.gnu.org/licenses/>
+ ******************************************************************************/
+package source.tuner.affinity;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import properties.SystemProperties;
+import source.tuner.TunerController;
+
+/**
+ * Tuner affinity scheduling.  When enabled, each tuner is given a dedicated
+ * worker group that runs the tuner's sample buffer dispatcher and all of the 
+ * tuner channel sources and processing chains sourced from the tuner, instead
+ * of the shared thread pool and a thread per processing chain.
+ * 
+ * Settings (application properties):
+ * 
+ * tuner.affinity.enabled - enables tuner affinity scheduling (default false)
+ * tuner.affinity.threads - worker threads per tuner (default 2)
+ * tuner.affinity.cpus - optional semicolon separated CPU lists, e.g. 
+ *   0-7;8-15.  Worker groups are assigned the CPU lists in the order the
+ *   groups are created, wrapping around, and their threads are pinned to the
+ *   assigned list (Linux only).
+ */
+public class TunerAffinityManager
+{
+	private final static Logger mLog = 
+			LoggerFactory.getLogger( TunerAffinityManager.class );
+
+	public static final String ENABLED_PROPERTY = "tuner.affinity.enabled";
+	public static final String THREADS_PROPERTY = "tuner.affinity.threads";
+	public static final String CPUS_PROPERTY = "tuner.affinity.cpus";
+
+	private static TunerAffinityManager sInstance;
+
+	private boolean mEnabled;
+	private int mThreads;
+	private List<String> mCPUs = new ArrayList<>();
+	private Map<TunerController,TunerWorkerGroup> mGroups = new HashMap<>();
+
+	/**
+	 * Constructs a manager.
+	 * 
+	 * @param enabled - enables tuner affinity scheduling
+	 * @param threads - worker threads per tuner
+	 * @param cpus - semicolon separated CPU lists, or null
+	 */
+	public TunerAffinityManager( boolean enabled, int threads, String cpus )
+	{
+		mEnabled = enabled;
+		mThreads = Math.max( 1, threads );
+
+		if( cpus != null )
+		{
+			for( String list: cpus.split( ";" ) )
+			{
+				list = list.trim();
+
+				if( CPUAffinity.isValid( list ) )
+				{
+					mCPUs.add( list );
+				}
+				else if( !list.isEmpty() )
+				{
+					mLog.warn( "Ignoring invalid tuner affinity CPU list [" + 
+							list + "]" );
+				}
+			}
+		}
+	}
+
+	public static synchronized TunerAffinityManager getInstance()
+	{
+		if( sInstance == null )
+		{
+			SystemProperties properties = SystemProperties.getInstance();
+
+			sInstance = new TunerAffinityManager( 
+					properties.get( ENABLED_PROPERTY, false ),
+					properties.get( THREADS_PROPERTY, 2 ),
+					properties.get( CPUS_PROPERTY, "" ) );
+		}
+
+		return sInstance;
+	}
+
+	/**
+	 * Indicates if tuner affinity scheduling is enabled
+	 */
+	public boolean isEnabled()
+	{
+		return mEnabled;
+	}
+
+	/**
+	 * Worker group for the tuner, created on first use
+	 */
+	public synchronized TunerWorkerGroup getWorkerGroup( TunerController controller )
+	{
+		TunerWorkerGroup group = mGroups.get( controller );
+
+		if( group == null )
+		{
+			int index = mGroups.size();
+
+			String cpus = mCPUs.isEmpty() ? null : mCPUs.get( index % mCPUs.size() );
+
+			group = new TunerWorkerGroup( "tuner " + ( index + 1 ), mThreads, cpus );
+
+			mGroups.put( controller, group );
+
+			mLog.info( "Created worker group [" + group.getName() + "] for tuner [" + 
+				controller.getClass().getSimpleName() + "] threads [" + mThreads + 
+				"] cpus [" + ( cpus != null ? cpus : "any" ) + "]" );
+		}
+
+		return group;
+	}
+
+	/**
+	 * Current worker groups
+	 */
+	public synchronized List<TunerWorkerGroup> getWorkerGroups()
+	{
+		return new ArrayList<>( mGroups.values() );
+	}
+
+	/**
+	 * Stops all worker groups
+	 */
+	public synchronized void shutdown()
+	{
+		for( TunerWorkerGroup group: mGroups.values() )
+		{
+			group.shutdown();
+		}
+
+		mGroups.clear();
+	}
+}
@@ -0,0 +1,205 @@
+/*******************************************************************************
+ *     SDR Trunk 
+ *     Copyright (C) 2014-2016 Dennis Sheirer
+ * 
+ *     This program is free software: you can redistribute it and/or modify
+ *     it under the terms of the GNU General Public License as published by
+ *     the Free Software Foundation, either version 3 of the License, or
+ *     (at your option) any later version.
+ * 
+ *     This program is distributed in the hope that it will be useful,
+ *     but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *     MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *     GNU General Public License for more details.
+ * 
+ *     You should have received a copy of the GNU General Public License
+ *     along with this program.  If not, see <http://www.gnu.org/licenses/>
+ ******************************************************************************/
+package source.tuner.affinity;
+
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Dedicated group of worker threads for a tuner.  The tuner's sample buffer
+ * dispatcher and the channel sources and processing chains that consume the
+ * tuner's sample buffers all run on the group's threads, so that the sample
+ * buffers stay within the caches of the CPUs that the group runs on.
+ * 
+ * Each worker is a single threaded executor.  A processing chain is assigned
+ * to a single worker while it runs, so all of a chain's tasks continue to run
+ * on one thread, and chains are spread across the workers by load.  Worker
+ * threads are optionally pinned to a CPU list.
+ */
+public class TunerWorkerGroup
+{
+	private String mName;
+	private String mCPUs;
+	private ScheduledThreadPoolExecutor[] mWorkers;
+	private int[] mAssignments;
+
+	/**
+	 * Constructs and starts a worker group
+	 * 
+	 * @param name - thread name prefix
+	 * @param threads - number of worker threads
+	 * @param cpus - CPU list to pin the worker threads to, or null
+	 */
+	public TunerWorkerGroup( String name, int threads, String cpus )
+	{
+		mName = name;
+		mCPUs = cpus;
+
+		mWorkers = new ScheduledThreadPoolExecutor[ Math.max( 1, threads ) ];
+		mAssignments = new int[ mWorkers.length ];
+
+		for( int x = 0; x < mWorkers.length; x++ )
+		{
+			ScheduledThreadPoolExecutor worker = new ScheduledThreadPoolExecutor( 
+					1, new WorkerThreadFactory( name + " worker-" + ( x + 1 ) ) );
+
+			/* Tasks are cancelled as chains stop, so don't let them pile up
+			 * in the queue of a long running worker */
+			worker.setRemoveOnCancelPolicy( true );
+			worker.prestartAllCoreThreads();
+
+			mWorkers[ x ] = worker;
+		}
+	}
+
+	public String getName()
+	{
+		return mName;
+	}
+
+	/**
+	 * CPU list the workers are pinned to, or null
+	 */
+	public String getCPUs()
+	{
+		return mCPUs;
+	}
+
+	public int getWorkerCount()
+	{
+		return mWorkers.length;
+	}
+
+	/**
+	 * Schedules the tuner's sample buffer dispatcher task on the first worker
+	 */
+	public synchronized ScheduledFuture<?> scheduleDispatcher( Runnable dispatcher, 
+			long period, TimeUnit unit )
+	{
+		mAssignments[ 0 ]++;
+
+		return mWorkers[ 0 ].scheduleAtFixedRate( dispatcher, 0, period, unit );
+	}
+
+	/**
+	 * Cancels the dispatcher task
+	 */
+	public synchronized void cancelDispatcher( ScheduledFuture<?> task )
+	{
+		task.cancel( true );
+
+		mAssignments[ 0 ] = Math.max( 0, mAssignments[ 0 ] - 1 );
+	}
+
+	/**
+	 * Assigns the least loaded worker to a processing chain.  Release the 
+	 * worker once the chain stops.
+	 */
+	public synchronized ScheduledExecutorService acquire()
+	{
+		int index = 0;
+
+		for( int x = 1; x < mWorkers.length; x++ )
+		{
+			if( mAssignments[ x ] < mAssignments[ index ] )
+			{
+				index = x;
+			}
+		}
+
+		mAssignments[ index ]++;
+
+		return mWorkers[ index ];
+	}
+
+	/**
+	 * Releases a worker assigned by acquire()
+	 */
+	public synchronized void release( ScheduledExecutorService worker )
+	{
+		for( int x = 0; x < mWorkers.length; x++ )
+		{
+			if( mWorkers[ x ] == worker )
+			{
+				mAssignments[ x ] = Math.max( 0, mAssignments[ x ] - 1 );
+			}
+		}
+	}
+
+	/**
+	 * Number of chains and dispatchers currently assigned to each worker
+	 */
+	public synchronized int[] getAssignments()
+	{
+		return mAssignments.clone();
+	}
+
+	/**
+	 * Stops the worker threads
+	 */
+	public void shutdown()
+	{
+		for( ScheduledThreadPoolExecutor worker: mWorkers )
+		{
+			worker.shutdownNow();
+		}
+	}
+
+	/**
+	 * Creates a named daemon worker thread that pins itself to the group's 
+	 * CPU list when it starts
+	 */
+	private class WorkerThreadFactory implements ThreadFactory
+	{
+		private String mThreadName;
+		private AtomicInteger mCount = new AtomicInteger();
+
+		public WorkerThreadFactory( String threadName )
+		{
+			mThreadName = threadName;
+		}
+
+		@Override
+		public Thread newThread( final Runnable runnable )
+		{
+			int count = mCount.incrementAndGet();
+			
+			Thread thread = new Thread( new Runnable()
+			{
+				@Override
+				public void run()
+				{
+					if( mCPUs != null )
+					{
+						CPUAffinity.pin( mCPUs );
+					}
+
+					runnable.run();
+				}
+			}, count == 1 ? mThreadName : mThreadName + "-" + count );
+
+			thread.setDaemon( true );
+
+			return thread;
+		}
+	}
+}
@@ -29,8 +29,8 @@ import sample.complex.ComplexBuffer;
 import source.SourceException;
 import source.tuner.TunerController;
 import source.tuner.configuration.TunerConfiguration;
+import buffer.SPSCRingBuffer;
 import controller.ThreadPoolManager;
-import controller.ThreadPoolManager.ThreadType;
 import dsp.filter.dc.DCRemovalFilter_RB;
 import dsp.filter.hilbert.HilbertTransform;
 
@@ -120,8 +120,7 @@ public class AirspyTunerController extends TunerController
 	private DeviceHandle mDeviceHandle;
 
 	private ThreadPoolManager mThreadPoolManager;
-	private LinkedTransferQueue<byte[]> mFilledBuffers = 
-			new LinkedTransferQueue<byte[]>();
+	private SPSCRingBuffer<byte[]> mFilledBuffers = createSampleBuffer();
     private Broadcaster<ComplexBuffer> mComplexBufferBroadcaster = new Broadcaster<>();
 	private int mBufferSize = 262144;
 	private BufferProcessor mBufferProcessor = new BufferProcessor();
@@ -1285,9 +1284,8 @@ public class AirspyTunerController extends TunerController
 			{
 	            prepareTransfers();
 	            
-				mSampleDispatcherTask = mThreadPoolManager.scheduleFixedRate( 
-					ThreadType.SOURCE_SAMPLE_PROCESSING, new BufferDispatcher(),
-					20, TimeUnit.MILLISECONDS );
+				mSampleDispatcherTask = scheduleDispatcher( mThreadPoolManager, 
+					new BufferDispatcher(), 20, TimeUnit.MILLISECONDS );
 
 				mLibUsbHandlerStatus = ByteBuffer.allocateDirect( 4 );
 				
@@ -1358,7 +1356,7 @@ public class AirspyTunerController extends TunerController
 			{
 				if( mSampleDispatcherTask != null )
 				{
-					mSampleDispatcherTask.cancel( true );
+					cancelDispatcher( mThreadPoolManager, mSampleDispatcherTask );
 					mFilledBuffers.clear();
 				}
 			}
@@ -1393,7 +1391,10 @@ public class AirspyTunerController extends TunerController
 		
 						if( isRunning() )
 						{
-							mFilledBuffers.add( data );
+							if( !mFilledBuffers.offer( data ) )
+							{
+								logOverflow( mFilledBuffers );
+							}
 						}
 					}
 					break;
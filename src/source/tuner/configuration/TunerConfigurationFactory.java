@@ -32,6 +32,9 @@ import source.tuner.fcd.proplusV2.FCD2TunerEditor;
 import source.tuner.hackrf.HackRFTuner;
 import source.tuner.hackrf.HackRFTunerConfiguration;
 import source.tuner.hackrf.HackRFTunerEditor;
+import source.tuner.replay.ReplayTuner;
+import source.tuner.replay.ReplayTunerConfiguration;
+import source.tuner.replay.ReplayTunerEditor;
 import source.tuner.rtl.RTL2832Tuner;
 import source.tuner.rtl.e4k.E4KTunerConfiguration;
 import source.tuner.rtl.e4k.E4KTunerEditor;
@@ -60,6 +63,8 @@ public class TunerConfigurationFactory
 				return new HackRFTunerConfiguration( uniqueID, name );
 			case RAFAELMICRO_R820T:
 				return new R820TTunerConfiguration( uniqueID, name );
+			case REPLAY:
+				return new ReplayTunerConfiguration( uniqueID, name );
 			default:
 				throw new IllegalArgumentException( "Unrecognized tuner type ["
 					+ type.name() + "] - can't create named [" + name + "] tuner"
@@ -86,6 +91,8 @@ public class TunerConfigurationFactory
 				return new HackRFTunerEditor( model, (HackRFTuner)tuner );
 			case RAFAELMICRO_R820T:
 				return new R820TTunerEditor( model, (RTL2832Tuner)tuner );
+			case REPLAY:
+				return new ReplayTunerEditor( model, (ReplayTuner)tuner );
 			case UNKNOWN:
 			default:
 				throw new IllegalArgumentException( "Unrecognized Tuner: " + tuner.getName() );
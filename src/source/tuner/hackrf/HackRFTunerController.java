@@ -83,8 +83,8 @@ import sample.complex.ComplexBuffer;
 import source.SourceException;
 import source.tuner.TunerController;
 import source.tuner.configuration.TunerConfiguration;
+import buffer.SPSCRingBuffer;
 import controller.ThreadPoolManager;
-import controller.ThreadPoolManager.ThreadType;
 
 
 public class HackRFTunerController extends TunerController
@@ -114,8 +114,7 @@ public class HackRFTunerController extends TunerController
 
 	public final static int TRANSFER_BUFFER_POOL_SIZE = 16;
 	
-	private LinkedTransferQueue<byte[]> mFilledBuffers = 
-			new LinkedTransferQueue<byte[]>();
+	private SPSCRingBuffer<byte[]> mFilledBuffers = createSampleBuffer();
 	
     private Broadcaster<ComplexBuffer> mComplexBufferBroadcaster = new Broadcaster<>();
 	
@@ -950,9 +949,8 @@ public class HackRFTunerController extends TunerController
 			{
 	            prepareTransfers();
 	            
-				mSampleDispatcherTask = mThreadPoolManager.scheduleFixedRate( 
-					ThreadType.SOURCE_SAMPLE_PROCESSING, new BufferDispatcher(),
-					20, TimeUnit.MILLISECONDS );
+				mSampleDispatcherTask = scheduleDispatcher( mThreadPoolManager, 
+					new BufferDispatcher(), 20, TimeUnit.MILLISECONDS );
 
 				mLibUsbHandlerStatus = ByteBuffer.allocateDirect( 4 );
 				
@@ -1023,7 +1021,7 @@ public class HackRFTunerController extends TunerController
 			{
 				if( mSampleDispatcherTask != null )
 				{
-					mSampleDispatcherTask.cancel( true );
+					cancelDispatcher( mThreadPoolManager, mSampleDispatcherTask );
 					mFilledBuffers.clear();
 				}
 			}
@@ -1058,7 +1056,10 @@ public class HackRFTunerController extends TunerController
 
 						if( isRunning() )
 						{
-							mFilledBuffers.add( data );
+							if( !mFilledBuffers.offer( data ) )
+							{
+								logOverflow( mFilledBuffers );
+							}
 						}
 					}
 					break;
@@ -0,0 +1,127 @@
+/*******************************************************************************
+ *     SDR Trunk 
+ *     Copyright (C) 2014-2016 Dennis Sheirer
+ * 
+ *     This program is free software: you can redistribute it and/or modify
+ *     it under the terms of the GNU General Public License as published by
+ *     the Free Software Foundation, either version 3 of the License, or
+ *     (at your option) any later version.
+ * 
+ *     This program is distributed in the hope that it will be useful,
+ *     but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *     MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *     GNU General Public License for more details.
+ * 
+ *     You should have received a copy of the GNU General Public License
+ *     along with this program.  If not, see <http://www.gnu.org/licenses/>
+ ******************************************************************************/
+package source.tuner.replay;
+
+import java.util.concurrent.RejectedExecutionException;
+
+import sample.Listener;
+import sample.complex.ComplexBuffer;
+import source.SourceException;
+import source.tuner.Tuner;
+import source.tuner.TunerChannel;
+import source.tuner.TunerChannelSource;
+import source.tuner.TunerClass;
+import source.tuner.TunerEvent;
+import source.tuner.TunerType;
+
+/**
+ * Tuner that replays a raw I/Q recording through the normal tuner channel
+ * source machinery, so that complete trunked systems can be decoded offline.
+ */
+public class ReplayTuner extends Tuner
+{
+	public ReplayTuner( ReplayTunerController controller )
+	{
+		super( "Replay " + controller.getMetadataPath().getFileName().toString(), 
+				controller );
+	}
+	
+	public ReplayTunerController getController()
+	{
+		return (ReplayTunerController)getTunerController();
+	}
+
+	public void dispose()
+	{
+		getController().dispose();
+	}
+	
+	@Override
+    public TunerClass getTunerClass()
+    {
+	    return TunerClass.REPLAY;
+    }
+
+	@Override
+    public TunerType getTunerType()
+    {
+	    return TunerType.REPLAY;
+    }
+
+	/**
+	 * Identifies the replay tuner by its recording file name
+	 */
+	@Override
+    public String getUniqueID()
+    {
+		return getController().getMetadataPath().getFileName().toString();
+    }
+
+	@Override
+	public double getSampleSize()
+	{
+		switch( getController().getMetadata().getSampleFormat() )
+		{
+			case SIGNED_8_BIT:
+				return 8.0;
+			default:
+				return 16.0;
+		}
+	}
+
+	@Override
+    public TunerChannelSource getChannel( TunerChannel channel ) 
+    		throws RejectedExecutionException, SourceException
+    {
+		TunerChannelSource source = getController().getChannel( this, channel );
+
+		if( source != null )
+		{
+			broadcast( new TunerEvent( this, TunerEvent.Event.CHANNEL_COUNT ) );
+		}
+		
+		return source;
+    }
+
+	@Override
+    public void releaseChannel( TunerChannelSource source )
+    {
+		if( source != null )
+		{
+			/* Unregister for receiving samples */
+			removeListener( (Listener<ComplexBuffer>)source );
+			
+			/* Tell the controller to release the channel and cleanup */
+			getController().releaseChannel( source );
+
+			broadcast( new TunerEvent( this, TunerEvent.Event.CHANNEL_COUNT ) );
+		}
+    }
+
+	@Override
+	public void addListener( Listener<ComplexBuffer> listener )
+	{
+		getController().addListener( listener );
+	}
+	
+	@Override
+	public void removeListener( Listener<ComplexBuffer> listener )
+	{
+		getController().removeListener( listener );
+	}
+}
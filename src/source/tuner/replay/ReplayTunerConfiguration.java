@@ -0,0 +1,70 @@
+/*******************************************************************************
+ *     SDR Trunk 
+ *     Copyright (C) 2014-2016 Dennis Sheirer
+ * 
+ *     This program is free software: you can redistribute it and/or modify
+ *     it under the terms of the GNU General Public License as published by
+ *     the Free Software Foundation, either version 3 of the License, or
+ *     (at your option) any later version.
+ * 
+ *     This program is distributed in the hope that it will be useful,
+ *     but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *     MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *     GNU General Public License for more details.
+ * 
+ *     You should have received a copy of the GNU General Public License
+ *     along with this program.  If not, see <http://www.gnu.org/licenses/>
+ ******************************************************************************/
+package source.tuner.replay;
+
+import javax.xml.bind.annotation.XmlAttribute;
+
+import source.tuner.TunerType;
+import source.tuner.configuration.TunerConfiguration;
+import source.tuner.replay.ReplayTunerController.PlaybackMode;
+
+public class ReplayTunerConfiguration extends TunerConfiguration
+{
+	private PlaybackMode mPlaybackMode = PlaybackMode.REAL_TIME;
+	private boolean mLoop = false;
+
+	/**
+	 * Default constructor for JAXB
+	 */
+	public ReplayTunerConfiguration()
+	{
+	}
+
+	public ReplayTunerConfiguration( String uniqueID, String name )
+	{
+		super( uniqueID, name );
+	}
+
+	@Override
+    public TunerType getTunerType()
+    {
+	    return TunerType.REPLAY;
+    }
+
+	@XmlAttribute( name = "playback_mode" )
+	public PlaybackMode getPlaybackMode()
+	{
+		return mPlaybackMode;
+	}
+
+	public void setPlaybackMode( PlaybackMode mode )
+	{
+		mPlaybackMode = mode;
+	}
+
+	@XmlAttribute( name = "loop" )
+	public boolean getLoop()
+	{
+		return mLoop;
+	}
+
+	public void setLoop( boolean loop )
+	{
+		mLoop = loop;
+	}
+}
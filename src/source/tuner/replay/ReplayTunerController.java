@@ -0,0 +1,640 @@
+/*******************************************************************************
+ *     SDR Trunk 
+ *     Copyright (C) 2014-2016 Dennis Sheirer
+ * 
+ *     This program is free software: you can redistribute it and/or modify
+ *     it under the terms of the GNU General Public License as published by
+ *     the Free Software Foundation, either version 3 of the License, or
+ *     (at your option) any later version.
+ * 
+ *     This program is distributed in the hope that it will be useful,
+ *     but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *     MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *     GNU General Public License for more details.
+ * 
+ *     You should have received a copy of the GNU General Public License
+ *     along with this program.  If not, see <http://www.gnu.org/licenses/>
+ ******************************************************************************/
+package source.tuner.replay;
+
+import java.io.IOException;
+import java.nio.ByteOrder;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileChannel.MapMode;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.text.DecimalFormat;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import record.raw.RawRecordingMetadata;
+import record.raw.RawRecordingMetadata.Segment;
+import record.raw.RawRecordingMetadata.Tune;
+import record.raw.RawSampleFormat;
+import sample.Broadcaster;
+import sample.Listener;
+import sample.complex.ComplexBuffer;
+import source.SourceException;
+import source.tuner.TunerChannelSource;
+import source.tuner.TunerController;
+import source.tuner.configuration.TunerConfiguration;
+
+/**
+ * Tuner controller that replays a raw I/Q recording produced by the
+ * RawIQRecorder.  Segment files are memory-mapped and converted to complex
+ * sample buffers on a dedicated playback thread, either paced to the
+ * recording's sample rate or as fast as the registered tuner channel sources
+ * can consume them.
+ *
+ * The center frequency of a recording can't be changed.  Channels are only
+ * sourced when they fit within the recorded bandwidth, and any retunes that
+ * were captured in the recording are replayed at the recorded sample offset.
+ */
+public class ReplayTunerController extends TunerController
+{
+	private final static Logger mLog = 
+			LoggerFactory.getLogger( ReplayTunerController.class );
+
+	public static final double USABLE_BANDWIDTH_PERCENTAGE = 0.95;
+
+	/* Complex samples per dispatched buffer */
+	public static final int BUFFER_SIZE = 65536;
+
+	/* Maximum buffers queued on any channel source before fast playback waits */
+	private static final int MAXIMUM_CHANNEL_BACKLOG = 4;
+
+	private static final DecimalFormat mDecimalFormatter = 
+			new DecimalFormat( "0.00" );
+
+	private Path mMetadataPath;
+	private RawRecordingMetadata mMetadata;
+	private List<MappedByteBuffer> mSegments = new ArrayList<>();
+
+	private Broadcaster<ComplexBuffer> mComplexBufferBroadcaster = new Broadcaster<>();
+	private PlaybackProcessor mPlaybackProcessor;
+
+	private PlaybackMode mPlaybackMode = PlaybackMode.REAL_TIME;
+	private boolean mLoop = false;
+	private boolean mRecordedTuneInProgress = false;
+
+	/**
+	 * Constructs a replay tuner controller for the raw recording described by
+	 * the metadata sidecar file.
+	 * 
+	 * @param metadataPath to the xml sidecar of a raw I/Q recording
+	 * @throws SourceException if the recording can't be read or mapped
+	 */
+	public ReplayTunerController( Path metadataPath ) throws SourceException
+	{
+		this( metadataPath, load( metadataPath ) );
+	}
+
+	private ReplayTunerController( Path metadataPath, 
+								   RawRecordingMetadata metadata ) throws SourceException
+	{
+		super( getMinimumFrequency( metadata ), 
+			   getMaximumFrequency( metadata ), 
+			   0, 
+			   USABLE_BANDWIDTH_PERCENTAGE );
+
+		mMetadataPath = metadataPath;
+		mMetadata = metadata;
+
+		mapSegments();
+
+		mFrequencyController.setSampleRate( mMetadata.getSampleRate() );
+
+		setRecordedFrequency( mMetadata.getFrequency() );
+	}
+
+	/**
+	 * Loads the recording metadata from the sidecar file
+	 */
+	private static RawRecordingMetadata load( Path metadataPath ) 
+			throws SourceException
+	{
+		try
+		{
+			return RawRecordingMetadata.load( metadataPath );
+		}
+		catch( IOException ioe )
+		{
+			throw new SourceException( "Couldn't load raw I/Q recording [" + 
+					metadataPath.toString() + "]", ioe );
+		}
+	}
+
+	/**
+	 * Lowest frequency covered by the recording, including recorded retunes
+	 */
+	private static long getMinimumFrequency( RawRecordingMetadata metadata )
+	{
+		long frequency = metadata.getFrequency();
+
+		for( Tune tune: metadata.getTunes() )
+		{
+			frequency = Math.min( frequency, tune.getFrequency() );
+		}
+
+		return frequency - ( metadata.getSampleRate() / 2 );
+	}
+
+	/**
+	 * Highest frequency covered by the recording, including recorded retunes
+	 */
+	private static long getMaximumFrequency( RawRecordingMetadata metadata )
+	{
+		long frequency = metadata.getFrequency();
+
+		for( Tune tune: metadata.getTunes() )
+		{
+			frequency = Math.max( frequency, tune.getFrequency() );
+		}
+
+		return frequency + ( metadata.getSampleRate() / 2 );
+	}
+
+	/**
+	 * Memory maps each of the recording segments as read-only buffers
+	 */
+	private void mapSegments() throws SourceException
+	{
+		Path folder = mMetadataPath.toAbsolutePath().getParent();
+
+		for( Segment segment: mMetadata.getSegments() )
+		{
+			Path path = folder.resolve( segment.getFileName() );
+
+			try( FileChannel channel = FileChannel.open( path, StandardOpenOption.READ ) )
+			{
+				long length = Math.min( segment.getLength(), channel.size() );
+
+				MappedByteBuffer buffer = channel.map( MapMode.READ_ONLY, 0, length );
+				buffer.order( ByteOrder.LITTLE_ENDIAN );
+
+				mSegments.add( buffer );
+			}
+			catch( IOException ioe )
+			{
+				throw new SourceException( "Couldn't map raw I/Q recording "
+						+ "segment [" + path.toString() + "]", ioe );
+			}
+		}
+
+		if( mSegments.isEmpty() )
+		{
+			throw new SourceException( "Raw I/Q recording [" + 
+				mMetadataPath.toString() + "] doesn't contain any sample segments" );
+		}
+	}
+
+	public Path getMetadataPath()
+	{
+		return mMetadataPath;
+	}
+
+	public RawRecordingMetadata getMetadata()
+	{
+		return mMetadata;
+	}
+
+	public PlaybackMode getPlaybackMode()
+	{
+		return mPlaybackMode;
+	}
+
+	public void setPlaybackMode( PlaybackMode mode )
+	{
+		mPlaybackMode = mode;
+	}
+
+	public boolean isLoop()
+	{
+		return mLoop;
+	}
+
+	public void setLoop( boolean loop )
+	{
+		mLoop = loop;
+	}
+
+	/**
+	 * Recording duration in milliseconds
+	 */
+	public long getDuration()
+	{
+		return (long)( (double)mMetadata.getSampleCount() * 1000.0 / 
+				(double)mMetadata.getSampleRate() );
+	}
+
+	@Override
+	public void apply( TunerConfiguration config ) throws SourceException
+	{
+		if( config instanceof ReplayTunerConfiguration )
+		{
+			ReplayTunerConfiguration replayConfig = (ReplayTunerConfiguration)config;
+
+			setPlaybackMode( replayConfig.getPlaybackMode() );
+			setLoop( replayConfig.getLoop() );
+		}
+		else
+		{
+			throw new IllegalArgumentException( "Invalid tuner config:" + 
+					config.getClass() );
+		}
+	}
+
+	@Override
+	public long getTunedFrequency() throws SourceException
+	{
+		return mFrequencyController.getTunedFrequency();
+	}
+
+	@Override
+	public boolean isFixedFrequency()
+	{
+		return true;
+	}
+
+	/**
+	 * The recording can only be tuned to the frequency that was recorded
+	 */
+	@Override
+	public void setTunedFrequency( long frequency ) throws SourceException
+	{
+		if( !mRecordedTuneInProgress && 
+			frequency != mFrequencyController.getTunedFrequency() )
+		{
+			throw new SourceException( "Replay tuner can't be tuned to a "
+					+ "frequency other than the recorded center frequency" );
+		}
+	}
+
+	@Override
+	public int getCurrentSampleRate() throws SourceException
+	{
+		return mMetadata.getSampleRate();
+	}
+
+	/**
+	 * Applies a recorded center frequency, bypassing the retune restriction.
+	 */
+	private void setRecordedFrequency( long frequency ) throws SourceException
+	{
+		mRecordedTuneInProgress = true;
+
+		try
+		{
+			mFrequencyController.setFrequency( frequency );
+		}
+		finally
+		{
+			mRecordedTuneInProgress = false;
+		}
+	}
+
+	/**
+	 * Adds the sample listener.  If the playback thread is not running, 
+	 * starts the thread to begin replaying the recording.
+	 */
+	public void addListener( Listener<ComplexBuffer> listener )
+	{
+		synchronized( mComplexBufferBroadcaster )
+		{
+			mComplexBufferBroadcaster.addListener( listener );
+
+			if( mPlaybackProcessor == null || !mPlaybackProcessor.isRunning() )
+			{
+				mPlaybackProcessor = new PlaybackProcessor();
+				mPlaybackProcessor.start();
+			}
+		}
+	}
+
+	/**
+	 * Removes the sample listener.  If this is the last registered listener,
+	 * stops the playback thread.
+	 */
+	public void removeListener( Listener<ComplexBuffer> listener )
+	{
+		synchronized( mComplexBufferBroadcaster )
+		{
+			mComplexBufferBroadcaster.removeListener( listener );
+
+			if( !mComplexBufferBroadcaster.hasListeners() && 
+				mPlaybackProcessor != null )
+			{
+				mPlaybackProcessor.stop();
+			}
+		}
+	}
+
+	public void dispose()
+	{
+		if( mPlaybackProcessor != null )
+		{
+			mPlaybackProcessor.stop();
+		}
+
+		mComplexBufferBroadcaster.dispose();
+		mSegments.clear();
+	}
+
+	/**
+	 * Indicates if any of the registered tuner channel sources has a backlog
+	 * of unprocessed sample buffers.  Used to pace fast playback so that it
+	 * runs at the rate of the slowest channel instead of flooding memory.
+	 */
+	private boolean isChannelBacklogged()
+	{
+		for( Listener<ComplexBuffer> listener: 
+				mComplexBufferBroadcaster.getListeners() )
+		{
+			if( listener instanceof TunerChannelSource &&
+				((TunerChannelSource)listener).getBufferCount() > 
+					MAXIMUM_CHANNEL_BACKLOG )
+			{
+				return true;
+			}
+		}
+
+		return false;
+	}
+
+	/**
+	 * Playback thread.  Reads complex samples from the mapped segments and 
+	 * dispatches them to all registered listeners.
+	 */
+	public class PlaybackProcessor implements Runnable
+	{
+		private AtomicBoolean mRunning = new AtomicBoolean();
+
+		private RawSampleFormat mFormat = mMetadata.getSampleFormat();
+		private int mSegmentIndex;
+		private int mSegmentOffset;
+		private int mTuneIndex;
+		private long mSampleCount;
+		private long mStartTime;
+
+		public boolean isRunning()
+		{
+			return mRunning.get();
+		}
+
+		/**
+		 * Starts the playback thread.  The processor is marked as running 
+		 * before the thread starts so that a listener added in the meantime 
+		 * doesn't start a second playback thread.
+		 */
+		public void start()
+		{
+			if( mRunning.compareAndSet( false, true ) )
+			{
+				Thread thread = new Thread( this );
+				thread.setDaemon( true );
+				thread.setName( "sdrtrunk replay tuner" );
+
+				thread.start();
+			}
+		}
+
+		public void stop()
+		{
+			mRunning.set( false );
+		}
+
+		@Override
+		public void run()
+		{
+			if( mRunning.get() )
+			{
+				try
+				{
+					rewind();
+
+					while( mRunning.get() )
+					{
+						applyRecordedTunes();
+
+						float[] samples = read();
+
+						if( samples != null )
+						{
+							pace();
+
+							if( mRunning.get() )
+							{
+								mComplexBufferBroadcaster.broadcast( 
+										new ComplexBuffer( samples ) );
+							}
+						}
+						else
+						{
+							logStatistics();
+
+							if( mLoop )
+							{
+								rewind();
+							}
+							else
+							{
+								mRunning.set( false );
+							}
+						}
+					}
+				}
+				catch( InterruptedException ie )
+				{
+					mRunning.set( false );
+				}
+				catch( Exception e )
+				{
+					mRunning.set( false );
+
+					mLog.error( "Error while replaying raw I/Q recording [" + 
+							mMetadataPath.toString() + "]", e );
+				}
+			}
+		}
+
+		/**
+		 * Positions playback at the start of the recording
+		 */
+		private void rewind() throws SourceException
+		{
+			mSegmentIndex = 0;
+			mSegmentOffset = 0;
+			mTuneIndex = 0;
+			mSampleCount = 0;
+			mStartTime = System.nanoTime();
+
+			if( mFrequencyController.getFrequency() != mMetadata.getFrequency() )
+			{
+				setRecordedFrequency( mMetadata.getFrequency() );
+			}
+		}
+
+		/**
+		 * Applies any recorded center frequency changes that occurred at or
+		 * before the current sample position
+		 */
+		private void applyRecordedTunes() throws SourceException
+		{
+			List<Tune> tunes = mMetadata.getTunes();
+
+			while( mTuneIndex < tunes.size() && 
+				   tunes.get( mTuneIndex ).getSample() <= mSampleCount )
+			{
+				setRecordedFrequency( tunes.get( mTuneIndex ).getFrequency() );
+
+				mTuneIndex++;
+			}
+		}
+
+		/**
+		 * Waits as required by the playback mode before dispatching the next
+		 * buffer.  Real time playback is paced against the recording sample
+		 * rate and fast playback waits for channel sources to catch up.
+		 */
+		private void pace() throws InterruptedException
+		{
+			if( mPlaybackMode == PlaybackMode.REAL_TIME )
+			{
+				long due = (long)( (double)mSampleCount * 1E9 / 
+						(double)mMetadata.getSampleRate() );
+
+				long wait = due - ( System.nanoTime() - mStartTime );
+
+				if( wait > 1000000 )
+				{
+					Thread.sleep( wait / 1000000 );
+				}
+			}
+			else
+			{
+				while( mRunning.get() && isChannelBacklogged() )
+				{
+					Thread.sleep( 1 );
+				}
+			}
+		}
+
+		/**
+		 * Reads the next buffer of samples, converted to floats, or returns
+		 * null when the end of the recording is reached.
+		 */
+		private float[] read()
+		{
+			while( mSegmentIndex < mSegments.size() && 
+				   mSegmentOffset >= mSegments.get( mSegmentIndex ).limit() )
+			{
+				mSegmentIndex++;
+				mSegmentOffset = 0;
+			}
+
+			if( mSegmentIndex >= mSegments.size() )
+			{
+				return null;
+			}
+
+			MappedByteBuffer segment = mSegments.get( mSegmentIndex );
+
+			int frames = Math.min( BUFFER_SIZE, ( segment.limit() - mSegmentOffset ) / 
+					mFormat.getFrameSize() );
+
+			if( frames <= 0 )
+			{
+				/* Skip any partial frame at the end of the segment */
+				mSegmentOffset = segment.limit();
+				return read();
+			}
+
+			float[] samples = new float[ frames * 2 ];
+
+			int offset = mSegmentOffset;
+
+			switch( mFormat )
+			{
+				case SIGNED_8_BIT:
+					for( int x = 0; x < samples.length; x++ )
+					{
+						samples[ x ] = (float)segment.get( offset++ ) / 127.0f;
+					}
+					break;
+				case SIGNED_16_BIT:
+					for( int x = 0; x < samples.length; x++ )
+					{
+						samples[ x ] = (float)segment.getShort( offset ) / 32767.0f;
+						offset += 2;
+					}
+					break;
+				case FLOAT_32_BIT:
+					for( int x = 0; x < samples.length; x++ )
+					{
+						samples[ x ] = segment.getFloat( offset );
+						offset += 4;
+					}
+					break;
+				default:
+					throw new IllegalArgumentException( "Unrecognized sample "
+							+ "format [" + mFormat.name() + "]" );
+			}
+
+			mSegmentOffset += frames * mFormat.getFrameSize();
+			mSampleCount += frames;
+
+			return samples;
+		}
+
+		/**
+		 * Logs the replay throughput.  In fast playback mode this is an
+		 * end-to-end benchmark of the decoders attached to the recording.
+		 */
+		private void logStatistics()
+		{
+			double elapsed = (double)( System.nanoTime() - mStartTime ) / 1E9;
+
+			if( elapsed > 0.0 )
+			{
+				double rate = (double)mSampleCount / elapsed;
+
+				mLog.info( "Replayed [" + mSampleCount + "] samples from [" + 
+					mMetadataPath.getFileName().toString() + "] in " + 
+					mDecimalFormatter.format( elapsed ) + " seconds - " + 
+					mDecimalFormatter.format( rate / 1E6 ) + " MS/s (" +
+					mDecimalFormatter.format( rate / mMetadata.getSampleRate() ) + 
+					"x real time) with [" + 
+					mComplexBufferBroadcaster.getListenerCount() + "] listeners" );
+			}
+		}
+	}
+
+	public enum PlaybackMode
+	{
+		REAL_TIME( "Real Time" ),
+		FAST( "As Fast As Possible" );
+
+		private String mLabel;
+
+		private PlaybackMode( String label )
+		{
+			mLabel = label;
+		}
+
+		public String getLabel()
+		{
+			return mLabel;
+		}
+
+		@Override
+		public String toString()
+		{
+			return mLabel;
+		}
+	}
+}
@@ -0,0 +1,219 @@
+/*******************************************************************************
+ *     SDR Trunk 
+ *     Copyright (C) 2014-2016 Dennis Sheirer
+ * 
+ *     This program is free software: you can redistribute it and/or modify
+ *     it under the terms of the GNU General Public License as published by
+ *     the Free Software Foundation, either version 3 of the License, or
+ *     (at your option) any later version.
+ * 
+ *     This program is distributed in the hope that it will be useful,
+ *     but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *     MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *     GNU General Public License for more details.
+ * 
+ *     You should have received a copy of the GNU General Public License
+ *     along with this program.  If not, see <http://www.gnu.org/licenses/>
+ ******************************************************************************/
+package source.tuner.replay;
+
+import java.awt.event.ActionEvent;
+import java.awt.event.ActionListener;
+import java.awt.event.FocusEvent;
+import java.awt.event.FocusListener;
+import java.text.DecimalFormat;
+
+import javax.swing.JCheckBox;
+import javax.swing.JComboBox;
+import javax.swing.JLabel;
+import javax.swing.JSeparator;
+import javax.swing.JTextField;
+
+import net.miginfocom.swing.MigLayout;
+import record.raw.RawRecordingMetadata;
+import source.tuner.configuration.TunerConfiguration;
+import source.tuner.configuration.TunerConfigurationEditor;
+import source.tuner.configuration.TunerConfigurationEvent;
+import source.tuner.configuration.TunerConfigurationEvent.Event;
+import source.tuner.configuration.TunerConfigurationModel;
+import source.tuner.replay.ReplayTunerController.PlaybackMode;
+import util.TimeStamp;
+
+public class ReplayTunerEditor extends TunerConfigurationEditor
+{
+    private static final long serialVersionUID = 1L;
+
+    private static final DecimalFormat mFrequencyFormat = new DecimalFormat( "0.00000" );
+    
+    private JTextField mConfigurationName;
+    private JComboBox<PlaybackMode> mComboPlaybackMode;
+    private JCheckBox mLoop;
+    private boolean mLoading;
+
+    private ReplayTunerController mController;
+
+	public ReplayTunerEditor( TunerConfigurationModel tunerConfigurationModel, 
+							  ReplayTuner tuner )
+	{
+		super( tunerConfigurationModel );
+		
+		mController = tuner.getController();
+		
+		init();
+	}
+
+	private ReplayTunerConfiguration getConfiguration()
+	{
+		if( hasItem() )
+		{
+			return (ReplayTunerConfiguration)getItem();
+		}
+		
+		return null;
+	}
+
+    private void init()
+    {
+		setLayout( new MigLayout( "fill,wrap 4", "[right][grow,fill][right][grow,fill]", 
+				"[][][][][grow]" ) );
+		
+		add( new JLabel( "I/Q Replay Tuner Configuration" ), "span,align center" );
+
+		mConfigurationName = new JTextField();
+		mConfigurationName.setEnabled( false );
+		mConfigurationName.addFocusListener( new FocusListener() 
+		{
+			@Override
+            public void focusLost( FocusEvent e )
+            {
+				save();
+            }
+			@Override
+            public void focusGained( FocusEvent e ) {}
+		} );
+		
+		add( new JLabel( "Name:" ) );
+		add( mConfigurationName, "span 3" );
+		
+		mComboPlaybackMode = new JComboBox<>( PlaybackMode.values() );
+		mComboPlaybackMode.setEnabled( false );
+		mComboPlaybackMode.setToolTipText( "<html>Real Time paces playback at the "
+				+ "recorded sample rate.<br>As Fast As Possible replays at the rate "
+				+ "the decoders can keep up with</html>" );
+		mComboPlaybackMode.addActionListener( new ActionListener() 
+        {
+			@Override
+            public void actionPerformed( ActionEvent e )
+            {
+				mController.setPlaybackMode( 
+						(PlaybackMode)mComboPlaybackMode.getSelectedItem() );
+				save();
+            }
+        } );
+        add( new JLabel( "Playback:" ) );
+        add( mComboPlaybackMode );
+        
+        mLoop = new JCheckBox( "Loop" );
+        mLoop.setEnabled( false );
+        mLoop.addActionListener( new ActionListener() 
+        {
+			@Override
+            public void actionPerformed( ActionEvent e )
+            {
+				mController.setLoop( mLoop.isSelected() );
+				save();
+            }
+        } );
+        add( mLoop, "span 2,align left" );
+
+        add( new JSeparator( JSeparator.HORIZONTAL ), "span,grow" );
+
+        RawRecordingMetadata metadata = mController.getMetadata();
+
+        add( new JLabel( "Recording:" ) );
+        add( new JLabel( mController.getMetadataPath().getFileName().toString() ), "span 3" );
+        
+        add( new JLabel( "Frequency:" ) );
+        add( new JLabel( mFrequencyFormat.format( metadata.getFrequency() / 1E6D ) + " MHz" ) );
+        add( new JLabel( "Sample Rate:" ) );
+        add( new JLabel( metadata.getSampleRate() + " (" + 
+        		metadata.getSampleFormat().getLabel() + ")" ) );
+
+        add( new JLabel( "Recorded:" ) );
+        add( new JLabel( TimeStamp.getLongTimeStamp( metadata.getStartTime(), " " ) ) );
+        add( new JLabel( "Duration:" ) );
+        add( new JLabel( ( mController.getDuration() / 1000 ) + " seconds" ) );
+    }
+
+	/**
+	 * Sets each of the tuner configuration controls to the enabled argument state
+	 */
+	private void setControlsEnabled( boolean enabled )
+	{
+		if( mConfigurationName.isEnabled() != enabled )
+		{
+			mConfigurationName.setEnabled( enabled );
+		}
+		
+		if( mComboPlaybackMode.isEnabled() != enabled )
+		{
+			mComboPlaybackMode.setEnabled( enabled );
+		}
+
+		if( mLoop.isEnabled() != enabled )
+		{
+			mLoop.setEnabled( enabled );
+		}
+	}
+
+	@Override
+	public void setItem( TunerConfiguration tunerConfiguration )
+	{
+		super.setItem( tunerConfiguration );
+
+		//Toggle loading so that we don't fire a change event and schedule a settings file save
+		mLoading = true;
+
+		if( hasItem() )
+		{
+			ReplayTunerConfiguration config = getConfiguration();
+			
+			if( tunerConfiguration.isAssigned() )
+			{
+		        setControlsEnabled( true );
+		        
+				mConfigurationName.setText( config.getName() );
+				mComboPlaybackMode.setSelectedItem( config.getPlaybackMode() );
+				mLoop.setSelected( config.getLoop() );
+			}
+			else
+			{
+				setControlsEnabled( false );
+				mConfigurationName.setText( config.getName() );
+			}
+		}
+		else
+		{
+			setControlsEnabled( false );
+			mConfigurationName.setText( "" );
+		}
+		
+		mLoading = false;
+	}
+
+	@Override
+	public void save()
+	{
+    	if( hasItem() && !mLoading )
+    	{
+			ReplayTunerConfiguration config = getConfiguration();
+
+    		config.setName( mConfigurationName.getText() );
+    		config.setPlaybackMode( (PlaybackMode)mComboPlaybackMode.getSelectedItem() );
+    		config.setLoop( mLoop.isSelected() );
+    		
+			getTunerConfigurationModel().broadcast( 
+				new TunerConfigurationEvent( getConfiguration(), Event.CHANGE ) );
+    	}
+	}
+}
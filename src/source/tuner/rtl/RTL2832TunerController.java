@@ -55,8 +55,8 @@ import source.SourceException;
 import source.tuner.TunerController;
 import source.tuner.TunerType;
 import buffer.FloatAveragingBuffer;
+import buffer.SPSCRingBuffer;
 import controller.ThreadPoolManager;
-import controller.ThreadPoolManager.ThreadType;
 
 public abstract class RTL2832TunerController extends TunerController
 {
@@ -106,8 +106,7 @@ public abstract class RTL2832TunerController extends TunerController
 
 	private Broadcaster<ComplexBuffer> mComplexBufferBroadcaster = new Broadcaster<>();
 	
-	private LinkedTransferQueue<byte[]> mFilledBuffers = 
-									new LinkedTransferQueue<byte[]>();
+	private SPSCRingBuffer<byte[]> mFilledBuffers = createSampleBuffer();
 									
 	private SampleRateMonitor mSampleRateMonitor;
     private AtomicInteger mSampleCounter = new AtomicInteger();
@@ -1413,9 +1412,8 @@ public abstract class RTL2832TunerController extends TunerController
 	            
 				try
 				{
-					mSampleDispatcherTask = mThreadPoolManager.scheduleFixedRate( 
-							ThreadType.SOURCE_SAMPLE_PROCESSING, new BufferDispatcher(), 
-							20, TimeUnit.MILLISECONDS );
+					mSampleDispatcherTask = scheduleDispatcher( mThreadPoolManager, 
+							new BufferDispatcher(), 20, TimeUnit.MILLISECONDS );
 				}
 				catch( NullPointerException npe )
 				{
@@ -1491,7 +1489,7 @@ public abstract class RTL2832TunerController extends TunerController
 			{
 				if( mSampleDispatcherTask != null )
 				{
-					mThreadPoolManager.cancel( mSampleDispatcherTask );
+					cancelDispatcher( mThreadPoolManager, mSampleDispatcherTask );
 					mSampleDispatcherTask = null;
 					mFilledBuffers.clear();
 				}
@@ -1527,7 +1525,10 @@ public abstract class RTL2832TunerController extends TunerController
 
 						if( isRunning() )
 						{
-							mFilledBuffers.add( data );
+							if( !mFilledBuffers.offer( data ) )
+							{
+								logOverflow( mFilledBuffers );
+							}
 						}
 					}
 					break;
@@ -17,10 +17,7 @@
  ******************************************************************************/
 package spectrum;
 
-import java.util.Arrays;
 import java.util.Iterator;
-import java.util.concurrent.ArrayBlockingQueue;
-import java.util.concurrent.BlockingQueue;
 import java.util.concurrent.CopyOnWriteArrayList;
 import java.util.concurrent.Executors;
 import java.util.concurrent.ScheduledExecutorService;
@@ -32,7 +29,6 @@ import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 import properties.SystemProperties;
-import sample.Buffer;
 import sample.Listener;
 import sample.SampleType;
 import sample.complex.ComplexBuffer;
@@ -40,12 +36,28 @@ import source.tuner.frequency.FrequencyChangeEvent;
 import source.tuner.frequency.IFrequencyChangeProcessor;
 import spectrum.converter.DFTResultsConverter;
 import controller.NamingThreadFactory;
+import controller.overload.OverloadController;
+import controller.overload.OverloadController.ShedLevel;
 import dsp.filter.Window;
 import dsp.filter.Window.WindowType;
 
 /**
  * Processes both complex samples or float samples and dispatches a float array
- * of DFT results, using configurable fft size and output dispatch timelines.  
+ * of DFT bin power values, using configurable fft size and output dispatch 
+ * timelines.
+ * 
+ * Incoming samples are copied into a circular sample buffer sized for the
+ * maximum number of averaged DFTs.  Each frame averages the power of up to
+ * the configured number of windowed DFTs (Welch's method) spread across the
+ * samples that arrived since the previous frame, with at most 50% overlap.
+ * When more samples arrive than the averaged DFTs can cover, the DFTs are
+ * spaced out across the frame instead of dropping whole sample buffers.  The
+ * sample, work and power buffers are reused across frames.
+ * 
+ * The dispatched power array is reused for each frame, so converters must
+ * process it before returning.  For complex samples there is one power value
+ * per DFT bin.  For real samples there is one power value per pair of 
+ * FloatFFT_1D.realForward() output values.
  */
 public class DFTProcessor implements Listener<ComplexBuffer>, 
 									 IFrequencyChangeProcessor,
@@ -57,17 +69,14 @@ public class DFTProcessor implements Listener<ComplexBuffer>,
 	private CopyOnWriteArrayList<DFTResultsConverter> mListeners =
 			new CopyOnWriteArrayList<DFTResultsConverter>();
 
-	//Fixed size sample queue.  We set the size at 12 based on the highest
-	//sample rate tuner (10 MHz) producing 153 frames per second and the lowest
-	//DFT processing frame rate of 12 frames per second.  This means that the 
-	//maximum size needed is 153 / 12 = 11 frames per DFT processing iteration
-	//so we set it at 12.	
-	private BlockingQueue<ComplexBuffer> mQueue = new ArrayBlockingQueue<>( 12 );
-
 	private ScheduledExecutorService mScheduler = Executors
 			.newScheduledThreadPool( 1, new NamingThreadFactory( "spectrum dft" ) );	
 	
 	public static final String FRAME_RATE_PROPERTY = "spectral.display.frame.rate";
+	public static final String AVERAGING_PROPERTY = "spectral.display.averaging";
+
+	public static final int DEFAULT_AVERAGING = 4;
+	public static final int MAXIMUM_AVERAGING = 8;
 	
 	private DFTSize mDFTSize = DFTSize.FFT04096;
 	private DFTSize mNewDFTSize = DFTSize.FFT04096;
@@ -81,18 +90,27 @@ public class DFTProcessor implements Listener<ComplexBuffer>,
 	private FloatFFT_1D mFFT = new FloatFFT_1D( mDFTSize.getSize() );
 	
 	private int mFrameRate;
+	private int mAveraging = DEFAULT_AVERAGING;
 	private int mSampleRate;
 	private int mFFTFloatsPerFrame;
-	private float mNewFloatsPerFrame;
-	private float mNewFloatResidual;
-	private float[] mPreviousFrame = new float[ 8192 ];
-	
-	private float[] mCurrentBuffer;
-	private int mCurrentBufferPointer = 0;
+
+	/* Circular sample buffer.  Guarded by mSampleLock, along with the count
+	 * of floats written and the count of floats already processed */
+	private Object mSampleLock = new Object();
+	private float[] mSamples;
+	private long mSamplesWritten;
+	private long mSamplesProcessed;
+
+	private float[] mWorkBuffer;
+	private float[] mPowerBuffer;
 	
 	private SampleType mSampleType;
 
 	private AtomicBoolean mRunning = new AtomicBoolean();
+	private boolean mPersistSettings = true;
+	
+	/* Display processors pause while the overload controller sheds the display */
+	private boolean mDisplay = true;
 	
 	public DFTProcessor( SampleType sampleType )
 	{
@@ -102,11 +120,31 @@ public class DFTProcessor implements Listener<ComplexBuffer>,
 		loadSettings();
 	}
 	
+	/**
+	 * Constructs a processor with a fixed frame rate and averaging that are
+	 * not loaded from or saved to the spectral display settings, for 
+	 * background processing that shouldn't change the display settings.
+	 */
+	public DFTProcessor( SampleType sampleType, int frameRate, int averaging )
+	{
+		mPersistSettings = false;
+		mDisplay = false;
+
+		setSampleType( sampleType );
+		setAveraging( averaging );
+		setFrameRate( frameRate );
+	}
+	
 	private void loadSettings()
 	{
 		int frameRate = SystemProperties.getInstance().get( FRAME_RATE_PROPERTY, 20 );
 		
 		setFrameRate( frameRate );
+		
+		int averaging = SystemProperties.getInstance()
+				.get( AVERAGING_PROPERTY, DEFAULT_AVERAGING );
+		
+		setAveraging( averaging );
 	}
 	
 	public void dispose()
@@ -114,9 +152,15 @@ public class DFTProcessor implements Listener<ComplexBuffer>,
 		stop();
 		
 		mListeners.clear();
-		mQueue.clear();
+
+		synchronized( mSampleLock )
+		{
+			mSamples = null;
+		}
+
 		mWindow = null;
-		mCurrentBuffer = null;
+		mWorkBuffer = null;
+		mPowerBuffer = null;
 	}
 	
 	public WindowType getWindowType()
@@ -148,6 +192,8 @@ public class DFTProcessor implements Listener<ComplexBuffer>,
 	{
 		mSampleType = type;
 		setWindowType( mWindowType );
+		calculateConsumptionRate();
+		resizeBuffers();
 	}
 	
 	public SampleType getSampleType()
@@ -176,9 +222,6 @@ public class DFTProcessor implements Listener<ComplexBuffer>,
 	
 	public void setFrameRate( int framesPerSecond )
 	{
-		//TODO: make sure frame rate & sample rate sample requirement doesn't
-		//expect overlap greater than the previous frame length
-		
 		if( framesPerSecond < 1 || framesPerSecond > 1000 )
 		{
 			throw new IllegalArgumentException( "DFTProcessor cannot run "
@@ -188,15 +231,39 @@ public class DFTProcessor implements Listener<ComplexBuffer>,
 
 		mFrameRate = framesPerSecond;
 		
-		SystemProperties properties = SystemProperties.getInstance();
-		
-		properties.set( FRAME_RATE_PROPERTY, String.valueOf( mFrameRate ) );
-
-		calculateConsumptionRate();
+		if( mPersistSettings )
+		{
+			SystemProperties.getInstance().set( FRAME_RATE_PROPERTY, 
+					String.valueOf( mFrameRate ) );
+		}
 
 		restart();
 	}
 	
+	/**
+	 * Maximum number of DFTs averaged into each displayed frame
+	 */
+	public int getAveraging()
+	{
+		return mAveraging;
+	}
+	
+	/**
+	 * Sets the maximum number of DFTs averaged into each displayed frame,
+	 * limited to the range 1 to MAXIMUM_AVERAGING.  A value of 1 disables 
+	 * averaging.
+	 */
+	public void setAveraging( int averaging )
+	{
+		mAveraging = Math.max( 1, Math.min( MAXIMUM_AVERAGING, averaging ) );
+		
+		if( mPersistSettings )
+		{
+			SystemProperties.getInstance().set( AVERAGING_PROPERTY, 
+					String.valueOf( mAveraging ) );
+		}
+	}
+	
 	public void start()
 	{
 		/**
@@ -229,8 +296,6 @@ public class DFTProcessor implements Listener<ComplexBuffer>,
         catch ( InterruptedException e )
         {
         	/* Do nothing ... we're shutting down */
-//	        mLog.error( "DFTProcessor - exception while awaiting shutdown of "
-//	        		+ "calculation scheduler for reset", e );
         }
 	}
 	
@@ -246,161 +311,169 @@ public class DFTProcessor implements Listener<ComplexBuffer>,
 	}
 	
 	/**
-	 * Places the sample into a transfer queue for future processing. 
+	 * Copies the samples into the circular sample buffer for processing on 
+	 * the next frame.  When the buffer is larger than the circular buffer, 
+	 * only the most recent samples are kept.
 	 */
 	@Override
     public void receive( ComplexBuffer sampleBuffer )
     {
-		mQueue.offer( sampleBuffer );
+		float[] samples = sampleBuffer.getSamples();
+		
+		synchronized( mSampleLock )
+		{
+			if( mSamples != null )
+			{
+				int length = samples.length;
+				int offset = 0;
+				
+				if( length > mSamples.length )
+				{
+					offset = length - mSamples.length;
+					mSamplesWritten += offset;
+					length = mSamples.length;
+				}
+				
+				int pointer = (int)( mSamplesWritten % mSamples.length );
+				int firstPart = Math.min( length, mSamples.length - pointer );
+				
+				System.arraycopy( samples, offset, mSamples, pointer, firstPart );
+				
+				if( firstPart < length )
+				{
+					System.arraycopy( samples, offset + firstPart, mSamples, 0, 
+							length - firstPart );
+				}
+				
+				mSamplesWritten += length;
+			}
+		}
     }
 	
-	private void getNextBuffer()
+	/**
+	 * Copies one DFT frame of samples from the circular buffer into the work
+	 * buffer.
+	 * 
+	 * @param start - absolute sample index of the first float to copy
+	 * @return true if the samples were copied or false if they have already
+	 * been overwritten by newer samples
+	 */
+	private boolean copySamples( long start )
 	{
-		mCurrentBuffer = null;
-
-		try
-        {
-			Buffer buffer = mQueue.take();
-            mCurrentBuffer = buffer.getSamples();
-        }
-        catch ( InterruptedException e )
-        {
-        	mCurrentBuffer = null;
-        }
+		synchronized( mSampleLock )
+		{
+			if( mSamples == null || start < mSamplesWritten - mSamples.length )
+			{
+				return false;
+			}
 
-		mCurrentBufferPointer = 0;
+			int pointer = (int)( start % mSamples.length );
+			int firstPart = Math.min( mFFTFloatsPerFrame, mSamples.length - pointer );
+			
+			System.arraycopy( mSamples, pointer, mWorkBuffer, 0, firstPart );
+			
+			if( firstPart < mFFTFloatsPerFrame )
+			{
+				System.arraycopy( mSamples, 0, mWorkBuffer, firstPart, 
+						mFFTFloatsPerFrame - firstPart );
+			}
+			
+			return true;
+		}
 	}
 
-	private float[] getSamples()
+	/**
+	 * Calculates the averaged DFT power across the samples that arrived since
+	 * the previous frame and dispatches it.  Does nothing when there are no
+	 * new samples.
+	 */
+	private void calculate()
 	{
-		int remaining = (int)mFFTFloatsPerFrame;
-
-		float[] currentFrame = new float[ remaining ];
-
-		int currentFramePointer = 0;
+		long end;
+		long newSamples;
 
-		float integralFloatsToConsume = mNewFloatsPerFrame + mNewFloatResidual;
-		
-		int newFloatsToConsumeThisFrame = (int)integralFloatsToConsume;
-		
-		mNewFloatResidual = integralFloatsToConsume - newFloatsToConsumeThisFrame;
-		
-		/* If the number of required floats for the fft is greater than the
-		 * consumption rate per frame, we have to reach into the previous
-		 * frame to makeup the difference. */
-		if( newFloatsToConsumeThisFrame < remaining )
+		synchronized( mSampleLock )
 		{
-			int previousFloatsRequired = remaining - newFloatsToConsumeThisFrame;
-			
-			System.arraycopy( mPreviousFrame, 
-							  mPreviousFrame.length - previousFloatsRequired, 
-							  currentFrame, 
-							  currentFramePointer, 
-							  previousFloatsRequired );
-			
-			remaining -= previousFloatsRequired;
-			currentFramePointer += previousFloatsRequired;
+			end = mSamplesWritten;
+			newSamples = end - mSamplesProcessed;
+			mSamplesProcessed = end;
 		}
 
-		/* Fill the rest of the buffer with new samples */
-		while( mRunning.get() && remaining > 0 )
+		if( newSamples <= 0 || end < mFFTFloatsPerFrame )
 		{
-			if( mCurrentBuffer == null || 
-					mCurrentBufferPointer >= mCurrentBuffer.length )
-			{
-				getNextBuffer();
-			}
+			return;
+		}
+		
+		/* Spread the DFTs across the new samples, no further back than the
+		 * circular buffer holds and no more than 50% overlapped */
+		long span = Math.min( newSamples, end - mFFTFloatsPerFrame );
+		span = Math.min( span, mSamples.length - mFFTFloatsPerFrame );
 
-			/* If we don't have new samples to use, send the current frame with
-			 * the remaining values as zero */
-			if( mCurrentBuffer == null )
-			{
-				remaining = 0;
-			}
-			else
+		int dftCount = (int)Math.max( 1, 
+				Math.min( mAveraging, span / ( mFFTFloatsPerFrame / 2 ) ) );
+
+		/* Keep complex sample pairs aligned */
+		long step = ( span / dftCount ) & ~1l;
+
+		int averaged = 0;
+
+		for( int x = 0; x < dftCount; x++ )
+		{
+			if( copySamples( end - mFFTFloatsPerFrame - ( x * step ) ) )
 			{
-				int samplesAvailable = mCurrentBuffer.length - mCurrentBufferPointer;
+				Window.apply( mWindow, mWorkBuffer );
 
-				while( remaining > 0 && samplesAvailable > 0 )
+				if( mSampleType == SampleType.REAL )
 				{
-					currentFrame[ currentFramePointer++ ] = 
-							(float)mCurrentBuffer[ mCurrentBufferPointer++ ];
-					
-					samplesAvailable--;
-					remaining--;
-					newFloatsToConsumeThisFrame--;
+					mFFT.realForward( mWorkBuffer );
+				}
+				else
+				{
+					mFFT.complexForward( mWorkBuffer );
 				}
+				
+				accumulate( averaged == 0 );
+				
+				averaged++;
 			}
 		}
 		
-		/* If the incoming float rate is greater than the fft consumption rate,
-		 * then we have to purge some floats, otherwise, store the previous
-		 * frame, because we have overlapping frames */
-		if( newFloatsToConsumeThisFrame > 0 )
-		{
-			purge( newFloatsToConsumeThisFrame );
-		}
-		else
+		if( averaged > 1 )
 		{
-			mPreviousFrame = Arrays.copyOf( currentFrame, currentFrame.length );
-		}
+			float gain = 1.0f / (float)averaged;
 
-		return currentFrame;
-	}
-	
-	private void calculate()
-	{
-		float[] samples = getSamples();
-		
-		Window.apply( mWindow, samples );
-
-		if( mSampleType == SampleType.REAL )
-		{
-			mFFT.realForward( samples );
+			for( int x = 0; x < mPowerBuffer.length; x++ )
+			{
+				mPowerBuffer[ x ] *= gain;
+			}
 		}
-		else
+		
+		if( averaged > 0 )
 		{
-			mFFT.complexForward( samples );
+			dispatch( mPowerBuffer );
 		}
-		
-		dispatch( samples );
 	}
-
 	
-	private void purge( int samplesToPurge )
+	/**
+	 * Adds the power of each bin in the work buffer DFT results to the power
+	 * buffer, or replaces the power buffer contents for the first DFT.
+	 */
+	private void accumulate( boolean first )
 	{
-		if( samplesToPurge <= 0 )
-		{
-			throw new IllegalArgumentException( "DFTProcessor - cannot purge "
-					+ "negative sample amount" );
-		}
-
-		while( mRunning.get() && samplesToPurge > 0 )
+		for( int x = 0; x < mPowerBuffer.length; x++ )
 		{
-			if( mCurrentBuffer == null || 
-					mCurrentBufferPointer >= mCurrentBuffer.length )
-			{
-				getNextBuffer();
-			}
+			int index = x * 2;
 
-			if( mCurrentBuffer != null )
+			float power = ( mWorkBuffer[ index ] * mWorkBuffer[ index ] ) +
+				( mWorkBuffer[ index + 1 ] * mWorkBuffer[ index + 1 ] );
+			
+			if( first )
 			{
-				int samplesAvailable = mCurrentBuffer.length - mCurrentBufferPointer;
-				
-				if( samplesAvailable >= samplesToPurge )
-				{
-					mCurrentBufferPointer += samplesToPurge;
-					samplesToPurge = 0;
-				}
-				else
-				{
-					samplesToPurge -= samplesAvailable;
-					mCurrentBufferPointer = mCurrentBuffer.length;
-				}
+				mPowerBuffer[ x ] = power;
 			}
 			else
 			{
-				samplesToPurge = 0;
+				mPowerBuffer[ x ] += power;
 			}
 		}
 	}
@@ -436,6 +509,12 @@ public class DFTProcessor implements Listener<ComplexBuffer>,
         {
 			try
 			{
+				if( mDisplay && OverloadController.getInstance()
+						.isShedding( ShedLevel.DISPLAY ) )
+				{
+					return;
+				}
+				
 				/* Only run if we're not currently running */
 				if( mRunning.compareAndSet( false, true ) )
 				{
@@ -448,6 +527,8 @@ public class DFTProcessor implements Listener<ComplexBuffer>,
 			}
 			catch( Exception e )
 			{
+				mRunning.set( false );
+
 				mLog.error( "error during dft processor calculation task", e );
 			}
         }
@@ -468,22 +549,36 @@ public class DFTProcessor implements Listener<ComplexBuffer>,
 
 			setWindowType( mWindowType );
 
-			if( mSampleType == SampleType.COMPLEX )
-			{
-				mPreviousFrame = new float[ mDFTSize.getSize() * 2 ];
-			}
-			else
-			{
-				mPreviousFrame = new float[ mDFTSize.getSize() ];
-			}
+			resizeBuffers();
 
 			mFFT = new FloatFFT_1D( mDFTSize.getSize() );
 		}
 	}
 	
+	/**
+	 * Allocates the circular sample buffer, the work buffer and the power 
+	 * buffer for the current DFT size.
+	 */
+	private void resizeBuffers()
+	{
+		synchronized( mSampleLock )
+		{
+			mSamples = new float[ mFFTFloatsPerFrame * ( MAXIMUM_AVERAGING + 1 ) ];
+			mSamplesWritten = 0;
+			mSamplesProcessed = 0;
+		}
+
+		mWorkBuffer = new float[ mFFTFloatsPerFrame ];
+		mPowerBuffer = new float[ mFFTFloatsPerFrame / 2 ];
+	}
+	
 	public void clearBuffer()
 	{
-		mQueue.clear();
+		synchronized( mSampleLock )
+		{
+			mSamplesWritten = 0;
+			mSamplesProcessed = 0;
+		}
 	}
 	
 	@Override
@@ -493,23 +588,23 @@ public class DFTProcessor implements Listener<ComplexBuffer>,
 		{
 			case NOTIFICATION_SAMPLE_RATE_CHANGE:
 				mSampleRate = event.getValue().intValue();
-				calculateConsumptionRate();
+				clearBuffer();
 				break;
 			default:
 				break;
 		}
     }
+
+	public int getSampleRate()
+	{
+		return mSampleRate;
+	}
 	
 	/**
-	 * 
+	 * Calculates the number of floats consumed by each DFT
 	 */
 	private void calculateConsumptionRate()
 	{
-		mNewFloatResidual = 0.0f;
-		
-		mNewFloatsPerFrame = ( (float)mSampleRate / (float)mFrameRate ) *
-				( mSampleType == SampleType.COMPLEX ? 2.0f : 1.0f );
-		
 		mFFTFloatsPerFrame = ( mSampleType == SampleType.COMPLEX ? 
 					mDFTSize.getSize() * 2 : 
 					mDFTSize.getSize() );
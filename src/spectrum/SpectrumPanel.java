@@ -75,6 +75,7 @@ public class SpectrumPanel extends JPanel
 
 	//Current DFT output bins in dB
 	private float[] mDisplayFFTBins = new float[ 1 ];
+	private float[] mSmoothedFFTBins = new float[ 1 ];
 
 	//Averaging across multiple DFT result sets
 	private int mAveraging = 4;
@@ -131,15 +132,18 @@ public class SpectrumPanel extends JPanel
 			currentFFTBins = new float[ currentFFTBins.length ];
 		}
 
-    	//Construct and/or resize our DFT results variables
+    	//Construct and/or resize our DFT results variables.  The results array
+    	//is reused by the converter, so we keep our own copies.
     	if( mDisplayFFTBins == null || 
     		mDisplayFFTBins.length != currentFFTBins.length )
     	{
-    		mDisplayFFTBins = currentFFTBins;
+    		mDisplayFFTBins = currentFFTBins.clone();
+    		mSmoothedFFTBins = new float[ currentFFTBins.length ];
     	}
 
     	//Apply smoothing across the bins of the DFT results
-    	float[] smoothedBins = mSmoothingFilter.filter( currentFFTBins );
+    	float[] smoothedBins = mSmoothingFilter.filter( currentFFTBins, 
+    			mSmoothedFFTBins );
 
     	//Apply averaging over multiple DFT output frames
     	if( mAveraging > 1 )
@@ -154,7 +158,8 @@ public class SpectrumPanel extends JPanel
     	}
     	else
     	{
-    		mDisplayFFTBins = smoothedBins;
+    		System.arraycopy( smoothedBins, 0, mDisplayFFTBins, 0, 
+    				mDisplayFFTBins.length );
     	}
     	
 		repaint();
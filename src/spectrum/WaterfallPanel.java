@@ -53,6 +53,13 @@ public class WaterfallPanel extends JPanel implements DFTResultsListener,
 
 	private byte[] mPixels;
 	private byte[] mPausedPixels;
+
+	/* The pixel array is a circular buffer of rows.  The newest row is at 
+	 * mNewestRow and older rows follow it, wrapping around at the bottom.  The
+	 * display row is updated on the swing thread along with the image. */
+	private int mNewestRow = 0;
+	private int mDisplayNewestRow = 0;
+	private int mPausedNewestRow = 0;
     private int mDFTSize = 4096;
     private int mImageHeight = 700;
     private MemoryImageSource mMemoryImageSource;
@@ -110,6 +117,8 @@ public class WaterfallPanel extends JPanel implements DFTResultsListener,
 	private void reset()
 	{
 		mPixels = new byte[ mDFTSize * mImageHeight ];
+		mNewestRow = 0;
+		mDisplayNewestRow = 0;
 
 		mMemoryImageSource = new MemoryImageSource( mDFTSize, 
 				mImageHeight,
@@ -133,11 +142,32 @@ public class WaterfallPanel extends JPanel implements DFTResultsListener,
 		if( paused )
 		{
 			mPausedPixels = mPixels.clone();
+			mPausedNewestRow = mDisplayNewestRow;
 		}
 
 		mPaused = paused;
-		
-		repaint();
+
+		//Swap the image source to the paused or live pixels
+		EventQueue.invokeLater( new Runnable() 
+		{
+			@Override
+            public void run()
+            {
+				if( mMemoryImageSource != null )
+				{
+					if( mPaused )
+					{
+						mMemoryImageSource.newPixels( mPausedPixels, mColorModel, 0, mDFTSize );
+					}
+					else
+					{
+						mMemoryImageSource.newPixels( mPixels, mColorModel, 0, mDFTSize );
+					}
+				}
+
+				repaint();
+            }
+		} );
 	}
 	
 	/**
@@ -291,13 +321,27 @@ public class WaterfallPanel extends JPanel implements DFTResultsListener,
 		double binPixelWidth = getBinPixelWidth( multiplier );
 
 		int offset = (int)( getPixelOffset( multiplier ) - binPixelWidth );
+		
+		int width = ( getWidth() * multiplier ) + (int)binPixelWidth;
 
+		int newestRow = mPaused ? mPausedNewestRow : mDisplayNewestRow;
+		
+		int topRows = mImageHeight - newestRow;
+
+		//Draw the newest rows from the circular image at the top and then the
+		//older rows that wrapped around to the start of the image below them
 		g.drawImage( mWaterfallImage, 
-					 offset, 
-					 0, 
-					 ( getWidth() * multiplier ) + (int)binPixelWidth, 
-					 mImageHeight,
+					 offset, 0, offset + width, topRows,
+					 0, newestRow, mDFTSize, mImageHeight,
 					 this );
+		
+		if( newestRow > 0 )
+		{
+			g.drawImage( mWaterfallImage, 
+					 offset, topRows, offset + width, mImageHeight,
+					 0, 0, mDFTSize, newestRow,
+					 this );
+		}
 
     	Graphics2D graphics = (Graphics2D) g;
 
@@ -379,9 +423,17 @@ public class WaterfallPanel extends JPanel implements DFTResultsListener,
 			reset();
 		}
 
-		//Move the pixels down a row to make room for the new results
-		System.arraycopy( mPixels, 0, 
-				mPixels, mDFTSize, mPixels.length - mDFTSize );
+		//Move up one row in the circular pixel buffer, overwriting the oldest
+		mNewestRow--;
+		
+		if( mNewestRow < 0 )
+		{
+			mNewestRow = mImageHeight - 1;
+		}
+		
+		final int row = mNewestRow;
+		
+		int rowOffset = row * mDFTSize;
 		
 		/**
 		 * Find the average value and scale the display to it
@@ -403,36 +455,36 @@ public class WaterfallPanel extends JPanel implements DFTResultsListener,
 
 			if( value < 0 )
 			{
-				mPixels[ x ] = 0;
+				mPixels[ rowOffset + x ] = 0;
 			}
 			else if( value > 255 )
 			{
-				mPixels[ x ] = (byte)255;
+				mPixels[ rowOffset + x ] = (byte)255;
 			}
 			else
 			{
-				mPixels[ x ] = (byte)value;
+				mPixels[ rowOffset + x ] = (byte)value;
 			}
 		}
+		
+		mPixels[ rowOffset + mDFTSize - 1 ] = 0;
 
-		//Task the swing event thread to update the display
-		EventQueue.invokeLater( new Runnable() 
+		//Task the swing event thread to update only the new row of the image.
+		//While paused, the image source keeps showing the paused pixels.
+		if( !mPaused )
 		{
-			@Override
-            public void run()
-            {
-				if( mMemoryImageSource != null )
-				{
-					if( mPaused )
-					{
-						mMemoryImageSource.newPixels( mPausedPixels, mColorModel, 0, mDFTSize );
-					}
-					else
+			EventQueue.invokeLater( new Runnable() 
+			{
+				@Override
+	            public void run()
+	            {
+					if( mMemoryImageSource != null && !mPaused )
 					{
-						mMemoryImageSource.newPixels( mPixels, mColorModel, 0, mDFTSize );
+						mDisplayNewestRow = row;
+						mMemoryImageSource.newPixels( 0, row, mDFTSize, 1 );
 					}
-				}
-            }
-		} );
+	            }
+			} );
+		}
     }
 }
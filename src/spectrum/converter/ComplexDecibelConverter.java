@@ -17,6 +17,7 @@
  ******************************************************************************/
 package spectrum.converter;
 
+import util.FastLog;
 
 /**
  * Converts complex DFT output to scaled dB values with a maximum amplitude of
@@ -34,6 +35,10 @@ package spectrum.converter;
  * 1) sqrt( bin[ x ] * bin[ x ] + bin[ x + 1 ] * bin[ x + 1] ) / DFTSize or,
  * 2) ( bin[ x ] * bin[ x ] + bin[ x + 1 ] * bin[ x + 1] ) / ( DFTSize * DFTSize )
  * 
+ * The DFTProcessor provides the (averaged) bin power values, so this converter
+ * only scales the power and converts it to decibels, using a fast log 
+ * approximation.
+ * 
  * Convert each scaled DFT bin magnitude to decibels using this formula:
  * 
  * 20 * log10( scaledBinValue )
@@ -59,51 +64,49 @@ package spectrum.converter;
  */
 public class ComplexDecibelConverter extends DFTResultsConverter
 {
+	private float[] mProcessed = new float[ 1 ];
+
 	/**
-	 * Converts the output of the JTransforms FloatFFT_1D.complexForward()
-	 * calculation into the power spectrum in decibels, normalized to the 
-	 * sample bit depth.
+	 * Converts the DFT bin power values calculated from the output of the 
+	 * JTransforms FloatFFT_1D.complexForward() calculation into the power 
+	 * spectrum in decibels, normalized to the sample bit depth.
+	 * 
+	 * The decibel results array is reused for each set of results.
 	 */
 	public ComplexDecibelConverter()
 	{
 	}
 	
 	@Override
-    public void receive( float[] results )
+    public void receive( float[] power )
     {
-		int halfResults = results.length / 2;
+		if( mProcessed.length != power.length )
+		{
+			mProcessed = new float[ power.length ];
+		}
 		
-//		float dftBinSizeScalor = 1.0f / (float)Math.pow( halfResults, 2.0 );
-		float dftBinSizeScalor = 1.0f / (float)halfResults;
+		float dftBinSizeScalor = 1.0f / (float)power.length;
 		
-		float[] processed = new float[ halfResults ];
-
-		int middle = processed.length / 2;
+		int middle = mProcessed.length / 2;
 		
-		for( int x = 0; x < results.length; x += 2 )
+		for( int x = 0; x < power.length; x++ )
 		{
-			//Calculate the magnitude squared (power) value from each bin's real 
-			//and imaginary value and scale it to the DFT bin size squared.
-			//Convert the scaled value to decibels.
-			float decibels = 10.0f * (float)Math.log10( 
-				( ( results[ x ] * results[ x ] ) + 
-				  ( results[ x + 1 ] * results[ x + 1 ] ) ) * dftBinSizeScalor ); 
+			//Scale each bin's power value to the DFT bin size and convert the
+			//scaled value to decibels.
+			float decibels = 10.0f * FastLog.log10( power[ x ] * dftBinSizeScalor ); 
 
 			// We have to swap the upper and lower halves of the JTransforms
 			// DFT results for correct display
-			
-			int index = x / 2;
-			
-			if( index >= middle )
+			if( x >= middle )
 			{
-				processed[ index - middle ] = decibels;
+				mProcessed[ x - middle ] = decibels;
 			}
 			else
 			{
-				processed[ index + middle ] = decibels;
+				mProcessed[ x + middle ] = decibels;
 			}
 		}
 		
-		dispatch( processed );
+		dispatch( mProcessed );
     }
 }
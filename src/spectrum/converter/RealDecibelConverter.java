@@ -3,39 +3,41 @@ package spectrum.converter;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import util.FastLog;
+
 public class RealDecibelConverter extends DFTResultsConverter
 {
 	private static final Logger mLog = LoggerFactory.getLogger( RealDecibelConverter.class );
 
+	private float[] mProcessed = new float[ 1 ];
+
 	public RealDecibelConverter()
 	{
 	}
 	
 	/**
-	 * Converts the output of the JTransforms FloatFFT_1D.realForward()
+	 * Converts the bin power values of the JTransforms FloatFFT_1D.realForward()
 	 * calculation into a normalized power spectrum in decibels, per description
 	 * in Lyons, Understanding Digital Signal Processing, 3e, page 141.
 	 * 
-	 * Note: this is only calculating the lower half of the spectrum
+	 * Note: this is only calculating the lower half of the spectrum.  The 
+	 * decibel results array is reused for each set of results.
 	 */
 	@Override
-    public void receive( float[] results )
+    public void receive( float[] power )
     {
-		float dftBinSizeScalor = 1.0f / (float)results.length;
-		
-		float[] processed = new float[ results.length / 4 ];
+		if( mProcessed.length != power.length / 2 )
+		{
+			mProcessed = new float[ power.length / 2 ];
+		}
 
-		int index = 0;
+		float dftBinSizeScalor = 1.0f / (float)( power.length * 2 );
 		
-		for( int x = 0; x < processed.length; x ++ )
+		for( int x = 0; x < mProcessed.length; x ++ )
 		{
-			index = x * 2;
-			
-			processed[ x ] = 20.0f * (float)Math.log10( 
-				( ( results[ index ] * results[ index ] ) + 
-				  ( results[ index + 1 ] * results[ index + 1 ] ) ) * dftBinSizeScalor );
+			mProcessed[ x ] = 20.0f * FastLog.log10( power[ x ] * dftBinSizeScalor );
 		}
 
-		dispatch( processed );
+		dispatch( mProcessed );
     }
 }
@@ -0,0 +1,447 @@
+/*******************************************************************************
+ *     SDR Trunk 
+ *     Copyright (C) 2014-2016 Dennis Sheirer
+ * 
+ *     This program is free software: you can redistribute it and/or modify
+ *     it under the terms of the GNU General Public License as published by
+ *     the Free Software Foundation, either version 3 of the License, or
+ *     (at your option) any later version.
+ * 
+ *     This program is distributed in the hope that it will be useful,
+ *     but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *     MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *     GNU General Public License for more details.
+ * 
+ *     You should have received a copy of the GNU General Public License
+ *     along with this program.  If not, see <http://www.gnu.org/licenses/>
+ ******************************************************************************/
+package spectrum.monitor;
+
+import java.io.IOException;
+import java.io.Writer;
+import java.text.DecimalFormat;
+import java.util.Arrays;
+
+import sample.Listener;
+import sample.SampleType;
+import sample.complex.ComplexBuffer;
+import source.tuner.Tuner;
+import source.tuner.frequency.FrequencyChangeEvent;
+import source.tuner.frequency.IFrequencyChangeProcessor;
+import spectrum.DFTProcessor;
+import spectrum.DFTResultsListener;
+import spectrum.converter.ComplexDecibelConverter;
+
+/**
+ * Headless spectral monitor for a single tuner.  Runs a DFT over the tuner's
+ * complex samples at a low frame rate and maintains per-bin statistics in
+ * primitive arrays:
+ * 
+ * Average - exponential average of the bin level in dB
+ * Noise Floor - bin level tracker that follows decreases quickly and 
+ *   increases slowly, so that it stays near the level between transmissions
+ * Peak - maximum bin level
+ * Occupancy - fraction of frames where the bin level exceeded the noise floor
+ *   by the occupancy threshold
+ * Percentiles - calculated from a per-bin histogram of bin levels
+ * 
+ * Peak, occupancy and histogram statistics accumulate from the last reset.
+ * All statistics are reset when the tuner frequency or sample rate changes.
+ * Statistics are updated on the DFT processor thread and can be read or
+ * written out as CSV from any thread.
+ */
+public class SpectralMonitor implements DFTResultsListener, 
+										IFrequencyChangeProcessor
+{
+	/* Histogram covers -160 to +40 dB in 2 dB buckets */
+	private static final float HISTOGRAM_MINIMUM_DB = -160.0f;
+	private static final float HISTOGRAM_BUCKET_DB = 2.0f;
+	private static final int HISTOGRAM_BUCKETS = 100;
+
+	/* Noise floor tracker gains for decreasing and increasing bin levels */
+	private static final float NOISE_FLOOR_FALL = 0.2f;
+	private static final float NOISE_FLOOR_RISE = 0.005f;
+
+	private Tuner mTuner;
+	private DFTProcessor mDFTProcessor;
+	private ComplexDecibelConverter mDFTConverter;
+	private Listener<ComplexBuffer> mSampleListener;
+
+	private DecimalFormat mDecibelFormat = new DecimalFormat( "0.0" );
+	private DecimalFormat mOccupancyFormat = new DecimalFormat( "0.0000" );
+
+	private float mAverageGain;
+	private float mOccupancyThreshold;
+
+	private long mFrequency;
+	private int mSampleRate;
+	private int mFrameCount;
+
+	private float[] mAverage = new float[ 0 ];
+	private float[] mNoiseFloor = new float[ 0 ];
+	private float[] mPeak = new float[ 0 ];
+	private int[] mOccupied = new int[ 0 ];
+	private int[] mHistogram = new int[ 0 ];
+
+	/**
+	 * Constructs a spectral monitor for the tuner.  Invoke start() to begin
+	 * monitoring.
+	 * 
+	 * @param tuner to monitor
+	 * @param frameRate - DFT frames per second
+	 * @param averageFrames - exponential averaging time constant in frames
+	 * @param occupancyThreshold - dB above the noise floor that a bin level 
+	 * must exceed for the bin to be counted as occupied
+	 */
+	public SpectralMonitor( Tuner tuner, int frameRate, int averageFrames, 
+			float occupancyThreshold )
+	{
+		mTuner = tuner;
+		mAverageGain = 1.0f / (float)Math.max( 1, averageFrames );
+		mOccupancyThreshold = occupancyThreshold;
+
+		mDFTProcessor = new DFTProcessor( SampleType.COMPLEX, frameRate, 
+				DFTProcessor.MAXIMUM_AVERAGING );
+
+		/* The processor is restarted when the monitor starts */
+		mDFTProcessor.stop();
+
+		mDFTConverter = new ComplexDecibelConverter();
+		mDFTConverter.addListener( this );
+		mDFTProcessor.addConverter( mDFTConverter );
+
+		mSampleListener = mDFTProcessor;
+	}
+
+	public Tuner getTuner()
+	{
+		return mTuner;
+	}
+
+	/**
+	 * Registers with the tuner for samples and frequency changes and starts
+	 * the DFT processor.  Note: tuners stream samples while the monitor is 
+	 * registered, even when no channels are being processed.
+	 */
+	public void start()
+	{
+		mTuner.getTunerController().addListener( this );
+
+		frequencyChanged( new FrequencyChangeEvent( 
+			FrequencyChangeEvent.Event.NOTIFICATION_FREQUENCY_CHANGE, 
+			mTuner.getTunerController().getFrequency() ) );
+
+		frequencyChanged( new FrequencyChangeEvent( 
+			FrequencyChangeEvent.Event.NOTIFICATION_SAMPLE_RATE_CHANGE, 
+			mTuner.getTunerController().getSampleRate() ) );
+
+		mDFTProcessor.start();
+
+		mTuner.addListener( mSampleListener );
+	}
+
+	/**
+	 * Deregisters from the tuner and stops the DFT processor
+	 */
+	public void stop()
+	{
+		mTuner.removeListener( mSampleListener );
+		mTuner.getTunerController().removeListener( this );
+
+		mDFTProcessor.stop();
+	}
+
+	public void dispose()
+	{
+		stop();
+
+		mDFTProcessor.dispose();
+		mDFTConverter.dispose();
+	}
+
+	@Override
+	public void frequencyChanged( FrequencyChangeEvent event )
+	{
+		switch( event.getEvent() )
+		{
+			case NOTIFICATION_FREQUENCY_CHANGE:
+				synchronized( this )
+				{
+					mFrequency = event.getValue().longValue();
+					reset();
+				}
+				break;
+			case NOTIFICATION_SAMPLE_RATE_CHANGE:
+				synchronized( this )
+				{
+					mSampleRate = event.getValue().intValue();
+					reset();
+				}
+				mDFTProcessor.frequencyChanged( event );
+				break;
+			default:
+				break;
+		}
+	}
+
+	/**
+	 * Clears all statistics.  Statistics restart with the next DFT frame.
+	 */
+	public synchronized void reset()
+	{
+		mFrameCount = 0;
+	}
+
+	/**
+	 * Updates the statistics with a DFT frame of bin levels in dB
+	 */
+	@Override
+	public synchronized void receive( float[] levels )
+	{
+		if( mFrameCount == 0 )
+		{
+			start( levels );
+		}
+		
+		mFrameCount++;
+
+		for( int bin = 0; bin < levels.length; bin++ )
+		{
+			float level = levels[ bin ];
+			
+			if( Float.isInfinite( level ) || Float.isNaN( level ) )
+			{
+				level = HISTOGRAM_MINIMUM_DB;
+			}
+
+			mAverage[ bin ] += ( level - mAverage[ bin ] ) * mAverageGain;
+
+			if( level < mNoiseFloor[ bin ] )
+			{
+				mNoiseFloor[ bin ] += ( level - mNoiseFloor[ bin ] ) * NOISE_FLOOR_FALL;
+			}
+			else
+			{
+				mNoiseFloor[ bin ] += ( level - mNoiseFloor[ bin ] ) * NOISE_FLOOR_RISE;
+			}
+
+			if( level > mPeak[ bin ] )
+			{
+				mPeak[ bin ] = level;
+			}
+
+			if( level > mNoiseFloor[ bin ] + mOccupancyThreshold )
+			{
+				mOccupied[ bin ]++;
+			}
+
+			int bucket = (int)( ( level - HISTOGRAM_MINIMUM_DB ) / HISTOGRAM_BUCKET_DB );
+			
+			if( bucket < 0 )
+			{
+				bucket = 0;
+			}
+			else if( bucket >= HISTOGRAM_BUCKETS )
+			{
+				bucket = HISTOGRAM_BUCKETS - 1;
+			}
+
+			mHistogram[ bin * HISTOGRAM_BUCKETS + bucket ]++;
+		}
+	}
+
+	/**
+	 * Resizes and seeds the statistics arrays from the first frame of bin 
+	 * levels after a reset
+	 */
+	private void start( float[] levels )
+	{
+		int bins = levels.length;
+
+		if( mAverage.length != bins )
+		{
+			mAverage = new float[ bins ];
+			mNoiseFloor = new float[ bins ];
+			mPeak = new float[ bins ];
+			mOccupied = new int[ bins ];
+			mHistogram = new int[ bins * HISTOGRAM_BUCKETS ];
+		}
+		else
+		{
+			Arrays.fill( mOccupied, 0 );
+			Arrays.fill( mHistogram, 0 );
+		}
+
+		for( int bin = 0; bin < bins; bin++ )
+		{
+			float level = levels[ bin ];
+
+			if( Float.isInfinite( level ) || Float.isNaN( level ) )
+			{
+				level = HISTOGRAM_MINIMUM_DB;
+			}
+
+			mAverage[ bin ] = level;
+			mNoiseFloor[ bin ] = level;
+			mPeak[ bin ] = level;
+		}
+	}
+
+	/**
+	 * Number of DFT frames included in the statistics since the last reset
+	 */
+	public synchronized int getFrameCount()
+	{
+		return mFrameCount;
+	}
+
+	/**
+	 * Number of DFT bins, or 0 if no frames have been processed
+	 */
+	public synchronized int getBinCount()
+	{
+		return mFrameCount > 0 ? mAverage.length : 0;
+	}
+
+	/**
+	 * Center frequency of the DFT bin in Hertz
+	 */
+	public synchronized long getFrequency( int bin )
+	{
+		int bins = mAverage.length;
+
+		if( bins == 0 )
+		{
+			return mFrequency;
+		}
+
+		return mFrequency + (long)( ( (double)( bin - ( bins / 2 ) ) * 
+				(double)mSampleRate ) / (double)bins );
+	}
+
+	/**
+	 * DFT bin index for the frequency, or -1 if the frequency is outside of
+	 * the monitored bandwidth
+	 */
+	public synchronized int getBin( long frequency )
+	{
+		int bins = mAverage.length;
+
+		if( bins == 0 || mSampleRate == 0 )
+		{
+			return -1;
+		}
+
+		int bin = (int)Math.round( ( (double)( frequency - mFrequency ) * 
+				(double)bins ) / (double)mSampleRate ) + ( bins / 2 );
+
+		return ( bin >= 0 && bin < bins ) ? bin : -1;
+	}
+
+	/**
+	 * Exponential average bin level in dB
+	 */
+	public synchronized float getAverage( int bin )
+	{
+		return mAverage[ bin ];
+	}
+
+	/**
+	 * Noise floor estimate for the bin in dB
+	 */
+	public synchronized float getNoiseFloor( int bin )
+	{
+		return mNoiseFloor[ bin ];
+	}
+
+	/**
+	 * Peak bin level in dB
+	 */
+	public synchronized float getPeak( int bin )
+	{
+		return mPeak[ bin ];
+	}
+
+	/**
+	 * Fraction (0.0 - 1.0) of frames where the bin was occupied
+	 */
+	public synchronized float getOccupancy( int bin )
+	{
+		if( mFrameCount == 0 )
+		{
+			return 0.0f;
+		}
+
+		return (float)mOccupied[ bin ] / (float)mFrameCount;
+	}
+
+	/**
+	 * Bin level in dB below which the percent (0 - 100) of the bin levels 
+	 * fall, interpolated within the 2 dB histogram buckets.
+	 */
+	public synchronized float getPercentile( int bin, float percent )
+	{
+		if( mFrameCount == 0 )
+		{
+			return HISTOGRAM_MINIMUM_DB;
+		}
+
+		float target = (float)mFrameCount * Math.max( 0.0f, Math.min( 100.0f, percent ) ) / 100.0f;
+
+		int offset = bin * HISTOGRAM_BUCKETS;
+		int count = 0;
+
+		for( int bucket = 0; bucket < HISTOGRAM_BUCKETS; bucket++ )
+		{
+			int bucketCount = mHistogram[ offset + bucket ];
+
+			if( bucketCount > 0 && count + bucketCount >= target )
+			{
+				float fraction = ( target - count ) / (float)bucketCount;
+
+				return HISTOGRAM_MINIMUM_DB + 
+						( (float)bucket + fraction ) * HISTOGRAM_BUCKET_DB;
+			}
+
+			count += bucketCount;
+		}
+
+		return HISTOGRAM_MINIMUM_DB + HISTOGRAM_BUCKETS * HISTOGRAM_BUCKET_DB;
+	}
+
+	/**
+	 * Writes the statistics for each DFT bin as comma separated values with
+	 * a header row.
+	 */
+	public synchronized void writeCSV( Writer writer ) throws IOException
+	{
+		writer.write( "frequency,average_db,noise_floor_db,peak_db,occupancy,"
+				+ "p10_db,p50_db,p90_db\n" );
+
+		int bins = getBinCount();
+
+		StringBuilder sb = new StringBuilder();
+
+		for( int bin = 0; bin < bins; bin++ )
+		{
+			sb.setLength( 0 );
+
+			sb.append( getFrequency( bin ) ).append( "," );
+			sb.append( mDecibelFormat.format( mAverage[ bin ] ) ).append( "," );
+			sb.append( mDecibelFormat.format( mNoiseFloor[ bin ] ) ).append( "," );
+			sb.append( mDecibelFormat.format( mPeak[ bin ] ) ).append( "," );
+			sb.append( mOccupancyFormat.format( getOccupancy( bin ) ) ).append( "," );
+			sb.append( mDecibelFormat.format( getPercentile( bin, 10.0f ) ) ).append( "," );
+			sb.append( mDecibelFormat.format( getPercentile( bin, 50.0f ) ) ).append( "," );
+			sb.append( mDecibelFormat.format( getPercentile( bin, 90.0f ) ) ).append( "\n" );
+
+			writer.write( sb.toString() );
+		}
+	}
+
+	@Override
+	public String toString()
+	{
+		return "Spectral Monitor [" + mTuner.getName() + "]";
+	}
+}
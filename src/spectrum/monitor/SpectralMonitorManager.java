@@ -0,0 +1,293 @@
+/*******************************************************************************
+ *     SDR Trunk 
+ *     Copyright (C) 2014-2016 Dennis Sheirer
+ * 
+ *     This program is free software: you can redistribute it and/or modify
+ *     it under the terms of the GNU General Public License as published by
+ *     the Free Software Foundation, either version 3 of the License, or
+ *     (at your option) any later version.
+ * 
+ *     This program is distributed in the hope that it will be useful,
+ *     but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *     MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *     GNU General Public License for more details.
+ * 
+ *     You should have received a copy of the GNU General Public License
+ *     along with this program.  If not, see <http://www.gnu.org/licenses/>
+ ******************************************************************************/
+package spectrum.monitor;
+
+import java.io.IOException;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import properties.SystemProperties;
+import sample.Listener;
+import source.tuner.Tuner;
+import source.tuner.TunerEvent;
+import source.tuner.TunerModel;
+import controller.ThreadPoolManager;
+import controller.ThreadPoolManager.ThreadType;
+
+/**
+ * Runs a headless spectral monitor for each tuner in the tuner model, 
+ * including tuners added to the model after the manager is started, and
+ * periodically writes each monitor's per-bin statistics to a CSV file.
+ * 
+ * Settings (application properties):
+ * 
+ * spectral.monitor.frame.rate - DFT frames per second (default 2)
+ * spectral.monitor.average.frames - averaging time constant in frames (30)
+ * spectral.monitor.occupancy.threshold - dB above the noise floor for a bin
+ *   to be counted as occupied (10)
+ * spectral.monitor.dump.interval - seconds between CSV dumps, 0 to disable (60)
+ */
+public class SpectralMonitorManager implements Listener<TunerEvent>
+{
+	private final static Logger mLog = 
+			LoggerFactory.getLogger( SpectralMonitorManager.class );
+
+	public static final String FRAME_RATE_PROPERTY = "spectral.monitor.frame.rate";
+	public static final String AVERAGE_FRAMES_PROPERTY = "spectral.monitor.average.frames";
+	public static final String OCCUPANCY_THRESHOLD_PROPERTY = "spectral.monitor.occupancy.threshold";
+	public static final String DUMP_INTERVAL_PROPERTY = "spectral.monitor.dump.interval";
+
+	private TunerModel mTunerModel;
+	private ThreadPoolManager mThreadPoolManager;
+	private Path mFolder;
+	private ScheduledFuture<?> mDumpTask;
+	private boolean mStarted;
+	private int mFrameRate;
+	private int mAverageFrames;
+	private int mThreshold;
+
+	private List<SpectralMonitor> mMonitors = new CopyOnWriteArrayList<>();
+
+	/**
+	 * Constructs the manager.  Invoke start() to begin monitoring.
+	 * 
+	 * @param tunerModel - tuners to monitor
+	 * @param threadPoolManager - for the periodic CSV dump task
+	 * @param folder - folder for CSV dump files, or null for no dump files
+	 */
+	public SpectralMonitorManager( TunerModel tunerModel, 
+			ThreadPoolManager threadPoolManager, Path folder )
+	{
+		mTunerModel = tunerModel;
+		mThreadPoolManager = threadPoolManager;
+		mFolder = folder;
+	}
+
+	/**
+	 * Starts a spectral monitor for each tuner currently in the tuner model,
+	 * registers to monitor tuners as they are added to or removed from the
+	 * model and schedules the CSV dump task
+	 */
+	public synchronized void start()
+	{
+		SystemProperties properties = SystemProperties.getInstance();
+
+		mFrameRate = properties.get( FRAME_RATE_PROPERTY, 2 );
+		mAverageFrames = properties.get( AVERAGE_FRAMES_PROPERTY, 30 );
+		mThreshold = properties.get( OCCUPANCY_THRESHOLD_PROPERTY, 10 );
+		int interval = properties.get( DUMP_INTERVAL_PROPERTY, 60 );
+
+		if( !mStarted )
+		{
+			mStarted = true;
+
+			mTunerModel.addListener( this );
+		}
+
+		for( Tuner tuner: mTunerModel.getTuners() )
+		{
+			startMonitor( tuner );
+		}
+
+		if( mFolder != null && interval > 0 && mDumpTask == null )
+		{
+			mDumpTask = mThreadPoolManager.scheduleFixedRate( ThreadType.DECODER, 
+					new Runnable()
+			{
+				@Override
+				public void run()
+				{
+					writeCSV( mFolder );
+				}
+			}, interval, TimeUnit.SECONDS );
+		}
+	}
+
+	/**
+	 * Starts a spectral monitor for the tuner, unless it already has one
+	 */
+	private synchronized void startMonitor( Tuner tuner )
+	{
+		if( mStarted && getMonitor( tuner ) == null )
+		{
+			SpectralMonitor monitor = new SpectralMonitor( tuner, mFrameRate, 
+					mAverageFrames, mThreshold );
+
+			monitor.start();
+
+			mMonitors.add( monitor );
+
+			mLog.info( "Started spectral monitor for tuner [" + 
+					tuner.getName() + "]" );
+		}
+	}
+
+	/**
+	 * Stops and disposes the tuner's spectral monitor, if it has one
+	 */
+	private synchronized void stopMonitor( Tuner tuner )
+	{
+		SpectralMonitor monitor = getMonitor( tuner );
+
+		if( monitor != null )
+		{
+			mMonitors.remove( monitor );
+
+			monitor.dispose();
+
+			mLog.info( "Stopped spectral monitor for tuner [" + 
+					tuner.getName() + "]" );
+		}
+	}
+
+	/**
+	 * Starts or stops monitoring tuners as they are added to or removed from
+	 * the tuner model
+	 */
+	@Override
+	public void receive( TunerEvent event )
+	{
+		if( event.getTuner() != null )
+		{
+			switch( event.getEvent() )
+			{
+				case ADD:
+					startMonitor( event.getTuner() );
+					break;
+				case REMOVE:
+					stopMonitor( event.getTuner() );
+					break;
+				default:
+					break;
+			}
+		}
+	}
+
+	/**
+	 * Stops and disposes all monitors, after writing a final CSV dump
+	 */
+	public synchronized void stop()
+	{
+		if( mStarted )
+		{
+			mStarted = false;
+
+			mTunerModel.removeListener( this );
+		}
+
+		if( mDumpTask != null )
+		{
+			mThreadPoolManager.cancel( mDumpTask );
+			mDumpTask = null;
+
+			writeCSV( mFolder );
+		}
+
+		for( SpectralMonitor monitor: mMonitors )
+		{
+			monitor.dispose();
+		}
+
+		mMonitors.clear();
+	}
+
+	/**
+	 * Current spectral monitors
+	 */
+	public List<SpectralMonitor> getMonitors()
+	{
+		return new ArrayList<>( mMonitors );
+	}
+
+	/**
+	 * Spectral monitor for the tuner, or null
+	 */
+	public SpectralMonitor getMonitor( Tuner tuner )
+	{
+		for( SpectralMonitor monitor: mMonitors )
+		{
+			if( monitor.getTuner() == tuner )
+			{
+				return monitor;
+			}
+		}
+
+		return null;
+	}
+
+	/**
+	 * Writes each monitor's statistics to a spectrum_[tuner].csv file in the
+	 * folder, creating the folder if needed.  Each file is written to a 
+	 * temporary file and then moved into place so that readers never see a 
+	 * partial file.
+	 */
+	public void writeCSV( Path folder )
+	{
+		try
+		{
+			Files.createDirectories( folder );
+		}
+		catch( IOException ioe )
+		{
+			mLog.error( "Couldn't create spectral monitor statistics folder [" + 
+					folder.toString() + "]", ioe );
+
+			return;
+		}
+
+		for( SpectralMonitor monitor: mMonitors )
+		{
+			if( monitor.getFrameCount() > 0 )
+			{
+				String name = "spectrum_" + monitor.getTuner().getName()
+						.replaceAll( "[^A-Za-z0-9_\\-]", "_" ) + ".csv";
+
+				Path path = folder.resolve( name );
+				Path temp = folder.resolve( name + ".tmp" );
+
+				try
+				{
+					try( Writer writer = Files.newBufferedWriter( temp, 
+							StandardCharsets.UTF_8 ) )
+					{
+						monitor.writeCSV( writer );
+					}
+
+					Files.move( temp, path, StandardCopyOption.REPLACE_EXISTING, 
+							StandardCopyOption.ATOMIC_MOVE );
+				}
+				catch( IOException ioe )
+				{
+					mLog.error( "Couldn't write spectral monitor statistics [" + 
+							path.toString() + "]", ioe );
+				}
+			}
+		}
+	}
+}
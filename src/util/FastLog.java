@@ -0,0 +1,73 @@
+/*******************************************************************************
+ *     SDR Trunk 
+ *     Copyright (C) 2014-2016 Dennis Sheirer
+ * 
+ *     This program is free software: you can redistribute it and/or modify
+ *     it under the terms of the GNU General Public License as published by
+ *     the Free Software Foundation, either version 3 of the License, or
+ *     (at your option) any later version.
+ * 
+ *     This program is distributed in the hope that it will be useful,
+ *     but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *     MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *     GNU General Public License for more details.
+ * 
+ *     You should have received a copy of the GNU General Public License
+ *     along with this program.  If not, see <http://www.gnu.org/licenses/>
+ ******************************************************************************/
+package util;
+
+/**
+ * Fast logarithm approximation for display-rate calculations like converting
+ * DFT bin power to decibels, where Math.log10() per bin is too costly.
+ * 
+ * The float exponent provides the integer part of log2( x ) and the upper bits
+ * of the mantissa index a lookup table for the fractional part.  Maximum error
+ * is about 0.0014 in log2, or about 0.004 dB.
+ */
+public class FastLog
+{
+	private static final int MANTISSA_BITS = 10;
+	private static final int MANTISSA_SHIFT = 23 - MANTISSA_BITS;
+	private static final int TABLE_SIZE = 1 << MANTISSA_BITS;
+
+	public static final float LOG10_OF_2 = (float)Math.log10( 2.0 );
+
+	//log2 of 1.0 to 2.0 at the center of each mantissa bucket
+	private static final float[] sLOOKUP_TABLE = new float[ TABLE_SIZE ];
+	
+	static
+	{
+		for( int x = 0; x < TABLE_SIZE; x++ )
+		{
+			sLOOKUP_TABLE[ x ] = (float)( Math.log( 1.0 + 
+				( (double)x + 0.5 ) / (double)TABLE_SIZE ) / Math.log( 2.0 ) );
+		}
+	}
+	
+	/**
+	 * Approximate log base 2 of the value.  Returns negative infinity for zero
+	 * or negative values, like Math.log10() does for zero.
+	 */
+	public static float log2( float value )
+	{
+		if( value <= 0.0f )
+		{
+			return Float.NEGATIVE_INFINITY;
+		}
+
+		int bits = Float.floatToRawIntBits( value );
+		
+		int exponent = ( ( bits >>> 23 ) & 0xFF ) - 127;
+		
+		return exponent + sLOOKUP_TABLE[ ( bits >>> MANTISSA_SHIFT ) & ( TABLE_SIZE - 1 ) ];
+	}
+	
+	/**
+	 * Approximate log base 10 of the value
+	 */
+	public static float log10( float value )
+	{
+		return log2( value ) * LOG10_OF_2;
+	}
+}